@@ -0,0 +1,194 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.johnstok.http.CharacterSet;
+import com.johnstok.http.Header;
+import com.johnstok.http.sync.AbstractRequest;
+import com.johnstok.http.sync.AbstractResponse;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.handler.CompressingHandler;
+
+
+/**
+ * Benchmarks for handlers, invoked with in-memory requests and responses.
+ *
+ * @author Keith Webster Johnston.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(2)
+public class HandlerBenchmark {
+
+    private static final InetSocketAddress ADDRESS =
+        InetSocketAddress.createUnresolved("localhost", 8080); //$NON-NLS-1$
+
+    @Param({"gzip, deflate, br", "identity"})
+    public String _acceptEncoding;
+
+    @Param({"128", "16384"})
+    public int _bodySize;
+
+    private Handler          _handler;
+    private BenchmarkRequest _request;
+
+
+    @Setup
+    public void setUp() {
+        final byte[] body = new byte[_bodySize];
+        for (int i=0; i<body.length; i++) {
+            body[i] = (byte) ('a' + (i % 26));
+        }
+        _handler = new CompressingHandler(new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response response) throws IOException {
+                response.setStatus(200, "OK"); //$NON-NLS-1$
+                response.setHeader(Header.CONTENT_TYPE, "text/plain"); //$NON-NLS-1$
+                final OutputStream os = response.getBody();
+                os.write(body);
+                os.close();
+            }
+        });
+
+        final Map<String, List<String>> headers =
+            new HashMap<String, List<String>>();
+        for (final String header : Corpus.HEADER_BLOCKS[0]) {
+            final Header h = Header.parse(header);
+            headers.put(h.getName(), Collections.singletonList(h.getValue()));
+        }
+        headers.put(
+            Header.ACCEPT_ENCODING, Collections.singletonList(_acceptEncoding));
+        _request = new BenchmarkRequest(headers);
+    }
+
+
+    @Benchmark
+    public void compressingHandler(final Blackhole bh) throws IOException {
+        final BenchmarkResponse response = new BenchmarkResponse(bh);
+        _handler.handle(_request, response);
+        bh.consume(response);
+    }
+
+
+    /*
+     * An in-memory GET request.
+     */
+    static final class BenchmarkRequest
+        extends
+            AbstractRequest {
+
+        private final Map<String, List<String>> _headers;
+
+
+        BenchmarkRequest(final Map<String, List<String>> headers) {
+            super(ADDRESS, CharacterSet.UTF_8);
+            _headers = headers;
+        }
+
+
+        @Override public String getRequestUri() { return "/index.html"; } //$NON-NLS-1$
+        @Override public boolean isConfidential() { return false; }
+        @Override public String getMethod() { return "GET"; } //$NON-NLS-1$
+        @Override public String getVersion() { return "HTTP/1.1"; } //$NON-NLS-1$
+        @Override public InetSocketAddress getClientAddress() { return ADDRESS; }
+        @Override public Map<String, List<String>> getHeaders() { return _headers; }
+        @Override public InputStream getBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+    }
+
+
+    /*
+     * A response that discards its body into a blackhole.
+     */
+    static final class BenchmarkResponse
+        extends
+            AbstractResponse {
+
+        private final Map<String, String> _headers =
+            new HashMap<String, String>();
+        private final Blackhole _bh;
+        private int    _status;
+        private String _reason;
+
+
+        BenchmarkResponse(final Blackhole bh) {
+            _bh = bh;
+        }
+
+
+        @Override
+        public void setStatus(final int statusCode, final String reasonPhrase) {
+            _status = statusCode;
+            _reason = reasonPhrase;
+        }
+        @Override public int getStatusCode() { return _status; }
+        @Override public String getReasonPhrase() { return _reason; }
+        @Override
+        public void setHeader(final String name, final String value) {
+            _headers.put(name, value);
+        }
+        @Override public String getHeader(final String name) {
+            return _headers.get(name);
+        }
+
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            commit();
+            return new OutputStream() {
+                @Override public void write(final int b) { _bh.consume(b); }
+                @Override public void write(final byte[] b,
+                                            final int off,
+                                            final int len) {
+                    _bh.consume(b);
+                }
+            };
+        }
+    }
+}
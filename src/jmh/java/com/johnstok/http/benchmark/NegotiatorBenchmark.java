@@ -0,0 +1,182 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.johnstok.http.CharacterSet;
+import com.johnstok.http.ContentCoding;
+import com.johnstok.http.Header;
+import com.johnstok.http.LanguageTag;
+import com.johnstok.http.MediaType;
+import com.johnstok.http.WeightedValue;
+import com.johnstok.http.negotiation.CharsetNegotiator;
+import com.johnstok.http.negotiation.ContentNegotiator;
+import com.johnstok.http.negotiation.LanguageNegotiator;
+import com.johnstok.http.negotiation.MediaTypeNegotiator;
+import com.johnstok.http.negotiation.Variant;
+import com.johnstok.http.negotiation.VariantNegotiator;
+
+
+/**
+ * Benchmarks for the content negotiators.
+ *
+ * <p>The {@code parseAndSelect} benchmarks include header parsing, as a handler
+ * would; the remaining benchmarks select from pre-parsed preferences.
+ *
+ * @author Keith Webster Johnston.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(2)
+public class NegotiatorBenchmark {
+
+    private MediaTypeNegotiator _mediaTypes;
+    private CharsetNegotiator   _charsets;
+    private LanguageNegotiator  _languages;
+    private ContentNegotiator   _encodings;
+    private VariantNegotiator   _variants;
+
+    private List<List<WeightedValue>> _accept;
+    private List<List<WeightedValue>> _acceptCharset;
+    private List<List<WeightedValue>> _acceptLanguage;
+    private List<List<WeightedValue>> _acceptEncoding;
+
+
+    @Setup
+    public void setUp() {
+        _mediaTypes =
+            new MediaTypeNegotiator(
+                MediaType.HTML, MediaType.JSON, MediaType.XML, MediaType.TEXT);
+        _charsets =
+            new CharsetNegotiator(CharacterSet.UTF_8, CharacterSet.ISO_8859_1);
+
+        final Set<LanguageTag> languages = new HashSet<LanguageTag>();
+        languages.add(new LanguageTag("en")); //$NON-NLS-1$
+        languages.add(new LanguageTag("fr")); //$NON-NLS-1$
+        languages.add(new LanguageTag("de")); //$NON-NLS-1$
+        _languages = new LanguageNegotiator(languages);
+
+        final Set<String> encodings = new HashSet<String>();
+        encodings.add(ContentCoding.GZIP.toString());
+        encodings.add(ContentCoding.IDENTITY.toString());
+        _encodings = new ContentNegotiator(encodings);
+
+        final List<Variant> variants = new ArrayList<Variant>();
+        for (final MediaType mt : new MediaType[] {MediaType.HTML, MediaType.JSON}) {
+            for (final LanguageTag lang : languages) {
+                for (final ContentCoding cc
+                        : new ContentCoding[] {ContentCoding.GZIP,
+                                               ContentCoding.IDENTITY}) {
+                    variants.add(
+                        new Variant(mt, CharacterSet.UTF_8, lang, cc));
+                }
+            }
+        }
+        _variants = new VariantNegotiator(variants);
+
+        _accept = new ArrayList<List<WeightedValue>>();
+        for (final String value : Corpus.ACCEPT) {
+            _accept.add(MediaTypeNegotiator.parse(value));
+        }
+        _acceptCharset = new ArrayList<List<WeightedValue>>();
+        for (final String value : Corpus.ACCEPT_CHARSET) {
+            _acceptCharset.add(Header.parseAcceptCharset(value));
+        }
+        _acceptLanguage = new ArrayList<List<WeightedValue>>();
+        for (final String value : Corpus.ACCEPT_LANGUAGE) {
+            _acceptLanguage.add(Header.parseAcceptLanguage(value));
+        }
+        _acceptEncoding = new ArrayList<List<WeightedValue>>();
+        for (final String value : Corpus.ACCEPT_ENCODING) {
+            _acceptEncoding.add(Header.parseAcceptEncoding(value));
+        }
+    }
+
+
+    @Benchmark
+    public void mediaType(final Blackhole bh) {
+        for (final List<WeightedValue> prefs : _accept) {
+            bh.consume(_mediaTypes.select(prefs));
+        }
+    }
+
+
+    @Benchmark
+    public void charset(final Blackhole bh) {
+        for (final List<WeightedValue> prefs : _acceptCharset) {
+            bh.consume(_charsets.select(prefs));
+        }
+    }
+
+
+    @Benchmark
+    public void language(final Blackhole bh) {
+        for (final List<WeightedValue> prefs : _acceptLanguage) {
+            bh.consume(_languages.select(prefs));
+        }
+    }
+
+
+    @Benchmark
+    public void encoding(final Blackhole bh) {
+        for (final List<WeightedValue> prefs : _acceptEncoding) {
+            bh.consume(_encodings.select(prefs));
+        }
+    }
+
+
+    @Benchmark
+    public void mediaTypeParseAndSelect(final Blackhole bh) {
+        for (final String value : Corpus.ACCEPT) {
+            bh.consume(_mediaTypes.select(MediaTypeNegotiator.parse(value)));
+        }
+    }
+
+
+    @Benchmark
+    public void variantParseAndSelect(final Blackhole bh) {
+        for (int i=0; i<Corpus.ACCEPT.length; i++) {
+            bh.consume(
+                _variants.select(
+                    Corpus.ACCEPT[i],
+                    Corpus.ACCEPT_CHARSET[i % Corpus.ACCEPT_CHARSET.length],
+                    Corpus.ACCEPT_LANGUAGE[i % Corpus.ACCEPT_LANGUAGE.length],
+                    Corpus.ACCEPT_ENCODING[i % Corpus.ACCEPT_ENCODING.length]));
+        }
+    }
+}
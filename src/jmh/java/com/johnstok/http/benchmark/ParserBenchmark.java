@@ -0,0 +1,123 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.johnstok.http.CharacterSet;
+import com.johnstok.http.Header;
+import com.johnstok.http.MediaType;
+import com.johnstok.http.Path;
+import com.johnstok.http.Query;
+import com.johnstok.http.RequestLine;
+import com.johnstok.http.RequestURI;
+
+
+/**
+ * Benchmarks for the request parsers.
+ *
+ * <p>Each operation parses every entry in the relevant corpus once, so scores
+ * are comparable between runs but not between benchmarks.
+ *
+ * @author Keith Webster Johnston.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(2)
+public class ParserBenchmark {
+
+    @Benchmark
+    public void headerBlock(final Blackhole bh) {
+        for (final String[] block : Corpus.HEADER_BLOCKS) {
+            for (final String header : block) {
+                bh.consume(Header.parse(header));
+            }
+        }
+    }
+
+
+    @Benchmark
+    public void acceptEncoding(final Blackhole bh) {
+        for (final String value : Corpus.ACCEPT_ENCODING) {
+            bh.consume(Header.parseAcceptEncoding(value));
+        }
+    }
+
+
+    @Benchmark
+    public void acceptLanguage(final Blackhole bh) {
+        for (final String value : Corpus.ACCEPT_LANGUAGE) {
+            bh.consume(Header.parseAcceptLanguage(value));
+        }
+    }
+
+
+    @Benchmark
+    public void mediaType(final Blackhole bh) {
+        for (final String value : Corpus.MEDIA_TYPES) {
+            bh.consume(MediaType.parse(value));
+        }
+    }
+
+
+    @Benchmark
+    public void requestLine(final Blackhole bh) {
+        for (final String value : Corpus.REQUEST_LINES) {
+            bh.consume(RequestLine.parse(value));
+        }
+    }
+
+
+    @Benchmark
+    public void requestUri(final Blackhole bh) {
+        for (final String value : Corpus.REQUEST_URIS) {
+            bh.consume(RequestURI.parse(value));
+        }
+    }
+
+
+    @Benchmark
+    public void path(final Blackhole bh) {
+        for (final String value : Corpus.PATHS) {
+            bh.consume(new Path(value, CharacterSet.UTF_8));
+        }
+    }
+
+
+    @Benchmark
+    public void query(final Blackhole bh) throws UnsupportedEncodingException {
+        for (final String value : Corpus.QUERIES) {
+            bh.consume(new Query(value, CharacterSet.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+
+/**
+ * A bounded pool of fixed-size char, byte and direct buffers.
+ *
+ * <p>Buffers are handed out by {@link #chars()}, {@link #bytes()} and
+ * {@link #direct()} and should be returned with the corresponding
+ * {@code release} method once finished with. When the pool is empty a new
+ * buffer is allocated; when it is full released buffers are discarded.
+ * Buffers are not cleared between uses.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class BufferPool {
+
+    /** A shared pool of 8KiB buffers. */
+    public static final BufferPool DEFAULT = new BufferPool(8192, 64);
+
+    private final int                            _size;
+    private final ArrayBlockingQueue<char[]>     _chars;
+    private final ArrayBlockingQueue<byte[]>     _bytes;
+    private final ArrayBlockingQueue<ByteBuffer> _direct;
+
+
+    /**
+     * Constructor.
+     *
+     * @param size     The length of each buffer.
+     * @param capacity The maximum number of idle buffers of each type to
+     *  retain.
+     */
+    public BufferPool(final int size, final int capacity) {
+        if (1>size) { throw new IllegalArgumentException(); }
+        _size  = size;
+        _chars = new ArrayBlockingQueue<char[]>(capacity);
+        _bytes = new ArrayBlockingQueue<byte[]>(capacity);
+        _direct = new ArrayBlockingQueue<ByteBuffer>(capacity);
+    }
+
+
+    /**
+     * Take a char buffer from the pool.
+     *
+     * @return A buffer of {@link #getSize()} chars.
+     */
+    public char[] chars() {
+        final char[] buffer = _chars.poll();
+        return (null==buffer) ? new char[_size] : buffer;
+    }
+
+
+    /**
+     * Take a byte buffer from the pool.
+     *
+     * @return A buffer of {@link #getSize()} bytes.
+     */
+    public byte[] bytes() {
+        final byte[] buffer = _bytes.poll();
+        return (null==buffer) ? new byte[_size] : buffer;
+    }
+
+
+    /**
+     * Take a direct byte buffer from the pool.
+     *
+     * @return A cleared, direct buffer with a capacity of {@link #getSize()}
+     *  bytes.
+     */
+    public ByteBuffer direct() {
+        final ByteBuffer buffer = _direct.poll();
+        return (null==buffer) ? ByteBuffer.allocateDirect(_size) : buffer;
+    }
+
+
+    /**
+     * Return a char buffer to the pool.
+     *
+     * @param buffer The buffer to return; buffers of the wrong size are
+     *  ignored.
+     */
+    public void release(final char[] buffer) {
+        if (null!=buffer && _size==buffer.length) { _chars.offer(buffer); }
+    }
+
+
+    /**
+     * Return a byte buffer to the pool.
+     *
+     * @param buffer The buffer to return; buffers of the wrong size are
+     *  ignored.
+     */
+    public void release(final byte[] buffer) {
+        if (null!=buffer && _size==buffer.length) { _bytes.offer(buffer); }
+    }
+
+
+    /**
+     * Return a direct byte buffer to the pool.
+     *
+     * @param buffer The buffer to return; heap buffers and buffers of the
+     *  wrong size are ignored.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (null!=buffer && buffer.isDirect() && _size==buffer.capacity()) {
+            buffer.clear();
+            _direct.offer(buffer);
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the length of the buffers in this pool.
+     */
+    public int getSize() {
+        return _size;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of idle direct buffers held by this pool.
+     */
+    public int getIdleDirect() {
+        return _direct.size();
+    }
+}
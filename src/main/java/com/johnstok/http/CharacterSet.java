@@ -20,8 +20,9 @@
 package com.johnstok.http;
 
 import java.nio.charset.Charset;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
@@ -40,6 +41,26 @@ public class CharacterSet {
     public static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
     public static final Charset DEFAULT    = ISO_8859_1;
 
+    private static final TokenRegistry<Charset> KNOWN;
+    static {
+        final Map<String, Charset> known = new LinkedHashMap<String, Charset>();
+        for (final Charset cs : new Charset[] {
+                StandardCharsets.UTF_8,
+                StandardCharsets.ISO_8859_1,
+                StandardCharsets.US_ASCII,
+                StandardCharsets.UTF_16,
+                StandardCharsets.UTF_16BE,
+                StandardCharsets.UTF_16LE}) {
+            known.put(cs.name(), cs);
+            for (final String alias : cs.aliases()) {
+                // Some JDK aliases aren't valid HTTP charset names.
+                if (TokenRegistry.isToken(alias, 0, alias.length())) {
+                    known.put(alias, cs);
+                }
+            }
+        }
+        KNOWN = new TokenRegistry<Charset>(false, known);
+    }
 
 
     /**
@@ -50,8 +71,9 @@ public class CharacterSet {
      * @return A corresponding charset object.
      */
     public static Charset parse(final String charsetString) {
-        final Matcher m = Pattern.compile(SYNTAX).matcher(charsetString);
-        if (m.matches()) {
+        final Charset known = KNOWN.lookup(charsetString);
+        if (null!=known) { return known; }
+        if (TokenRegistry.isToken(charsetString, 0, charsetString.length())) {
             // N.B.
             // The HTTP syntax and JDK syntax charset names do not match.
             // Java charset names are case-insensistive - consistent with HTTP.
@@ -19,19 +19,20 @@
  *---------------------------------------------------------------------------*/
 package com.johnstok.http;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
  * A HTTP content coding.
  *
+ * <p>Parsing a well-known content coding returns a shared instance, so
+ * codings may be compared by identity.
+ *
  * @author Keith Webster Johnston.
  */
 @Specification(name="rfc-2616", section="3.5")
 public final class ContentCoding {
-    // TODO: x-gzip equiv to gzip
-    // TODO: x-compress equiv to compress
 
     private static final String CONTENT_CODING = Syntax.TOKEN;
     public  static final String SYNTAX  = "(["+CONTENT_CODING+"])+";
@@ -84,6 +85,26 @@ public final class ContentCoding {
         new ContentCoding("*");                                  //$NON-NLS-1$
 
 
+    /*
+     * For compatibility with previous HTTP implementations, applications
+     * SHOULD consider "x-gzip" and "x-compress" to be equivalent to "gzip" and
+     * "compress" respectively.
+     */
+    private static final TokenRegistry<ContentCoding> KNOWN_CODINGS;
+    static {
+        final Map<String, ContentCoding> known =
+            new LinkedHashMap<String, ContentCoding>();
+        known.put(GZIP.toString(),     GZIP);
+        known.put("x-gzip",            GZIP);                     //$NON-NLS-1$
+        known.put(COMPRESS.toString(), COMPRESS);
+        known.put("x-compress",        COMPRESS);                 //$NON-NLS-1$
+        known.put(DEFLATE.toString(),  DEFLATE);
+        known.put(IDENTITY.toString(), IDENTITY);
+        known.put(ANY.toString(),      ANY);
+        KNOWN_CODINGS = new TokenRegistry<ContentCoding>(false, known);
+    }
+
+
     private final String _name;
 
 
@@ -98,8 +119,10 @@ public final class ContentCoding {
      * @return A corresponding content coding object.
      */
     public static ContentCoding parse(final String contentCodingString) {
-        final Matcher m = Pattern.compile(SYNTAX).matcher(contentCodingString);
-        if (m.matches()) {
+        final ContentCoding known = KNOWN_CODINGS.lookup(contentCodingString);
+        if (null!=known) { return known; }
+        if (TokenRegistry.isToken(
+                contentCodingString, 0, contentCodingString.length())) {
             return new ContentCoding(contentCodingString);
         }
         throw new ClientHttpException(Status.BAD_REQUEST);
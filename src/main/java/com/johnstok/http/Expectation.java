@@ -19,16 +19,190 @@
  *---------------------------------------------------------------------------*/
 package com.johnstok.http;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 
 /**
- * TODO: Describe this classes responsibility.
+ * An expectation from the Expect request header.
+ *
+ * <pre>
+ *    Expect       =  "Expect" ":" 1#expectation
+ *
+ *    expectation  =  "100-continue" | expectation-extension
+ *    expectation-extension =  token [ "=" ( token | quoted-string )
+ *                             *expect-params ]
+ *    expect-params =  ";" token [ "=" ( token | quoted-string ) ]
+ * </pre>
  *
- * TODO: Add a description for this type.
+ * Comparison of expectation values is case-insensitive for unquoted tokens
+ * (including the 100-continue token), and is case-sensitive for
+ * quoted-string expectation-extensions.
  *
  * @author Keith Webster Johnston.
  */
 @Specification(name="rfc-2616", section="14.20")
-public class Expectation {
+public final class Expectation {
+
+    private static final String VALUE =
+        "(?:["+Syntax.TOKEN+"]+|"+Syntax.QUOTED_STRING+")";
+    private static final String PARAMS =
+        "((?:\\s*;\\s*["+Syntax.TOKEN+"]+(?:="+VALUE+")?)*)";
+    public static final String SYNTAX =
+        "(["+Syntax.TOKEN+"]+)(?:=("+VALUE+")"+PARAMS+")?";
+
+    private static final Pattern PATTERN = Pattern.compile(SYNTAX);
+    private static final Pattern ELEMENT =
+        Pattern.compile("\\s*("+SYNTAX+")\\s*(?:,|$)");          //$NON-NLS-1$
+
+    /**
+     * CONTINUE : Expectation.
+     */
+    @Specification(name="rfc-2616", section="8.2.3")
+    public static final Expectation CONTINUE =
+        new Expectation("100-continue", null, "");                 //$NON-NLS-1$ //$NON-NLS-2$
+
+    private final String _name;
+    private final String _value;
+    private final String _parameters;
+
+
+    /**
+     * Constructor.
+     *
+     * @param name       The expectation's token.
+     * @param value      The expectation's value; may be null.
+     * @param parameters The unparsed expect-params; may be empty.
+     */
+    private Expectation(final String name,
+                        final String value,
+                        final String parameters) {
+        _name = name;
+        _value = value;
+        _parameters = parameters;
+    }
+
+
+    /**
+     * Parse a string into an expectation.
+     *
+     * @param expectationString A string representing the expectation.
+     *
+     * @return A corresponding expectation object.
+     */
+    public static Expectation parse(final String expectationString) {
+        final Matcher m = PATTERN.matcher(expectationString.trim());
+        if (m.matches()) {
+            if (null==m.group(2) && CONTINUE._name.equalsIgnoreCase(m.group(1))) {
+                return CONTINUE;
+            }
+            return new Expectation(
+                m.group(1), m.group(2), (null==m.group(3)) ? "" : m.group(3)); //$NON-NLS-1$
+        }
+        throw new ClientHttpException(Status.BAD_REQUEST);
+    }
+
+
+    /**
+     * Parse the value of an Expect header.
+     *
+     * @param headerValue The header's value; a comma separated list.
+     *
+     * @return The expectations, in order.
+     */
+    public static List<Expectation> parseList(final String headerValue) {
+        final List<Expectation> expectations = new ArrayList<Expectation>(1);
+        final Matcher m = ELEMENT.matcher(headerValue);
+        int end = 0;
+        while (end<headerValue.length()) {
+            if (!m.find(end) || m.start()!=end) {
+                throw new ClientHttpException(Status.BAD_REQUEST);
+            }
+            expectations.add(parse(m.group(1)));
+            end = m.end();
+        }
+        if (expectations.isEmpty()) {
+            throw new ClientHttpException(Status.BAD_REQUEST);
+        }
+        return Collections.unmodifiableList(expectations);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the expectation's token.
+     */
+    public String getName() {
+        return _name;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the expectation's value; may be null.
+     */
+    public String getValue() {
+        return _value;
+    }
+
+
+    /**
+     * Test whether this is the 100-continue expectation.
+     *
+     * @return True if this expectation is 100-continue.
+     */
+    public boolean isContinue() {
+        return CONTINUE.equals(this);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = (prime * result) + _name.toLowerCase(Locale.US).hashCode();
+        result = (prime * result)
+            + ((_value == null) ? 0 : _value.toLowerCase(Locale.US).hashCode());
+        return result;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Expectation other = (Expectation) obj;
+        if (!_name.equalsIgnoreCase(other._name)) {
+            return false;
+        }
+        if (_value == null) {
+            return other._value == null;
+        }
+        final boolean sameValue = (_value.startsWith("\""))         //$NON-NLS-1$
+            ? _value.equals(other._value)
+            : _value.equalsIgnoreCase(other._value);
+        return sameValue && _parameters.equals(other._parameters);
+    }
+
 
-    private static Expectation CONTINUE = new Expectation();
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return (null==_value) ? _name : _name+"="+_value+_parameters; //$NON-NLS-1$
+    }
 }
@@ -22,6 +22,7 @@ package com.johnstok.http;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import com.johnstok.http.event.ParseEvent;
 
 
 /**
@@ -543,17 +544,7 @@ public final class Header {
          *  - malformed cRange
          *  - malformed field
          */
-        final List<WeightedValue> wValues = new ArrayList<WeightedValue>();
-
-        if ((null==value) || (1>value.trim().length())) { return wValues; }
-
-        final String[] cRanges = value.split(",");
-        for (final String cRange : cRanges) {
-            if ((null==cRange) || (1>cRange.trim().length())) { continue; }
-            wValues.add(Value.parse(cRange).asWeightedValue("q", 1f));
-        }
-
-        return wValues;
+        return parseWeightedValues(value);
     }
 
 
@@ -571,20 +562,113 @@ public final class Header {
          *  - malformed eRange
          *  - malformed field
          */
+        return parseWeightedValues(value);
+    }
+
+
+    /**
+     * Parse an 'Accept-Language' header into a list of weighted values.
+     *
+     * <pre>
+     * Accept-Language = "Accept-Language" ":"
+     *                   1#( language-range [ ";" "q" "=" qvalue ] )
+     * language-range  = ( ( 1*8ALPHA *( "-" 1*8ALPHA ) ) | "*" )
+     * </pre>
+     *
+     * Each language-range MAY be given an associated quality value which
+     * represents an estimate of the user's preference for the languages
+     * specified by that range. The quality value defaults to "q=1".
+     *
+     * @param value The value to parse.
+     *
+     * @return The corresponding list of weighted values.
+     */
+    public static List<WeightedValue> parseAcceptLanguage(final String value) {
+        /*
+         * TODO Handle:
+         *  - duplicate lRange (incl case variations).
+         *  - malformed lRange
+         */
+        return parseWeightedValues(value);
+    }
+
+
+    /*
+     * Parse a comma separated list of values, each with an optional "q"
+     * parameter. Other parameters are discarded, as are values with a
+     * malformed weight.
+     */
+    private static List<WeightedValue> parseWeightedValues(final String value) {
         final List<WeightedValue> wValues = new ArrayList<WeightedValue>();
 
-        if ((null==value) || (1>value.trim().length())) { return wValues; }
+        if (null==value) { return wValues; }
 
-        final String[] eRanges = value.split(",");
-        for (final String eRange : eRanges) {
-            if ((null==eRange) || (1>eRange.trim().length())) { continue; }
-            wValues.add(Value.parse(eRange).asWeightedValue("q", 1f));
+        final int length = value.length();
+        int start = 0;
+        while (start<length) {
+            int end = value.indexOf(',', start);
+            if (0>end) { end = length; }
+            final WeightedValue wValue = parseWeightedValue(value, start, end);
+            if (null!=wValue) { wValues.add(wValue); }
+            start = end+1;
         }
 
         return wValues;
     }
 
 
+    private static WeightedValue parseWeightedValue(final String s,
+                                                    final int start,
+                                                    final int end) {
+        int semi = s.indexOf(';', start);
+        if ((0>semi) || (semi>end)) { semi = end; }
+        final int valueStart = skipWhitespace(s, start, semi);
+        final int valueEnd   = trimWhitespace(s, valueStart, semi);
+        if (valueStart==valueEnd) { return null; }
+
+        int quality = QualityValue.MAX;
+        int p = semi+1;
+        while (p<end) {
+            int pEnd = s.indexOf(';', p);
+            if ((0>pEnd) || (pEnd>end)) { pEnd = end; }
+            final int eq = s.indexOf('=', p);
+            if ((eq>p) && (eq<pEnd)) {
+                final int nameStart = skipWhitespace(s, p, eq);
+                if ((1==trimWhitespace(s, nameStart, eq)-nameStart)
+                    && ('q'==Character.toLowerCase(s.charAt(nameStart)))) {
+                    final int qStart = skipWhitespace(s, eq+1, pEnd);
+                    final int qEnd   = trimWhitespace(s, qStart, pEnd);
+                    if (qStart<qEnd) {
+                        try {
+                            quality = QualityValue.parseWeight(s, qStart, qEnd);
+                        } catch (final NumberFormatException e) {
+                            return null; // TODO: Log invalid weighted value.
+                        }
+                    }
+                    break;
+                }
+            }
+            p = pEnd+1;
+        }
+
+        return WeightedValue.withQuality(s.substring(valueStart, valueEnd), quality);
+    }
+
+
+    private static int skipWhitespace(final String s, final int start, final int end) {
+        int i = start;
+        while ((i<end) && Character.isWhitespace(s.charAt(i))) { i++; }
+        return i;
+    }
+
+
+    private static int trimWhitespace(final String s, final int start, final int end) {
+        int i = end;
+        while ((i>start) && Character.isWhitespace(s.charAt(i-1))) { i--; }
+        return i;
+    }
+
+
     /**
      * Parse a string into a Header.
      *
@@ -593,8 +677,12 @@ public final class Header {
      * @return A corresponding header object.
      */
     public static Header parse(final String headerString) {
+        final ParseEvent event = new ParseEvent();
+        event.begin();
         final Matcher m = Pattern.compile(SYNTAX).matcher(headerString);
-        if (m.matches()) {
+        final boolean valid = m.matches();
+        event.commit("header", headerString.length(), valid); //$NON-NLS-1$
+        if (valid) {
             return new Header(m.group(1), m.group(2));
         }
         throw new ClientHttpException(Status.BAD_REQUEST);
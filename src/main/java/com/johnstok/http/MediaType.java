@@ -22,6 +22,7 @@ package com.johnstok.http;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -60,6 +61,9 @@ import java.util.regex.Pattern;
  * (IANA [19]). The media type registration process is outlined in RFC 1590
  * [17]. Use of non-registered media types is discouraged.
  *
+ * <p>Parsing a common media type, without parameters, returns a shared
+ * instance.
+ *
  * @author Keith Webster Johnston.
  */
 @Specifications({
@@ -76,6 +80,8 @@ public class MediaType {
     public static final String SYNTAX    =
         "(["+TYPE+"]+)/(["+SUBTYPE+"]+)((?:;"+Parameter.PARAMETER+")*)";
 
+    private static final Pattern PATTERN = Pattern.compile(SYNTAX);
+
     /**
      *    The "charset" parameter is used with some media types to define the
      *    character set (section 3.4) of the data. When no explicit charset
@@ -129,7 +135,10 @@ public class MediaType {
      * @return A corresponding media type object.
      */
     public static MediaType parse(final String mediaTypeString) {
-        final Matcher m = Pattern.compile(SYNTAX).matcher(mediaTypeString);
+        final MediaType known = KNOWN.lookup(mediaTypeString);
+        if (null!=known) { return known; }
+
+        final Matcher m = PATTERN.matcher(mediaTypeString);
         if (m.matches()) {
             final HashMap<String, String> paramMap = Parameter.parse(m.group(3));
             return new MediaType(m.group(1), m.group(2), paramMap);
@@ -171,6 +180,17 @@ public class MediaType {
     }
 
 
+    /**
+     * Accessor.
+     *
+     * @return Returns an unmodifiable map of the parameters, keyed on the
+     *  lower-cased attribute name.
+     */
+    public Map<String, String> getParameters() {
+        return _parameters;
+    }
+
+
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
@@ -260,6 +280,29 @@ public class MediaType {
     public static final MediaType BINARY = new MediaType("application", "octet-stream");
     public static final MediaType TEXT = new MediaType("text", "plain");
 
+    private static final TokenRegistry<MediaType> KNOWN;
+    static {
+        final Map<String, MediaType> known =
+            new LinkedHashMap<String, MediaType>();
+        for (final MediaType mt : new MediaType[] {
+                ANY, HTML, XML, JPEG, JSON, BINARY, TEXT,
+                new MediaType("text", "*"),
+                new MediaType("image", "*"),
+                new MediaType("application", "*"),
+                new MediaType("text", "css"),
+                new MediaType("text", "javascript"),
+                new MediaType("application", "javascript"),
+                new MediaType("application", "xhtml+xml"),
+                new MediaType("application", "x-www-form-urlencoded"),
+                new MediaType("multipart", "form-data"),
+                new MediaType("image", "png"),
+                new MediaType("image", "gif"),
+                new MediaType("image", "webp")}) {
+            known.put(mt.toString(), mt);
+        }
+        KNOWN = new TokenRegistry<MediaType>(false, known);
+    }
+
 
     /**
      * TODO: Add a description for this method.
@@ -21,9 +21,9 @@ package com.johnstok.http;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 /**
@@ -133,6 +133,16 @@ public final class Method {
     @Specification(name="rfc-2616", section="9.9")
     public static final Method CONNECT = new Method("CONNECT");    //$NON-NLS-1$
 
+    private static final TokenRegistry<Method> KNOWN;
+    static {
+        final Map<String, Method> known = new LinkedHashMap<String, Method>();
+        for (final Method m : new Method[] {
+                GET, HEAD, OPTIONS, DELETE, PUT, POST, TRACE, CONNECT}) {
+            known.put(m.toString(), m);
+        }
+        KNOWN = new TokenRegistry<Method>(true, known);
+    }
+
     private final String _value;
 
     /**
@@ -255,27 +265,11 @@ public final class Method {
      * @return A corresponding method object.
      */
     public static Method parse(final String methodString) {
-        final Matcher m = Pattern.compile("("+SYNTAX+")").matcher(methodString); //FIXME: It's untidy to have to wrap the parentheses here - need to be consistent.
-        if (m.matches()) {
-            if ("GET".equals(m.group(1))) {
-                return new Method("GET");
-            } else if ("HEAD".equals(m.group(1))) {
-                return new Method("HEAD");
-            } else if ("OPTIONS".equals(m.group(1))) {
-                return new Method("OPTIONS");
-            } else if ("DELETE".equals(m.group(1))) {
-                return new Method("DELETE");
-            } else if ("PUT".equals(m.group(1))) {
-                return new Method("PUT");
-            } else if ("POST".equals(m.group(1))) {
-                return new Method("POST");
-            } else if ("TRACE".equals(m.group(1))) {
-                return new Method("TRACE");
-            } else if ("CONNECT".equals(m.group(1))) {
-                return new Method("CONNECT");
-            } else {
-                return new Method(m.group(1));
-            }
+        // Recognised methods are shared, so may be compared by identity.
+        final Method known = KNOWN.lookup(methodString);
+        if (null!=known) { return known; }
+        if (TokenRegistry.isToken(methodString, 0, methodString.length())) {
+            return new Method(methodString);
         }
         throw new ClientHttpException(Status.BAD_REQUEST);
     }
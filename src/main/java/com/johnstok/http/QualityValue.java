@@ -20,8 +20,6 @@
 package com.johnstok.http;
 
 import java.math.BigDecimal;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 /**
@@ -41,6 +39,11 @@ import java.util.regex.Pattern;
  * "Quality values" is a misnomer, since these values merely represent
  * relative degradation in desired quality.
  *
+ * <p>As a qvalue has at most three decimal places it is held in fixed-point
+ * form: an int in the range {@link #MIN} to {@link #MAX}, representing
+ * thousandths. The static methods of this class parse and format qvalues in
+ * this primitive form without allocation.
+ *
  * @author Keith Webster Johnston.
  */
 @Specification(name="rfc-2616", section="3.9")
@@ -51,8 +54,17 @@ public class QualityValue
     public  static final String SYNTAX  =
         "0(\\.["+Syntax.DIGIT+"]{1,3})?|1(\\.[0]{1,3})?";
 
+    /** MIN : int - the fixed-point form of q=0. */
+    public static final int MIN = 0;
+
+    /** MAX : int - the fixed-point form of q=1. */
+    public static final int MAX = 1000;
+
+    private static final int MAX_SCALE = 3;
+
 
-    private final BigDecimal _value;
+    private final int _quality;
+    private final int _scale;
 
 
     /**
@@ -62,7 +74,13 @@ public class QualityValue
      */
     public QualityValue(final BigDecimal value) {
         // TODO: Test 0 <= value <= 1
-        _value = value;
+        this(value.movePointRight(MAX_SCALE).intValue(), value.scale());
+    }
+
+
+    private QualityValue(final int quality, final int scale) {
+        _quality = quality;
+        _scale   = scale;
     }
 
 
@@ -72,7 +90,18 @@ public class QualityValue
      * @return Returns the decimal representation of the quality value.
      */
     public final BigDecimal getValue() {
-        return _value;
+        return BigDecimal.valueOf(_quality, MAX_SCALE).setScale(_scale);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the fixed-point form of the quality value, in the range
+     *  {@link #MIN} to {@link #MAX}.
+     */
+    public final int getQuality() {
+        return _quality;
     }
 
 
@@ -84,35 +113,159 @@ public class QualityValue
      * @return A corresponding content coding object.
      */
     public static QualityValue parse(final String qualityValueString) {
-        final Matcher m = Pattern.compile(SYNTAX).matcher(qualityValueString);
-        if (m.matches()) {
-            return new QualityValue(new BigDecimal(qualityValueString));
+        final int length  = qualityValueString.length();
+        final int quality = parseQuality(qualityValueString, 0, length);
+        if (MIN<=quality) {
+            return new QualityValue(quality, (1==length) ? 0 : length-2);
         }
         throw new ClientHttpException(Status.BAD_REQUEST);
     }
 
 
+    /**
+     * Parse a qvalue into fixed-point form.
+     *
+     * <p>The characters must match {@link #SYNTAX}.
+     *
+     * @param chars The characters to parse.
+     * @param start The index of the first character of the qvalue.
+     * @param end   The index after the last character of the qvalue.
+     *
+     * @return The quality in the range {@link #MIN} to {@link #MAX}; -1 if the
+     *  characters are not a valid qvalue.
+     */
+    public static int parseQuality(final CharSequence chars,
+                                   final int start,
+                                   final int end) {
+        final int length = end-start;
+        if (1>length || length>2+MAX_SCALE) { return -1; }
+
+        final char units = chars.charAt(start);
+        if ('0'!=units && '1'!=units) { return -1; }
+        if (1==length) { return ('1'==units) ? MAX : MIN; }
+        if ('.'!=chars.charAt(start+1) || 2==length) { return -1; }
+
+        int quality = ('1'==units) ? MAX : MIN;
+        int scale   = 100;
+        for (int i=start+2; i<end; i++) {
+            final int digit = chars.charAt(i)-'0';
+            if (0>digit || 9<digit) { return -1; }
+            quality += digit*scale;
+            scale   /= 10;
+        }
+        return (MAX<quality) ? -1 : quality;
+    }
+
+
+    /**
+     * Parse a weight into fixed-point quality form, tolerating values that
+     * don't match {@link #SYNTAX}.
+     *
+     * <p>Any decimal number is accepted: values outside the range 0 to 1 are
+     * clamped and digits after the third decimal place are ignored.
+     *
+     * @param chars The characters to parse.
+     * @param start The index of the first character of the weight.
+     * @param end   The index after the last character of the weight.
+     *
+     * @return The quality in the range {@link #MIN} to {@link #MAX}.
+     *
+     * @throws NumberFormatException If the characters are not a decimal number.
+     */
+    public static int parseWeight(final CharSequence chars,
+                                  final int start,
+                                  final int end) {
+        int i = start;
+        final boolean negative = (i<end && '-'==chars.charAt(i));
+        if (negative || (i<end && '+'==chars.charAt(i))) { i++; }
+
+        int     units     = 0;
+        int     fraction  = 0;
+        int     scale     = 100;
+        boolean hasDigits = false;
+        boolean point     = false;
+        for (; i<end; i++) {
+            final char c = chars.charAt(i);
+            if ('.'==c && !point) {
+                point = true;
+            } else if ('0'<=c && '9'>=c) {
+                hasDigits = true;
+                if (point) {
+                    fraction += (c-'0')*scale;
+                    scale    /= 10;
+                } else if (units<=MAX) {
+                    units = units*10+(c-'0');
+                }
+            } else {
+                throw new NumberFormatException(
+                    "Invalid weight: "+chars.subSequence(start, end));
+            }
+        }
+        if (!hasDigits) {
+            throw new NumberFormatException(
+                "Invalid weight: "+chars.subSequence(start, end));
+        }
+
+        if (negative) { return MIN; }
+        return (0<units) ? MAX : fraction;
+    }
+
+
+    /**
+     * Convert a floating point weight to fixed-point quality form.
+     *
+     * @param weight The weight to convert.
+     *
+     * @return The nearest quality in the range {@link #MIN} to {@link #MAX}.
+     */
+    public static int valueOf(final float weight) {
+        final int quality = Math.round(weight*MAX);
+        if (MIN>quality) { return MIN; }
+        if (MAX<quality) { return MAX; }
+        return quality;
+    }
+
+
+    /**
+     * Format a quality, in fixed-point form, as a qvalue.
+     *
+     * @param quality The quality to format.
+     *
+     * @return The shortest qvalue representing the quality.
+     */
+    public static String format(final int quality) {
+        if (MIN>=quality) { return "0"; }                          //$NON-NLS-1$
+        if (MAX<=quality) { return "1"; }                          //$NON-NLS-1$
+        final char[] chars = {
+            '0', '.',
+            (char) ('0'+(quality/100)),
+            (char) ('0'+((quality/10)%10)),
+            (char) ('0'+(quality%10))
+        };
+        int length = chars.length;
+        while ('0'==chars[length-1]) { length--; }
+        return new String(chars, 0, length);
+    }
+
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        return _value.toString();
+        return getValue().toString();
     }
 
 
     /** {@inheritDoc} */
     @Override
     public int compareTo(final QualityValue o) {
-        return _value.compareTo(o._value);
+        return Integer.compare(_quality, o._quality);
     }
 
 
     /** {@inheritDoc} */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((_value == null) ? 0 : _value.hashCode());
-        return result;
+        return _quality;
     }
 
 
@@ -128,14 +281,7 @@ public class QualityValue
         if (getClass() != obj.getClass()) {
             return false;
         }
-        QualityValue other = (QualityValue) obj;
-        if (_value == null) {
-            if (other._value != null) {
-                return false;
-            }
-        } else if (!_value.equals(other._value)) {
-            return false;
-        }
-        return true;
+        final QualityValue other = (QualityValue) obj;
+        return _quality == other._quality;
     }
 }
@@ -63,7 +63,10 @@ public class Query {
                 String value = UrlCodec.decode(paramParts[1].trim(), charset);
                 if (0==key.length()) { continue; }
                 List<String> values = _params.get(key);
-                if (null==values) { _params.put(key, new ArrayList<String>()); }
+                if (null==values) {
+                    values = new ArrayList<String>();
+                    _params.put(key, values);
+                }
                 values.add(value);
             } // Discard params with multiple '=' char's as invalid.
         }
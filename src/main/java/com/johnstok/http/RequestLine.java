@@ -21,6 +21,7 @@ package com.johnstok.http;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import com.johnstok.http.event.ParseEvent;
 
 
 /**
@@ -94,8 +95,13 @@ public class RequestLine {
      * @return A corresponding request line object.
      */
     public static RequestLine parse(final String requestLineString) {
+        final ParseEvent event = new ParseEvent();
+        event.begin();
         final Matcher m = Pattern.compile(SYNTAX).matcher(requestLineString);
-        if (m.matches()) {
+        final boolean valid = m.matches();
+        event.commit(
+            "request-line", requestLineString.length(), valid); //$NON-NLS-1$
+        if (valid) {
             return new RequestLine(m.group(1), m.group(2), m.group(3));
         }
         throw new ClientHttpException(Status.BAD_REQUEST);
@@ -102,6 +102,20 @@ public enum Status {
     REQUESTED_RANGE_NOT_SATISFIABLE(416, "Requested Range Not Satisfiable"),
     EXPECTATION_FAILED(             417, "Expectation Failed"),
 
+    /** TOO_MANY_REQUESTS : Status.
+     *
+     * <pre>
+   The 429 status code indicates that the user has sent too many
+   requests in a given amount of time ("rate limiting").
+
+   The response representations SHOULD include details explaining the
+   condition, and MAY include a Retry-After header indicating how long
+   to wait before making a new request.
+     * </pre>
+     */
+    @Specification(name="rfc-6585", section="4")
+    TOO_MANY_REQUESTS(              429, "Too Many Requests"),     //$NON-NLS-1$
+
     INTERNAL_SERVER_ERROR(          500, "Internal Server Error"),
     NOT_IMPLEMENTED(                501, "Not Implemented"),
     BAD_GATEWAY(                    502, "Bad Gateway"),
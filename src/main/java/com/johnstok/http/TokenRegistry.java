@@ -0,0 +1,164 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http;
+
+import java.util.Map;
+
+
+/**
+ * An immutable registry of well-known tokens, used to canonicalise parsed
+ * values.
+ *
+ * <p>Lookups hash the characters in place, so no intermediate strings are
+ * created; a registered token is found in constant time.
+ *
+ * @param <T> The type of value registered for each token.
+ *
+ * @author Keith Webster Johnston.
+ */
+final class TokenRegistry<T> {
+
+    private static final boolean[] TOKEN_CHARS = new boolean[128];
+    static {
+        for (char c=0x21; c<0x7F; c++) { TOKEN_CHARS[c] = true; }
+        for (final char c : "()<>@,;:\\\"/[]?={}".toCharArray()) {
+            TOKEN_CHARS[c] = false;
+        }
+    }
+
+    private final boolean  _caseSensitive;
+    private final String[] _keys;
+    private final Object[] _values;
+    private final int      _mask;
+
+
+    /**
+     * Constructor.
+     *
+     * @param caseSensitive True if tokens should be compared case-sensitively.
+     * @param entries       The tokens to register, with their values.
+     */
+    TokenRegistry(final boolean caseSensitive,
+                  final Map<String, ? extends T> entries) {
+        int capacity = 8;
+        while (capacity<entries.size()*4) { capacity <<= 1; }
+
+        _caseSensitive = caseSensitive;
+        _keys          = new String[capacity];
+        _values        = new Object[capacity];
+        _mask          = capacity-1;
+
+        for (final Map.Entry<String, ? extends T> e : entries.entrySet()) {
+            final String key = e.getKey();
+            int slot = hash(key, 0, key.length()) & _mask;
+            while (null!=_keys[slot]) { slot = (slot+1) & _mask; }
+            _keys[slot]   = key;
+            _values[slot] = e.getValue();
+        }
+    }
+
+
+    /**
+     * Look up a token.
+     *
+     * @param chars The characters to search.
+     * @param start The index of the first character of the token.
+     * @param end   The index after the last character of the token.
+     *
+     * @return The registered value; null if the token isn't registered.
+     */
+    @SuppressWarnings("unchecked")
+    T lookup(final CharSequence chars, final int start, final int end) {
+        final int length = end-start;
+        int slot = hash(chars, start, end) & _mask;
+        for (String key=_keys[slot]; null!=key; key=_keys[slot]) {
+            if (key.length()==length && matches(key, chars, start)) {
+                return (T) _values[slot];
+            }
+            slot = (slot+1) & _mask;
+        }
+        return null;
+    }
+
+
+    /**
+     * Look up a token.
+     *
+     * @param token The token to find.
+     *
+     * @return The registered value; null if the token isn't registered.
+     */
+    T lookup(final String token) {
+        return lookup(token, 0, token.length());
+    }
+
+
+    /**
+     * Test whether a sequence of characters is a valid token.
+     *
+     * <pre>
+     *     token          = 1*&lt;any CHAR except CTLs or separators>
+     * </pre>
+     *
+     * @param chars The characters to test.
+     * @param start The index of the first character to test.
+     * @param end   The index after the last character to test.
+     *
+     * @return True if the characters are a token; false otherwise.
+     */
+    @Specification(name="rfc-2616", section="2.2")
+    static boolean isToken(final CharSequence chars,
+                           final int start,
+                           final int end) {
+        if (start>=end) { return false; }
+        for (int i=start; i<end; i++) {
+            final char c = chars.charAt(i);
+            if (c>=TOKEN_CHARS.length || !TOKEN_CHARS[c]) { return false; }
+        }
+        return true;
+    }
+
+
+    private boolean matches(final String key,
+                            final CharSequence chars,
+                            final int start) {
+        for (int i=0; i<key.length(); i++) {
+            final char a = key.charAt(i);
+            final char b = chars.charAt(start+i);
+            if (a!=b && (_caseSensitive || lower(a)!=lower(b))) { return false; }
+        }
+        return true;
+    }
+
+
+    private int hash(final CharSequence chars, final int start, final int end) {
+        int h = 0;
+        for (int i=start; i<end; i++) {
+            final char c = chars.charAt(i);
+            h = 31*h + (_caseSensitive ? c : lower(c));
+        }
+        return h ^ (h>>>16);
+    }
+
+
+    private static char lower(final char c) {
+        return ('A'<=c && 'Z'>=c) ? (char) (c+('a'-'A')) : c;
+    }
+}
@@ -97,11 +97,13 @@ public class Value {
     public WeightedValue asWeightedValue(final String weightingPropertyName,
                                          final float defaultWeight) {
         final String weightProperty = _props.get(weightingPropertyName);
-        float weight =
-            ((null==weightProperty) || weightProperty.trim().isEmpty()) ? defaultWeight :Float.parseFloat(weightProperty);
-        if (weight<0) { weight=0; }
-        if (weight>defaultWeight) { weight=defaultWeight; }
-        return new WeightedValue(_value, weight);
+        final int defaultQuality = QualityValue.valueOf(defaultWeight);
+        final int quality =
+            ((null==weightProperty) || weightProperty.trim().isEmpty())
+                ? defaultQuality
+                : QualityValue.parseWeight(
+                    weightProperty.trim(), 0, weightProperty.trim().length());
+        return WeightedValue.withQuality(_value, Math.min(quality, defaultQuality));
     }
 
 
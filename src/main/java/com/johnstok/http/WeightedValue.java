@@ -23,6 +23,10 @@ package com.johnstok.http;
 /**
  * A value with a relative weighting.
  *
+ * <p>The weighting is held as a fixed-point quality, in the range
+ * {@link QualityValue#MIN} to {@link QualityValue#MAX}, so comparisons are
+ * exact.
+ *
  * @author Keith Webster Johnston.
  */
 public class WeightedValue
@@ -32,7 +36,7 @@ public class WeightedValue
     private static final String QUALITY_DELIMITER = ";q=";         //$NON-NLS-1$
 
     private final String _value;
-    private final float  _weight;
+    private final int    _quality;
 
 
     /**
@@ -40,11 +44,36 @@ public class WeightedValue
      *
      * @param value  The value.
      * @param weight The value's relative weighting.
+     *  <br>The weight is rounded to three decimal places and clamped to the
+     *  range 0 to 1.
      */
     public WeightedValue(final String value, final float weight) {
+        this(QualityValue.valueOf(weight), value);
+    }
+
+
+    private WeightedValue(final int quality, final String value) {
         super();
         _value = value;
-        _weight = weight;
+        _quality = quality;
+    }
+
+
+    /**
+     * Create a weighted value.
+     *
+     * @param value   The value.
+     * @param quality The value's relative weighting, in fixed-point form.
+     *  <br>Values outside the range {@link QualityValue#MIN} to
+     *  {@link QualityValue#MAX} are clamped.
+     *
+     * @return The corresponding weighted value.
+     */
+    public static WeightedValue withQuality(final String value,
+                                            final int quality) {
+        return new WeightedValue(
+            Math.max(QualityValue.MIN, Math.min(QualityValue.MAX, quality)),
+            value);
     }
 
 
@@ -53,13 +82,8 @@ public class WeightedValue
     public int compareTo(final WeightedValue o) {
         if (null == o) {
             return -1;
-        } else if (o.getWeight() < getWeight()) {
-            return -1;
-        } else if (o.getWeight() == getWeight()) {
-            return 0;
-        } else {
-            return 1;
         }
+        return Integer.compare(o._quality, _quality);
     }
 
 
@@ -93,7 +117,17 @@ public class WeightedValue
        * @return Returns the weight.
        */
     public float getWeight() {
-        return _weight;
+        return _quality / (float) QualityValue.MAX;
+    }
+
+
+    /**
+       * Accessor.
+       *
+       * @return Returns the weight, in fixed-point form.
+       */
+    public int getQuality() {
+        return _quality;
     }
 
 
@@ -110,6 +144,6 @@ public class WeightedValue
     /** {@inheritDoc} */
     @Override
     public String toString() {
-        return getValue() + QUALITY_DELIMITER + getWeight();
+        return getValue() + QUALITY_DELIMITER + QualityValue.format(_quality);
     }
 }
@@ -0,0 +1,378 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.client;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import com.johnstok.http.stats.Histogram;
+import com.johnstok.http.sync.Server;
+
+
+/**
+ * An open-loop HTTP/1.1 load generator.
+ *
+ * <p>Requests are scheduled at a fixed rate, independent of how quickly the
+ * server responds, and are sent over a fixed number of keep-alive connections.
+ * Latency is measured from each request's scheduled start time rather than the
+ * time it was actually sent, so a stalled server is charged for the requests
+ * it delayed, avoiding coordinated omission.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class LoadGenerator {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    private static final int  TIMEOUT         =
+        (int) TimeUnit.SECONDS.toMillis(30);
+
+    private final InetSocketAddress _target;
+    private final int               _connections;
+    private final long              _intervalNanos;
+    private final RequestMix        _mix;
+
+
+    /**
+     * Constructor.
+     *
+     * @param target            The address of the server.
+     * @param connections       The number of connections to open.
+     * @param requestsPerSecond The rate at which requests are scheduled.
+     * @param mix               The requests to send.
+     */
+    public LoadGenerator(final InetSocketAddress target,
+                         final int connections,
+                         final int requestsPerSecond,
+                         final RequestMix mix) {
+        if (1>connections || 1>requestsPerSecond) {
+            throw new IllegalArgumentException(
+                "Connections and rate must be positive."); //$NON-NLS-1$
+        }
+        _target        = target;
+        _connections   = connections;
+        _intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        _mix           = mix;
+    }
+
+
+    /**
+     * Start a server on a free loopback port, run a load test against it and
+     * then shut it down.
+     *
+     * @param server            The server to test.
+     * @param connections       The number of connections to open.
+     * @param requestsPerSecond The rate at which requests are scheduled.
+     * @param mix               The requests to send.
+     * @param duration          The length of the test.
+     * @param unit              The unit of the test's length.
+     *
+     * @return A report of the test.
+     *
+     * @throws IOException          If the server fails to start or stop.
+     * @throws InterruptedException If interrupted while waiting for the test
+     *  to complete.
+     */
+    public static Report run(final Server server,
+                             final int connections,
+                             final int requestsPerSecond,
+                             final RequestMix mix,
+                             final long duration,
+                             final TimeUnit unit)
+                                   throws IOException, InterruptedException {
+        final InetSocketAddress address =
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), freePort());
+        server.startup(address);
+        try {
+            return
+                new LoadGenerator(address, connections, requestsPerSecond, mix)
+                    .run(duration, unit);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+
+    /**
+     * Run a load test.
+     *
+     * @param duration The length of the test.
+     * @param unit     The unit of the test's length.
+     *
+     * @return A report of the test.
+     *
+     * @throws InterruptedException If interrupted while waiting for the test
+     *  to complete.
+     */
+    public Report run(final long duration,
+                      final TimeUnit unit) throws InterruptedException {
+        final RequestMix.Entry[] schedule  = _mix.schedule();
+        final Histogram          latencies = new Histogram(HIGHEST_LATENCY);
+        final AtomicLongArray    statuses  = new AtomicLongArray(6);
+        final AtomicLong         sequence  = new AtomicLong();
+        final AtomicLong         errors    = new AtomicLong();
+        final long               start     = System.nanoTime();
+        final long               end       = start + unit.toNanos(duration);
+
+        final Thread[] workers = new Thread[_connections];
+        for (int i=0; i<workers.length; i++) {
+            workers[i] = new Thread(
+                new Worker(
+                    schedule, start, end, sequence, latencies, statuses, errors),
+                "load-generator-"+i); //$NON-NLS-1$
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        try {
+            for (final Thread worker : workers) { worker.join(); }
+        } finally {
+            for (final Thread worker : workers) { worker.interrupt(); }
+        }
+
+        final long[] statusCounts = new long[statuses.length()];
+        for (int i=0; i<statusCounts.length; i++) {
+            statusCounts[i] = statuses.get(i);
+        }
+        return new Report(
+            System.nanoTime()-start,
+            latencies.snapshot(),
+            statusCounts,
+            errors.get());
+    }
+
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket =
+                new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+
+    /*
+     * Sends requests over a single connection, claiming the next scheduled
+     * slot each time the connection becomes free.
+     */
+    private final class Worker implements Runnable {
+
+        private final RequestMix.Entry[] _schedule;
+        private final long               _start;
+        private final long               _end;
+        private final AtomicLong         _sequence;
+        private final Histogram          _latencies;
+        private final AtomicLongArray    _statuses;
+        private final AtomicLong         _errors;
+
+        private Socket         _socket;
+        private OutputStream   _out;
+        private ResponseReader _in;
+        private boolean        _reused;
+
+
+        Worker(final RequestMix.Entry[] schedule,
+               final long start,
+               final long end,
+               final AtomicLong sequence,
+               final Histogram latencies,
+               final AtomicLongArray statuses,
+               final AtomicLong errors) {
+            _schedule  = schedule;
+            _start     = start;
+            _end       = end;
+            _sequence  = sequence;
+            _latencies = latencies;
+            _statuses  = statuses;
+            _errors    = errors;
+        }
+
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    final long seq      = _sequence.getAndIncrement();
+                    final long intended = _start + seq*_intervalNanos;
+                    if (intended-_end>=0) { return; }
+
+                    long wait;
+                    while (0<(wait = intended-System.nanoTime())) {
+                        LockSupport.parkNanos(wait);
+                        if (Thread.interrupted()) { return; }
+                    }
+
+                    final RequestMix.Entry entry =
+                        _schedule[(int) (seq % _schedule.length)];
+                    try {
+                        int status;
+                        try {
+                            status = exchange(entry);
+                        } catch (final IOException e) {
+                            // The server may close an idle connection at any
+                            // time; retry once if this one had been reused.
+                            if (!_reused) { throw e; }
+                            close();
+                            status = exchange(entry);
+                        }
+                        _latencies.record(System.nanoTime()-intended);
+                        _statuses.incrementAndGet(
+                            Math.min(5, Math.max(0, status/100)));
+                        if (_in.isClose()) { close(); }
+                    } catch (final IOException e) {
+                        _latencies.record(System.nanoTime()-intended);
+                        _errors.incrementAndGet();
+                        close();
+                    }
+                }
+            } finally {
+                close();
+            }
+        }
+
+
+        private int exchange(final RequestMix.Entry entry) throws IOException {
+            if (null==_socket) { connect(); }
+            _out.write(entry._bytes);
+            _out.flush();
+            final int status = _in.read(entry._head);
+            _reused = true;
+            return status;
+        }
+
+
+        private void connect() throws IOException {
+            final Socket socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(TIMEOUT);
+            socket.connect(_target, TIMEOUT);
+            _socket = socket;
+            _out    = socket.getOutputStream();
+            _in     =
+                new ResponseReader(
+                    new BufferedInputStream(socket.getInputStream()));
+        }
+
+
+        private void close() {
+            if (null==_socket) { return; }
+            try {
+                _socket.close();
+            } catch (final IOException e) {
+                // Ignore - the connection is being discarded.
+            }
+            _socket = null;
+            _reused = false;
+        }
+    }
+
+
+    /**
+     * The results of a load test.
+     *
+     * @author Keith Webster Johnston.
+     */
+    public static final class Report {
+
+        private final long               _elapsedNanos;
+        private final Histogram.Snapshot _latencies;
+        private final long[]             _statusCounts;
+        private final long               _errors;
+
+
+        Report(final long elapsedNanos,
+               final Histogram.Snapshot latencies,
+               final long[] statusCounts,
+               final long errors) {
+            _elapsedNanos = elapsedNanos;
+            _latencies    = latencies;
+            _statusCounts = statusCounts;
+            _errors       = errors;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the latency of each request, in nanoseconds, measured
+         *  from its scheduled start.
+         */
+        public Histogram.Snapshot getLatencies() {
+            return _latencies;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @param statusClass The class of status code, 1 to 5.
+         *
+         * @return Returns the number of responses in the class.
+         */
+        public long getStatusCount(final int statusClass) {
+            return _statusCounts[statusClass];
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the number of requests that failed without a
+         *  response.
+         */
+        public long getErrors() {
+            return _errors;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the achieved throughput, in responses per second.
+         */
+        public double getThroughput() {
+            long responses = 0;
+            for (final long count : _statusCounts) { responses += count; }
+            return responses / (_elapsedNanos / 1e9);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            final long us = TimeUnit.MICROSECONDS.toNanos(1);
+            return String.format(
+                "%.1f req/s; 2xx=%d 3xx=%d 4xx=%d 5xx=%d errors=%d;"  //$NON-NLS-1$
+                + " latency(us) p50=%d p99=%d p999=%d max=%d",      //$NON-NLS-1$
+                getThroughput(),
+                _statusCounts[2], _statusCounts[3],
+                _statusCounts[4], _statusCounts[5], _errors,
+                _latencies.getValueAtPercentile(50)/us,
+                _latencies.getValueAtPercentile(99)/us,
+                _latencies.getValueAtPercentile(99.9)/us,
+                _latencies.getMax()/us);
+        }
+    }
+}
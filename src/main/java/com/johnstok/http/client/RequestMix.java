@@ -0,0 +1,173 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import com.johnstok.http.Header;
+
+
+/**
+ * A weighted mix of requests to send from a {@link LoadGenerator}.
+ *
+ * <p>Each request is serialised once, when it is added; requests are then
+ * interleaved deterministically in proportion to their weights.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class RequestMix {
+
+    private static final String CRLF = "\r\n"; //$NON-NLS-1$
+
+    private final String      _host;
+    private final List<Entry> _entries = new ArrayList<Entry>();
+    private int               _totalWeight;
+    private Entry[]           _schedule;
+
+
+    /**
+     * Constructor.
+     *
+     * @param host The value of the Host header sent with each request.
+     */
+    public RequestMix(final String host) {
+        _host = host;
+    }
+
+
+    /**
+     * Add a request without a body.
+     *
+     * @param weight  The relative frequency of this request.
+     * @param method  The request method.
+     * @param uri     The request URI.
+     * @param headers Additional headers, each as "Name: value".
+     *
+     * @return This request mix, for chaining.
+     */
+    public RequestMix add(final int weight,
+                          final String method,
+                          final String uri,
+                          final String... headers) {
+        return add(weight, method, uri, null, headers);
+    }
+
+
+    /**
+     * Add a request.
+     *
+     * @param weight  The relative frequency of this request.
+     * @param method  The request method.
+     * @param uri     The request URI.
+     * @param body    The request body; may be null.
+     * @param headers Additional headers, each as "Name: value".
+     *
+     * @return This request mix, for chaining.
+     */
+    public synchronized RequestMix add(final int weight,
+                                       final String method,
+                                       final String uri,
+                                       final byte[] body,
+                                       final String... headers) {
+        if (1>weight) {
+            throw new IllegalArgumentException(
+                "Weight must be positive."); //$NON-NLS-1$
+        }
+
+        final StringBuilder head = new StringBuilder();
+        head.append(method).append(' ').append(uri).append(" HTTP/1.1")  //$NON-NLS-1$
+            .append(CRLF)
+            .append(Header.HOST).append(": ").append(_host).append(CRLF); //$NON-NLS-1$
+        for (final String header : headers) {
+            head.append(header).append(CRLF);
+        }
+        if (null!=body) {
+            head.append(Header.CONTENT_LENGTH).append(": ")               //$NON-NLS-1$
+                .append(body.length).append(CRLF);
+        }
+        head.append(CRLF);
+
+        final byte[] headBytes =
+            head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        final byte[] bytes;
+        if (null==body) {
+            bytes = headBytes;
+        } else {
+            bytes = new byte[headBytes.length+body.length];
+            System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+            System.arraycopy(body, 0, bytes, headBytes.length, body.length);
+        }
+
+        _entries.add(
+            new Entry(weight, bytes, "HEAD".equalsIgnoreCase(method))); //$NON-NLS-1$
+        _totalWeight += weight;
+        _schedule = null;
+        return this;
+    }
+
+
+    /**
+     * Interleave entries so that, within every cycle of the schedule, each
+     * entry appears in proportion to its weight and evenly spread.
+     *
+     * @return The schedule; request n is at index n modulo its length.
+     */
+    synchronized Entry[] schedule() {
+        if (null!=_schedule) { return _schedule; }
+        if (_entries.isEmpty()) {
+            throw new IllegalStateException("No requests."); //$NON-NLS-1$
+        }
+
+        final Entry[] schedule = new Entry[_totalWeight];
+        final int[]   credit   = new int[_entries.size()];
+        for (int slot=0; slot<schedule.length; slot++) {
+            int best = 0;
+            for (int i=0; i<credit.length; i++) {
+                credit[i] += _entries.get(i)._weight;
+                if (credit[i]>credit[best]) { best = i; }
+            }
+            credit[best] -= _totalWeight;
+            schedule[slot] = _entries.get(best);
+        }
+        _schedule = schedule;
+        return schedule;
+    }
+
+
+    /**
+     * A serialised request.
+     *
+     * @author Keith Webster Johnston.
+     */
+    static final class Entry {
+
+        final int     _weight;
+        final byte[]  _bytes;
+        final boolean _head;
+
+
+        Entry(final int weight, final byte[] bytes, final boolean head) {
+            _weight = weight;
+            _bytes  = bytes;
+            _head   = head;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import com.johnstok.http.Specification;
+
+
+/**
+ * Reads and discards HTTP/1.1 responses from a persistent connection.
+ *
+ * <p>Only the framing needed to find the end of each message is parsed: the
+ * status code, Content-Length, chunked Transfer-Encoding and Connection.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-2616", section="4.4")
+final class ResponseReader {
+
+    private static final int MAX_LINE = 8192;
+
+    private final InputStream _in;
+    private final byte[]      _line = new byte[MAX_LINE];
+    private final byte[]      _skip = new byte[8192];
+    private boolean           _close;
+
+
+    /**
+     * Constructor.
+     *
+     * @param in The buffered stream from which responses are read.
+     */
+    ResponseReader(final InputStream in) {
+        _in = in;
+    }
+
+
+    /**
+     * Read a complete response, discarding its body.
+     *
+     * @param head True if the response is to a HEAD request.
+     *
+     * @return The status code of the response.
+     *
+     * @throws IOException If the connection fails or the response is
+     *  malformed.
+     */
+    int read(final boolean head) throws IOException {
+        int status;
+        do {
+            int len = readLine();
+            if (12>len || ' '!=_line[8]) {
+                throw new IOException("Malformed status line."); //$NON-NLS-1$
+            }
+            status =
+                digit(_line[9])*100 + digit(_line[10])*10 + digit(_line[11]);
+            _close = '0'==_line[7]; // HTTP/1.0 closes unless told otherwise.
+
+            long    contentLength = -1;
+            boolean chunked       = false;
+            while (0<(len = readLine())) {
+                if (matches("content-length:", len)) {       //$NON-NLS-1$
+                    contentLength = parseLong(15, len);
+                } else if (matches("transfer-encoding:", len)) { //$NON-NLS-1$
+                    chunked = contains("chunked", 18, len);      //$NON-NLS-1$
+                } else if (matches("connection:", len)) {        //$NON-NLS-1$
+                    if (contains("close", 11, len)) {            //$NON-NLS-1$
+                        _close = true;
+                    } else if (contains("keep-alive", 11, len)) {//$NON-NLS-1$
+                        _close = false;
+                    }
+                }
+            }
+
+            if (head || noBody(status)) {
+                continue;
+            } else if (chunked) {
+                readChunks();
+            } else if (0<=contentLength) {
+                skip(contentLength);
+            } else {
+                while (0<=_in.read(_skip)) { /* Body delimited by close. */ }
+                _close = true;
+            }
+        } while (100<=status && 200>status);
+        return status;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the server indicated the connection will be closed.
+     */
+    boolean isClose() {
+        return _close;
+    }
+
+
+    private static boolean noBody(final int status) {
+        return (100<=status && 200>status) || 204==status || 304==status;
+    }
+
+
+    private void readChunks() throws IOException {
+        for (;;) {
+            final int len = readLine();
+            long size = 0;
+            for (int i=0; i<len; i++) {
+                final int d = Character.digit(_line[i], 16);
+                if (0>d) { break; } // Chunk extension.
+                size = (size<<4) + d;
+            }
+            if (0==size) {
+                while (0<readLine()) { /* Discard trailers. */ }
+                return;
+            }
+            skip(size);
+            readLine();
+        }
+    }
+
+
+    private void skip(final long count) throws IOException {
+        long remaining = count;
+        while (0<remaining) {
+            final int read =
+                _in.read(_skip, 0, (int) Math.min(_skip.length, remaining));
+            if (0>read) { throw new EOFException(); }
+            remaining -= read;
+        }
+    }
+
+
+    /*
+     * Read a line into _line, without its line terminator.
+     */
+    private int readLine() throws IOException {
+        int len = 0;
+        for (;;) {
+            final int b = _in.read();
+            if (0>b) { throw new EOFException(); }
+            if ('\n'==b) {
+                return (0<len && '\r'==_line[len-1]) ? len-1 : len;
+            }
+            if (len==_line.length) {
+                throw new IOException("Line too long."); //$NON-NLS-1$
+            }
+            _line[len++] = (byte) b;
+        }
+    }
+
+
+    private boolean matches(final String name, final int len) {
+        if (len<name.length()) { return false; }
+        for (int i=0; i<name.length(); i++) {
+            if (name.charAt(i)!=Character.toLowerCase((char) _line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private boolean contains(final String token, final int from, final int len) {
+        final int last = len-token.length();
+        outer:
+        for (int i=from; i<=last; i++) {
+            for (int j=0; j<token.length(); j++) {
+                if (token.charAt(j)
+                    !=Character.toLowerCase((char) _line[i+j])) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+
+    private long parseLong(final int from, final int len) throws IOException {
+        long value = 0;
+        boolean digits = false;
+        for (int i=from; i<len; i++) {
+            final byte b = _line[i];
+            if (' '==b || '\t'==b) {
+                if (digits) { break; }
+                continue;
+            }
+            value = value*10 + digit(b);
+            digits = true;
+        }
+        if (!digits) { throw new IOException("Missing value."); } //$NON-NLS-1$
+        return value;
+    }
+
+
+    private static int digit(final byte b) throws IOException {
+        if ('0'>b || '9'<b) {
+            throw new IOException("Expected a digit."); //$NON-NLS-1$
+        }
+        return b-'0';
+    }
+}
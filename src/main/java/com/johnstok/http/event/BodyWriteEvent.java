@@ -0,0 +1,59 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for writing a response body, from the first call to
+ * {@code getBody()} until the body is closed or the handler returns.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Name("com.johnstok.http.BodyWrite")
+@Label("HTTP Body Write")
+@Category({"HTTP"})
+@Description("Writing of a response body.")
+@Enabled(false)
+public final class BodyWriteEvent extends Event {
+
+    @Name("bytes") @Label("Bytes Written") @DataAmount
+    private long _bytes;
+
+
+    /**
+     * Commit this event, if it is enabled and exceeds the recording threshold.
+     *
+     * @param bytes The number of bytes written.
+     */
+    public void commit(final long bytes) {
+        if (shouldCommit()) {
+            _bytes = bytes;
+            commit();
+        }
+    }
+}
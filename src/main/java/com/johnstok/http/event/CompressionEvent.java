@@ -0,0 +1,70 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for compressing a response body.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Name("com.johnstok.http.Compression")
+@Label("HTTP Compression")
+@Category({"HTTP"})
+@Description("Compression of a response body.")
+@Enabled(false)
+public final class CompressionEvent extends Event {
+
+    @Name("coding") @Label("Content Coding")
+    private String _coding;
+
+    @Name("bytesIn") @Label("Uncompressed Bytes") @DataAmount
+    private long _bytesIn;
+
+    @Name("bytesOut") @Label("Compressed Bytes") @DataAmount
+    private long _bytesOut;
+
+
+    /**
+     * Commit this event, if it is enabled and exceeds the recording threshold.
+     *
+     * @param coding   The content coding applied.
+     * @param bytesIn  The number of bytes before compression.
+     * @param bytesOut The number of bytes after compression.
+     */
+    public void commit(final String coding,
+                       final long bytesIn,
+                       final long bytesOut) {
+        if (shouldCommit()) {
+            _coding   = coding;
+            _bytesIn  = bytesIn;
+            _bytesOut = bytesOut;
+            commit();
+        }
+    }
+}
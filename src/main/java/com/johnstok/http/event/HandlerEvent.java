@@ -0,0 +1,76 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for the execution of a handler.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Name("com.johnstok.http.Handler")
+@Label("HTTP Handler")
+@Category({"HTTP"})
+@Description("Execution of a handler for a single request.")
+@Enabled(false)
+public final class HandlerEvent extends Event {
+
+    @Name("method") @Label("Method")
+    private String _method;
+
+    @Name("path") @Label("Path")
+    private String _path;
+
+    @Name("status") @Label("Status")
+    private int _status;
+
+    @Name("bytesOut") @Label("Bytes Written") @DataAmount
+    private long _bytesOut;
+
+
+    /**
+     * Commit this event, if it is enabled and exceeds the recording threshold.
+     *
+     * @param method   The request method.
+     * @param path     The request path, or path template.
+     * @param status   The response status code.
+     * @param bytesOut The number of response body bytes written.
+     */
+    public void commit(final String method,
+                       final String path,
+                       final int status,
+                       final long bytesOut) {
+        if (shouldCommit()) {
+            _method   = method;
+            _path     = path;
+            _status   = status;
+            _bytesOut = bytesOut;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for content negotiation.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Name("com.johnstok.http.Negotiation")
+@Label("HTTP Negotiation")
+@Category({"HTTP"})
+@Description("Selection of a representation from the request's preferences.")
+@Enabled(false)
+public final class NegotiationEvent extends Event {
+
+    @Name("dimensions") @Label("Dimensions")
+    private String _dimensions;
+
+    @Name("selected") @Label("Selected Variant")
+    private String _selected;
+
+
+    /**
+     * Commit this event, if it is enabled and exceeds the recording threshold.
+     *
+     * @param dimensions The headers negotiated on, e.g. the Vary value.
+     * @param selected   The selected variant; null if none was acceptable.
+     */
+    public void commit(final String dimensions, final Object selected) {
+        if (shouldCommit()) {
+            _dimensions = dimensions;
+            _selected   = (null==selected) ? null : selected.toString();
+            commit();
+        }
+    }
+}
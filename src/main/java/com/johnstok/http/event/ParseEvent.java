@@ -0,0 +1,72 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for parsing part of a request.
+ *
+ * <p>Disabled by default; enable with a recording setting such as
+ * {@code com.johnstok.http.Parse#enabled=true}.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Name("com.johnstok.http.Parse")
+@Label("HTTP Parse")
+@Category({"HTTP"})
+@Description("Parsing of a request line or header.")
+@Enabled(false)
+public final class ParseEvent extends Event {
+
+    @Name("element") @Label("Element")
+    private String _element;
+
+    @Name("length") @Label("Length")
+    private int _length;
+
+    @Name("valid") @Label("Valid")
+    private boolean _valid;
+
+
+    /**
+     * Commit this event, if it is enabled and exceeds the recording threshold.
+     *
+     * @param element The element parsed, e.g. "request-line".
+     * @param length  The length of the input.
+     * @param valid   Whether the input was valid.
+     */
+    public void commit(final String element,
+                       final int length,
+                       final boolean valid) {
+        if (shouldCommit()) {
+            _element = element;
+            _length  = length;
+            _valid   = valid;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight recorder event for routing a request to a handler.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Name("com.johnstok.http.Route")
+@Label("HTTP Route")
+@Category({"HTTP"})
+@Description("Selection of a handler for a request path.")
+@Enabled(false)
+public final class RouteEvent extends Event {
+
+    @Name("path") @Label("Path")
+    private String _path;
+
+    @Name("template") @Label("Path Template")
+    private String _template;
+
+    @Name("handler") @Label("Handler")
+    private Class<?> _handler;
+
+
+    /**
+     * Commit this event, if it is enabled and exceeds the recording threshold.
+     *
+     * @param path     The request path.
+     * @param template The pattern that matched; null if none matched.
+     * @param handler  The selected handler; null if none matched.
+     */
+    public void commit(final String path,
+                       final String template,
+                       final Object handler) {
+        if (shouldCommit()) {
+            _path     = path;
+            _template = template;
+            _handler  = (null==handler) ? null : handler.getClass();
+            commit();
+        }
+    }
+}
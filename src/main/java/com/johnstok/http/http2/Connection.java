@@ -0,0 +1,1012 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Expectation;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.http2.hpack.HPACKDecoder;
+import com.johnstok.http.http2.hpack.HPACKDecoder.HeaderListSizeException;
+import com.johnstok.http.http2.hpack.HPACKEncoder;
+import com.johnstok.http.http2.hpack.HPACKException;
+import com.johnstok.http.http2.hpack.HeaderField;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+
+
+/**
+ * Serves HTTP/2 requests over a single connection.
+ *
+ * <p>The thread calling {@link #run()} reads frames and never blocks on a
+ * handler: each stream is dispatched to the supplied executor, and a
+ * stream's unread request body is bounded by its receive window. Response
+ * DATA waits for send window credit; frames from concurrent streams are
+ * interleaved at frame boundaries.
+ *
+ * <p>Server push is not used and priority signals are ignored.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7540")
+public final class Connection
+    implements
+        Runnable {
+
+    /** The client connection preface. */
+    @Specification(name="rfc-7540", section="3.5")
+    public static final byte[] PREFACE =
+        "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+
+    /** The HTTP/1.1 header carrying the client's settings for h2c. */
+    @Specification(name="rfc-7540", section="3.2.1")
+    public static final String HTTP2_SETTINGS = "HTTP2-Settings";  //$NON-NLS-1$
+
+    private static final byte[] SWITCHING_PROTOCOLS =
+        ("HTTP/1.1 101 Switching Protocols\r\n"                    //$NON-NLS-1$
+         + "Connection: Upgrade\r\n"                               //$NON-NLS-1$
+         + "Upgrade: h2c\r\n\r\n").getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+
+    /** The receive window for the connection, as a multiple of a stream's. */
+    private static final int CONNECTION_WINDOW_STREAMS = 16;
+
+    private final InputStream          _in;
+    private final OutputStream         _out;
+    private final FrameReader          _reader;
+    private final FrameWriter          _writer;
+    private final Handler              _handler;
+    private final Executor             _executor;
+    private final InetSocketAddress    _server;
+    private final InetSocketAddress    _client;
+    private final boolean              _confidential;
+    private final Settings             _settings;
+    private final int                  _maxConcurrentStreams;
+    private final int                  _streamWindow;
+    private final int                  _maxFrameSize;
+    private final int                  _connectionWindow;
+    private final HPACKDecoder         _decoder;
+    private final HPACKEncoder         _encoder;
+    private final Map<Integer, Stream> _streams =
+        new ConcurrentHashMap<Integer, Stream>();
+
+    // Send windows, guarded by _flow.
+    private final Object               _flow = new Object();
+    private long                       _sendWindow = Settings.DEFAULT_WINDOW_SIZE;
+    private long                       _initialSendWindow = Settings.DEFAULT_WINDOW_SIZE;
+
+    // Reader thread state.
+    private int                        _receiveWindow;
+    private ByteArrayOutputStream      _headerBlock;
+    private int                        _headerStreamId;
+    private boolean                    _headerEndStream;
+    private boolean                    _settingsSent;
+
+    private volatile int               _lastStreamId;
+    private volatile int               _peerMaxFrameSize = Frame.DEFAULT_MAX_SIZE;
+    private volatile boolean           _goingAway;
+    private volatile boolean           _closed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param in           The stream to read frames from.
+     * @param out          The stream to write frames to.
+     * @param handler      The handler for requests.
+     * @param executor     The executor that runs each stream's handler.
+     * @param server       The server's address.
+     * @param client       The client's address.
+     * @param confidential True if the connection is encrypted.
+     * @param settings     The settings advertised to the client.
+     */
+    public Connection(final InputStream in,
+                      final OutputStream out,
+                      final Handler handler,
+                      final Executor executor,
+                      final InetSocketAddress server,
+                      final InetSocketAddress client,
+                      final boolean confidential,
+                      final Settings settings) {
+        _in = in;
+        _out = out;
+        _reader = new FrameReader(in);
+        _writer = new FrameWriter(out);
+        _handler = handler;
+        _executor = executor;
+        _server = server;
+        _client = client;
+        _confidential = confidential;
+        _settings = settings;
+        _maxConcurrentStreams =
+            settings.get(Settings.MAX_CONCURRENT_STREAMS, Integer.MAX_VALUE);
+        _streamWindow =
+            settings.get(Settings.INITIAL_WINDOW_SIZE, Settings.DEFAULT_WINDOW_SIZE);
+        _maxFrameSize =
+            settings.get(Settings.MAX_FRAME_SIZE, Frame.DEFAULT_MAX_SIZE);
+        _connectionWindow =
+            (int) Math.min(
+                Settings.MAX_WINDOW_SIZE,
+                Math.max((long) Settings.DEFAULT_WINDOW_SIZE,
+                         (long) _streamWindow*CONNECTION_WINDOW_STREAMS));
+        _receiveWindow = Settings.DEFAULT_WINDOW_SIZE;
+        _decoder = new HPACKDecoder(
+            settings.get(Settings.HEADER_TABLE_SIZE, HPACKEncoder.DEFAULT_TABLE_SIZE),
+            settings.get(Settings.MAX_HEADER_LIST_SIZE, Integer.MAX_VALUE));
+        _encoder = new HPACKEncoder(HPACKEncoder.DEFAULT_TABLE_SIZE);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param in           The stream to read frames from.
+     * @param out          The stream to write frames to.
+     * @param handler      The handler for requests.
+     * @param executor     The executor that runs each stream's handler.
+     * @param server       The server's address.
+     * @param client       The client's address.
+     * @param confidential True if the connection is encrypted.
+     */
+    public Connection(final InputStream in,
+                      final OutputStream out,
+                      final Handler handler,
+                      final Executor executor,
+                      final InetSocketAddress server,
+                      final InetSocketAddress client,
+                      final boolean confidential) {
+        this(in, out, handler, executor, server, client, confidential,
+             Settings.defaults());
+    }
+
+
+    /**
+     * Test whether an HTTP/1.1 request asks to upgrade to cleartext HTTP/2.
+     *
+     * @param request The request to test.
+     *
+     * @return True if the request may be upgraded.
+     */
+    @Specification(name="rfc-7540", section="3.2")
+    public static boolean isUpgrade(final Request request) {
+        if (request.isConfidential() || !request.hasHeader(HTTP2_SETTINGS)) {
+            return false;
+        }
+        final String upgrade = request.getHeader(Header.UPGRADE);
+        if (null==upgrade) { return false; }
+        for (final String protocol : upgrade.split(",")) {          //$NON-NLS-1$
+            if ("h2c".equalsIgnoreCase(protocol.trim())) { return true; } //$NON-NLS-1$
+        }
+        return false;
+    }
+
+
+    /**
+     * Upgrade an HTTP/1.1 connection to HTTP/2.
+     *
+     * <p>Sends the 101 response and the server's settings, then dispatches
+     * the request as stream 1. The request's body, if any, must already
+     * have been read. Call {@link #run()} afterwards to serve the
+     * connection.
+     *
+     * @param request The request that asked for the upgrade.
+     *
+     * @throws IOException If writing to the client fails.
+     */
+    @Specification(name="rfc-7540", section="3.2")
+    public void upgrade(final Request request) throws IOException {
+        final byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(
+                request.getHeader(HTTP2_SETTINGS).trim());
+        } catch (final IllegalArgumentException e) {
+            throw new ClientHttpException(Status.BAD_REQUEST, e);
+        }
+        if (0!=payload.length%6) {
+            throw new ClientHttpException(Status.BAD_REQUEST);
+        }
+        try {
+            applySettings(payload);
+        } catch (final HTTP2Exception e) {
+            throw new ClientHttpException(Status.BAD_REQUEST, e);
+        }
+
+        _out.write(SWITCHING_PROTOCOLS);
+        sendSettings();
+
+        final List<String[]> fields = new ArrayList<String[]>();
+        for (final Map.Entry<String, List<String>> header
+                                        : request.getHeaders().entrySet()) {
+            final String name = header.getKey().toLowerCase(Locale.US);
+            if (HTTP2Response.CONNECTION_SPECIFIC.contains(name)
+                || HTTP2_SETTINGS.equalsIgnoreCase(name)) { continue; }
+            for (final String value : header.getValue()) {
+                fields.add(new String[] {name, value});
+            }
+        }
+        final Stream stream = new Stream(this, 1, initialSendWindow(), _streamWindow);
+        stream.endOfStream();
+        stream.setRequest(
+            new HTTP2Request(
+                _server,
+                _client,
+                _confidential,
+                request.getMethod(),
+                request.getRequestUri(),
+                HTTP2Request.headers(fields, null),
+                stream.getInput()),
+            -1,
+            false);
+        _lastStreamId = 1;
+        dispatch(stream);
+    }
+
+
+    /**
+     * Serve the connection until the client closes it or an error occurs.
+     */
+    @Override
+    public void run() {
+        try {
+            try {
+                readPreface();
+                if (!_settingsSent) { sendSettings(); }
+                Frame frame;
+                while (null!=(frame = _reader.read(_maxFrameSize))) {
+                    try {
+                        process(frame);
+                    } catch (final HTTP2Exception e) {
+                        if (e.isConnectionError()) { throw e; }
+                        final Stream stream = _streams.get(e.getStreamId());
+                        if (null==stream) {
+                            _writer.writeInt(
+                                Frame.RST_STREAM,
+                                e.getStreamId(),
+                                e.getErrorCode().getCode());
+                        } else {
+                            reset(stream, e.getErrorCode());
+                        }
+                    }
+                }
+            } catch (final HTTP2Exception e) {
+                _goingAway = true;
+                _writer.goAway(_lastStreamId, e.getErrorCode());
+            }
+        } catch (final IOException e) {
+            // Connection lost; fall through to clean up.
+        } finally {
+            terminate();
+        }
+    }
+
+
+    /**
+     * Stop accepting new streams and close the connection once the active
+     * streams complete.
+     *
+     * @throws IOException If writing to the client fails.
+     */
+    @Specification(name="rfc-7540", section="6.8")
+    public void shutdown() throws IOException {
+        _goingAway = true;
+        _writer.goAway(_lastStreamId, ErrorCode.NO_ERROR);
+        if (_streams.isEmpty()) { _writer.close(); }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of streams in progress.
+     */
+    public int getActiveStreams() {
+        return _streams.size();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the handler for requests.
+     */
+    Handler getHandler() {
+        return _handler;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the largest frame payload the client accepts.
+     */
+    int getPeerMaxFrameSize() {
+        return _peerMaxFrameSize;
+    }
+
+
+    /**
+     * Send a header block for a stream.
+     *
+     * <p>Encoding and sending happen under one lock so the client decodes
+     * blocks in the order the encoder produced them.
+     *
+     * @param stream    The stream.
+     * @param fields    The header fields.
+     * @param endStream True if no body follows.
+     *
+     * @throws IOException If writing to the client fails.
+     */
+    @Specification(name="rfc-7540", section="6.10")
+    void headers(final Stream stream,
+                 final List<HeaderField> fields,
+                 final boolean endStream) throws IOException {
+        synchronized (_writer) {
+            checkOpen();
+            final byte[] block = _encoder.encode(fields);
+            final int max = _peerMaxFrameSize;
+            int length = Math.min(block.length, max);
+            _writer.write(
+                Frame.HEADERS,
+                (endStream ? Frame.END_STREAM : 0)
+                    | ((length==block.length) ? Frame.END_HEADERS : 0),
+                stream.getId(),
+                block,
+                0,
+                length);
+            for (int offset=length; offset<block.length; offset+=length) {
+                length = Math.min(block.length-offset, max);
+                _writer.write(
+                    Frame.CONTINUATION,
+                    (offset+length==block.length) ? Frame.END_HEADERS : 0,
+                    stream.getId(),
+                    block,
+                    offset,
+                    length);
+            }
+        }
+    }
+
+
+    /**
+     * Send DATA for a stream, waiting for send window credit as required.
+     *
+     * @param stream    The stream.
+     * @param b         The buffer holding the data.
+     * @param offset    The offset of the data in the buffer.
+     * @param length    The number of bytes to send.
+     * @param endStream True if this is the last of the body.
+     *
+     * @throws IOException If the stream was reset or the connection failed.
+     */
+    @Specification(name="rfc-7540", section="6.9")
+    void data(final Stream stream,
+              final byte[] b,
+              final int offset,
+              final int length,
+              final boolean endStream) throws IOException {
+        int off = offset;
+        int remaining = length;
+        do {
+            final int n;
+            synchronized (_flow) {
+                while (true) {
+                    checkOpen();
+                    stream.checkReset();
+                    final long window = Math.min(_sendWindow, stream._sendWindow);
+                    final int available =
+                        (int) Math.min(Math.min(remaining, _peerMaxFrameSize), window);
+                    if (0<available || 0==remaining) {
+                        n = Math.max(available, 0);
+                        break;
+                    }
+                    try {
+                        _flow.wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                _sendWindow -= n;
+                stream._sendWindow -= n;
+            }
+            remaining -= n;
+            _writer.write(
+                Frame.DATA,
+                (endStream && 0==remaining) ? Frame.END_STREAM : 0,
+                stream.getId(),
+                b,
+                off,
+                n);
+            off += n;
+        } while (0<remaining);
+    }
+
+
+    /**
+     * Grant the client more credit to send on a stream.
+     *
+     * @param streamId  The stream.
+     * @param increment The number of bytes.
+     *
+     * @throws IOException If writing to the client fails.
+     */
+    void windowUpdate(final int streamId, final int increment) throws IOException {
+        checkOpen();
+        _writer.writeInt(Frame.WINDOW_UPDATE, streamId, increment);
+    }
+
+
+    /**
+     * Reset a stream, telling the client unless it was already reset.
+     *
+     * @param stream The stream.
+     * @param error  The reason for the reset.
+     */
+    void reset(final Stream stream, final ErrorCode error) {
+        if (!stream.reset(error) || _closed) { return; }
+        try {
+            _writer.writeInt(Frame.RST_STREAM, stream.getId(), error.getCode());
+        } catch (final IOException e) {
+            // The reader thread will observe the failure.
+        }
+    }
+
+
+    /**
+     * Record that a stream has completed.
+     *
+     * @param stream The stream.
+     */
+    void closed(final Stream stream) {
+        _streams.remove(Integer.valueOf(stream.getId()));
+        if (_goingAway && _streams.isEmpty()) {
+            try {
+                _writer.close();
+            } catch (final IOException e) {
+                // The reader thread will observe the failure.
+            }
+        }
+    }
+
+
+    /**
+     * Wake any streams waiting for send window credit.
+     */
+    void wake() {
+        synchronized (_flow) {
+            _flow.notifyAll();
+        }
+    }
+
+
+    /*
+     * Frame dispatch; runs on the reader thread.
+     */
+    private void process(final Frame frame) throws IOException {
+        if (null!=_headerBlock && Frame.CONTINUATION!=frame.getType()) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Expected CONTINUATION."); //$NON-NLS-1$
+        }
+        switch (frame.getType()) {
+            case Frame.DATA:
+                data(frame);
+                break;
+            case Frame.HEADERS:
+                headers(frame);
+                break;
+            case Frame.PRIORITY:
+                priority(frame);
+                break;
+            case Frame.RST_STREAM:
+                rstStream(frame);
+                break;
+            case Frame.SETTINGS:
+                settings(frame);
+                break;
+            case Frame.PUSH_PROMISE:
+                throw HTTP2Exception.connection(
+                    ErrorCode.PROTOCOL_ERROR, "Client sent PUSH_PROMISE."); //$NON-NLS-1$
+            case Frame.PING:
+                ping(frame);
+                break;
+            case Frame.GOAWAY:
+                requireConnection(frame);
+                break;
+            case Frame.WINDOW_UPDATE:
+                windowUpdate(frame);
+                break;
+            case Frame.CONTINUATION:
+                continuation(frame);
+                break;
+            default:
+                break; // Unknown frame types are ignored.
+        }
+    }
+
+
+    @Specification(name="rfc-7540", section="6.1")
+    private void data(final Frame frame) throws IOException {
+        requireStream(frame);
+        final byte[] payload = frame.getPayload();
+        final int padding = padding(frame);
+        final int offset = (frame.hasFlag(Frame.PADDED)) ? 1 : 0;
+
+        _receiveWindow -= payload.length;
+        if (0>_receiveWindow) {
+            throw HTTP2Exception.connection(
+                ErrorCode.FLOW_CONTROL_ERROR, "Connection window exceeded."); //$NON-NLS-1$
+        }
+        if (_receiveWindow<=_connectionWindow/2) {
+            windowUpdate(0, _connectionWindow-_receiveWindow);
+            _receiveWindow = _connectionWindow;
+        }
+
+        final Stream stream = _streams.get(Integer.valueOf(frame.getStreamId()));
+        if (null==stream) {
+            if (frame.getStreamId()>_lastStreamId) {
+                throw HTTP2Exception.connection(
+                    ErrorCode.PROTOCOL_ERROR, "DATA on idle stream."); //$NON-NLS-1$
+            }
+            return; // Already closed; frames may still be in flight.
+        }
+        stream.receive(
+            payload,
+            offset,
+            payload.length-offset-padding,
+            payload.length,
+            frame.hasFlag(Frame.END_STREAM));
+    }
+
+
+    @Specification(name="rfc-7540", section="6.2")
+    private void headers(final Frame frame) throws IOException {
+        requireStream(frame);
+        final byte[] payload = frame.getPayload();
+        final int padding = padding(frame);
+        int offset = (frame.hasFlag(Frame.PADDED)) ? 1 : 0;
+        if (frame.hasFlag(Frame.PRIORITY_FLAG)) { offset += 5; }
+        final int length = payload.length-offset-padding;
+        if (0>length) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Invalid HEADERS padding."); //$NON-NLS-1$
+        }
+
+        _headerBlock = new ByteArrayOutputStream(length);
+        _headerBlock.write(payload, offset, length);
+        _headerStreamId = frame.getStreamId();
+        _headerEndStream = frame.hasFlag(Frame.END_STREAM);
+        if (frame.hasFlag(Frame.END_HEADERS)) { headerBlock(); }
+    }
+
+
+    @Specification(name="rfc-7540", section="6.10")
+    private void continuation(final Frame frame) throws IOException {
+        if (null==_headerBlock || frame.getStreamId()!=_headerStreamId) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Unexpected CONTINUATION."); //$NON-NLS-1$
+        }
+        final byte[] payload = frame.getPayload();
+        _headerBlock.write(payload, 0, payload.length);
+        if (_headerBlock.size()>_maxFrameSize*CONNECTION_WINDOW_STREAMS) {
+            throw HTTP2Exception.connection(
+                ErrorCode.ENHANCE_YOUR_CALM, "Header block too large."); //$NON-NLS-1$
+        }
+        if (frame.hasFlag(Frame.END_HEADERS)) { headerBlock(); }
+    }
+
+
+    /*
+     * A complete header block; always decoded to keep the HPACK context in
+     * step with the client, even for streams that are then refused.
+     */
+    private void headerBlock() throws IOException {
+        final byte[] block = _headerBlock.toByteArray();
+        final int streamId = _headerStreamId;
+        final boolean endStream = _headerEndStream;
+        _headerBlock = null;
+
+        List<HeaderField> fields;
+        try {
+            fields = _decoder.decode(block, 0, block.length);
+        } catch (final HeaderListSizeException e) {
+            fields = null;
+        } catch (final HPACKException e) {
+            throw HTTP2Exception.connection(
+                ErrorCode.COMPRESSION_ERROR, e.getMessage());
+        }
+
+        final Stream existing = _streams.get(Integer.valueOf(streamId));
+        if (null!=existing) {                           // Trailers.
+            if (!endStream) {
+                throw new HTTP2Exception(
+                    ErrorCode.PROTOCOL_ERROR, streamId, "Trailers must end the stream."); //$NON-NLS-1$
+            }
+            existing.endOfStream();
+            return;
+        }
+        if (0==(streamId & 1)) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Even stream identifier."); //$NON-NLS-1$
+        }
+        if (streamId<=_lastStreamId) {
+            throw new HTTP2Exception(
+                ErrorCode.STREAM_CLOSED, streamId, "Stream closed."); //$NON-NLS-1$
+        }
+        _lastStreamId = streamId;
+
+        if (null==fields) {
+            throw new HTTP2Exception(
+                ErrorCode.PROTOCOL_ERROR, streamId, "Header list too large."); //$NON-NLS-1$
+        }
+        if (_goingAway || _streams.size()>=_maxConcurrentStreams) {
+            throw new HTTP2Exception(
+                ErrorCode.REFUSED_STREAM, streamId, "Stream refused."); //$NON-NLS-1$
+        }
+
+        final Stream stream =
+            new Stream(this, streamId, initialSendWindow(), _streamWindow);
+        request(stream, fields);
+        if (endStream) { stream.endOfStream(); }
+        dispatch(stream);
+    }
+
+
+    /*
+     * Build the request for a stream from its decoded header fields.
+     */
+    @Specification(name="rfc-7540", section="8.1.2")
+    private void request(final Stream stream,
+                         final List<HeaderField> fields) throws HTTP2Exception {
+        final int id = stream.getId();
+        String method = null;
+        String scheme = null;
+        String authority = null;
+        String path = null;
+        final List<String[]> regular = new ArrayList<String[]>(fields.size());
+        for (final HeaderField field : fields) {
+            final String name = field.getName();
+            final String value = field.getValue();
+            if (!name.equals(name.toLowerCase(Locale.US))) {
+                throw malformed(id, "Upper-case header name.");    //$NON-NLS-1$
+            }
+            if (name.startsWith(":")) {                          //$NON-NLS-1$
+                if (!regular.isEmpty()) {
+                    throw malformed(id, "Pseudo-header after regular header."); //$NON-NLS-1$
+                }
+                if (":method".equals(name) && null==method) {    //$NON-NLS-1$
+                    method = value;
+                } else if (":scheme".equals(name) && null==scheme) { //$NON-NLS-1$
+                    scheme = value;
+                } else if (":authority".equals(name) && null==authority) { //$NON-NLS-1$
+                    authority = value;
+                } else if (":path".equals(name) && null==path) { //$NON-NLS-1$
+                    path = value;
+                } else {
+                    throw malformed(id, "Invalid pseudo-header: "+name); //$NON-NLS-1$
+                }
+            } else if (HTTP2Response.CONNECTION_SPECIFIC.contains(name)) {
+                throw malformed(id, "Connection-specific header: "+name); //$NON-NLS-1$
+            } else if ("te".equals(name) && !"trailers".equals(value)) { //$NON-NLS-1$ //$NON-NLS-2$
+                throw malformed(id, "Invalid TE header.");         //$NON-NLS-1$
+            } else {
+                regular.add(new String[] {name, value});
+            }
+        }
+
+        if ("CONNECT".equals(method)) {                           //$NON-NLS-1$
+            if (null==authority || null!=scheme || null!=path) {
+                throw malformed(id, "Invalid CONNECT request.");   //$NON-NLS-1$
+            }
+            path = authority;
+        } else if (null==method || null==scheme || null==path || path.isEmpty()) {
+            throw malformed(id, "Missing pseudo-header.");         //$NON-NLS-1$
+        }
+
+        final Map<String, List<String>> headers =
+            HTTP2Request.headers(regular, authority);
+        long contentLength = -1;
+        final List<String> lengths = headers.get(Header.CONTENT_LENGTH);
+        if (null!=lengths) {
+            try {
+                contentLength = Long.parseLong(lengths.get(0));
+            } catch (final NumberFormatException e) {
+                throw malformed(id, "Invalid content length.");    //$NON-NLS-1$
+            }
+        }
+        boolean expectContinue = false;
+        final List<String> expectations = headers.get(Header.EXPECT);
+        if (null!=expectations) {
+            try {
+                for (final String value : expectations) {
+                    expectContinue |=
+                        Expectation.parseList(value).contains(Expectation.CONTINUE);
+                }
+            } catch (final ClientHttpException e) {
+                expectContinue = false; // Left for the handler to refuse.
+            }
+        }
+        stream.setRequest(
+            new HTTP2Request(
+                _server, _client, _confidential, method, path, headers,
+                stream.getInput()),
+            contentLength,
+            expectContinue);
+    }
+
+
+    @Specification(name="rfc-7540", section="6.3")
+    private void priority(final Frame frame) throws HTTP2Exception {
+        requireStream(frame);
+        if (5!=frame.getPayload().length) {
+            throw new HTTP2Exception(
+                ErrorCode.FRAME_SIZE_ERROR, frame.getStreamId(), "Invalid PRIORITY."); //$NON-NLS-1$
+        }
+    }
+
+
+    @Specification(name="rfc-7540", section="6.4")
+    private void rstStream(final Frame frame) throws HTTP2Exception {
+        requireStream(frame);
+        if (4!=frame.getPayload().length) {
+            throw HTTP2Exception.connection(
+                ErrorCode.FRAME_SIZE_ERROR, "Invalid RST_STREAM."); //$NON-NLS-1$
+        }
+        if (frame.getStreamId()>_lastStreamId) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "RST_STREAM on idle stream."); //$NON-NLS-1$
+        }
+        final Stream stream = _streams.get(Integer.valueOf(frame.getStreamId()));
+        if (null!=stream) {
+            stream.reset(ErrorCode.forCode(Frame.int32(frame.getPayload(), 0)));
+        }
+    }
+
+
+    @Specification(name="rfc-7540", section="6.5")
+    private void settings(final Frame frame) throws IOException {
+        requireConnection(frame);
+        final byte[] payload = frame.getPayload();
+        if (frame.hasFlag(Frame.ACK)) {
+            if (0!=payload.length) {
+                throw HTTP2Exception.connection(
+                    ErrorCode.FRAME_SIZE_ERROR, "Invalid SETTINGS ACK."); //$NON-NLS-1$
+            }
+            return;
+        }
+        if (0!=payload.length%6) {
+            throw HTTP2Exception.connection(
+                ErrorCode.FRAME_SIZE_ERROR, "Invalid SETTINGS."); //$NON-NLS-1$
+        }
+        applySettings(payload);
+        _writer.write(Frame.SETTINGS, Frame.ACK, 0, payload, 0, 0);
+    }
+
+
+    @Specification(name="rfc-7540", section="6.5.2")
+    private void applySettings(final byte[] payload) throws HTTP2Exception {
+        for (int i=0; i<payload.length; i+=6) {
+            final int id = ((payload[i] & 0xff) << 8) | (payload[i+1] & 0xff);
+            final int value = Frame.int32(payload, i+2);
+            switch (id) {
+                case Settings.HEADER_TABLE_SIZE:
+                    synchronized (_writer) {
+                        _encoder.setMaxTableSize((0>value) ? Integer.MAX_VALUE : value);
+                    }
+                    break;
+                case Settings.ENABLE_PUSH:
+                    if (0!=value && 1!=value) {
+                        throw HTTP2Exception.connection(
+                            ErrorCode.PROTOCOL_ERROR, "Invalid ENABLE_PUSH."); //$NON-NLS-1$
+                    }
+                    break;
+                case Settings.INITIAL_WINDOW_SIZE:
+                    if (0>value) {
+                        throw HTTP2Exception.connection(
+                            ErrorCode.FLOW_CONTROL_ERROR, "Invalid INITIAL_WINDOW_SIZE."); //$NON-NLS-1$
+                    }
+                    synchronized (_flow) {
+                        final long delta = value-_initialSendWindow;
+                        _initialSendWindow = value;
+                        for (final Stream stream : _streams.values()) {
+                            stream._sendWindow += delta;
+                            if (stream._sendWindow>Settings.MAX_WINDOW_SIZE) {
+                                throw HTTP2Exception.connection(
+                                    ErrorCode.FLOW_CONTROL_ERROR, "Window overflow."); //$NON-NLS-1$
+                            }
+                        }
+                        _flow.notifyAll();
+                    }
+                    break;
+                case Settings.MAX_FRAME_SIZE:
+                    if (value<Frame.DEFAULT_MAX_SIZE || value>Frame.MAX_MAX_SIZE) {
+                        throw HTTP2Exception.connection(
+                            ErrorCode.PROTOCOL_ERROR, "Invalid MAX_FRAME_SIZE."); //$NON-NLS-1$
+                    }
+                    _peerMaxFrameSize = value;
+                    break;
+                default:
+                    break; // Unknown and advisory settings are ignored.
+            }
+        }
+    }
+
+
+    @Specification(name="rfc-7540", section="6.7")
+    private void ping(final Frame frame) throws IOException {
+        requireConnection(frame);
+        final byte[] payload = frame.getPayload();
+        if (8!=payload.length) {
+            throw HTTP2Exception.connection(
+                ErrorCode.FRAME_SIZE_ERROR, "Invalid PING."); //$NON-NLS-1$
+        }
+        if (!frame.hasFlag(Frame.ACK)) {
+            _writer.write(Frame.PING, Frame.ACK, 0, payload, 0, payload.length);
+        }
+    }
+
+
+    @Specification(name="rfc-7540", section="6.9")
+    private void windowUpdate(final Frame frame) throws HTTP2Exception {
+        final byte[] payload = frame.getPayload();
+        if (4!=payload.length) {
+            throw HTTP2Exception.connection(
+                ErrorCode.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE."); //$NON-NLS-1$
+        }
+        final int streamId = frame.getStreamId();
+        final int increment = Frame.int32(payload, 0) & Integer.MAX_VALUE;
+        if (0==increment) {
+            throw new HTTP2Exception(
+                ErrorCode.PROTOCOL_ERROR, streamId, "Zero window increment."); //$NON-NLS-1$
+        }
+        synchronized (_flow) {
+            if (0==streamId) {
+                _sendWindow += increment;
+                if (_sendWindow>Settings.MAX_WINDOW_SIZE) {
+                    throw HTTP2Exception.connection(
+                        ErrorCode.FLOW_CONTROL_ERROR, "Window overflow."); //$NON-NLS-1$
+                }
+            } else {
+                final Stream stream = _streams.get(Integer.valueOf(streamId));
+                if (null==stream) { return; }
+                stream._sendWindow += increment;
+                if (stream._sendWindow>Settings.MAX_WINDOW_SIZE) {
+                    throw new HTTP2Exception(
+                        ErrorCode.FLOW_CONTROL_ERROR, streamId, "Window overflow."); //$NON-NLS-1$
+                }
+            }
+            _flow.notifyAll();
+        }
+    }
+
+
+    private void readPreface() throws IOException {
+        final byte[] preface = new byte[PREFACE.length];
+        _reader.readFully(preface, 0, preface.length);
+        if (!Arrays.equals(PREFACE, preface)) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Invalid connection preface."); //$NON-NLS-1$
+        }
+    }
+
+
+    private void sendSettings() throws IOException {
+        final byte[] settings = _settings.toPayload();
+        _writer.write(Frame.SETTINGS, 0, 0, settings, 0, settings.length);
+        if (_connectionWindow>_receiveWindow) {
+            windowUpdate(0, _connectionWindow-_receiveWindow);
+            _receiveWindow = _connectionWindow;
+        }
+        _settingsSent = true;
+    }
+
+
+    private void dispatch(final Stream stream) throws HTTP2Exception {
+        _streams.put(Integer.valueOf(stream.getId()), stream);
+        try {
+            _executor.execute(stream);
+        } catch (final RejectedExecutionException e) {
+            _streams.remove(Integer.valueOf(stream.getId()));
+            throw new HTTP2Exception(
+                ErrorCode.REFUSED_STREAM, stream.getId(), "Stream refused."); //$NON-NLS-1$
+        }
+    }
+
+
+    private long initialSendWindow() {
+        synchronized (_flow) {
+            return _initialSendWindow;
+        }
+    }
+
+
+    private void terminate() {
+        _closed = true;
+        for (final Stream stream : _streams.values()) {
+            stream.reset(ErrorCode.CANCEL);
+        }
+        wake();
+        try {
+            _writer.close();
+        } catch (final IOException e) {
+            // Already failed.
+        }
+        try {
+            _in.close();
+        } catch (final IOException e) {
+            // Already failed.
+        }
+    }
+
+
+    private void checkOpen() throws IOException {
+        if (_closed) {
+            throw new IOException("Connection closed."); //$NON-NLS-1$
+        }
+    }
+
+
+    private static int padding(final Frame frame) throws HTTP2Exception {
+        if (!frame.hasFlag(Frame.PADDED)) { return 0; }
+        final byte[] payload = frame.getPayload();
+        if (0==payload.length || (payload[0] & 0xff)>=payload.length) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Invalid padding."); //$NON-NLS-1$
+        }
+        return payload[0] & 0xff;
+    }
+
+
+    private static void requireStream(final Frame frame) throws HTTP2Exception {
+        if (0==frame.getStreamId()) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Frame requires a stream."); //$NON-NLS-1$
+        }
+    }
+
+
+    private static void requireConnection(final Frame frame) throws HTTP2Exception {
+        if (0!=frame.getStreamId()) {
+            throw HTTP2Exception.connection(
+                ErrorCode.PROTOCOL_ERROR, "Frame requires stream 0."); //$NON-NLS-1$
+        }
+    }
+
+
+    private static HTTP2Exception malformed(final int streamId,
+                                            final String message) {
+        return new HTTP2Exception(ErrorCode.PROTOCOL_ERROR, streamId, message);
+    }
+}
@@ -0,0 +1,81 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import com.johnstok.http.Specification;
+
+
+/**
+ * HTTP/2 error codes, used in RST_STREAM and GOAWAY frames.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7540", section="7")
+public enum ErrorCode {
+
+    NO_ERROR(0x0),
+    PROTOCOL_ERROR(0x1),
+    INTERNAL_ERROR(0x2),
+    FLOW_CONTROL_ERROR(0x3),
+    SETTINGS_TIMEOUT(0x4),
+    STREAM_CLOSED(0x5),
+    FRAME_SIZE_ERROR(0x6),
+    REFUSED_STREAM(0x7),
+    CANCEL(0x8),
+    COMPRESSION_ERROR(0x9),
+    CONNECT_ERROR(0xa),
+    ENHANCE_YOUR_CALM(0xb),
+    INADEQUATE_SECURITY(0xc),
+    HTTP_1_1_REQUIRED(0xd);
+
+    private final int _code;
+
+
+    private ErrorCode(final int code) {
+        _code = code;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the numeric code.
+     */
+    public int getCode() {
+        return _code;
+    }
+
+
+    /**
+     * Look up an error code.
+     *
+     * @param code The numeric code.
+     *
+     * @return The corresponding error code; unknown codes map to
+     *  {@link #INTERNAL_ERROR}.
+     */
+    @Specification(name="rfc-7540", section="7")
+    public static ErrorCode forCode(final int code) {
+        for (final ErrorCode e : values()) {
+            if (code==e._code) { return e; }
+        }
+        return INTERNAL_ERROR;
+    }
+}
@@ -0,0 +1,174 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import com.johnstok.http.Specification;
+
+
+/**
+ * An HTTP/2 frame.
+ *
+ * <pre>
+ *  +-----------------------------------------------+
+ *  |                 Length (24)                   |
+ *  +---------------+---------------+---------------+
+ *  |   Type (8)    |   Flags (8)   |
+ *  +-+-------------+---------------+-------------------------------+
+ *  |R|                 Stream Identifier (31)                      |
+ *  +=+=============================================================+
+ *  |                   Frame Payload (0...)                      ...
+ *  +---------------------------------------------------------------+
+ * </pre>
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7540", section="4.1")
+public final class Frame {
+
+    /** The length of a frame header, in bytes. */
+    public static final int HEADER_LENGTH = 9;
+
+    /** The default, and minimum, maximum frame payload size. */
+    public static final int DEFAULT_MAX_SIZE = 16384;
+
+    /** The largest permitted maximum frame payload size. */
+    public static final int MAX_MAX_SIZE = (1<<24)-1;
+
+    // Types.
+    public static final int DATA          = 0x0;
+    public static final int HEADERS       = 0x1;
+    public static final int PRIORITY      = 0x2;
+    public static final int RST_STREAM    = 0x3;
+    public static final int SETTINGS      = 0x4;
+    public static final int PUSH_PROMISE  = 0x5;
+    public static final int PING          = 0x6;
+    public static final int GOAWAY        = 0x7;
+    public static final int WINDOW_UPDATE = 0x8;
+    public static final int CONTINUATION  = 0x9;
+
+    // Flags.
+    public static final int END_STREAM    = 0x1;
+    public static final int ACK           = 0x1;
+    public static final int END_HEADERS   = 0x4;
+    public static final int PADDED        = 0x8;
+    public static final int PRIORITY_FLAG = 0x20;
+
+    private final int    _type;
+    private final int    _flags;
+    private final int    _streamId;
+    private final byte[] _payload;
+
+
+    /**
+     * Constructor.
+     *
+     * @param type     The frame type.
+     * @param flags    The frame flags.
+     * @param streamId The stream the frame belongs to; 0 for the connection.
+     * @param payload  The frame payload.
+     */
+    public Frame(final int type,
+                 final int flags,
+                 final int streamId,
+                 final byte[] payload) {
+        _type = type;
+        _flags = flags;
+        _streamId = streamId;
+        _payload = payload;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the frame type.
+     */
+    public int getType() {
+        return _type;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the frame flags.
+     */
+    public int getFlags() {
+        return _flags;
+    }
+
+
+    /**
+     * Test whether a flag is set.
+     *
+     * @param flag The flag to test.
+     *
+     * @return True if the flag is set; false otherwise.
+     */
+    public boolean hasFlag(final int flag) {
+        return 0!=(_flags & flag);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the stream identifier.
+     */
+    public int getStreamId() {
+        return _streamId;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the payload; the array is not copied.
+     */
+    public byte[] getPayload() {
+        return _payload;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return
+            "Frame[type="+_type+", flags="+_flags        //$NON-NLS-1$ //$NON-NLS-2$
+            +", stream="+_streamId+", length="+_payload.length+"]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+
+    static int int32(final byte[] b, final int offset) {
+        return
+            ((b[offset] & 0xff) << 24)
+            | ((b[offset+1] & 0xff) << 16)
+            | ((b[offset+2] & 0xff) << 8)
+            | (b[offset+3] & 0xff);
+    }
+
+
+    static void int32(final byte[] b, final int offset, final int value) {
+        b[offset]   = (byte) (value >>> 24);
+        b[offset+1] = (byte) (value >>> 16);
+        b[offset+2] = (byte) (value >>> 8);
+        b[offset+3] = (byte) value;
+    }
+}
@@ -0,0 +1,97 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Reads HTTP/2 frames from a stream.
+ *
+ * @author Keith Webster Johnston.
+ */
+final class FrameReader {
+
+    private final InputStream _in;
+    private final byte[]      _header = new byte[Frame.HEADER_LENGTH];
+
+
+    /**
+     * Constructor.
+     *
+     * @param in The stream to read from.
+     */
+    FrameReader(final InputStream in) {
+        _in = in;
+    }
+
+
+    /**
+     * Read the next frame.
+     *
+     * @param maxSize The largest payload accepted.
+     *
+     * @return The frame; null if the stream ended between frames.
+     *
+     * @throws IOException If the stream fails or the frame is too large.
+     */
+    Frame read(final int maxSize) throws IOException {
+        final int first = _in.read();
+        if (0>first) { return null; }
+        _header[0] = (byte) first;
+        readFully(_header, 1, Frame.HEADER_LENGTH-1);
+
+        final int length =
+            ((_header[0] & 0xff) << 16)
+            | ((_header[1] & 0xff) << 8)
+            | (_header[2] & 0xff);
+        final int streamId = Frame.int32(_header, 5) & Integer.MAX_VALUE;
+        if (length>maxSize) {
+            throw HTTP2Exception.connection(
+                ErrorCode.FRAME_SIZE_ERROR, "Frame too large: "+length); //$NON-NLS-1$
+        }
+        final byte[] payload = new byte[length];
+        readFully(payload, 0, length);
+        return new Frame(_header[3] & 0xff, _header[4] & 0xff, streamId, payload);
+    }
+
+
+    /**
+     * Read an exact number of bytes.
+     *
+     * @param b      The buffer to read into.
+     * @param offset The offset to read to.
+     * @param length The number of bytes to read.
+     *
+     * @throws IOException If the stream fails or ends early.
+     */
+    void readFully(final byte[] b,
+                   final int offset,
+                   final int length) throws IOException {
+        int count = 0;
+        while (count<length) {
+            final int read = _in.read(b, offset+count, length-count);
+            if (0>read) { throw new EOFException(); }
+            count += read;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Writes HTTP/2 frames to a stream.
+ *
+ * <p>Each frame is written and flushed atomically, so a writer may be shared
+ * by several threads. Callers needing several frames to be contiguous, e.g.
+ * HEADERS and its CONTINUATIONs, should synchronize on the writer.
+ *
+ * @author Keith Webster Johnston.
+ */
+final class FrameWriter {
+
+    private final OutputStream _out;
+    private final byte[]       _header = new byte[Frame.HEADER_LENGTH];
+
+
+    /**
+     * Constructor.
+     *
+     * @param out The stream to write to.
+     */
+    FrameWriter(final OutputStream out) {
+        _out = out;
+    }
+
+
+    /**
+     * Write a frame.
+     *
+     * @param type     The frame type.
+     * @param flags    The frame flags.
+     * @param streamId The stream identifier.
+     * @param payload  The buffer holding the payload.
+     * @param offset   The offset of the payload in the buffer.
+     * @param length   The length of the payload.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    synchronized void write(final int type,
+                            final int flags,
+                            final int streamId,
+                            final byte[] payload,
+                            final int offset,
+                            final int length) throws IOException {
+        _header[0] = (byte) (length >>> 16);
+        _header[1] = (byte) (length >>> 8);
+        _header[2] = (byte) length;
+        _header[3] = (byte) type;
+        _header[4] = (byte) flags;
+        Frame.int32(_header, 5, streamId);
+        _out.write(_header);
+        if (0<length) { _out.write(payload, offset, length); }
+        _out.flush();
+    }
+
+
+    /**
+     * Write a frame with a four-byte payload.
+     *
+     * @param type     The frame type.
+     * @param streamId The stream identifier.
+     * @param value    The payload value.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    void writeInt(final int type,
+                  final int streamId,
+                  final int value) throws IOException {
+        final byte[] payload = new byte[4];
+        Frame.int32(payload, 0, value);
+        write(type, 0, streamId, payload, 0, 4);
+    }
+
+
+    /**
+     * Write a GOAWAY frame.
+     *
+     * @param lastStreamId The last stream that was, or may be, processed.
+     * @param error        The reason for closing the connection.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    void goAway(final int lastStreamId,
+                final ErrorCode error) throws IOException {
+        final byte[] payload = new byte[8];
+        Frame.int32(payload, 0, lastStreamId);
+        Frame.int32(payload, 4, error.getCode());
+        write(Frame.GOAWAY, 0, 0, payload, 0, 8);
+    }
+
+
+    /**
+     * Close the underlying stream.
+     *
+     * @throws IOException If closing the stream fails.
+     */
+    synchronized void close() throws IOException {
+        _out.close();
+    }
+}
@@ -0,0 +1,101 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.IOException;
+import com.johnstok.http.Specification;
+
+
+/**
+ * Signals an HTTP/2 protocol error.
+ *
+ * <p>An error on stream 0 is a connection error, which terminates the
+ * connection; any other is a stream error, which resets only that stream.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7540", section="5.4")
+public class HTTP2Exception
+    extends
+        IOException {
+
+    private final ErrorCode _errorCode;
+    private final int       _streamId;
+
+
+    /**
+     * Constructor.
+     *
+     * @param errorCode The error code to send to the peer.
+     * @param streamId  The stream in error; 0 for a connection error.
+     * @param message   A description of the error.
+     */
+    public HTTP2Exception(final ErrorCode errorCode,
+                          final int streamId,
+                          final String message) {
+        super(message);
+        _errorCode = errorCode;
+        _streamId = streamId;
+    }
+
+
+    /**
+     * Create a connection error.
+     *
+     * @param errorCode The error code to send to the peer.
+     * @param message   A description of the error.
+     *
+     * @return The corresponding exception.
+     */
+    public static HTTP2Exception connection(final ErrorCode errorCode,
+                                            final String message) {
+        return new HTTP2Exception(errorCode, 0, message);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the error code.
+     */
+    public ErrorCode getErrorCode() {
+        return _errorCode;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the stream in error; 0 for a connection error.
+     */
+    public int getStreamId() {
+        return _streamId;
+    }
+
+
+    /**
+     * Query whether this is a connection error.
+     *
+     * @return True if the whole connection is in error; false otherwise.
+     */
+    public boolean isConnectionError() {
+        return 0==_streamId;
+    }
+}
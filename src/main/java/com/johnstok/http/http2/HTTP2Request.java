@@ -0,0 +1,166 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.sync.AbstractRequest;
+
+
+/**
+ * A request received on an HTTP/2 stream.
+ *
+ * <p>The pseudo-header fields are mapped onto the request line; the
+ * :authority becomes the Host header if none was sent.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7540", section="8.1.2.3")
+final class HTTP2Request
+    extends
+        AbstractRequest {
+
+    /** The version reported for HTTP/2 requests. */
+    static final String VERSION = "HTTP/2.0";                   //$NON-NLS-1$
+
+    private final InetSocketAddress         _client;
+    private final boolean                   _confidential;
+    private final String                    _method;
+    private final String                    _path;
+    private final Map<String, List<String>> _headers;
+    private final InputStream               _body;
+
+
+    /**
+     * Constructor.
+     *
+     * @param server       The server's address.
+     * @param client       The client's address.
+     * @param confidential True if the connection is encrypted.
+     * @param method       The :method pseudo-header.
+     * @param path         The :path pseudo-header.
+     * @param headers      The regular header fields, keyed case-insensitively.
+     * @param body         The request body.
+     */
+    HTTP2Request(final InetSocketAddress server,
+                 final InetSocketAddress client,
+                 final boolean confidential,
+                 final String method,
+                 final String path,
+                 final Map<String, List<String>> headers,
+                 final InputStream body) {
+        super(server, StandardCharsets.UTF_8);
+        _client = client;
+        _confidential = confidential;
+        _method = method;
+        _path = path;
+        _headers = Collections.unmodifiableMap(headers);
+        _body = body;
+    }
+
+
+    /**
+     * Create a header map from decoded fields.
+     *
+     * @param authority The :authority pseudo-header; may be null.
+     *
+     * @return A case-insensitive map; cookie fields are joined as required
+     *  for HTTP/1.1 semantics.
+     */
+    @Specification(name="rfc-7540", section="8.1.2.5")
+    static Map<String, List<String>> headers(final List<String[]> fields,
+                                             final String authority) {
+        final Map<String, List<String>> headers =
+            new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        for (final String[] field : fields) {
+            List<String> values = headers.get(field[0]);
+            if (null==values) {
+                values = new ArrayList<String>(1);
+                headers.put(field[0], values);
+            }
+            if ("cookie".equals(field[0]) && !values.isEmpty()) { //$NON-NLS-1$
+                values.set(0, values.get(0)+"; "+field[1]);        //$NON-NLS-1$
+            } else {
+                values.add(field[1]);
+            }
+        }
+        if (null!=authority && !headers.containsKey(Header.HOST)) {
+            headers.put(Header.HOST, Collections.singletonList(authority));
+        }
+        return headers;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String getRequestUri() {
+        return _path;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isConfidential() {
+        return _confidential;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMethod() {
+        return _method;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String getVersion() {
+        return VERSION;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public InetSocketAddress getClientAddress() {
+        return _client;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, List<String>> getHeaders() {
+        return _headers;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream getBody() {
+        return _body;
+    }
+}
@@ -0,0 +1,266 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.http2.hpack.HeaderField;
+import com.johnstok.http.sync.AbstractResponse;
+
+
+/**
+ * A response sent on an HTTP/2 stream.
+ *
+ * <p>The HEADERS frame is deferred until the first DATA frame, a flush, or
+ * the end of the response, so a handler that sends no body completes the
+ * stream with a single frame.
+ *
+ * @author Keith Webster Johnston.
+ */
+final class HTTP2Response
+    extends
+        AbstractResponse {
+
+    /** Header fields that have no meaning in HTTP/2. */
+    @Specification(name="rfc-7540", section="8.1.2.2")
+    static final Set<String> CONNECTION_SPECIFIC =
+        new HashSet<String>(Arrays.asList(
+            "connection",                                       //$NON-NLS-1$
+            "keep-alive",                                       //$NON-NLS-1$
+            "proxy-connection",                                 //$NON-NLS-1$
+            "transfer-encoding",                                //$NON-NLS-1$
+            "upgrade"));                                        //$NON-NLS-1$
+
+    private final Stream              _stream;
+    private final Map<String, String> _headers =
+        new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private int                       _statusCode = Status.OK.getCode();
+    private String                    _reasonPhrase = Status.OK.getReasonPhrase();
+    private Body                      _body;
+    private boolean                   _headersSent;
+    private boolean                   _complete;
+
+
+    /**
+     * Constructor.
+     *
+     * @param stream The stream carrying the response.
+     */
+    HTTP2Response(final Stream stream) {
+        _stream = stream;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStatus(final int statusCode, final String reasonPhrase) {
+        if (isCommitted()) {
+            throw new IllegalStateException("Already committed."); //$NON-NLS-1$
+        }
+        _statusCode = statusCode;
+        _reasonPhrase = reasonPhrase;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int getStatusCode() {
+        return _statusCode;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String getReasonPhrase() {
+        return _reasonPhrase;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void setHeader(final String name, final String value) {
+        if (isCommitted()) {
+            throw new IllegalStateException("Already committed."); //$NON-NLS-1$
+        }
+        _headers.put(name, value);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String getHeader(final String name) {
+        return _headers.get(name);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream getBody() throws IOException {
+        commit();
+        _body = new Body(_stream.getMaxFrameSize());
+        return _body;
+    }
+
+
+    /**
+     * Complete the response, committing it if the handler did not.
+     *
+     * @throws IOException If sending the response fails.
+     */
+    void finish() throws IOException {
+        if (!isCommitted()) { commit(); }
+        if (null==_body) {
+            if (!_complete) {
+                _complete = true;
+                sendHeaders(true);
+            }
+        } else {
+            _body.close();
+        }
+    }
+
+
+    /**
+     * Replace the response with an error, if nothing has been sent yet.
+     *
+     * @param status The error status.
+     *
+     * @return True if the error was sent; false if the response had already
+     *  started and the stream must be reset instead.
+     *
+     * @throws IOException If sending the response fails.
+     */
+    boolean error(final Status status) throws IOException {
+        if (_headersSent) { return false; }
+        _headers.clear();
+        _statusCode = status.getCode();
+        _reasonPhrase = status.getReasonPhrase();
+        _headers.put(Header.CONTENT_LENGTH, "0");                   //$NON-NLS-1$
+        _body = null;
+        _complete = true;
+        sendHeaders(true);
+        return true;
+    }
+
+
+    /*
+     * Header names are lower-cased; connection-specific fields are dropped.
+     */
+    @Specification(name="rfc-7540", section="8.1.2")
+    private void sendHeaders(final boolean endStream) throws IOException {
+        final List<HeaderField> fields =
+            new ArrayList<HeaderField>(_headers.size()+1);
+        fields.add(new HeaderField(":status", String.valueOf(_statusCode))); //$NON-NLS-1$
+        for (final Map.Entry<String, String> header : _headers.entrySet()) {
+            final String name = header.getKey().toLowerCase(Locale.US);
+            if (CONNECTION_SPECIFIC.contains(name)) { continue; }
+            fields.add(new HeaderField(name, header.getValue()));
+        }
+        _headersSent = true;
+        _stream.headers(fields, endStream);
+    }
+
+
+    /**
+     * The response body; buffers up to one frame before sending.
+     */
+    private final class Body
+        extends
+            OutputStream {
+
+        private final byte[] _buffer;
+        private int          _count;
+        private boolean      _closed;
+
+
+        Body(final int size) {
+            _buffer = new byte[size];
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final int b) throws IOException {
+            if (_count==_buffer.length) { send(false); }
+            _buffer[_count++] = (byte) b;
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b,
+                          final int off,
+                          final int len) throws IOException {
+            if (_closed) { throw new IOException("Stream closed."); } //$NON-NLS-1$
+            int offset = off;
+            int remaining = len;
+            while (0<remaining) {
+                if (_count==_buffer.length) { send(false); }
+                final int n = Math.min(remaining, _buffer.length-_count);
+                System.arraycopy(b, offset, _buffer, _count, n);
+                _count += n;
+                offset += n;
+                remaining -= n;
+            }
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void flush() throws IOException {
+            if (_closed) { return; }
+            send(false);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() throws IOException {
+            if (_closed) { return; }
+            _closed = true;
+            _complete = true;
+            if (!_headersSent && 0==_count) {
+                sendHeaders(true);
+            } else {
+                send(true);
+            }
+        }
+
+
+        private void send(final boolean endStream) throws IOException {
+            if (!_headersSent) { sendHeaders(false); }
+            if (0<_count || endStream) {
+                _stream.data(_buffer, 0, _count, endStream);
+                _count = 0;
+            }
+        }
+    }
+}
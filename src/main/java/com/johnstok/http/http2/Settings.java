@@ -0,0 +1,112 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.util.Map;
+import java.util.TreeMap;
+import com.johnstok.http.Specification;
+
+
+/**
+ * HTTP/2 connection settings.
+ *
+ * <p>Only explicitly set values are sent; the peer assumes the protocol
+ * defaults for the rest.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7540", section="6.5.2")
+public final class Settings {
+
+    public static final int HEADER_TABLE_SIZE      = 0x1;
+    public static final int ENABLE_PUSH            = 0x2;
+    public static final int MAX_CONCURRENT_STREAMS = 0x3;
+    public static final int INITIAL_WINDOW_SIZE    = 0x4;
+    public static final int MAX_FRAME_SIZE         = 0x5;
+    public static final int MAX_HEADER_LIST_SIZE   = 0x6;
+
+    /** The initial flow-control window size. */
+    public static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    /** The largest flow-control window size. */
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private final Map<Integer, Integer> _values = new TreeMap<Integer, Integer>();
+
+
+    /**
+     * Create the default server settings.
+     *
+     * @return Settings allowing 100 concurrent streams and header lists of up
+     *  to 16KiB.
+     */
+    public static Settings defaults() {
+        return
+            new Settings()
+                .set(MAX_CONCURRENT_STREAMS, 100)
+                .set(MAX_HEADER_LIST_SIZE, 16384);
+    }
+
+
+    /**
+     * Mutator.
+     *
+     * @param id    The setting's identifier.
+     * @param value The setting's value.
+     *
+     * @return This settings object.
+     */
+    public Settings set(final int id, final int value) {
+        _values.put(Integer.valueOf(id), Integer.valueOf(value));
+        return this;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @param id           The setting's identifier.
+     * @param defaultValue The value to return if the setting isn't set.
+     *
+     * @return Returns the setting's value.
+     */
+    public int get(final int id, final int defaultValue) {
+        final Integer value = _values.get(Integer.valueOf(id));
+        return (null==value) ? defaultValue : value.intValue();
+    }
+
+
+    /**
+     * Encode the settings as a SETTINGS frame payload.
+     *
+     * @return The payload.
+     */
+    public byte[] toPayload() {
+        final byte[] payload = new byte[6*_values.size()];
+        int i = 0;
+        for (final Map.Entry<Integer, Integer> e : _values.entrySet()) {
+            payload[i]   = (byte) (e.getKey().intValue() >>> 8);
+            payload[i+1] = (byte) e.getKey().intValue();
+            Frame.int32(payload, i+2, e.getValue().intValue());
+            i += 6;
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,393 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import com.johnstok.http.HttpException;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.http2.hpack.HeaderField;
+import com.johnstok.http.sync.Request;
+
+
+/**
+ * A single request/response exchange on an HTTP/2 connection.
+ *
+ * <p>Inbound DATA is queued by the connection's reader thread and consumed
+ * by the handler through {@link #getInput()}; stream-level WINDOW_UPDATE
+ * frames are sent once half the receive window has been read, so a slow
+ * handler holds back its client rather than buffering without bound.
+ *
+ * @author Keith Webster Johnston.
+ */
+final class Stream
+    implements
+        Runnable {
+
+    private static final List<HeaderField> CONTINUE =
+        Collections.singletonList(
+            new HeaderField(":status", String.valueOf(Status.CONTINUE.getCode()))); //$NON-NLS-1$
+
+    private final Connection        _connection;
+    private final int               _id;
+    private final int               _initialWindow;
+    private final Input             _input = new Input();
+    private final HTTP2Response     _response;
+    private       Request           _request;
+
+    // Inbound state, guarded by this.
+    private final ArrayDeque<byte[]> _chunks = new ArrayDeque<byte[]>();
+    private int                      _chunkOffset;
+    private int                      _receiveWindow;
+    private int                      _unacknowledged;
+    private long                     _expectedLength = -1;
+    private long                     _receivedLength;
+    private boolean                  _remoteClosed;
+    private boolean                  _expectContinue;
+    private ErrorCode                _reset;
+
+    // Outbound window, guarded by the connection's flow monitor.
+    long _sendWindow;
+
+
+    /**
+     * Constructor.
+     *
+     * @param connection    The owning connection.
+     * @param id            The stream identifier.
+     * @param sendWindow    The initial send window.
+     * @param receiveWindow The initial receive window.
+     */
+    Stream(final Connection connection,
+           final int id,
+           final long sendWindow,
+           final int receiveWindow) {
+        _connection = connection;
+        _id = id;
+        _sendWindow = sendWindow;
+        _initialWindow = receiveWindow;
+        _receiveWindow = receiveWindow;
+        _response = new HTTP2Response(this);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the stream identifier.
+     */
+    int getId() {
+        return _id;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the request body.
+     */
+    InputStream getInput() {
+        return _input;
+    }
+
+
+    /**
+     * Mutator.
+     *
+     * @param request        The request received on this stream.
+     * @param expectedLength The declared content length; -1 if unknown.
+     * @param expectContinue True if the client awaits 100 (Continue).
+     */
+    void setRequest(final Request request,
+                    final long expectedLength,
+                    final boolean expectContinue) {
+        _request = request;
+        _expectedLength = expectedLength;
+        _expectContinue = expectContinue;
+    }
+
+
+    /**
+     * Queue DATA received from the peer.
+     *
+     * @param payload   The buffer holding the data.
+     * @param offset    The offset of the data in the buffer.
+     * @param length    The number of data bytes.
+     * @param flowLength The frame's size for flow control, including padding.
+     * @param endStream True if the frame ended the stream.
+     *
+     * @throws HTTP2Exception If the peer violated flow control or sent data
+     *  after ending the stream.
+     */
+    @Specification(name="rfc-7540", section="6.9")
+    void receive(final byte[] payload,
+                 final int offset,
+                 final int length,
+                 final int flowLength,
+                 final boolean endStream) throws IOException {
+        int credit = 0;
+        synchronized (this) {
+            if (_remoteClosed) {
+                throw new HTTP2Exception(
+                    ErrorCode.STREAM_CLOSED, _id, "Data after end of stream."); //$NON-NLS-1$
+            }
+            if (flowLength>_receiveWindow) {
+                throw new HTTP2Exception(
+                    ErrorCode.FLOW_CONTROL_ERROR, _id, "Receive window exceeded."); //$NON-NLS-1$
+            }
+            _receiveWindow -= flowLength;
+            _receivedLength += length;
+            if (0<length && null==_reset) {
+                final byte[] chunk = new byte[length];
+                System.arraycopy(payload, offset, chunk, 0, length);
+                _chunks.add(chunk);
+            }
+            _unacknowledged += flowLength-length; // Padding is consumed now.
+            credit = credit();
+            if (endStream) {
+                _remoteClosed = true;
+                if (0<=_expectedLength && _expectedLength!=_receivedLength) {
+                    throw new HTTP2Exception(
+                        ErrorCode.PROTOCOL_ERROR, _id, "Content length mismatch."); //$NON-NLS-1$
+                }
+            }
+            notifyAll();
+        }
+        if (0<credit) { _connection.windowUpdate(_id, credit); }
+    }
+
+
+    /**
+     * Mark the inbound half of the stream as closed.
+     */
+    synchronized void endOfStream() {
+        _remoteClosed = true;
+        notifyAll();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the peer has finished sending.
+     */
+    synchronized boolean isRemoteClosed() {
+        return _remoteClosed;
+    }
+
+
+    /**
+     * Abandon the stream, waking any blocked readers and writers.
+     *
+     * @param error The reason for the reset.
+     *
+     * @return True if the stream was not already reset.
+     */
+    boolean reset(final ErrorCode error) {
+        final boolean first;
+        synchronized (this) {
+            first = (null==_reset);
+            if (first) { _reset = error; }
+            _chunks.clear();
+            notifyAll();
+        }
+        _connection.wake();
+        return first;
+    }
+
+
+    /**
+     * Check whether the stream has been reset.
+     *
+     * @throws IOException If the stream was reset.
+     */
+    synchronized void checkReset() throws IOException {
+        if (null!=_reset) {
+            throw new IOException("Stream reset: "+_reset); //$NON-NLS-1$
+        }
+    }
+
+
+    /**
+     * Send response headers.
+     *
+     * @param fields    The header fields.
+     * @param endStream True if no body follows.
+     *
+     * @throws IOException If the stream was reset or the connection failed.
+     */
+    void headers(final List<HeaderField> fields,
+                 final boolean endStream) throws IOException {
+        checkReset();
+        _connection.headers(this, fields, endStream);
+    }
+
+
+    /**
+     * Send response data, waiting for flow control credit as required.
+     *
+     * @param b         The buffer holding the data.
+     * @param offset    The offset of the data in the buffer.
+     * @param length    The number of bytes to send.
+     * @param endStream True if this is the last of the body.
+     *
+     * @throws IOException If the stream was reset or the connection failed.
+     */
+    void data(final byte[] b,
+              final int offset,
+              final int length,
+              final boolean endStream) throws IOException {
+        _connection.data(this, b, offset, length, endStream);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the largest DATA payload the peer accepts.
+     */
+    int getMaxFrameSize() {
+        return _connection.getPeerMaxFrameSize();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        try {
+            try {
+                _connection.getHandler().handle(_request, _response);
+                _response.finish();
+            } catch (final HttpException e) {
+                if (!_response.error(e.getStatus())) { throw e; }
+            } catch (final IOException e) {
+                checkReset();   // A reset stream has nothing left to send.
+                if (!_response.error(Status.INTERNAL_SERVER_ERROR)) { throw e; }
+            } catch (final RuntimeException e) {
+                if (!_response.error(Status.INTERNAL_SERVER_ERROR)) { throw e; }
+            }
+            if (!isRemoteClosed()) {
+                // Stop the client sending a body nobody will read.
+                _connection.reset(this, ErrorCode.NO_ERROR);
+            }
+        } catch (final Exception e) {
+            _connection.reset(this, ErrorCode.INTERNAL_ERROR);
+        } finally {
+            _connection.closed(this);
+        }
+    }
+
+
+    /*
+     * The interim response is sent on the first read of the body, so a
+     * request rejected without reading it is never sent.
+     */
+    @Specification(name="rfc-7540", section="8.1")
+    private void sendContinue() throws IOException {
+        synchronized (this) {
+            if (!_expectContinue) { return; }
+            _expectContinue = false;
+            if (_remoteClosed) { return; }
+        }
+        headers(CONTINUE, false);
+    }
+
+
+    /*
+     * Acknowledge consumed bytes once half the window has been read.
+     * Callers must hold this stream's monitor.
+     */
+    private int credit() {
+        if (_remoteClosed || null!=_reset || _unacknowledged<_initialWindow/2) {
+            return 0;
+        }
+        final int credit = _unacknowledged;
+        _unacknowledged = 0;
+        _receiveWindow += credit;
+        return credit;
+    }
+
+
+    /**
+     * The request body.
+     */
+    private final class Input
+        extends
+            InputStream {
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return (0>read(b, 0, 1)) ? -1 : b[0] & 0xff;
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b,
+                        final int off,
+                        final int len) throws IOException {
+            if (0==len) { return 0; }
+            sendContinue();
+            final int count;
+            final int credit;
+            synchronized (Stream.this) {
+                while (_chunks.isEmpty() && !_remoteClosed && null==_reset) {
+                    try {
+                        Stream.this.wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                checkReset();
+                if (_chunks.isEmpty()) { return -1; }
+
+                final byte[] chunk = _chunks.peek();
+                count = Math.min(len, chunk.length-_chunkOffset);
+                System.arraycopy(chunk, _chunkOffset, b, off, count);
+                _chunkOffset += count;
+                if (_chunkOffset==chunk.length) {
+                    _chunks.remove();
+                    _chunkOffset = 0;
+                }
+                _unacknowledged += count;
+                credit = credit();
+            }
+            if (0<credit) { _connection.windowUpdate(_id, credit); }
+            return count;
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public int available() {
+            synchronized (Stream.this) {
+                return (_chunks.isEmpty()) ? 0 : _chunks.peek().length-_chunkOffset;
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import com.johnstok.http.Specification;
+
+
+/**
+ * Decodes HPACK header blocks.
+ *
+ * <p>A decoder holds the dynamic table for one direction of one connection,
+ * so header blocks must be decoded in the order they were received.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7541", section="3")
+public class HPACKDecoder {
+
+    private final HeaderTable _table;
+    private final int         _maxHeaderListSize;
+    private int               _maxTableSize;
+
+    private byte[] _in;
+    private int    _pos;
+    private int    _end;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxTableSize      The maximum dynamic table size the encoder may
+     *  use; sent to the peer as SETTINGS_HEADER_TABLE_SIZE.
+     * @param maxHeaderListSize The maximum size of a decoded header list.
+     */
+    public HPACKDecoder(final int maxTableSize, final int maxHeaderListSize) {
+        _table = new HeaderTable(maxTableSize);
+        _maxTableSize = maxTableSize;
+        _maxHeaderListSize = maxHeaderListSize;
+    }
+
+
+    /**
+     * Decode a header block.
+     *
+     * <p>If the decoded list exceeds the maximum header list size the whole
+     * block is still processed, so the dynamic table stays in step with the
+     * encoder, but an {@link HeaderListSizeException} is thrown at the end.
+     *
+     * @param block  The buffer holding the block.
+     * @param offset The offset of the block in the buffer.
+     * @param length The length of the block.
+     *
+     * @return The decoded header fields, in order.
+     *
+     * @throws HPACKException If the block is invalid.
+     */
+    public List<HeaderField> decode(final byte[] block,
+                                    final int offset,
+                                    final int length) throws HPACKException {
+        _in = block;
+        _pos = offset;
+        _end = offset+length;
+        final List<HeaderField> fields = new ArrayList<HeaderField>();
+        long listSize = 0;
+        boolean first = true;
+        try {
+            while (_pos<_end) {
+                final int b = _in[_pos] & 0xff;
+                final HeaderField field;
+                if (0!=(b & 0x80)) {                  // Indexed.
+                    final int index = integer(7);
+                    if (0==index) { throw new HPACKException("Index 0."); } //$NON-NLS-1$
+                    field = _table.get(index);
+                } else if (0!=(b & 0x40)) {           // Incremental indexing.
+                    field = literal(6);
+                    _table.add(field);
+                } else if (0!=(b & 0x20)) {           // Table size update.
+                    if (!first) {
+                        throw new HPACKException("Late table size update."); //$NON-NLS-1$
+                    }
+                    final int size = integer(5);
+                    if (size>_maxTableSize) {
+                        throw new HPACKException("Table size exceeded."); //$NON-NLS-1$
+                    }
+                    _table.setMaxSize(size);
+                    continue;
+                } else {                              // Without/never indexed.
+                    field = literal(4);
+                }
+                first = false;
+                listSize += field.size();
+                if (listSize<=_maxHeaderListSize) { fields.add(field); }
+            }
+        } finally {
+            _in = null;
+        }
+        if (listSize>_maxHeaderListSize) { throw new HeaderListSizeException(); }
+        return fields;
+    }
+
+
+    /**
+     * Change the maximum dynamic table size the encoder may use.
+     *
+     * <p>Takes effect once the peer acknowledges the corresponding setting.
+     *
+     * @param maxTableSize The new maximum size.
+     */
+    public void setMaxTableSize(final int maxTableSize) {
+        _maxTableSize = maxTableSize;
+        if (_table.getMaxSize()>maxTableSize) {
+            _table.setMaxSize(maxTableSize);
+        }
+    }
+
+
+    private HeaderField literal(final int prefix) throws HPACKException {
+        final int index = integer(prefix);
+        final String name = (0==index) ? string() : _table.get(index).getName();
+        return new HeaderField(name, string());
+    }
+
+
+    @Specification(name="rfc-7541", section="5.2")
+    private String string() throws HPACKException {
+        if (_pos>=_end) { throw truncated(); }
+        final boolean huffman = 0!=(_in[_pos] & 0x80);
+        final int length = integer(7);
+        if (length>_end-_pos) { throw truncated(); }
+        final int start = _pos;
+        _pos += length;
+        return
+            (huffman)
+                ? new String(
+                    Huffman.decode(_in, start, length),
+                    StandardCharsets.ISO_8859_1)
+                : new String(_in, start, length, StandardCharsets.ISO_8859_1);
+    }
+
+
+    @Specification(name="rfc-7541", section="5.1")
+    private int integer(final int prefix) throws HPACKException {
+        final int mask = (1<<prefix)-1;
+        long value = _in[_pos++] & mask;
+        if (mask>value) { return (int) value; }
+        int shift = 0;
+        int b;
+        do {
+            if (_pos>=_end) { throw truncated(); }
+            b = _in[_pos++] & 0xff;
+            value += (long) (b & 0x7f) << shift;
+            shift += 7;
+            if (Integer.MAX_VALUE<value) {
+                throw new HPACKException("Integer overflow."); //$NON-NLS-1$
+            }
+        } while (0!=(b & 0x80));
+        return (int) value;
+    }
+
+
+    private static HPACKException truncated() {
+        return new HPACKException("Truncated block."); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Signals a header list larger than the decoder accepts.
+     *
+     * <p>The decoder remains usable.
+     */
+    public static class HeaderListSizeException
+        extends
+            HPACKException {
+
+        /**
+         * Constructor.
+         */
+        public HeaderListSizeException() {
+            super("Header list too large."); //$NON-NLS-1$
+        }
+    }
+}
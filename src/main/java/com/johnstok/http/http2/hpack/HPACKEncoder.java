@@ -0,0 +1,176 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import com.johnstok.http.Specification;
+
+
+/**
+ * Encodes HPACK header blocks.
+ *
+ * <p>Fields already in the table are sent as indices; other fields are
+ * added to the dynamic table unless they are sensitive or too large.
+ * Authorization headers and short cookies are never indexed. Strings are
+ * Huffman coded when that is shorter.
+ *
+ * <p>An encoder holds the dynamic table for one direction of one
+ * connection, so header blocks must be sent in the order they were encoded.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7541", section="3")
+public class HPACKEncoder {
+
+    /** The table size a decoder allows until told otherwise. */
+    public static final int DEFAULT_TABLE_SIZE = 4096;
+
+    private final HeaderTable _table;
+    private final int         _limit;
+    private int               _pendingUpdate = -1;
+    private int               _minUpdate = Integer.MAX_VALUE;
+
+
+    /**
+     * Constructor.
+     *
+     * @param limit The largest dynamic table the encoder will use, whatever
+     *  the peer allows.
+     */
+    public HPACKEncoder(final int limit) {
+        _limit = limit;
+        _table = new HeaderTable(Math.min(limit, DEFAULT_TABLE_SIZE));
+        if (DEFAULT_TABLE_SIZE>limit) { _pendingUpdate = limit; }
+    }
+
+
+    /**
+     * Apply the peer's SETTINGS_HEADER_TABLE_SIZE.
+     *
+     * <p>The change is signalled at the start of the next header block.
+     *
+     * @param peerMaxSize The maximum table size the peer's decoder allows.
+     */
+    @Specification(name="rfc-7541", section="4.2")
+    public void setMaxTableSize(final int peerMaxSize) {
+        final int size = Math.min(_limit, peerMaxSize);
+        _minUpdate = Math.min(_minUpdate, size);
+        _pendingUpdate = size;
+        _table.setMaxSize(size);
+    }
+
+
+    /**
+     * Encode a header block.
+     *
+     * @param fields The fields to encode.
+     *
+     * @return The header block.
+     */
+    public byte[] encode(final List<HeaderField> fields) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        if (0<=_pendingUpdate) {
+            // Signal the smallest size used since the last block, then the
+            // current one, so the decoder evicts the same entries.
+            if (_minUpdate<_pendingUpdate) { integer(out, 0x20, 5, _minUpdate); }
+            integer(out, 0x20, 5, _pendingUpdate);
+            _pendingUpdate = -1;
+            _minUpdate = Integer.MAX_VALUE;
+        }
+        for (final HeaderField field : fields) { encode(field, out); }
+        return out.toByteArray();
+    }
+
+
+    private void encode(final HeaderField field,
+                        final ByteArrayOutputStream out) {
+        final int found = _table.find(field);
+        if (0<found) {
+            integer(out, 0x80, 7, found);
+            return;
+        }
+        final int nameIndex = -found;
+        if (isSensitive(field)) {
+            literal(out, 0x10, 4, nameIndex, field);
+        } else if (field.size()>(_table.getMaxSize()*3)/4) {
+            literal(out, 0x00, 4, nameIndex, field);
+        } else {
+            literal(out, 0x40, 6, nameIndex, field);
+            _table.add(field);
+        }
+    }
+
+
+    @Specification(name="rfc-7541", section="7.1.3")
+    private static boolean isSensitive(final HeaderField field) {
+        final String name = field.getName();
+        return "authorization".equals(name)                     //$NON-NLS-1$
+            || "proxy-authorization".equals(name)               //$NON-NLS-1$
+            || (("cookie".equals(name) || "set-cookie".equals(name)) //$NON-NLS-1$ //$NON-NLS-2$
+                && 20>field.getValue().length());
+    }
+
+
+    private static void literal(final ByteArrayOutputStream out,
+                                final int pattern,
+                                final int prefix,
+                                final int nameIndex,
+                                final HeaderField field) {
+        integer(out, pattern, prefix, nameIndex);
+        if (0==nameIndex) { string(out, field.getName()); }
+        string(out, field.getValue());
+    }
+
+
+    private static void string(final ByteArrayOutputStream out,
+                               final String s) {
+        final byte[] octets = s.getBytes(StandardCharsets.ISO_8859_1);
+        final int huffman = Huffman.encodedLength(octets);
+        if (huffman<octets.length) {
+            integer(out, 0x80, 7, huffman);
+            Huffman.encode(octets, out);
+        } else {
+            integer(out, 0x00, 7, octets.length);
+            out.write(octets, 0, octets.length);
+        }
+    }
+
+
+    @Specification(name="rfc-7541", section="5.1")
+    private static void integer(final ByteArrayOutputStream out,
+                                final int pattern,
+                                final int prefix,
+                                final int value) {
+        final int mask = (1<<prefix)-1;
+        if (value<mask) {
+            out.write(pattern | value);
+            return;
+        }
+        out.write(pattern | mask);
+        int remainder = value-mask;
+        while (0x80<=remainder) {
+            out.write((remainder & 0x7f) | 0x80);
+            remainder >>>= 7;
+        }
+        out.write(remainder);
+    }
+}
@@ -0,0 +1,45 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import java.io.IOException;
+
+
+/**
+ * Signals a header block that can't be decoded.
+ *
+ * <p>A decoding error leaves the decoder's dynamic table in an unknown state
+ * and so is fatal to the connection.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class HPACKException
+    extends
+        IOException {
+
+    /**
+     * Constructor.
+     *
+     * @param message A description of the error.
+     */
+    public HPACKException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,106 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import java.util.Objects;
+
+
+/**
+ * A header field: a name-value pair.
+ *
+ * <p>Names and values are octet strings, held as ISO-8859-1 strings.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class HeaderField {
+
+    /** The per-entry overhead counted towards a table's size. */
+    public static final int OVERHEAD = 32;
+
+    private final String _name;
+    private final String _value;
+
+
+    /**
+     * Constructor.
+     *
+     * @param name  The field name.
+     * @param value The field value.
+     */
+    public HeaderField(final String name, final String value) {
+        _name = Objects.requireNonNull(name);
+        _value = Objects.requireNonNull(value);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the name.
+     */
+    public String getName() {
+        return _name;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the value.
+     */
+    public String getValue() {
+        return _value;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the size of the field, as counted towards table and
+     *  header list sizes.
+     */
+    public int size() {
+        return _name.length()+_value.length()+OVERHEAD;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return 31*_name.hashCode()+_value.hashCode();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this==obj) { return true; }
+        if (!(obj instanceof HeaderField)) { return false; }
+        final HeaderField other = (HeaderField) obj;
+        return _name.equals(other._name) && _value.equals(other._value);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return _name+": "+_value;                               //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,260 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import java.util.HashMap;
+import java.util.Map;
+import com.johnstok.http.Specification;
+
+
+/**
+ * The HPACK index address space: the static table followed by a dynamic
+ * table.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7541", section="2.3")
+final class HeaderTable {
+
+    @Specification(name="rfc-7541", section="A")
+    static final HeaderField[] STATIC = {
+        null,
+        new HeaderField(":authority", ""),
+        new HeaderField(":method", "GET"),
+        new HeaderField(":method", "POST"),
+        new HeaderField(":path", "/"),
+        new HeaderField(":path", "/index.html"),
+        new HeaderField(":scheme", "http"),
+        new HeaderField(":scheme", "https"),
+        new HeaderField(":status", "200"),
+        new HeaderField(":status", "204"),
+        new HeaderField(":status", "206"),
+        new HeaderField(":status", "304"),
+        new HeaderField(":status", "400"),
+        new HeaderField(":status", "404"),
+        new HeaderField(":status", "500"),
+        new HeaderField("accept-charset", ""),
+        new HeaderField("accept-encoding", "gzip, deflate"),
+        new HeaderField("accept-language", ""),
+        new HeaderField("accept-ranges", ""),
+        new HeaderField("accept", ""),
+        new HeaderField("access-control-allow-origin", ""),
+        new HeaderField("age", ""),
+        new HeaderField("allow", ""),
+        new HeaderField("authorization", ""),
+        new HeaderField("cache-control", ""),
+        new HeaderField("content-disposition", ""),
+        new HeaderField("content-encoding", ""),
+        new HeaderField("content-language", ""),
+        new HeaderField("content-length", ""),
+        new HeaderField("content-location", ""),
+        new HeaderField("content-range", ""),
+        new HeaderField("content-type", ""),
+        new HeaderField("cookie", ""),
+        new HeaderField("date", ""),
+        new HeaderField("etag", ""),
+        new HeaderField("expect", ""),
+        new HeaderField("expires", ""),
+        new HeaderField("from", ""),
+        new HeaderField("host", ""),
+        new HeaderField("if-match", ""),
+        new HeaderField("if-modified-since", ""),
+        new HeaderField("if-none-match", ""),
+        new HeaderField("if-range", ""),
+        new HeaderField("if-unmodified-since", ""),
+        new HeaderField("last-modified", ""),
+        new HeaderField("link", ""),
+        new HeaderField("location", ""),
+        new HeaderField("max-forwards", ""),
+        new HeaderField("proxy-authenticate", ""),
+        new HeaderField("proxy-authorization", ""),
+        new HeaderField("range", ""),
+        new HeaderField("referer", ""),
+        new HeaderField("refresh", ""),
+        new HeaderField("retry-after", ""),
+        new HeaderField("server", ""),
+        new HeaderField("set-cookie", ""),
+        new HeaderField("strict-transport-security", ""),
+        new HeaderField("transfer-encoding", ""),
+        new HeaderField("user-agent", ""),
+        new HeaderField("vary", ""),
+        new HeaderField("via", ""),
+        new HeaderField("www-authenticate", "")
+    };
+
+    static final int STATIC_LENGTH = STATIC.length-1;
+
+    /* Lowest static index for each name, and for each name-value pair. */
+    private static final Map<String, Integer>      STATIC_NAMES =
+        new HashMap<String, Integer>();
+    private static final Map<HeaderField, Integer> STATIC_FIELDS =
+        new HashMap<HeaderField, Integer>();
+    static {
+        for (int i=STATIC_LENGTH; i>0; i--) {
+            STATIC_NAMES.put(STATIC[i].getName(), Integer.valueOf(i));
+            STATIC_FIELDS.put(STATIC[i], Integer.valueOf(i));
+        }
+    }
+
+    private HeaderField[] _entries = new HeaderField[16]; // Ring buffer.
+    private int           _head;   // Index of the newest entry.
+    private int           _length; // Number of entries.
+    private int           _size;   // Sum of entry sizes.
+    private int           _maxSize;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The initial maximum size of the dynamic table.
+     */
+    HeaderTable(final int maxSize) {
+        _maxSize = maxSize;
+    }
+
+
+    /**
+     * Look up an entry.
+     *
+     * @param index The 1-based index into the combined address space.
+     *
+     * @return The entry.
+     *
+     * @throws HPACKException If the index is out of range.
+     */
+    HeaderField get(final int index) throws HPACKException {
+        if (0<index && STATIC_LENGTH>=index) { return STATIC[index]; }
+        final int dynamic = index-STATIC_LENGTH-1;
+        if (0>dynamic || _length<=dynamic) {
+            throw new HPACKException("Invalid index: "+index); //$NON-NLS-1$
+        }
+        return _entries[(_head-dynamic+_entries.length) % _entries.length];
+    }
+
+
+    /**
+     * Find an entry.
+     *
+     * @param field The field to find.
+     *
+     * @return The index of an entry with the field's name and value; the
+     *  negated index of an entry with the field's name; or 0 if neither is
+     *  present.
+     */
+    int find(final HeaderField field) {
+        final Integer exact = STATIC_FIELDS.get(field);
+        if (null!=exact) { return exact.intValue(); }
+        int nameIndex = 0;
+        for (int i=0; i<_length; i++) {
+            final HeaderField e =
+                _entries[(_head-i+_entries.length) % _entries.length];
+            if (e.getName().equals(field.getName())) {
+                if (e.getValue().equals(field.getValue())) {
+                    return STATIC_LENGTH+1+i;
+                }
+                if (0==nameIndex) { nameIndex = -(STATIC_LENGTH+1+i); }
+            }
+        }
+        final Integer name = STATIC_NAMES.get(field.getName());
+        return (null!=name) ? -name.intValue() : nameIndex;
+    }
+
+
+    /**
+     * Add an entry to the dynamic table, evicting older entries as required.
+     *
+     * @param field The field to add.
+     */
+    @Specification(name="rfc-7541", section="4.4")
+    void add(final HeaderField field) {
+        final int size = field.size();
+        if (size>_maxSize) { // Empties the table.
+            evict(0);
+            return;
+        }
+        evict(_maxSize-size);
+        if (_length==_entries.length) {
+            final HeaderField[] grown = new HeaderField[2*_entries.length];
+            for (int i=0; i<_length; i++) {
+                grown[_length-1-i] =
+                    _entries[(_head-i+_entries.length) % _entries.length];
+            }
+            _entries = grown;
+            _head = _length-1;
+        }
+        _head = (_head+1) % _entries.length;
+        _entries[_head] = field;
+        _length++;
+        _size += size;
+    }
+
+
+    /**
+     * Change the maximum size of the dynamic table.
+     *
+     * @param maxSize The new maximum size.
+     */
+    @Specification(name="rfc-7541", section="4.3")
+    void setMaxSize(final int maxSize) {
+        _maxSize = maxSize;
+        evict(maxSize);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the maximum size of the dynamic table.
+     */
+    int getMaxSize() {
+        return _maxSize;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the current size of the dynamic table.
+     */
+    int getSize() {
+        return _size;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of entries in the dynamic table.
+     */
+    int getLength() {
+        return _length;
+    }
+
+
+    private void evict(final int targetSize) {
+        while (_size>targetSize) {
+            final int oldest =
+                (_head-_length+1+_entries.length) % _entries.length;
+            _size -= _entries[oldest].size();
+            _entries[oldest] = null;
+            _length--;
+        }
+    }
+}
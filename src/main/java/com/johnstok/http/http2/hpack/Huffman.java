@@ -0,0 +1,190 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import com.johnstok.http.Specification;
+
+
+/**
+ * The HPACK static Huffman code.
+ *
+ * <p>The code is canonical, so it is generated from the table of code
+ * lengths in symbol order rather than transcribed in full.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-7541", section="5.2")
+public final class Huffman {
+
+    private static final int EOS = 256;
+
+    /* Code lengths, in bits, for symbols 0-255 and EOS. */
+    @Specification(name="rfc-7541", section="B")
+    private static final byte[] LENGTHS = {
+        13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+        28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+         6, 10, 10, 12, 13,  6,  8, 11, 10, 10,  8, 11,  8,  6,  6,  6,
+         5,  5,  5,  6,  6,  6,  6,  6,  6,  6,  7,  8, 15,  6, 12, 10,
+        13,  6,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,
+         7,  7,  7,  7,  7,  7,  7,  7,  8,  7,  8, 13, 19, 13, 14,  6,
+        15,  5,  6,  5,  6,  5,  6,  6,  6,  5,  7,  7,  6,  6,  6,  5,
+         6,  7,  6,  5,  5,  6,  7,  7,  7,  7,  7, 15, 11, 14, 13, 28,
+        20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+        24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+        22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+        21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+        26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+        19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+        20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+        26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+        30
+    };
+
+    private static final int[] CODES = new int[LENGTHS.length];
+
+    /*
+     * Decoding tree: node n has children at [2n] and [2n+1]; a negative
+     * entry is a leaf holding ~symbol, zero is unassigned.
+     */
+    private static final int[] TREE;
+
+    static {
+        final Integer[] order = new Integer[LENGTHS.length];
+        for (int i=0; i<order.length; i++) { order[i] = Integer.valueOf(i); }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer a, final Integer b) {
+                final int byLength = LENGTHS[a.intValue()]-LENGTHS[b.intValue()];
+                return (0!=byLength) ? byLength : a.intValue()-b.intValue();
+            }
+        });
+        int code = 0;
+        int length = LENGTHS[order[0].intValue()];
+        for (final Integer symbol : order) {
+            final int l = LENGTHS[symbol.intValue()];
+            code <<= (l-length);
+            length = l;
+            CODES[symbol.intValue()] = code++;
+        }
+
+        final int[] tree = new int[2*LENGTHS.length];
+        int nodes = 1;
+        for (int symbol=0; symbol<LENGTHS.length; symbol++) {
+            int node = 0;
+            for (int bit=LENGTHS[symbol]-1; bit>0; bit--) {
+                final int slot = 2*node + ((CODES[symbol]>>>bit) & 1);
+                if (0==tree[slot]) { tree[slot] = nodes++; }
+                node = tree[slot];
+            }
+            tree[2*node + (CODES[symbol] & 1)] = ~symbol;
+        }
+        TREE = tree;
+    }
+
+
+    private Huffman() { super(); }
+
+
+    /**
+     * Calculate the encoded length of a string.
+     *
+     * @param octets The string to encode.
+     *
+     * @return The length of the encoded string, in bytes.
+     */
+    public static int encodedLength(final byte[] octets) {
+        long bits = 0;
+        for (final byte b : octets) { bits += LENGTHS[b & 0xff]; }
+        return (int) ((bits+7) >>> 3);
+    }
+
+
+    /**
+     * Encode a string.
+     *
+     * @param octets The string to encode.
+     * @param out    The stream to write the encoded string to.
+     */
+    public static void encode(final byte[] octets,
+                              final ByteArrayOutputStream out) {
+        long buffer = 0;
+        int bits = 0;
+        for (final byte b : octets) {
+            final int symbol = b & 0xff;
+            buffer = (buffer << LENGTHS[symbol]) | CODES[symbol];
+            bits += LENGTHS[symbol];
+            while (8<=bits) {
+                bits -= 8;
+                out.write((int) (buffer >>> bits));
+            }
+        }
+        if (0<bits) {
+            // Pad with the most significant bits of EOS, i.e. ones.
+            out.write((int) ((buffer << (8-bits)) | (0xff >>> bits)));
+        }
+    }
+
+
+    /**
+     * Decode a string.
+     *
+     * @param in     The buffer holding the encoded string.
+     * @param offset The offset of the string in the buffer.
+     * @param length The length of the encoded string.
+     *
+     * @return The decoded string.
+     *
+     * @throws HPACKException If the encoding is invalid.
+     */
+    public static byte[] decode(final byte[] in,
+                                final int offset,
+                                final int length) throws HPACKException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(2*length);
+        int node = 0;
+        int depth = 0;
+        boolean ones = true;
+        for (int i=offset; i<offset+length; i++) {
+            for (int bit=7; bit>=0; bit--) {
+                final int b = (in[i]>>>bit) & 1;
+                final int next = TREE[2*node+b];
+                ones &= (1==b);
+                depth++;
+                if (0>next) {
+                    final int symbol = ~next;
+                    if (EOS==symbol) { throw new HPACKException("EOS in string."); } //-NLS-1$
+                    out.write(symbol);
+                    node = 0;
+                    depth = 0;
+                    ones = true;
+                } else if (0==next) {
+                    throw new HPACKException("Invalid code."); //-NLS-1$
+                } else {
+                    node = next;
+                }
+            }
+        }
+        // Padding must be a prefix of EOS no longer than 7 bits.
+        if (7<depth || !ones) { throw new HPACKException("Invalid padding."); } //-NLS-1$
+        return out.toByteArray();
+    }
+}
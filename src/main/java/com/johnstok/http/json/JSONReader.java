@@ -0,0 +1,601 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import com.johnstok.http.BufferPool;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+
+
+/**
+ * A pull parser for JSON text.
+ *
+ * <p>The input is decoded incrementally into a pooled buffer and exposed as
+ * a sequence of {@link Event}s, so a document of any size can be processed
+ * while holding only the current token in memory. Malformed input causes a
+ * {@link ClientHttpException} with status 400.
+ *
+ * <p>Readers are not thread-safe. Call {@link #close()} to return the
+ * reader's buffers to the pool; the underlying stream is not closed.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-8259")
+public class JSONReader
+    implements
+        AutoCloseable {
+
+    /** The maximum nesting depth of arrays and objects. */
+    public static final int MAX_DEPTH = 256;
+
+    /** The default maximum length, in chars, of a string or number. */
+    public static final int DEFAULT_MAX_TOKEN_LENGTH = 1024*1024;
+
+    /**
+     * A parser event.
+     */
+    public static enum Event {
+        /** The start of an object. */     START_OBJECT,
+        /** The end of an object. */       END_OBJECT,
+        /** The start of an array. */      START_ARRAY,
+        /** The end of an array. */        END_ARRAY,
+        /** An object member's name. */    NAME,
+        /** A string value. */             STRING,
+        /** A number value. */             NUMBER,
+        /** The literal true. */           TRUE,
+        /** The literal false. */          FALSE,
+        /** The literal null. */           NULL,
+        /** The end of the document. */    END
+    }
+
+    private static final int VALUE        = 0;
+    private static final int OBJECT_FIRST = 1;
+    private static final int OBJECT_NAME  = 2;
+    private static final int OBJECT_COLON = 3;
+    private static final int OBJECT_NEXT  = 4;
+    private static final int ARRAY_FIRST  = 5;
+    private static final int ARRAY_NEXT   = 6;
+    private static final int DONE         = 7;
+
+    private final InputStream    _in;
+    private final CharsetDecoder _decoder;
+    private final BufferPool     _pool;
+    private final int            _maxTokenLength;
+    private final StringBuilder  _token = new StringBuilder();
+    private final boolean[]      _objects = new boolean[MAX_DEPTH];
+    private byte[]               _byteArray;
+    private ByteBuffer           _bytes;
+    private char[]               _chars;
+    private int                  _pos;
+    private int                  _limit;
+    private boolean              _eof;
+    private boolean              _drained;
+    private int                  _depth;
+    private int                  _state = VALUE;
+    private Event                _event;
+
+
+    /**
+     * Constructor.
+     *
+     * @param in      The stream to read from.
+     * @param charset The character set used to decode the stream.
+     */
+    public JSONReader(final InputStream in, final Charset charset) {
+        this(in, charset, BufferPool.DEFAULT);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param in      The stream to read from.
+     * @param charset The character set used to decode the stream.
+     * @param pool    The pool from which buffers are taken.
+     */
+    public JSONReader(final InputStream in,
+                      final Charset charset,
+                      final BufferPool pool) {
+        this(in, charset, pool, DEFAULT_MAX_TOKEN_LENGTH);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param in             The stream to read from.
+     * @param charset        The character set used to decode the stream.
+     * @param pool           The pool from which buffers are taken.
+     * @param maxTokenLength The maximum length, in chars, of a string or
+     *  number; longer tokens are rejected as malformed.
+     */
+    public JSONReader(final InputStream in,
+                      final Charset charset,
+                      final BufferPool pool,
+                      final int maxTokenLength) {
+        _maxTokenLength = maxTokenLength;
+        _in = Objects.requireNonNull(in);
+        _decoder =
+            charset.newDecoder()
+                   .onMalformedInput(CodingErrorAction.REPORT)
+                   .onUnmappableCharacter(CodingErrorAction.REPORT);
+        _pool = Objects.requireNonNull(pool);
+        _byteArray = _pool.bytes();
+        _bytes = ByteBuffer.wrap(_byteArray);
+        _bytes.limit(0);
+        _chars = _pool.chars();
+    }
+
+
+    /**
+     * Advance to the next event.
+     *
+     * @return The next event; {@link Event#END} once the document has been
+     *  read.
+     *
+     * @throws IOException If reading from the stream fails.
+     */
+    public Event next() throws IOException {
+        _event = advance();
+        return _event;
+    }
+
+
+    private Event advance() throws IOException {
+        int c = nextNonWhitespace();
+        switch (_state) {
+            case VALUE:
+                return value(c);
+
+            case OBJECT_FIRST:
+                if ('}'==c) { return end(Event.END_OBJECT); }
+                return name(c);
+
+            case OBJECT_NAME:
+                return name(c);
+
+            case OBJECT_COLON:
+                if (':'!=c) { throw malformed(); }
+                return value(nextNonWhitespace());
+
+            case OBJECT_NEXT:
+                if ('}'==c) { return end(Event.END_OBJECT); }
+                if (','!=c) { throw malformed(); }
+                return name(nextNonWhitespace());
+
+            case ARRAY_FIRST:
+                if (']'==c) { return end(Event.END_ARRAY); }
+                return value(c);
+
+            case ARRAY_NEXT:
+                if (']'==c) { return end(Event.END_ARRAY); }
+                if (','!=c) { throw malformed(); }
+                return value(nextNonWhitespace());
+
+            default:
+                if (0<=c) { throw malformed(); }
+                return Event.END;
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the text of the current name, string or number.
+     */
+    public String getString() {
+        if (Event.NAME!=_event
+            && Event.STRING!=_event
+            && Event.NUMBER!=_event) {
+            throw new IllegalStateException(String.valueOf(_event));
+        }
+        return _token.toString();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the current number as a big decimal.
+     */
+    public BigDecimal getBigDecimal() {
+        return new BigDecimal(number());
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the current number as a long.
+     *
+     * @throws ArithmeticException If the number is not an integer in the
+     *  range of a long.
+     */
+    public long getLong() {
+        final String n = number();
+        for (int i=0; i<n.length(); i++) {
+            final char c = n.charAt(i);
+            if ('.'==c || 'e'==c || 'E'==c) {
+                return new BigDecimal(n).longValueExact();
+            }
+        }
+        try {
+            return Long.parseLong(n);
+        } catch (final NumberFormatException e) {
+            throw new ArithmeticException(n);
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the current number as a double.
+     */
+    public double getDouble() {
+        return Double.parseDouble(number());
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the current nesting depth.
+     */
+    public int getDepth() {
+        return _depth;
+    }
+
+
+    /**
+     * Skip the next value, including any nested values.
+     *
+     * <p>If the reader is positioned on a member name the member's value is
+     * skipped.
+     *
+     * @throws IOException If reading from the stream fails.
+     */
+    public void skipValue() throws IOException {
+        final Event e = next();
+        if (Event.START_OBJECT==e || Event.START_ARRAY==e) {
+            final int depth = _depth-1;
+            while (depth<_depth) { next(); }
+        } else if (Event.END_OBJECT==e
+                   || Event.END_ARRAY==e
+                   || Event.END==e) {
+            throw new IllegalStateException(String.valueOf(e));
+        }
+    }
+
+
+    /**
+     * Read the next value into memory.
+     *
+     * <p>Objects are returned as an insertion-ordered {@link Map}, arrays as
+     * a {@link List}, strings as a {@link String}, numbers as a
+     * {@link BigDecimal}, literals as a {@link Boolean} or null.
+     *
+     * @return The value.
+     *
+     * @throws IOException If reading from the stream fails.
+     */
+    public Object readValue() throws IOException {
+        return value(next());
+    }
+
+
+    /**
+     * Return this reader's buffers to the pool.
+     *
+     * <p>The underlying stream is not closed.
+     */
+    @Override
+    public void close() {
+        if (null==_chars) { return; }
+        _pool.release(_chars);
+        _pool.release(_byteArray);
+        _chars = null;
+        _byteArray = null;
+        _bytes = null;
+    }
+
+
+    private Object value(final Event e) throws IOException {
+        switch (e) {
+            case START_OBJECT:
+                final Map<String, Object> object =
+                    new LinkedHashMap<String, Object>();
+                while (Event.NAME==next()) {
+                    final String name = _token.toString();
+                    object.put(name, value(next()));
+                }
+                return object;
+
+            case START_ARRAY:
+                final List<Object> array = new ArrayList<Object>();
+                for (Event n=next(); Event.END_ARRAY!=n; n=next()) {
+                    array.add(value(n));
+                }
+                return array;
+
+            case STRING: return _token.toString();
+            case NUMBER: return getBigDecimal();
+            case TRUE:   return Boolean.TRUE;
+            case FALSE:  return Boolean.FALSE;
+            case NULL:   return null;
+            default:     throw new IllegalStateException(String.valueOf(e));
+        }
+    }
+
+
+    private Event value(final int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(true);
+                _state = OBJECT_FIRST;
+                return Event.START_OBJECT;
+
+            case '[':
+                push(false);
+                _state = ARRAY_FIRST;
+                return Event.START_ARRAY;
+
+            case '"':
+                readString();
+                return complete(Event.STRING);
+
+            case 't':
+                literal("rue");                                 //$NON-NLS-1$
+                return complete(Event.TRUE);
+
+            case 'f':
+                literal("alse");                                //$NON-NLS-1$
+                return complete(Event.FALSE);
+
+            case 'n':
+                literal("ull");                                 //$NON-NLS-1$
+                return complete(Event.NULL);
+
+            default:
+                if ('-'!=c && ('0'>c || '9'<c)) { throw malformed(); }
+                readNumber((char) c);
+                return complete(Event.NUMBER);
+        }
+    }
+
+
+    private void push(final boolean object) {
+        if (MAX_DEPTH==_depth) { throw malformed(); }
+        _objects[_depth++] = object;
+    }
+
+
+    private Event end(final Event e) {
+        _depth--;
+        return complete(e);
+    }
+
+
+    private Event complete(final Event e) {
+        if (0==_depth) {
+            _state = DONE;
+        } else {
+            _state = (_objects[_depth-1]) ? OBJECT_NEXT : ARRAY_NEXT;
+        }
+        return e;
+    }
+
+
+    private String number() {
+        if (Event.NUMBER!=_event) {
+            throw new IllegalStateException(String.valueOf(_event));
+        }
+        return _token.toString();
+    }
+
+
+    private Event name(final int c) throws IOException {
+        if ('"'!=c) { throw malformed(); }
+        readString();
+        _state = OBJECT_COLON;
+        return Event.NAME;
+    }
+
+
+    private void readString() throws IOException {
+        _token.setLength(0);
+        for (;;) {
+            if (_pos==_limit && !fill()) { throw malformed(); }
+            final int start = _pos;
+            char c = 0;
+            while (_pos<_limit) {
+                c = _chars[_pos];
+                if ('"'==c || '\\'==c || 0x20>c) { break; }
+                _pos++;
+            }
+            _token.append(_chars, start, _pos-start);
+            checkTokenLength();
+            if (_pos==_limit) { continue; }
+            _pos++;
+            if ('"'==c) { return; }
+            if ('\\'!=c) { throw malformed(); }
+            final int e = read();
+            switch (e) {
+                case '"':
+                case '\\':
+                case '/': _token.append((char) e); break;
+                case 'b': _token.append('\b'); break;
+                case 'f': _token.append('\f'); break;
+                case 'n': _token.append('\n'); break;
+                case 'r': _token.append('\r'); break;
+                case 't': _token.append('\t'); break;
+                case 'u':
+                    int u = 0;
+                    for (int i=0; i<4; i++) {
+                        final int digit = Character.digit(read(), 16);
+                        if (0>digit) { throw malformed(); }
+                        u = (u<<4) + digit;
+                    }
+                    _token.append((char) u);
+                    break;
+                default: throw malformed();
+            }
+        }
+    }
+
+
+    private void readNumber(final char first) throws IOException {
+        _token.setLength(0);
+        _token.append(first);
+        for (;;) {
+            if (_pos==_limit && !fill()) { break; }
+            final char c = _chars[_pos];
+            if (('0'<=c && '9'>=c)
+                || '.'==c || 'e'==c || 'E'==c || '+'==c || '-'==c) {
+                _token.append(c);
+                _pos++;
+                checkTokenLength();
+            } else {
+                break;
+            }
+        }
+        if (!isNumber(_token)) { throw malformed(); }
+    }
+
+
+    /*
+     * number = [ minus ] int [ frac ] [ exp ]
+     */
+    @Specification(name="rfc-8259", section="6")
+    private static boolean isNumber(final CharSequence n) {
+        final int length = n.length();
+        int i = 0;
+        if (i<length && '-'==n.charAt(i)) { i++; }
+        if (i<length && '0'==n.charAt(i)) {
+            i++;
+        } else {
+            final int start = i;
+            i = digits(n, i);
+            if (start==i) { return false; }
+        }
+        if (i<length && '.'==n.charAt(i)) {
+            final int start = ++i;
+            i = digits(n, i);
+            if (start==i) { return false; }
+        }
+        if (i<length && ('e'==n.charAt(i) || 'E'==n.charAt(i))) {
+            i++;
+            if (i<length && ('+'==n.charAt(i) || '-'==n.charAt(i))) { i++; }
+            final int start = i;
+            i = digits(n, i);
+            if (start==i) { return false; }
+        }
+        return i==length;
+    }
+
+
+    private static int digits(final CharSequence n, final int from) {
+        int i = from;
+        while (i<n.length() && '0'<=n.charAt(i) && '9'>=n.charAt(i)) { i++; }
+        return i;
+    }
+
+
+    private void literal(final String rest) throws IOException {
+        for (int i=0; i<rest.length(); i++) {
+            if (rest.charAt(i)!=read()) { throw malformed(); }
+        }
+    }
+
+
+    private int nextNonWhitespace() throws IOException {
+        for (;;) {
+            if (_pos==_limit && !fill()) { return -1; }
+            final char c = _chars[_pos++];
+            if (' '==c || '\t'==c || '\n'==c || '\r'==c) { continue; }
+            if ('\uFEFF'==c && VALUE==_state) { continue; } // Byte order mark.
+            return c;
+        }
+    }
+
+
+    private int read() throws IOException {
+        if (_pos==_limit && !fill()) { return -1; }
+        return _chars[_pos++];
+    }
+
+
+    private boolean fill() throws IOException {
+        if (null==_chars) { throw new IllegalStateException("Closed."); } //$NON-NLS-1$
+        if (_drained) { return false; }
+        final CharBuffer out = CharBuffer.wrap(_chars);
+        for (;;) {
+            final CoderResult result = _decoder.decode(_bytes, out, _eof);
+            if (result.isError()) { throw malformed(); }
+            if (0<out.position()) { break; }
+            if (_eof) {
+                _decoder.flush(out);
+                _drained = true;
+                break;
+            }
+            _bytes.compact();
+            final int read =
+                _in.read(_byteArray, _bytes.position(), _bytes.remaining());
+            if (0>read) {
+                _eof = true;
+            } else {
+                _bytes.position(_bytes.position()+read);
+            }
+            _bytes.flip();
+        }
+        _pos = 0;
+        _limit = out.position();
+        return 0<_limit;
+    }
+
+
+    /*
+     * Bound the memory held for a single token.
+     */
+    private void checkTokenLength() {
+        if (_token.length()>_maxTokenLength) { throw malformed(); }
+    }
+
+
+    private static ClientHttpException malformed() {
+        return new ClientHttpException(Status.BAD_REQUEST);
+    }
+}
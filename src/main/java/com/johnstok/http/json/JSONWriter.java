@@ -0,0 +1,468 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Map;
+import java.util.Objects;
+import com.johnstok.http.BufferPool;
+import com.johnstok.http.Specification;
+
+
+/**
+ * A streaming JSON emitter.
+ *
+ * <p>Output is encoded through pooled buffers and written to the stream as
+ * they fill, so a document of any size can be produced in constant memory.
+ * Calls are checked against the JSON grammar; an out of place call throws an
+ * {@link IllegalStateException}. When the charset is not a Unicode encoding
+ * all non-ASCII characters in strings are escaped.
+ *
+ * <p>Writers are not thread-safe. Call {@link #close()} to flush remaining
+ * output and return the writer's buffers to the pool; the underlying stream
+ * is not closed.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-8259")
+public class JSONWriter
+    implements
+        AutoCloseable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+    private final OutputStream   _out;
+    private final CharsetEncoder _encoder;
+    private final boolean        _ascii;
+    private final BufferPool     _pool;
+    private final boolean[]      _objects = new boolean[JSONReader.MAX_DEPTH];
+    private byte[]               _byteArray;
+    private ByteBuffer           _bytes;
+    private char[]               _chars;
+    private int                  _count;
+    private int                  _depth;
+    private boolean              _first;
+    private boolean              _named;
+    private boolean              _done;
+
+
+    /**
+     * Constructor.
+     *
+     * @param out     The stream to write to.
+     * @param charset The character set used to encode the output.
+     */
+    public JSONWriter(final OutputStream out, final Charset charset) {
+        this(out, charset, BufferPool.DEFAULT);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param out     The stream to write to.
+     * @param charset The character set used to encode the output.
+     * @param pool    The pool from which buffers are taken.
+     */
+    public JSONWriter(final OutputStream out,
+                      final Charset charset,
+                      final BufferPool pool) {
+        _out = Objects.requireNonNull(out);
+        _encoder =
+            charset.newEncoder()
+                   .onMalformedInput(CodingErrorAction.REPORT)
+                   .onUnmappableCharacter(CodingErrorAction.REPORT);
+        _ascii = !charset.name().startsWith("UTF-");            //$NON-NLS-1$
+        _pool = Objects.requireNonNull(pool);
+        _byteArray = _pool.bytes();
+        _bytes = ByteBuffer.wrap(_byteArray);
+        _chars = _pool.chars();
+    }
+
+
+    /**
+     * Start an object.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter beginObject() throws IOException {
+        return begin(true, '{');
+    }
+
+
+    /**
+     * End the current object.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter endObject() throws IOException {
+        return end(true, '}');
+    }
+
+
+    /**
+     * Start an array.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter beginArray() throws IOException {
+        return begin(false, '[');
+    }
+
+
+    /**
+     * End the current array.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter endArray() throws IOException {
+        return end(false, ']');
+    }
+
+
+    /**
+     * Write the name of the next member of the current object.
+     *
+     * @param name The member name.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter name(final String name) throws IOException {
+        if (0==_depth || !_objects[_depth-1] || _named) {
+            throw new IllegalStateException();
+        }
+        if (!_first) { append(','); }
+        _first = false;
+        string(Objects.requireNonNull(name));
+        append(':');
+        _named = true;
+        return this;
+    }
+
+
+    /**
+     * Write a string value.
+     *
+     * @param value The value to write; null writes a JSON null.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter value(final CharSequence value) throws IOException {
+        if (null==value) { return nullValue(); }
+        beforeValue();
+        string(value);
+        return afterValue();
+    }
+
+
+    /**
+     * Write a number value.
+     *
+     * @param value The value to write.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter value(final long value) throws IOException {
+        beforeValue();
+        append(Long.toString(value));
+        return afterValue();
+    }
+
+
+    /**
+     * Write a number value.
+     *
+     * @param value The value to write; must be finite.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter value(final double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(Double.toString(value));
+        }
+        beforeValue();
+        append(Double.toString(value));
+        return afterValue();
+    }
+
+
+    /**
+     * Write a number value.
+     *
+     * @param value The value to write; null writes a JSON null.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter value(final Number value) throws IOException {
+        if (null==value) { return nullValue(); }
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+        beforeValue();
+        append(value.toString());
+        return afterValue();
+    }
+
+
+    /**
+     * Write a boolean value.
+     *
+     * @param value The value to write.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter value(final boolean value) throws IOException {
+        beforeValue();
+        append((value) ? "true" : "false");           //$NON-NLS-1$ //$NON-NLS-2$
+        return afterValue();
+    }
+
+
+    /**
+     * Write a null value.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter nullValue() throws IOException {
+        beforeValue();
+        append("null");                                         //$NON-NLS-1$
+        return afterValue();
+    }
+
+
+    /**
+     * Write a value held in memory.
+     *
+     * <p>The inverse of {@link JSONReader#readValue()}: maps are written as
+     * objects, iterables and arrays as arrays, and character sequences,
+     * numbers, booleans and null as the corresponding JSON values.
+     *
+     * @param value The value to write.
+     *
+     * @return This writer.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public JSONWriter write(final Object value) throws IOException {
+        if (null==value) {
+            nullValue();
+        } else if (value instanceof CharSequence) {
+            value((CharSequence) value);
+        } else if (value instanceof Number) {
+            value((Number) value);
+        } else if (value instanceof Boolean) {
+            value(((Boolean) value).booleanValue());
+        } else if (value instanceof Map) {
+            beginObject();
+            for (final Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(e.getKey()));
+                write(e.getValue());
+            }
+            endObject();
+        } else if (value instanceof Iterable) {
+            beginArray();
+            for (final Object o : (Iterable<?>) value) { write(o); }
+            endArray();
+        } else if (value instanceof Object[]) {
+            beginArray();
+            for (final Object o : (Object[]) value) { write(o); }
+            endArray();
+        } else {
+            throw new IllegalArgumentException(value.getClass().getName());
+        }
+        return this;
+    }
+
+
+    /**
+     * Write buffered output to the stream and flush it.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public void flush() throws IOException {
+        encode(false);
+        drain();
+        _out.flush();
+    }
+
+
+    /**
+     * Write buffered output and return this writer's buffers to the pool.
+     *
+     * <p>The underlying stream is not closed.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (null==_chars) { return; }
+        try {
+            encode(true);
+            drain();
+        } finally {
+            _pool.release(_chars);
+            _pool.release(_byteArray);
+            _chars = null;
+            _byteArray = null;
+            _bytes = null;
+        }
+    }
+
+
+    private JSONWriter begin(final boolean object,
+                             final char c) throws IOException {
+        beforeValue();
+        if (JSONReader.MAX_DEPTH==_depth) { throw new IllegalStateException(); }
+        append(c);
+        _objects[_depth++] = object;
+        _first = true;
+        return this;
+    }
+
+
+    private JSONWriter end(final boolean object,
+                           final char c) throws IOException {
+        if (0==_depth || object!=_objects[_depth-1] || _named) {
+            throw new IllegalStateException();
+        }
+        append(c);
+        _depth--;
+        return afterValue();
+    }
+
+
+    private void beforeValue() throws IOException {
+        if (0==_depth) {
+            if (_done) { throw new IllegalStateException(); }
+        } else if (_objects[_depth-1]) {
+            if (!_named) { throw new IllegalStateException(); }
+            _named = false;
+        } else if (!_first) {
+            append(',');
+        }
+        _first = false;
+    }
+
+
+    private JSONWriter afterValue() {
+        _first = false;
+        if (0==_depth) { _done = true; }
+        return this;
+    }
+
+
+    @Specification(name="rfc-8259", section="7")
+    private void string(final CharSequence s) throws IOException {
+        append('"');
+        final int length = s.length();
+        for (int i=0; i<length; i++) {
+            final char c = s.charAt(i);
+            if ('"'==c || '\\'==c) {
+                append('\\');
+                append(c);
+            } else if (0x20>c || (_ascii && 0x7f<c)) {
+                switch (c) {
+                    case '\b': append('\\'); append('b'); break;
+                    case '\f': append('\\'); append('f'); break;
+                    case '\n': append('\\'); append('n'); break;
+                    case '\r': append('\\'); append('r'); break;
+                    case '\t': append('\\'); append('t'); break;
+                    default:
+                        append('\\');
+                        append('u');
+                        append(HEX[(c>>12) & 0xf]);
+                        append(HEX[(c>>8) & 0xf]);
+                        append(HEX[(c>>4) & 0xf]);
+                        append(HEX[c & 0xf]);
+                }
+            } else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+
+    private void append(final String s) throws IOException {
+        for (int i=0; i<s.length(); i++) { append(s.charAt(i)); }
+    }
+
+
+    private void append(final char c) throws IOException {
+        if (null==_chars) { throw new IllegalStateException("Closed."); } //$NON-NLS-1$
+        if (_chars.length==_count) { encode(false); }
+        _chars[_count++] = c;
+    }
+
+
+    private void encode(final boolean endOfInput) throws IOException {
+        final CharBuffer in = CharBuffer.wrap(_chars, 0, _count);
+        for (;;) {
+            final CoderResult result = _encoder.encode(in, _bytes, endOfInput);
+            if (result.isError()) { result.throwException(); }
+            if (!result.isOverflow()) { break; }
+            drain();
+        }
+        if (endOfInput) {
+            while (_encoder.flush(_bytes).isOverflow()) { drain(); }
+            _encoder.reset();
+        }
+        // A trailing high surrogate is kept until its pair arrives.
+        _count = in.remaining();
+        System.arraycopy(_chars, in.position(), _chars, 0, _count);
+    }
+
+
+    private void drain() throws IOException {
+        if (0<_bytes.position()) {
+            _out.write(_byteArray, 0, _bytes.position());
+            _bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Additive-increase, multiplicative-decrease limit.
+ *
+ * <p>The limit grows by one for each request that completes within the
+ * latency threshold while the limit is being used, and shrinks by the
+ * back-off ratio for each request that is dropped or takes too long. This
+ * is the algorithm TCP uses for its congestion window; it reacts only once
+ * latency crosses a fixed threshold, so it suits services with a clear
+ * latency objective.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class AimdLimit
+    implements
+        LimitAlgorithm {
+
+    private final int    _min;
+    private final int    _max;
+    private final double _backoff;
+    private final long   _threshold;
+    private int          _limit;
+
+
+    /**
+     * Constructor.
+     *
+     * @param initial   The starting limit.
+     * @param min       The smallest limit.
+     * @param max       The largest limit.
+     * @param backoff   The ratio by which to shrink the limit, in (0, 1).
+     * @param threshold The latency above which a request counts as dropped.
+     * @param unit      The unit of the threshold.
+     */
+    public AimdLimit(final int initial,
+                     final int min,
+                     final int max,
+                     final double backoff,
+                     final long threshold,
+                     final TimeUnit unit) {
+        if (1>min || min>initial || initial>max) {
+            throw new IllegalArgumentException(
+                "Require 1 <= min <= initial <= max.");             //$NON-NLS-1$
+        }
+        if (!(0<backoff && 1>backoff)) {
+            throw new IllegalArgumentException(
+                "Back-off must be between 0 and 1.");               //$NON-NLS-1$
+        }
+        _min       = min;
+        _max       = max;
+        _backoff   = backoff;
+        _threshold = unit.toNanos(threshold);
+        _limit     = initial;
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Starts at 20, backs off by 10% and treats requests slower than the
+     * threshold as dropped.
+     *
+     * @param max       The largest limit.
+     * @param threshold The latency above which a request counts as dropped.
+     * @param unit      The unit of the threshold.
+     */
+    public AimdLimit(final int max, final long threshold, final TimeUnit unit) {
+        this(Math.min(20, max), 1, max, 0.9, threshold, unit);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int getLimit() {
+        return _limit;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void onSample(final long rtt,
+                         final int inFlight,
+                         final boolean dropped) {
+        if (dropped || rtt>_threshold) {
+            _limit = Math.max(_min, (int) (_limit*_backoff));
+        } else if (2*inFlight>=_limit) {
+            // Only grow while the limit is in use, or an idle service would
+            // drift to its maximum and shed nothing when load arrives.
+            _limit = Math.min(_max, _limit+1);
+        }
+    }
+}
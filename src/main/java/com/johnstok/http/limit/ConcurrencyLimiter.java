@@ -0,0 +1,262 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Limits the number of operations in flight, rejecting the excess at once.
+ *
+ * <p>The limit is set by a {@link LimitAlgorithm} from the latency of
+ * completed operations. Capacity may be divided into named partitions, each
+ * reserving a fraction of the limit: a partition can always use its own
+ * reservation and may borrow capacity that no other partition has reserved
+ * or is using. Operations outside any partition may only borrow, so they are
+ * shed first. Use partitions to prioritise, e.g. reserving 90% for
+ * interactive routes and 10% for batch routes.
+ *
+ * <p>All methods are thread-safe.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ConcurrencyLimiter {
+
+    private final LimitAlgorithm         _algorithm;
+    private final Map<String, Partition> _partitions;
+    private final Partition              _unpartitioned = new Partition(0);
+    private int                          _inFlight;
+    private long                         _rejected;
+
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm The algorithm that sets the limit.
+     */
+    public ConcurrencyLimiter(final LimitAlgorithm algorithm) {
+        this(algorithm, Collections.<String, Double>emptyMap());
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm  The algorithm that sets the limit.
+     * @param partitions The fraction of the limit reserved by each partition;
+     *  the fractions may not total more than one.
+     */
+    public ConcurrencyLimiter(final LimitAlgorithm algorithm,
+                              final Map<String, Double> partitions) {
+        _algorithm = algorithm;
+        _partitions = new HashMap<String, Partition>();
+        double total = 0;
+        for (final Map.Entry<String, Double> e : partitions.entrySet()) {
+            final double share = e.getValue().doubleValue();
+            if (0>share) {
+                throw new IllegalArgumentException(
+                    "Negative share: "+e.getKey());                 //$NON-NLS-1$
+            }
+            total += share;
+            _partitions.put(e.getKey(), new Partition(share));
+        }
+        if (1.0+1e-9<total) {
+            throw new IllegalArgumentException(
+                "Partition shares exceed 1: "+total);               //$NON-NLS-1$
+        }
+    }
+
+
+    /**
+     * Try to start an operation.
+     *
+     * @param partition The operation's partition; null or an unknown name if
+     *  it has none.
+     *
+     * @return A permit that must be released when the operation completes;
+     *  null if the operation should be rejected.
+     */
+    public Permit acquire(final String partition) {
+        final Partition p = partition(partition);
+        synchronized (this) {
+            final int limit = _algorithm.getLimit();
+            if (p._inFlight>=p.reserved(limit) && 0>=unclaimed(limit)) {
+                _rejected++;
+                return null;
+            }
+            p._inFlight++;
+            _inFlight++;
+            return new Permit(p, _inFlight);
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The current limit.
+     */
+    public synchronized int getLimit() {
+        return _algorithm.getLimit();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of operations in flight.
+     */
+    public synchronized int getInFlight() {
+        return _inFlight;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @param partition The name of the partition; null for operations outside
+     *  any partition.
+     *
+     * @return The number of the partition's operations in flight.
+     */
+    public synchronized int getInFlight(final String partition) {
+        return partition(partition)._inFlight;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of operations rejected.
+     */
+    public synchronized long getRejected() {
+        return _rejected;
+    }
+
+
+    private Partition partition(final String name) {
+        if (null==name) { return _unpartitioned; }
+        final Partition p = _partitions.get(name);
+        return (null==p) ? _unpartitioned : p;
+    }
+
+
+    /*
+     * The capacity neither reserved nor in use by any partition. Holding the
+     * invariant that this never goes negative through a new acquisition keeps
+     * the total in flight within the limit, unless the limit itself shrinks.
+     */
+    private int unclaimed(final int limit) {
+        int claimed = _unpartitioned._inFlight;
+        for (final Partition p : _partitions.values()) {
+            claimed += Math.max(p._inFlight, p.reserved(limit));
+        }
+        return limit-claimed;
+    }
+
+
+    private synchronized void release(final Partition partition,
+                                      final int inFlight,
+                                      final long rtt,
+                                      final boolean sample,
+                                      final boolean dropped) {
+        partition._inFlight--;
+        _inFlight--;
+        if (sample) { _algorithm.onSample(rtt, inFlight, dropped); }
+    }
+
+
+    /*
+     * Mutable state is guarded by the owning limiter.
+     */
+    private static final class Partition {
+
+        private final double _share;
+        private int          _inFlight;
+
+        Partition(final double share) {
+            _share = share;
+        }
+
+        int reserved(final int limit) {
+            return (int) (limit*_share);
+        }
+    }
+
+
+    /**
+     * Permission to run a single operation.
+     *
+     * <p>Exactly one of the release methods must be called, once.
+     */
+    public final class Permit {
+
+        private final Partition _partition;
+        private final int       _inFlight;
+        private final long      _start = System.nanoTime();
+        private boolean         _released;
+
+
+        Permit(final Partition partition, final int inFlight) {
+            _partition = partition;
+            _inFlight  = inFlight;
+        }
+
+
+        /**
+         * Release the permit for an operation that completed normally; its
+         * latency updates the limit.
+         */
+        public void success() {
+            release(true, false);
+        }
+
+
+        /**
+         * Release the permit for an operation that failed because of
+         * overload, such as a downstream timeout; the limit is reduced.
+         */
+        public void dropped() {
+            release(true, true);
+        }
+
+
+        /**
+         * Release the permit without updating the limit, e.g. for an
+         * operation that failed before doing any real work.
+         */
+        public void ignore() {
+            release(false, false);
+        }
+
+
+        private void release(final boolean sample, final boolean dropped) {
+            if (_released) {
+                throw new IllegalStateException(
+                    "Permit already released.");                    //$NON-NLS-1$
+            }
+            _released = true;
+            ConcurrencyLimiter.this.release(
+                _partition, _inFlight, System.nanoTime()-_start, sample, dropped);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+
+/**
+ * Gradient limit: shrinks as latency rises above its long-term average.
+ *
+ * <p>Each sample is compared against an exponentially weighted average of
+ * past latency. The ratio (the gradient, clamped to [0.5, 1]) scales the
+ * limit down when requests begin to queue, and a headroom of sqrt(limit)
+ * lets it probe upwards when latency is flat:
+ * <pre>
+ *     newLimit = limit * (longRtt / rtt) + sqrt(limit)
+ * </pre>
+ * The result is smoothed before it is applied. Unlike {@link AimdLimit} no
+ * latency threshold needs to be configured.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class GradientLimit
+    implements
+        LimitAlgorithm {
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int    _min;
+    private final int    _max;
+    private final double _smoothing;
+    private final double _decay;
+    private double       _limit;
+    private double       _longRtt;
+
+
+    /**
+     * Constructor.
+     *
+     * @param initial   The starting limit.
+     * @param min       The smallest limit.
+     * @param max       The largest limit.
+     * @param smoothing The weight, in (0, 1], given to each new limit.
+     * @param window    The number of samples the latency average spans.
+     */
+    public GradientLimit(final int initial,
+                         final int min,
+                         final int max,
+                         final double smoothing,
+                         final int window) {
+        if (1>min || min>initial || initial>max) {
+            throw new IllegalArgumentException(
+                "Require 1 <= min <= initial <= max.");             //$NON-NLS-1$
+        }
+        if (!(0<smoothing && 1>=smoothing) || 1>window) {
+            throw new IllegalArgumentException(
+                "Invalid smoothing or window.");                    //$NON-NLS-1$
+        }
+        _min       = min;
+        _max       = max;
+        _smoothing = smoothing;
+        _decay     = 2.0/(window+1);
+        _limit     = initial;
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Starts at 20, smooths by 0.2 and averages latency over 600 samples.
+     *
+     * @param max The largest limit.
+     */
+    public GradientLimit(final int max) {
+        this(Math.min(20, max), 1, max, 0.2, 600);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int getLimit() {
+        return (int) _limit;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void onSample(final long rtt,
+                         final int inFlight,
+                         final boolean dropped) {
+        final double shortRtt = Math.max(1, rtt);
+        if (0==_longRtt) {
+            _longRtt = shortRtt;
+        } else {
+            _longRtt += _decay*(shortRtt-_longRtt);
+        }
+
+        // After a sustained rise the average lags far behind; let it fall
+        // back quickly once latency recovers so the limit can grow again.
+        if (_longRtt>2*shortRtt) { _longRtt *= 0.95; }
+
+        // An under-used limit says nothing about capacity.
+        if (!dropped && 2*inFlight<_limit) { return; }
+
+        final double gradient =
+            dropped
+                ? MIN_GRADIENT
+                : Math.max(MIN_GRADIENT, Math.min(1.0, _longRtt/shortRtt));
+        final double target = _limit*gradient + Math.sqrt(_limit);
+        final double smoothed = _limit*(1-_smoothing) + target*_smoothing;
+        _limit = Math.max(_min, Math.min(_max, smoothed));
+    }
+}
@@ -0,0 +1,50 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+
+/**
+ * An algorithm that adjusts a concurrency limit from observed latency.
+ *
+ * <p>Implementations need not be thread-safe: a {@link ConcurrencyLimiter}
+ * calls them while holding its own lock.
+ *
+ * @author Keith Webster Johnston.
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * Accessor.
+     *
+     * @return The current limit; always at least one.
+     */
+    int getLimit();
+
+
+    /**
+     * Update the limit with the outcome of a request.
+     *
+     * @param rtt      The time taken to handle the request, in nanoseconds.
+     * @param inFlight The number of requests in flight when it started.
+     * @param dropped  True if the request failed because of overload, e.g.
+     *  a downstream timeout; false otherwise.
+     */
+    void onSample(long rtt, int inFlight, boolean dropped);
+}
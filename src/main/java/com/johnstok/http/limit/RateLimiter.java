@@ -0,0 +1,217 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Rate limits requests per key, e.g. per client address.
+ *
+ * <p>Each key has its own {@link TokenBucket}. Buckets are held in a number
+ * of independent stripes, each a concurrent map with a share of the overall
+ * key limit, so checks on different cores never contend on a common lock
+ * and a known key is checked without locking at all. When a stripe is full
+ * it is swept for buckets that have been idle for the configured period;
+ * as an idle bucket is full, discarding it loses nothing. Keys that still
+ * cannot be tracked share a single overflow bucket, so memory stays bounded
+ * however many distinct keys clients present. A full stripe is swept at
+ * most once per sixteenth of the idle period, so a flood of new keys costs
+ * no more than a map lookup each.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class RateLimiter {
+
+    private final ConcurrentMap<String, TokenBucket>[] _stripes;
+    private final int             _mask;
+    private final int             _stripeCapacity;
+    private final long            _interval;
+    private final int             _burst;
+    private final long            _idle;
+    private final long            _sweepInterval;
+    private final AtomicLongArray _nextSweep;
+    private final TokenBucket     _overflow;
+
+
+    /**
+     * Constructor.
+     *
+     * @param rate    The sustained number of requests permitted per second.
+     * @param burst   The number of requests a key may make at once.
+     * @param maxKeys The number of keys to track.
+     * @param idle    The period after which an unused key may be evicted.
+     * @param unit    The unit of the idle period.
+     */
+    public RateLimiter(final double rate,
+                       final int burst,
+                       final int maxKeys,
+                       final long idle,
+                       final TimeUnit unit) {
+        this(rate,
+             burst,
+             maxKeys,
+             unit.toNanos(idle),
+             stripes(maxKeys),
+             System.nanoTime());
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param rate    The sustained number of requests permitted per second.
+     * @param burst   The number of requests a key may make at once.
+     * @param maxKeys The number of keys to track.
+     * @param idle    The nanoseconds after which an unused key may be evicted.
+     * @param stripes The number of stripes; a power of two.
+     * @param now     The current time, in nanoseconds.
+     */
+    @SuppressWarnings("unchecked")
+    RateLimiter(final double rate,
+                final int burst,
+                final int maxKeys,
+                final long idle,
+                final int stripes,
+                final long now) {
+        if (!(0<rate) || 1>burst || 1>maxKeys) {
+            throw new IllegalArgumentException(
+                "Rate, burst and maximum keys must be positive.");  //$NON-NLS-1$
+        }
+        _stripes        =
+            (ConcurrentMap<String, TokenBucket>[]) new ConcurrentMap<?, ?>[stripes];
+        _mask           = stripes-1;
+        _stripeCapacity = Math.max(1, maxKeys/stripes);
+        _interval       = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1)/rate));
+        _burst          = burst;
+        _idle           = idle;
+        _sweepInterval  = Math.max(1, idle/16);
+        _nextSweep      = new AtomicLongArray(stripes);
+        _overflow       = new TokenBucket(_interval, burst, now);
+        for (int i=0; i<stripes; i++) {
+            _nextSweep.set(i, now);
+            _stripes[i] =
+                new ConcurrentHashMap<String, TokenBucket>(
+                    _stripeCapacity*4/3+1);
+        }
+    }
+
+
+    /**
+     * Take a token for a key.
+     *
+     * @param key The key to check.
+     *
+     * @return Zero if the request is permitted; otherwise the nanoseconds
+     *  until it would be.
+     */
+    public long tryAcquire(final String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+
+    /**
+     * Remove every bucket that has been idle for the configured period.
+     *
+     * <p>Stripes are also swept as they fill; call this periodically to
+     * release memory sooner.
+     */
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        for (final ConcurrentMap<String, TokenBucket> stripe : _stripes) {
+            sweep(stripe, now);
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of keys being tracked.
+     */
+    public int size() {
+        int size = 0;
+        for (final ConcurrentMap<String, TokenBucket> stripe : _stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+
+    long tryAcquire(final String key, final long now) {
+        final int index = index(key);
+        final ConcurrentMap<String, TokenBucket> stripe = _stripes[index];
+        TokenBucket bucket = stripe.get(key);
+        if (null==bucket) {
+            if (stripe.size()>=_stripeCapacity) { trySweep(index, now); }
+            if (stripe.size()>=_stripeCapacity) {
+                bucket = _overflow;
+            } else {
+                final TokenBucket created =
+                    new TokenBucket(_interval, _burst, now);
+                final TokenBucket existing = stripe.putIfAbsent(key, created);
+                bucket = (null==existing) ? created : existing;
+            }
+        }
+        return bucket.tryAcquire(now);
+    }
+
+
+    private int index(final String key) {
+        final int h = key.hashCode();
+        return (h^(h>>>16))&_mask;
+    }
+
+
+    /*
+     * Only one thread sweeps a stripe, and only once per sweep interval.
+     */
+    private void trySweep(final int index, final long now) {
+        final long next = _nextSweep.get(index);
+        if (0>now-next) { return; }
+        if (_nextSweep.compareAndSet(index, next, now+_sweepInterval)) {
+            sweep(_stripes[index], now);
+        }
+    }
+
+
+    private void sweep(final ConcurrentMap<String, TokenBucket> stripe,
+                       final long now) {
+        for (final Iterator<TokenBucket> i = stripe.values().iterator();
+             i.hasNext();) {
+            if (i.next().isIdle(now, _idle)) { i.remove(); }
+        }
+    }
+
+
+    /*
+     * A power of two, about four per core, but no more than the key limit so
+     * every stripe can hold at least one key.
+     */
+    private static int stripes(final int maxKeys) {
+        final int wanted =
+            Math.min(maxKeys, 4*Runtime.getRuntime().availableProcessors());
+        return Integer.highestOneBit(Math.max(1, wanted));
+    }
+}
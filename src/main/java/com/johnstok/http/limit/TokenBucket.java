@@ -0,0 +1,93 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A lock-free token bucket.
+ *
+ * <p>The bucket holds up to {@code burst} tokens and refills at a fixed
+ * rate. Rather than a token count and a refill timestamp it stores a single
+ * value, the time at which the bucket will next be full (the "theoretical
+ * arrival time" of the generic cell rate algorithm), so each check is one
+ * compare-and-set with no lock and no background refill. A bucket whose
+ * full time has passed is indistinguishable from a new one.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class TokenBucket {
+
+    private final long       _interval;
+    private final long       _capacity;
+    private final AtomicLong _full;
+
+
+    /**
+     * Constructor.
+     *
+     * @param interval The nanoseconds taken to refill one token.
+     * @param burst    The number of tokens the bucket holds.
+     * @param now      The current time, in nanoseconds; the bucket starts
+     *  full.
+     */
+    public TokenBucket(final long interval, final int burst, final long now) {
+        if (1>interval || 1>burst) {
+            throw new IllegalArgumentException(
+                "Interval and burst must be positive.");            //$NON-NLS-1$
+        }
+        _interval = interval;
+        _capacity = interval*burst;
+        _full     = new AtomicLong(now);
+    }
+
+
+    /**
+     * Take a token, if one is available.
+     *
+     * @param now The current time, in nanoseconds.
+     *
+     * @return Zero if a token was taken; otherwise the nanoseconds until one
+     *  will be available.
+     */
+    public long tryAcquire(final long now) {
+        for (;;) {
+            final long full = _full.get();
+            final long next = Math.max(full, now)+_interval;
+            final long excess = next-now-_capacity;
+            if (0<excess) { return excess; }
+            if (_full.compareAndSet(full, next)) { return 0; }
+        }
+    }
+
+
+    /**
+     * Check whether the bucket has been full for a period.
+     *
+     * @param now  The current time, in nanoseconds.
+     * @param idle The period, in nanoseconds.
+     *
+     * @return True if the bucket has been full for at least the period.
+     */
+    public boolean isIdle(final long now, final long idle) {
+        return now-_full.get()>=idle;
+    }
+}
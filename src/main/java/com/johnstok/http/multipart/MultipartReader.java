@@ -0,0 +1,375 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.multipart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Specifications;
+import com.johnstok.http.Status;
+
+
+/**
+ * Reads the parts of a multipart body incrementally.
+ *
+ * <p>The reader is a cursor: {@link #next()} advances to the following part,
+ * whose headers and body are then available. Each part's body is a stream
+ * bounded by the next delimiter, so parts of any size are read in constant
+ * memory. The delimiter is located with a Boyer-Moore-Horspool search over a
+ * fixed size buffer.
+ *
+ * <pre>
+ *     multipart-body := [preamble CRLF]
+ *                       dash-boundary transport-padding CRLF
+ *                       body-part *encapsulation
+ *                       close-delimiter transport-padding
+ *                       [CRLF epilogue]
+ * </pre>
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specifications({
+    @Specification(name="rfc-2046", section="5.1.1"),
+    @Specification(name="rfc-7578")
+})
+public class MultipartReader
+    extends
+        MultipartEntity {
+
+    private static final int MIN_BUFFER      = 8192;
+    private static final int MAX_HEADER_SIZE = 16384;
+
+    private final InputStream _in;
+    private final byte[]      _delimiter;
+    private final int[]       _skip = new int[256];
+    private final byte[]      _buf;
+    private int               _pos;
+    private int               _limit;
+    private boolean           _eof;
+
+    // End of the data known to belong to the current part.
+    private int               _end;
+    private boolean           _atDelimiter;
+    private boolean           _finished;
+
+    private Map<String, String> _headers;
+    private InputStream         _body;
+
+
+    /**
+     * Constructor.
+     *
+     * @param in       The stream containing the multipart body.
+     * @param boundary The boundary parameter of the body's media type.
+     */
+    public MultipartReader(final InputStream in, final String boundary) {
+        if (null==boundary || 1>boundary.length() || 70<boundary.length()) {
+            throw new ClientHttpException(Status.BAD_REQUEST);
+        }
+        _in = in;
+        _delimiter =
+            (CRLF+"--"+boundary).getBytes(StandardCharsets.ISO_8859_1); //$NON-NLS-1$
+        _buf = new byte[Math.max(MIN_BUFFER, 4*_delimiter.length)];
+
+        final int last = _delimiter.length-1;
+        for (int i=0; i<_skip.length; i++) { _skip[i] = _delimiter.length; }
+        for (int i=0; i<last; i++) { _skip[_delimiter[i] & 0xFF] = last-i; }
+
+        // A leading CRLF lets the first boundary match the delimiter even when
+        // there is no preamble.
+        _buf[0] = '\r';
+        _buf[1] = '\n';
+        _limit  = 2;
+    }
+
+
+    /**
+     * Extract the boundary from a multipart media type.
+     *
+     * @param contentType The value of a Content-Type header.
+     *
+     * @return The boundary; null if none is specified.
+     */
+    public static String boundary(final String contentType) {
+        if (null==contentType) { return null; }
+        final String lower = contentType.toLowerCase(Locale.US);
+        int idx = lower.indexOf("boundary="); //$NON-NLS-1$
+        while (0<idx && ';'!=lower.charAt(idx-1) && ' '!=lower.charAt(idx-1)) {
+            idx = lower.indexOf("boundary=", idx+1); //$NON-NLS-1$
+        }
+        if (0>idx) { return null; }
+
+        final int start = idx+9;
+        if (start<contentType.length() && '"'==contentType.charAt(start)) {
+            final int end = contentType.indexOf('"', start+1);
+            return (0>end) ? null : contentType.substring(start+1, end);
+        }
+        int end = start;
+        while (end<contentType.length()
+               && ';'!=contentType.charAt(end)
+               && ' '!=contentType.charAt(end)) {
+            end++;
+        }
+        return (end==start) ? null : contentType.substring(start, end);
+    }
+
+
+    /**
+     * Advance to the next part, discarding any unread data from the current
+     * part.
+     *
+     * @return True if there is another part; false at the end of the body.
+     *
+     * @throws IOException If reading fails.
+     */
+    public boolean next() throws IOException {
+        if (_finished) { return false; }
+
+        // Discard the remainder of the current part, or the preamble.
+        for (;;) {
+            scan();
+            if (_atDelimiter && _pos==_end) { break; }
+            _pos = _end;
+        }
+        _pos = _end + _delimiter.length;
+        _atDelimiter = false;
+
+        if (!ensure(2)) { throw malformed(); }
+        if ('-'==_buf[_pos] && '-'==_buf[_pos+1]) {
+            _finished = true;
+            _headers  = null;
+            _body     = null;
+            return false; // Epilogue is ignored.
+        }
+
+        // Transport padding, then CRLF.
+        for (;;) {
+            if (!ensure(2)) { throw malformed(); }
+            final byte b = _buf[_pos];
+            if (' '==b || '\t'==b) { _pos++; continue; }
+            if ('\r'==b && '\n'==_buf[_pos+1]) { _pos += 2; break; }
+            throw malformed();
+        }
+
+        _headers = readHeaders();
+        _end     = _pos;
+        _body    = new PartInputStream();
+        return true;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the headers of the current part, keyed
+     *  case-insensitively.
+     */
+    public Map<String, String> getHeaders() {
+        if (null==_headers) { throw new IllegalStateException(); }
+        return _headers;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @param name The case-insensitive header name.
+     *
+     * @return Returns the value of the header; null if not present.
+     */
+    public String getHeader(final String name) {
+        return getHeaders().get(name);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * <p>The stream is valid until {@link #next()} is called.
+     *
+     * @return Returns the body of the current part.
+     */
+    public InputStream getBody() {
+        if (null==_body) { throw new IllegalStateException(); }
+        return _body;
+    }
+
+
+    private Map<String, String> readHeaders() throws IOException {
+        final Map<String, String> headers =
+            new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        int size = 0;
+        for (;;) {
+            final int eol = lineEnd();
+            final int len = eol-_pos;
+            size += len+2;
+            if (MAX_HEADER_SIZE<size) { throw malformed(); }
+            if (0==len) {
+                _pos += 2;
+                return Collections.unmodifiableMap(headers);
+            }
+
+            final String line =
+                new String(_buf, _pos, len, StandardCharsets.UTF_8);
+            _pos = eol+2;
+            final int colon = line.indexOf(':');
+            if (1>colon) { throw malformed(); }
+            headers.put(
+                line.substring(0, colon).trim(),
+                line.substring(colon+1).trim());
+        }
+    }
+
+
+    /*
+     * Find the CR of the next CRLF, filling the buffer as required.
+     */
+    private int lineEnd() throws IOException {
+        int from = _pos;
+        for (;;) {
+            for (int i=from; i<_limit-1; i++) {
+                if ('\r'==_buf[i] && '\n'==_buf[i+1]) { return i; }
+            }
+            final int scanned = Math.max(0, _limit-1-_pos);
+            if (!ensure(_limit-_pos+1)) { throw malformed(); }
+            from = _pos+scanned;
+        }
+    }
+
+
+    /*
+     * Ensure the current part has data available between _pos and _end, or
+     * that the delimiter is at _end.
+     */
+    private void scan() throws IOException {
+        while (_pos==_end && !_atDelimiter) {
+            final int match = indexOfDelimiter(_pos);
+            if (0<=match) {
+                _end = match;
+                _atDelimiter = true;
+                return;
+            }
+
+            // A partial delimiter may straddle the end of the buffer.
+            final int safe = _limit-_delimiter.length+1;
+            if (safe>_pos) {
+                _end = safe;
+                return;
+            }
+            if (!fill()) { throw malformed(); }
+        }
+    }
+
+
+    private int indexOfDelimiter(final int from) {
+        final int last = _delimiter.length-1;
+        int i = from;
+        while (i+last<_limit) {
+            int j = last;
+            while (_buf[i+j]==_delimiter[j]) {
+                if (0==j) { return i; }
+                j--;
+            }
+            i += _skip[_buf[i+last] & 0xFF];
+        }
+        return -1;
+    }
+
+
+    /*
+     * Ensure at least n bytes are buffered from _pos.
+     */
+    private boolean ensure(final int n) throws IOException {
+        while (_limit-_pos<n) {
+            if (!fill()) { return false; }
+        }
+        return true;
+    }
+
+
+    /*
+     * Compact the buffer and read more data; false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (_eof) { return false; }
+        if (0<_pos) {
+            System.arraycopy(_buf, _pos, _buf, 0, _limit-_pos);
+            _limit -= _pos;
+            _end   -= _pos;
+            _pos    = 0;
+        }
+        if (_limit==_buf.length) { throw malformed(); }
+        final int read = _in.read(_buf, _limit, _buf.length-_limit);
+        if (0>read) {
+            _eof = true;
+            return false;
+        }
+        _limit += read;
+        return true;
+    }
+
+
+    private static ClientHttpException malformed() {
+        return new ClientHttpException(Status.BAD_REQUEST);
+    }
+
+
+    /*
+     * The body of the current part, ending at the next delimiter.
+     */
+    private final class PartInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (this!=_body) { return -1; }
+            scan();
+            if (_pos==_end) { return -1; }
+            return _buf[_pos++] & 0xFF;
+        }
+
+
+        @Override
+        public int read(final byte[] b,
+                        final int off,
+                        final int len) throws IOException {
+            if (this!=_body) { return -1; }
+            if (0==len) { return 0; }
+            scan();
+            final int count = Math.min(len, _end-_pos);
+            if (0==count) { return -1; }
+            System.arraycopy(_buf, _pos, b, off, count);
+            _pos += count;
+            return count;
+        }
+
+
+        @Override
+        public int available() {
+            return (this==_body) ? _end-_pos : 0;
+        }
+    }
+
+}
@@ -19,19 +19,51 @@
  *---------------------------------------------------------------------------*/
 package com.johnstok.http.multipart;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Specifications;
+import com.johnstok.http.Syntax;
 
 
 /**
  * A single part of a multipart message.
  *
+ * <p>The body is held either in memory or, for large parts, in a file.
+ *
  * @author Keith Webster Johnston.
  */
 public class Part {
 
+    /*
+     * A quoted-string whose qdtext also admits characters beyond ISO-8859-1:
+     * RFC 7578 allows a UTF-8 filename to be sent as is.
+     */
+    private static final String QUOTED =
+        "\"(?:[^\"\\\\"+Syntax.CTL+"]|"+Syntax.QUOTED_PAIR+")*\""; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    @Specifications({
+        @Specification(name="rfc-2183", section="2"),
+        @Specification(name="rfc-7578", section="4.2")
+    })
+    private static final Pattern DISPOSITION_PARAM =
+        Pattern.compile(
+            ";\\s*(["+Syntax.TOKEN+"]+)\\s*=\\s*"                  //$NON-NLS-1$
+            + "(?:(["+Syntax.TOKEN+"]+)|("+QUOTED+"))");            //$NON-NLS-1$ //$NON-NLS-2$
+    private static final Pattern QUOTED_PAIR =
+        Pattern.compile("\\\\(["+Syntax.CHAR+"])");                //$NON-NLS-1$
+
     private byte[]              _body    = new byte[0];
     private Map<String, String> _headers = new HashMap<String, String>();
+    private Path                _file;
 
 
     /**
@@ -48,10 +80,100 @@ public class Part {
     /**
      * Accessor.
      *
+     * <p>If the body is held in a file it is read into memory; prefer
+     * {@link #openBody()} for large parts.
+     *
      * @return Returns the body.
      */
     public byte[] getBody() {
-        return _body;
+        if (null==_file) { return _body; }
+        try {
+            return Files.readAllBytes(_file);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Open a stream to read the body.
+     *
+     * @return A new stream over the body.
+     *
+     * @throws IOException If the body's file cannot be opened.
+     */
+    public InputStream openBody() throws IOException {
+        return
+            (null==_file)
+                ? new ByteArrayInputStream(_body)
+                : Files.newInputStream(_file);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the file holding the body; null if the body is held in
+     *  memory.
+     */
+    public Path getFile() {
+        return _file;
+    }
+
+
+    /**
+     * Mutator.
+     *
+     * @param file The file holding the body.
+     */
+    public void setFile(final Path file) {
+        _file = file;
+        _body = new byte[0];
+    }
+
+
+    /**
+     * Delete the file holding the body, if any.
+     *
+     * @throws IOException If the file cannot be deleted.
+     */
+    public void delete() throws IOException {
+        if (null!=_file) { Files.deleteIfExists(_file); }
+    }
+
+
+    /**
+     * Get the form field name, from the Content-Disposition header.
+     *
+     * @return The name; null if not specified.
+     */
+    public String getName() {
+        return dispositionParameter("name"); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Get the original file name, from the Content-Disposition header.
+     *
+     * @return The file name; null if not specified.
+     */
+    public String getFilename() {
+        return dispositionParameter("filename"); //$NON-NLS-1$
+    }
+
+
+    private String dispositionParameter(final String name) {
+        final String disposition = getHeader("Content-Disposition"); //$NON-NLS-1$
+        if (null==disposition) { return null; }
+        final Matcher m = DISPOSITION_PARAM.matcher(disposition);
+        while (m.find()) {
+            if (!name.equalsIgnoreCase(m.group(1))) { continue; }
+            if (null!=m.group(2)) { return m.group(2); }
+            final String quoted = m.group(3);
+            return QUOTED_PAIR.matcher(quoted.substring(1, quoted.length()-1))
+                              .replaceAll("$1");                    //$NON-NLS-1$
+        }
+        return null;
     }
 
 
@@ -84,6 +206,7 @@ public class Part {
      */
     public void setBody(final byte[] body) {
         _body = body;
+        _file = null;
     }
 
 
@@ -20,16 +20,18 @@
 package com.johnstok.http.negotiation;
 
 import java.nio.charset.Charset;
-import java.nio.charset.IllegalCharsetNameException;
-import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import com.johnstok.http.CharacterSet;
+import com.johnstok.http.QualityValue;
 import com.johnstok.http.Specification;
 import com.johnstok.http.Specifications;
 import com.johnstok.http.WeightedValue;
@@ -38,6 +40,10 @@ import com.johnstok.http.WeightedValue;
 /**
  * Responsibility: negotiate an appropriate charset for the response body.
  *
+ * <p>Supported charsets are held in an immutable index, keyed on each
+ * charset's lower-cased name and aliases. The index for the default
+ * constructor is built once and shared by all instances.
+ *
  * @author Keith Webster Johnston.
  */
 @Specifications ({
@@ -51,15 +57,19 @@ public class CharsetNegotiator
     // Default q value is 1
     // * matches all un-mentioned charsets (incl iso-8859-1)
 
+    private static final String ANY = "*";                         //$NON-NLS-1$
+
 
-    private final Set<Charset> _charsets;
+    private final CharsetIndex _charsets;
 
 
     /**
      * Constructor.
+     *
+     * <p>Supports all charsets available in the JVM.
      */
     public CharsetNegotiator() {
-        this(Charset.availableCharsets().values());
+        _charsets = DefaultIndex.INSTANCE;
     }
 
 
@@ -67,9 +77,11 @@ public class CharsetNegotiator
      * Constructor.
      *
      * @param charsets Charsets supported by the server.
+     *  <br>The special value "*" matches these charsets in the order supplied,
+     *  except that UTF-8 is always preferred.
      */
     public CharsetNegotiator(final Collection<Charset> charsets) {
-        _charsets = new HashSet<Charset>(charsets);
+        _charsets = new CharsetIndex(charsets);
     }
 
 
@@ -111,73 +123,184 @@ public class CharsetNegotiator
         // If no header is present any charset is acceptable.
         if (null==clientCharsets) { return null; }
 
-        final List<WeightedValue> copy =
-            new ArrayList<WeightedValue>(clientCharsets);
+        final int size = clientCharsets.size();
+        final Charset[] mentioned = new Charset[size];
+        boolean anyMentioned        = false;
+        boolean isoLatin1Mentioned  = false;
+        for (int i=0; i<size; i++) {
+            final String name = clientCharsets.get(i).getValue();
+            if (ANY.equals(name)) {
+                anyMentioned = true;
+            } else {
+                mentioned[i] = _charsets.lookup(name);
+                isoLatin1Mentioned |=
+                    CharacterSet.ISO_8859_1.name().equalsIgnoreCase(name)
+                    || CharacterSet.ISO_8859_1==mentioned[i];
+            }
+        }
+
+        /*
+         * Pick the highest weighted, acceptable charset. Ties are resolved in
+         * favour of the first value in the client's list.
+         */
+        Charset selected = null;
+        int     quality  = QualityValue.MIN;
+        for (int i=0; i<size; i++) {
+            final WeightedValue clientCharset = clientCharsets.get(i);
+            if (clientCharset.getQuality()<=quality) { continue; }
+            final Charset charset =
+                (ANY.equals(clientCharset.getValue()))
+                    ? _charsets.firstExcluding(mentioned)
+                    : mentioned[i];
+            if (null!=charset) {
+                selected = charset;
+                quality  = clientCharset.getQuality();
+            }
+        }
+
+        // If * isn't present it gets q=0 ... except iso-8859-1 which gets q=1
+        if (!anyMentioned && !isoLatin1Mentioned && QualityValue.MAX>quality) {
+            final Charset isoLatin1 = _charsets.lookup(CharacterSet.ISO_8859_1);
+            if (null!=isoLatin1) { selected = isoLatin1; }
+        }
+
+        return selected;
+    }
+
+
+    /**
+     * Calculate the quality of a supported charset.
+     *
+     * @param clientCharsets The client's charset preferences; null if any
+     *  charset is acceptable.
+     * @param charset        The charset to assess.
+     *
+     * @return The quality of the charset, in fixed-point form.
+     */
+    int quality(final List<WeightedValue> clientCharsets,
+                final Charset charset) {
+        if (null==clientCharsets) { return QualityValue.MAX; }
 
-        final List<String> disallowed = new ArrayList<String>();
-        for (final WeightedValue wv : clientCharsets) {
-            if (wv.getWeight()<=0) { disallowed.add(wv.getValue().toLowerCase(Locale.US)); }
+        int any = -1;
+        for (final WeightedValue clientCharset : clientCharsets) {
+            final String name = clientCharset.getValue();
+            if (ANY.equals(name)) {
+                any = clientCharset.getQuality();
+            } else if (charset.equals(_charsets.lookup(name))) {
+                return clientCharset.getQuality();
+            }
         }
 
-        // If * isn't present it gets q=0
-        if (!contains("*", copy)) {
-            copy.add(new WeightedValue("*", 0));
+        if (0<=any) { return any; }
+        return
+            (CharacterSet.ISO_8859_1.equals(charset))
+                ? QualityValue.MAX
+                : QualityValue.MIN;
+    }
+
+
+    /**
+     * An immutable index of supported charsets.
+     *
+     * @author Keith Webster Johnston.
+     */
+    static final class CharsetIndex {
+
+        private final Map<String, Charset> _byName;
+        private final List<Charset>        _preferred;
+
 
-            // ... except iso-8859-1 which gets q=1
-            if (!contains("iso-8859-1", copy)) {
-                copy.add(new WeightedValue("iso-8859-1", 1));
+        /**
+         * Constructor.
+         *
+         * @param charsets The charsets to index.
+         */
+        CharsetIndex(final Collection<Charset> charsets) {
+            final Set<Charset> preferred = new LinkedHashSet<Charset>();
+            if (charsets.contains(CharacterSet.UTF_8)) {
+                preferred.add(CharacterSet.UTF_8);
             }
+            preferred.addAll(charsets);
+
+            final Map<String, Charset> byName = new HashMap<String, Charset>();
+            for (final Charset charset : preferred) {
+                byName.put(lower(charset.name()), charset);
+                for (final String alias : charset.aliases()) {
+                    byName.put(lower(alias), charset);
+                }
+            }
+
+            _byName    = byName;
+            _preferred =
+                Collections.unmodifiableList(new ArrayList<Charset>(preferred));
         }
 
-        Collections.sort(copy);
 
-        for (final WeightedValue clientCharset : copy) {
-            if (clientCharset.getWeight()<=0) { break; }
-            final Charset charset = find(clientCharset.getValue(), disallowed);
-            if (null!=charset) { return charset; }
+        /**
+         * Look up a supported charset by name or alias.
+         *
+         * @param name The case-insensitive name of the charset.
+         *
+         * @return The corresponding charset; null if it isn't supported.
+         */
+        Charset lookup(final String name) {
+            return _byName.get(lower(name));
         }
 
-        return null;
-    }
+
+        /**
+         * Look up a supported charset.
+         *
+         * @param charset The charset to find.
+         *
+         * @return The specified charset; null if it isn't supported.
+         */
+        Charset lookup(final Charset charset) {
+            return _byName.get(lower(charset.name()));
+        }
 
 
-    private Charset find(final String charsetName,
-                         final List<String> disallowed) {
-        if ("*".equals(charsetName)) {
-            for (final Charset charset : _charsets) {
-                if (isAllowed(charset, disallowed)) { return charset; }
+        /**
+         * Find the most preferred charset not present in the specified array.
+         *
+         * @param excluded The charsets to exclude; may contain nulls.
+         *
+         * @return The first matching charset; null if all are excluded.
+         */
+        Charset firstExcluding(final Charset[] excluded) {
+            for (final Charset charset : _preferred) {
+                if (!contains(excluded, charset)) { return charset; }
             }
             return null;
         }
 
-        try {
-            final Charset cs = Charset.forName(charsetName);
-            return _charsets.contains(cs) ? cs : null;
-        } catch (final IllegalCharsetNameException e) {
-            return null;
-        } catch (final UnsupportedCharsetException e) {
-            return null;
-        } catch (final IllegalArgumentException e) {
-            return null;
+
+        private static boolean contains(final Charset[] charsets,
+                                        final Charset charset) {
+            for (final Charset c : charsets) {
+                if (charset==c) { return true; }
+            }
+            return false;
         }
-    }
 
 
-    private boolean isAllowed(final Charset charset,
-                              final List<String> disallowed) {
-        if (disallowed.contains(charset.name().toLowerCase(Locale.US))) { return false; }
-        for (final String alias : charset.aliases()) {
-            if (disallowed.contains(alias.toLowerCase(Locale.US))) { return false; }
+        private static String lower(final String string) {
+            return string.toLowerCase(Locale.US);
         }
-        return true;
     }
 
 
-    private boolean contains(final String charset,
-                             final List<WeightedValue> weightedValues) {
-        for (final WeightedValue weightedValue : weightedValues) {
-            if (charset.equals(weightedValue.getValue())) { return true; }
+    /*
+     * Lazy holder for the index of all charsets available in the JVM.
+     */
+    private static final class DefaultIndex {
+        static final CharsetIndex INSTANCE;
+        static {
+            final Set<Charset> available = new LinkedHashSet<Charset>();
+            available.add(CharacterSet.UTF_8);
+            available.add(CharacterSet.ISO_8859_1);
+            available.addAll(Charset.availableCharsets().values());
+            INSTANCE = new CharsetIndex(available);
         }
-        return false;
     }
 }
@@ -26,7 +26,9 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import com.johnstok.http.ClientHttpException;
 import com.johnstok.http.ContentCoding;
+import com.johnstok.http.QualityValue;
 import com.johnstok.http.Specification;
 import com.johnstok.http.Specifications;
 import com.johnstok.http.WeightedValue;
@@ -46,9 +48,9 @@ public class ContentNegotiator
         Negotiator<ContentCoding> {
 
     private static final WeightedValue ANY =
-        new WeightedValue(ContentCoding.ANY.toString(), 0.001f);
+        WeightedValue.withQuality(ContentCoding.ANY.toString(), 1);
     private static final WeightedValue IDENTITY =
-        new WeightedValue(ContentCoding.IDENTITY.toString(), 0.001f);
+        WeightedValue.withQuality(ContentCoding.IDENTITY.toString(), 1);
 
     private final Set<WeightedValue> _supportedEncodings;
 
@@ -75,7 +77,7 @@ public class ContentNegotiator
     public ContentNegotiator(final Set<String> values) {
         final List<WeightedValue> supported = new ArrayList<WeightedValue>();
         for (final String value : values) {
-            supported.add(new WeightedValue(value, 1.0f));
+            supported.add(WeightedValue.withQuality(value, QualityValue.MAX));
         }
         Collections.sort(supported);
         _supportedEncodings = new LinkedHashSet<WeightedValue>(supported);
@@ -101,7 +103,7 @@ public class ContentNegotiator
             new ArrayList<WeightedValue>();
 
         for (final WeightedValue clientEncoding : clientEncodings) {
-            if (clientEncoding.getWeight()<=0) {
+            if (clientEncoding.getQuality()<=QualityValue.MIN) {
                 disallowedEncodings.add(clientEncoding);
             } else {
                 allowedEncodings.add(clientEncoding);
@@ -129,6 +131,41 @@ public class ContentNegotiator
     }
 
 
+    /**
+     * Calculate the quality of a content coding.
+     *
+     * @param clientEncodings The client's encoding preferences; null if no
+     *  Accept-Encoding header was sent.
+     * @param coding          The content coding to assess.
+     *
+     * @return The quality of the coding, in fixed-point form.
+     */
+    static int quality(final List<WeightedValue> clientEncodings,
+                       final ContentCoding coding) {
+        final boolean identity = ContentCoding.IDENTITY==coding;
+
+        // Without a header only the identity coding is assumed acceptable.
+        if (null == clientEncodings) {
+            return (identity) ? QualityValue.MAX : QualityValue.MIN;
+        }
+
+        int any = -1;
+        for (final WeightedValue clientEncoding : clientEncodings) {
+            final ContentCoding cc;
+            try {
+                cc = ContentCoding.parse(clientEncoding.getValue());
+            } catch (final ClientHttpException e) {
+                continue; // TODO: Log invalid coding.
+            }
+            if (coding.equals(cc)) { return clientEncoding.getQuality(); }
+            if (ContentCoding.ANY==cc) { any = clientEncoding.getQuality(); }
+        }
+
+        if (0<=any) { return any; }
+        return (identity) ? QualityValue.MAX : QualityValue.MIN; //14.3#4
+    }
+
+
     /**
      * Select an encoding from the specified list.
      *
@@ -25,8 +25,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import com.johnstok.http.Header;
 import com.johnstok.http.LanguageTag;
-import com.johnstok.http.Value;
+import com.johnstok.http.QualityValue;
 import com.johnstok.http.WeightedValue;
 
 
@@ -74,50 +75,64 @@ public class LanguageNegotiator
          */
         final List<WeightedValue> tags = new ArrayList<WeightedValue>();
 
+        for (final LanguageTag avail : _availableLanguages) {
+            final int quality = quality(languageRanges, avail);
+            if (quality>QualityValue.MIN) {
+                tags.add(WeightedValue.withQuality(avail.toString(), quality));
+            }
+        }
+
+        Collections.sort(tags);
+
+        return (tags.size()<1) ? null : new LanguageTag(tags.get(0).getValue());
+    }
+
+
+    /**
+     * Calculate the quality of a language tag.
+     *
+     * @param languageRanges The range of accepted languages.
+     * @param avail          The language tag to assess.
+     *
+     * @return The quality of the tag, in fixed-point form.
+     */
+    static int quality(final List<WeightedValue> languageRanges,
+                       final LanguageTag avail) {
+
         /*
          * If no language-range in the field matches the tag, the language
          * quality factor assigned is 0.
          */
-        float defaultWeight = 0;
+        int quality = QualityValue.MIN;
+        int depth   = 0;
 
-        /*
-         * The special range "*", if present in the Accept-Language field,
-         * matches every tag not matched by any other range present in the
-         * Accept-Language field.
-         */
         for (final WeightedValue v : languageRanges) {
-            if ("*".equals(v.getValue())) {
-                defaultWeight = v.getWeight();
+            /*
+             * The special range "*", if present in the Accept-Language field,
+             * matches every tag not matched by any other range present in the
+             * Accept-Language field.
+             */
+            if ((0==depth) && "*".equals(v.getValue())) {
+                quality = v.getQuality();
+                continue;
             }
-        }
 
-        for (final LanguageTag avail : _availableLanguages) {
-            float weight = defaultWeight;
-            int   depth  = 0;
-
-            for (final WeightedValue v : languageRanges) {
-                /*
-                 * The language quality factor assigned to a language-tag by the
-                 * Accept-Language field is the quality value of the longest
-                 * language-range in the field that matches the language-tag.
-                 *
-                 * Accept-Language: en-gb;q=0.7, en;q=0.8
-                 * Quality for lTag 'en-gb' is 0.7 even though 'en-gb' is "matched by" 'en'.
-                 */
-                final int matchDepth = avail.matchDepth(v.getValue());
-                if (matchDepth>depth) {
-                    weight = v.getWeight();
-                    depth = matchDepth;
-                }
-            }
-            if (weight>0) {
-                tags.add(new WeightedValue(avail.toString(), weight));
+            /*
+             * The language quality factor assigned to a language-tag by the
+             * Accept-Language field is the quality value of the longest
+             * language-range in the field that matches the language-tag.
+             *
+             * Accept-Language: en-gb;q=0.7, en;q=0.8
+             * Quality for lTag 'en-gb' is 0.7 even though 'en-gb' is "matched by" 'en'.
+             */
+            final int matchDepth = avail.matchDepth(v.getValue());
+            if (matchDepth>depth) {
+                quality = v.getQuality();
+                depth = matchDepth;
             }
         }
 
-        Collections.sort(tags);
-
-        return (tags.size()<1) ? null : new LanguageTag(tags.get(0).getValue());
+        return quality;
     }
 
 
@@ -149,22 +164,6 @@ public class LanguageNegotiator
      * @return The corresponding list of weighted values.
      */
     public static List<WeightedValue> parse(final String value) {
-        /*
-         * TODO Handle:
-         *  - duplicate lRange (incl case variations).
-         *  - malformed lRange
-         *  - malformed field
-         */
-        final List<WeightedValue> wValues = new ArrayList<WeightedValue>();
-
-        if (null==value || 1>value.trim().length()) { return wValues; }
-
-        final String[] lRanges = value.split(",");
-        for (final String lRange : lRanges) {
-            if (null==lRange || 1>lRange.trim().length()) { continue; }
-            wValues.add(Value.parse(lRange).asWeightedValue("q", 1f));
-        }
-
-        return wValues;
+        return Header.parseAcceptLanguage(value);
     }
 }
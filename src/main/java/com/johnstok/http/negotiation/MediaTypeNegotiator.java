@@ -22,16 +22,14 @@ package com.johnstok.http.negotiation;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import com.johnstok.http.ClientHttpException;
 import com.johnstok.http.MediaType;
-import com.johnstok.http.Value;
+import com.johnstok.http.QualityValue;
+import com.johnstok.http.Status;
 import com.johnstok.http.WeightedValue;
 
 
@@ -40,6 +38,13 @@ import com.johnstok.http.WeightedValue;
  *
  * Implements RFC-2616, Section 14.1.
  *
+ * <p>The available media types are compiled when the negotiator is created
+ * and indexed by type and by type/subtype. Each client media range is then
+ * scanned once per negotiation, its bounds hashed to find the types it can
+ * match, and only those types compared, without further parsing or
+ * allocation of substrings. Media range parameters (e.g.
+ * 'text/html;level=1') are honoured.
+ *
  * @author Keith Webster Johnston.
  */
 // FIXME: Add specifications.
@@ -47,7 +52,19 @@ public class MediaTypeNegotiator
     implements
         Negotiator<MediaType> {
 
-    private final Set<MediaType> _availableMediaTypes;
+    private static final String ANY   = "*";                       //$NON-NLS-1$
+    private static final int[]  NONE  = new int[0];
+
+    private final MediaType[] _availableMediaTypes;
+    private final String[]    _types;
+    private final String[]    _subtypes;
+    private final String[][]  _parameterNames;
+    private final String[][]  _parameterValues;
+    private final int[]       _all;
+    private final int[]       _typeSlots;       // Group number+1; 0 if empty.
+    private final int[][]     _typeGroups;      // Indices sharing a type.
+    private final int[]       _mediaTypeSlots;  // Group number+1; 0 if empty.
+    private final int[][]     _mediaTypeGroups; // Indices sharing a subtype.
 
 
     /**
@@ -56,7 +73,45 @@ public class MediaTypeNegotiator
      * @param availableMediaTypes
      */
     public MediaTypeNegotiator(final Collection<MediaType> availableMediaTypes) {
-        _availableMediaTypes = new LinkedHashSet<MediaType>(availableMediaTypes);
+        final List<MediaType> available = new ArrayList<MediaType>();
+        for (final MediaType mediaType : availableMediaTypes) {
+            if (!containsVariant(available, mediaType)) {
+                available.add(mediaType);
+            }
+        }
+
+        final int size = available.size();
+        _availableMediaTypes = available.toArray(new MediaType[size]);
+        _types               = new String[size];
+        _subtypes            = new String[size];
+        _parameterNames      = new String[size][];
+        _parameterValues     = new String[size][];
+
+        for (int i=0; i<size; i++) {
+            final MediaType mediaType = _availableMediaTypes[i];
+            final Map<String, String> parameters = mediaType.getParameters();
+            _types[i]           = lower(mediaType.getType());
+            _subtypes[i]        = lower(mediaType.getSubtype());
+            _parameterNames[i]  = new String[parameters.size()];
+            _parameterValues[i] = new String[parameters.size()];
+            int j = 0;
+            for (final Map.Entry<String, String> p : parameters.entrySet()) {
+                _parameterNames[i][j]  = lower(p.getKey());
+                _parameterValues[i][j] = p.getValue();
+                j++;
+            }
+        }
+
+        _all = new int[size];
+        final String[] mediaTypes = new String[size];
+        for (int i=0; i<size; i++) {
+            _all[i] = i;
+            mediaTypes[i] = _types[i]+'/'+_subtypes[i];
+        }
+        _typeSlots = new int[slots(size)];
+        _typeGroups = index(_types, _typeSlots);
+        _mediaTypeSlots = new int[slots(size)];
+        _mediaTypeGroups = index(mediaTypes, _mediaTypeSlots);
     }
 
 
@@ -124,7 +179,7 @@ public class MediaTypeNegotiator
         for (final String mtRange : mtRanges) {
             if ((null==mtRange) || (1>mtRange.trim().length())) { continue; }
             try {
-                wValues.add(Value.parse(mtRange).asWeightedValue("q", 1f));
+                wValues.add(parseRange(mtRange));
             } catch (final NumberFormatException e) {
                 // TODO: Log invalid weighted value.
             }
@@ -134,6 +189,40 @@ public class MediaTypeNegotiator
     }
 
 
+    /*
+     * Parse a single media range, retaining any media type parameters that
+     * precede the "q" parameter.
+     */
+    private static WeightedValue parseRange(final String mtRange) {
+        final String[] parts = mtRange.split(";");
+
+        String mediaRange = parts[0].trim();
+        if (ANY.equals(mediaRange)) {
+            // Tolerate the legacy '*' range, sent by some Java clients.
+            mediaRange = "*/*";                                    //$NON-NLS-1$
+        }
+
+        final StringBuilder range = new StringBuilder(mediaRange);
+        int quality = QualityValue.MAX;
+        for (int i=1; i<parts.length; i++) {
+            final String param = parts[i].trim();
+            final int    eq    = param.indexOf('=');
+            if (0>=eq) { continue; }
+            final String attribute = param.substring(0, eq).trim();
+            final String val       = param.substring(eq+1).trim();
+            if ("q".equalsIgnoreCase(attribute)) {                 //$NON-NLS-1$
+                if (!val.isEmpty()) {
+                    quality = QualityValue.parseWeight(val, 0, val.length());
+                }
+                break; // Remaining parameters are accept-extensions.
+            }
+            range.append(';').append(attribute).append('=').append(val);
+        }
+
+        return WeightedValue.withQuality(range.toString(), quality);
+    }
+
+
     /**
      * Negotiate a media type.
      *
@@ -190,29 +279,21 @@ public class MediaTypeNegotiator
 
         if ((null==mediaRanges) || (0==mediaRanges.size())) {
             // Any media type is acceptable - return the first.
-            // FIXME: Doesn't handle 0 available media types.
-            return _availableMediaTypes.iterator().next();
+            return
+                (0==_availableMediaTypes.length) ? null : _availableMediaTypes[0];
         }
 
         // Calculate weights
-        final Map<MediaType, Float> weightedMediaTypes = weights(mediaRanges);
-
-        // No matches.
-        if (0==weightedMediaTypes.size()) { return null; }
-
-        // Select best quality media type.
-        final Map.Entry<MediaType, Float> max =
-            Collections.max(
-                weightedMediaTypes.entrySet(),
-                new Comparator<Map.Entry<MediaType, Float>>() {
-                    @Override
-                    public int compare(final Entry<MediaType, Float> o1,
-                                       final Entry<MediaType, Float> o2) {
-                        return Float.compare(o1.getValue(), o2.getValue());
-                    }
-            });
-
-        return (max.getValue()>0f) ? max.getKey() : null;
+        final int[] qualities = weigh(mediaRanges);
+
+        // Select best quality media type; ties go to the first available.
+        int max = -1;
+        for (int i=0; i<qualities.length; i++) {
+            if (qualities[i]>QualityValue.MIN
+                && (0>max || qualities[i]>qualities[max])) { max = i; }
+        }
+
+        return (0>max) ? null : _availableMediaTypes[max];
     }
 
 
@@ -238,41 +319,350 @@ public class MediaTypeNegotiator
      * @return A map from media type to quality weighting.
      */
     public Map<MediaType, Float> weights(final List<WeightedValue> mediaRanges) {
+        final int[] qualities = weigh(mediaRanges);
+        final Map<MediaType, Float> weightedMediaTypes =
+            new LinkedHashMap<MediaType, Float>();
+        for (int i=0; i<qualities.length; i++) {
+            weightedMediaTypes.put(
+                _availableMediaTypes[i], qualities[i] / (float) QualityValue.MAX);
+        }
+        return weightedMediaTypes;
+    }
 
-        final Map<MediaType, Float> weights = new HashMap<MediaType, Float>();
 
-        /*
-         * If no range in the field matches the media type, the quality factor
-         * assigned is 0.
-         */
-        final float defaultWeight = 0;
+    /**
+     * Calculate the quality for each available media type.
+     *
+     * @param mediaRanges The media ranges specifying quality weightings.
+     *
+     * @return A map from media type to quality weighting.
+     */
+    public Map<MediaType, Float> weights(final WeightedValue... mediaRanges) {
+        return weights(Arrays.asList(mediaRanges));
+    }
 
-        for (final MediaType avail : _availableMediaTypes) {
-            float weight = defaultWeight;
-            MediaType match = null;
 
-            for (final WeightedValue v : mediaRanges) {
-                final MediaType mediaRange = MediaType.parse(v.getValue());
-                if (avail.matches(mediaRange) && mediaRange.precedes(match)) {
-                    weight = v.getWeight();
-                    match = mediaRange;
-                }
+    /**
+     * Find the index of an available media type.
+     *
+     * @param mediaType The media type, including parameters, to find.
+     *
+     * @return The index of the media type; -1 if it isn't available.
+     */
+    int indexOf(final MediaType mediaType) {
+        for (int i=0; i<_availableMediaTypes.length; i++) {
+            final MediaType mt = _availableMediaTypes[i];
+            if (mt.equals(mediaType)
+                && mt.getParameters().equals(mediaType.getParameters())) {
+                return i;
             }
-            weights.put(avail, weight);
         }
-
-        return weights;
+        return -1;
     }
 
 
     /**
-     * Calculate the quality for each available media type.
+     * Calculate the quality for each available media type, indexed as per
+     * {@link #indexOf(MediaType)}.
+     *
+     * The media type quality factor associated with a given type is determined
+     * by finding the media range with the highest precedence which matches
+     * that type. If no range in the field matches the media type, the quality
+     * factor assigned is 0.
      *
      * @param mediaRanges The media ranges specifying quality weightings.
      *
-     * @return A map from media type to quality weighting.
+     * @return The quality of each media type, in fixed-point form.
      */
-    public Map<MediaType, Float> weights(final WeightedValue... mediaRanges) {
-        return weights(Arrays.asList(mediaRanges));
+    int[] weigh(final List<WeightedValue> mediaRanges) {
+        final int   size       = _availableMediaTypes.length;
+        final int[] qualities  = new int[size];
+        final int[] precedence = new int[size];
+        Arrays.fill(precedence, -1);
+
+        if (0==size) { return qualities; }
+
+        for (final WeightedValue v : mediaRanges) {
+            final MediaRange range = new MediaRange(v.getValue());
+            for (final int i : candidates(range)) {
+                final int p = precedence(range, i);
+                if (p>precedence[i]) {
+                    precedence[i] = p;
+                    qualities[i]  = v.getQuality();
+                }
+            }
+        }
+
+        return qualities;
+    }
+
+
+    /*
+     * Find the available media types whose type and subtype a media range
+     * matches.
+     */
+    private int[] candidates(final MediaRange range) {
+        final String value = range._value;
+        final int    type  = hash(value, range._typeStart, range._typeEnd, 0);
+
+        if (range.isAnyType()) {
+            return (range.isAnySubtype()) ? _all : NONE;
+        }
+        if (range.isAnySubtype()) {
+            final int mask = _typeSlots.length-1;
+            for (int s=type & mask; 0!=_typeSlots[s]; s=(s+1) & mask) {
+                final int[] group = _typeGroups[_typeSlots[s]-1];
+                if (equalsIgnoreCase(
+                        value, range._typeStart, range._typeEnd,
+                        _types[group[0]])) {
+                    return group;
+                }
+            }
+            return NONE;
+        }
+
+        final int mediaType =
+            hash(value, range._subStart, range._subEnd, 31*type+'/');
+        final int mask = _mediaTypeSlots.length-1;
+        for (int s=mediaType & mask; 0!=_mediaTypeSlots[s]; s=(s+1) & mask) {
+            final int[] group = _mediaTypeGroups[_mediaTypeSlots[s]-1];
+            if (equalsIgnoreCase(
+                    value, range._typeStart, range._typeEnd, _types[group[0]])
+                && equalsIgnoreCase(
+                    value, range._subStart, range._subEnd,
+                    _subtypes[group[0]])) {
+                return group;
+            }
+        }
+        return NONE;
+    }
+
+
+    /*
+     * Determine the precedence with which a media range matches one of its
+     * candidates: -1 for no match; 0 for '*&#47;*'; 1 for 'type/*'; 2 for
+     * 'type/subtype'; plus 1 for each matching media range parameter.
+     */
+    private int precedence(final MediaRange range, final int available) {
+        final String value = range._value;
+
+        if (range.isAnySubtype()) {
+            return (range.isAnyType()) ? 0 : 1;
+        }
+
+        final int[] parameters = range._parameters;
+        for (int i=0; i<range._parameterCount; i+=4) {
+            if (!hasParameter(
+                    available,
+                    value,
+                    parameters[i],
+                    parameters[i+1],
+                    parameters[i+2],
+                    parameters[i+3])) {
+                return -1;
+            }
+        }
+        return 2+range._parameterCount/4;
+    }
+
+
+    private boolean hasParameter(final int available,
+                                 final String range,
+                                 final int ns,
+                                 final int ne,
+                                 final int vs,
+                                 final int ve) {
+        final String[] names  = _parameterNames[available];
+        final String[] values = _parameterValues[available];
+        for (int i=0; i<names.length; i++) {
+            if (equalsIgnoreCase(range, ns, ne, names[i])) {
+                return equalsIgnoreCase(range, vs, ve, values[i]);
+            }
+        }
+        return false;
+    }
+
+
+    /*
+     * Group the indices of equal keys, recording each group's number plus
+     * one in an open-addressed table of slots by key hash.
+     */
+    private static int[][] index(final String[] keys, final int[] slots) {
+        final Map<String, List<Integer>> groups =
+            new LinkedHashMap<String, List<Integer>>();
+        for (int i=0; i<keys.length; i++) {
+            List<Integer> group = groups.get(keys[i]);
+            if (null==group) {
+                group = new ArrayList<Integer>();
+                groups.put(keys[i], group);
+            }
+            group.add(Integer.valueOf(i));
+        }
+
+        final int[][] indices = new int[groups.size()][];
+        final int     mask    = slots.length-1;
+        int g = 0;
+        for (final Map.Entry<String, List<Integer>> e : groups.entrySet()) {
+            final List<Integer> group = e.getValue();
+            indices[g] = new int[group.size()];
+            for (int i=0; i<indices[g].length; i++) {
+                indices[g][i] = group.get(i).intValue();
+            }
+            final String key = e.getKey();
+            int s = hash(key, 0, key.length(), 0) & mask;
+            while (0!=slots[s]) { s = (s+1) & mask; }
+            slots[s] = ++g;
+        }
+        return indices;
+    }
+
+
+    /*
+     * A table size with at least one free slot per key; a power of two.
+     */
+    private static int slots(final int keys) {
+        return Integer.highestOneBit(Math.max(keys, 1))<<1;
+    }
+
+
+    /*
+     * A case-insensitive hash of a region, continuing from a seed so that the
+     * hash of 'type/subtype' can be built from the type's hash.
+     */
+    private static int hash(final String s,
+                            final int start,
+                            final int end,
+                            final int seed) {
+        int h = seed;
+        for (int i=start; i<end; i++) {
+            h = 31*h+Character.toLowerCase(s.charAt(i));
+        }
+        return h;
+    }
+
+
+    private static boolean isAny(final String s, final int start, final int end) {
+        return 1==end-start && '*'==s.charAt(start);
+    }
+
+
+    private static boolean equalsIgnoreCase(final String s,
+                                            final int start,
+                                            final int end,
+                                            final String other) {
+        return end-start==other.length()
+               && s.regionMatches(true, start, other, 0, other.length());
+    }
+
+
+    private static int skipWhitespace(final String s, final int start, final int end) {
+        int i = start;
+        while (i<end && Character.isWhitespace(s.charAt(i))) { i++; }
+        return i;
+    }
+
+
+    private static int trimWhitespace(final String s, final int start, final int end) {
+        int i = end;
+        while (i>start && Character.isWhitespace(s.charAt(i-1))) { i--; }
+        return i;
+    }
+
+
+    private static boolean containsVariant(final List<MediaType> mediaTypes,
+                                           final MediaType mediaType) {
+        for (final MediaType mt : mediaTypes) {
+            if (mt.equals(mediaType)
+                && mt.getParameters().equals(mediaType.getParameters())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static String lower(final String string) {
+        return string.toLowerCase(Locale.US);
+    }
+
+
+    /*
+     * A client media range, located within its header value. The range is
+     * scanned once per negotiation; matching then compares regions of the
+     * value against each available media type.
+     */
+    private static final class MediaRange {
+
+        final String _value;
+        final int    _typeStart;
+        final int    _typeEnd;
+        final int    _subStart;
+        final int    _subEnd;
+        final int[]  _parameters; // Name and value bounds.
+        int          _parameterCount;
+
+
+        MediaRange(final String value) {
+            final int length = value.length();
+            final int slash  = value.indexOf('/');
+            int       semi   = value.indexOf(';');
+            if (0>semi) { semi = length; }
+            if (0>slash || slash>semi) {
+                throw new ClientHttpException(Status.BAD_REQUEST);
+            }
+
+            _value     = value;
+            _typeStart = skipWhitespace(value, 0, slash);
+            _typeEnd   = trimWhitespace(value, _typeStart, slash);
+            _subStart  = skipWhitespace(value, slash+1, semi);
+            _subEnd    = trimWhitespace(value, _subStart, semi);
+            if (_typeStart==_typeEnd || _subStart==_subEnd) {
+                throw new ClientHttpException(Status.BAD_REQUEST);
+            }
+
+            int semis = 0;
+            for (int i=semi; i<length; i++) {
+                if (';'==value.charAt(i)) { semis++; }
+            }
+            _parameters = (0==semis) ? NONE : new int[4*semis];
+
+            int start = semi+1;
+            while (start<length) {
+                int end = value.indexOf(';', start);
+                if (0>end) { end = length; }
+                final int eq = value.indexOf('=', start);
+                if (eq>start && eq<end) {
+                    final int ns = skipWhitespace(value, start, eq);
+                    final int vs = skipWhitespace(value, eq+1, end);
+                    addParameter(
+                        ns,
+                        trimWhitespace(value, ns, eq),
+                        vs,
+                        trimWhitespace(value, vs, end));
+                }
+                start = end+1;
+            }
+        }
+
+
+        boolean isAnyType() {
+            return isAny(_value, _typeStart, _typeEnd);
+        }
+
+
+        boolean isAnySubtype() {
+            return isAny(_value, _subStart, _subEnd);
+        }
+
+
+        private void addParameter(final int ns,
+                                  final int ne,
+                                  final int vs,
+                                  final int ve) {
+            _parameters[_parameterCount++] = ns;
+            _parameters[_parameterCount++] = ne;
+            _parameters[_parameterCount++] = vs;
+            _parameters[_parameterCount++] = ve;
+        }
     }
 }
@@ -0,0 +1,204 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.negotiation;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import com.johnstok.http.ContentCoding;
+import com.johnstok.http.LanguageTag;
+import com.johnstok.http.MediaType;
+import com.johnstok.http.Specification;
+
+
+/**
+ * A representation of a resource, described by the dimensions on which
+ * representations may be negotiated.
+ *
+ * Any dimension may be null, indicating that the representation does not vary
+ * on that dimension. Both the variant key and the Content-Type value are
+ * computed on construction so they may be shared by every response that
+ * selects this variant.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-2616", section="12.1")
+public final class Variant {
+
+    private static final char SEPARATOR = '|';
+
+    private final MediaType     _mediaType;
+    private final Charset       _charset;
+    private final LanguageTag   _language;
+    private final ContentCoding _encoding;
+    private final String        _key;
+    private final String        _contentType;
+
+
+    /**
+     * Constructor.
+     *
+     * @param mediaType The media type of the variant; may be null.
+     * @param charset   The charset of the variant; may be null.
+     * @param language  The language of the variant; may be null.
+     * @param encoding  The content coding of the variant; may be null.
+     */
+    public Variant(final MediaType mediaType,
+                   final Charset charset,
+                   final LanguageTag language,
+                   final ContentCoding encoding) {
+        _mediaType = mediaType;
+        _charset   = charset;
+        _language  = language;
+        _encoding  = encoding;
+
+        final String media = describe(_mediaType, _charset);
+
+        final StringBuilder key = new StringBuilder();
+        append(key, media).append(SEPARATOR);
+        append(key, (null==_charset) ? null : _charset.name()).append(SEPARATOR);
+        append(key, _language).append(SEPARATOR);
+        append(key, _encoding);
+        _key = key.toString();
+
+        _contentType =
+            (null==media || null==_charset)
+                ? media
+                : media+";charset="+_charset.name(); //$NON-NLS-1$
+    }
+
+
+    /*
+     * Describe a media type with its parameters, omitting any charset
+     * parameter that is superseded by the variant's charset.
+     */
+    private static String describe(final MediaType mediaType,
+                                   final Charset charset) {
+        if (null==mediaType) { return null; }
+        final StringBuilder sb = new StringBuilder(mediaType.toString());
+        for (final Map.Entry<String, String> p
+                                    : mediaType.getParameters().entrySet()) {
+            if (null!=charset && "charset".equals(p.getKey())) { //$NON-NLS-1$
+                continue;
+            }
+            sb.append(';').append(p.getKey()).append('=').append(p.getValue());
+        }
+        return sb.toString();
+    }
+
+
+    private static StringBuilder append(final StringBuilder sb,
+                                        final Object value) {
+        return (null==value) ? sb : sb.append(value);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the media type; null if the variant doesn't specify one.
+     */
+    public MediaType getMediaType() {
+        return _mediaType;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the charset; null if the variant doesn't specify one.
+     */
+    public Charset getCharset() {
+        return _charset;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the language; null if the variant doesn't specify one.
+     */
+    public LanguageTag getLanguage() {
+        return _language;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the content coding; null if the variant doesn't specify
+     *  one.
+     */
+    public ContentCoding getEncoding() {
+        return _encoding;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns a compact key identifying this variant, suitable for use
+     *  as part of a cache key; e.g. "text/html|UTF-8|en|gzip".
+     */
+    public String getKey() {
+        return _key;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the value of the Content-Type header for this variant;
+     *  null if the variant doesn't specify a media type.
+     */
+    public String getContentType() {
+        return _contentType;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return _key.hashCode();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Variant other = (Variant) obj;
+        return _key.equals(other._key);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return _key;
+    }
+}
@@ -0,0 +1,224 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.negotiation;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import com.johnstok.http.Header;
+import com.johnstok.http.MediaType;
+import com.johnstok.http.QualityValue;
+import com.johnstok.http.Specification;
+import com.johnstok.http.WeightedValue;
+import com.johnstok.http.event.NegotiationEvent;
+import com.johnstok.http.headers.VaryHeader;
+
+
+/**
+ * Negotiates a variant of a resource across media type, charset, language and
+ * content coding in a single pass.
+ *
+ * The variant with the highest product of the qualities for each dimension it
+ * declares is selected; ties are resolved in favour of the variant declared
+ * first. The Vary header value naming the request headers used for selection
+ * is computed on construction.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-2616", section="12.1")
+public class VariantNegotiator {
+
+    private final Variant[]           _variants;
+    private final int[]               _mediaTypeIndices;
+    private final MediaTypeNegotiator _mediaTypes;
+    private final CharsetNegotiator   _charsets;
+    private final String              _vary;
+
+
+    /**
+     * Constructor.
+     *
+     * @param variants The variants available for a resource, in order of
+     *  preference.
+     */
+    public VariantNegotiator(final Collection<Variant> variants) {
+        final Set<Variant> distinct = new LinkedHashSet<Variant>(variants);
+        _variants = distinct.toArray(new Variant[distinct.size()]);
+
+        final List<MediaType> mediaTypes = new ArrayList<MediaType>();
+        final Set<Charset>    charsets   = new LinkedHashSet<Charset>();
+        final Set<String>     vary       = new TreeSet<String>();
+        for (final Variant v : _variants) {
+            if (null!=v.getMediaType()) {
+                mediaTypes.add(v.getMediaType());
+                vary.add(Header.ACCEPT);
+            }
+            if (null!=v.getCharset()) {
+                charsets.add(v.getCharset());
+                vary.add(Header.ACCEPT_CHARSET);
+            }
+            if (null!=v.getLanguage()) { vary.add(Header.ACCEPT_LANGUAGE); }
+            if (null!=v.getEncoding()) { vary.add(Header.ACCEPT_ENCODING); }
+        }
+
+        _mediaTypes = new MediaTypeNegotiator(mediaTypes);
+        _charsets   = new CharsetNegotiator(charsets);
+        _vary       =
+            (vary.isEmpty())
+                ? null
+                : new VaryHeader().write(new TreeSet<String>(vary));
+
+        _mediaTypeIndices = new int[_variants.length];
+        for (int i=0; i<_variants.length; i++) {
+            final MediaType mt = _variants[i].getMediaType();
+            _mediaTypeIndices[i] = (null==mt) ? -1 : _mediaTypes.indexOf(mt);
+        }
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param variants The variants available for a resource, in order of
+     *  preference.
+     */
+    public VariantNegotiator(final Variant... variants) {
+        this(Arrays.asList(variants));
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the value of the Vary header for responses negotiated by
+     *  this negotiator; null if no dimension is negotiated.
+     */
+    public String getVary() {
+        return _vary;
+    }
+
+
+    /**
+     * Select a variant based on the values of the request's Accept headers.
+     *
+     * An absent header indicates that any value is acceptable for its
+     * dimension.
+     *
+     * @param accept         The value of the Accept header; may be null.
+     * @param acceptCharset  The value of the Accept-Charset header; may be null.
+     * @param acceptLanguage The value of the Accept-Language header; may be
+     *  null.
+     * @param acceptEncoding The value of the Accept-Encoding header; may be
+     *  null.
+     *
+     * @return The most preferable variant; null if no variant is acceptable.
+     */
+    public Variant select(final String accept,
+                          final String acceptCharset,
+                          final String acceptLanguage,
+                          final String acceptEncoding) {
+        return select(
+            (null==accept) ? null : MediaTypeNegotiator.parse(accept),
+            (null==acceptCharset)
+                ? null : Header.parseAcceptCharset(acceptCharset),
+            (null==acceptLanguage)
+                ? null : Header.parseAcceptLanguage(acceptLanguage),
+            (null==acceptEncoding)
+                ? null : Header.parseAcceptEncoding(acceptEncoding));
+    }
+
+
+    /**
+     * Select a variant based on parsed client preferences.
+     *
+     * @param mediaRanges    The accepted media ranges; null if any is
+     *  acceptable.
+     * @param charsets       The accepted charsets; null if any is acceptable.
+     * @param languageRanges The accepted languages; null if any is acceptable.
+     * @param encodings      The accepted encodings; null if only the identity
+     *  coding is known to be acceptable.
+     *
+     * @return The most preferable variant; null if no variant is acceptable.
+     */
+    public Variant select(final List<WeightedValue> mediaRanges,
+                          final List<WeightedValue> charsets,
+                          final List<WeightedValue> languageRanges,
+                          final List<WeightedValue> encodings) {
+        final NegotiationEvent event = new NegotiationEvent();
+        event.begin();
+
+        final int[] mediaQualities =
+            (null==mediaRanges || mediaRanges.isEmpty())
+                ? null
+                : _mediaTypes.weigh(mediaRanges);
+
+        final List<WeightedValue> acceptedEncodings =
+            (null==encodings || encodings.isEmpty()) ? null : encodings;
+
+        // Each dimension contributes MAX when it isn't negotiated, so that
+        // scores for variants declaring different dimensions are comparable.
+        Variant selected = null;
+        long    max      = 0;
+        for (int i=0; i<_variants.length; i++) {
+            final Variant v = _variants[i];
+
+            long score =
+                (null==mediaQualities || 0>_mediaTypeIndices[i])
+                    ? QualityValue.MAX
+                    : mediaQualities[_mediaTypeIndices[i]];
+            if (0==score) { continue; }
+
+            score *=
+                (null==v.getCharset() || null==charsets || charsets.isEmpty())
+                    ? QualityValue.MAX
+                    : _charsets.quality(charsets, v.getCharset());
+            if (0==score) { continue; }
+
+            score *=
+                (null==v.getLanguage()
+                 || null==languageRanges
+                 || languageRanges.isEmpty())
+                    ? QualityValue.MAX
+                    : LanguageNegotiator.quality(
+                        languageRanges, v.getLanguage());
+            if (0==score) { continue; }
+
+            score *=
+                (null==v.getEncoding())
+                    ? QualityValue.MAX
+                    : ContentNegotiator.quality(
+                        acceptedEncodings, v.getEncoding());
+            if (0==score) { continue; }
+
+            if (score>max) {
+                max = score;
+                selected = v;
+            }
+        }
+
+        event.commit(_vary, selected);
+        return selected;
+    }
+}
@@ -0,0 +1,203 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * Publishes server-sent events to many subscribers.
+ *
+ * <p>Each event is encoded once and the same bytes are handed to every
+ * subscriber. The most recent events are held in a bounded ring so a
+ * client that reconnects with a Last-Event-ID header can catch up.
+ *
+ * <p>Subscribers must accept events without blocking; a subscriber that
+ * cannot keep up is dropped and may reconnect to resume from the ring.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class EventSource {
+
+    /**
+     * Receives encoded events.
+     *
+     * <p>A non-blocking transport can implement this directly, queueing the
+     * bytes on the client's connection, so an idle subscriber holds no
+     * thread.
+     */
+    public static interface Subscriber {
+
+        /**
+         * Accept an encoded event.
+         *
+         * <p>Called with the source's lock held; must not block.
+         *
+         * @param event The encoded event; shared, so must not be modified.
+         *
+         * @return False if the event could not be accepted, in which case
+         *  the subscriber is removed and closed.
+         */
+        boolean send(byte[] event);
+
+
+        /**
+         * End the subscription.
+         */
+        void close();
+    }
+
+    private final ServerSentEvent[] _ring;
+    private final Set<Subscriber>   _subscribers = new LinkedHashSet<Subscriber>();
+    private int                     _next;
+    private int                     _count;
+    private boolean                 _closed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param replaySize The number of recent events retained for replay.
+     */
+    public EventSource(final int replaySize) {
+        if (0>replaySize) { throw new IllegalArgumentException(); }
+        _ring = new ServerSentEvent[replaySize];
+    }
+
+
+    /**
+     * Publish an event to all subscribers.
+     *
+     * @param event The event to publish.
+     */
+    public synchronized void publish(final ServerSentEvent event) {
+        Objects.requireNonNull(event);
+        if (_closed) { throw new IllegalStateException("Closed."); } //$NON-NLS-1$
+        if (0<_ring.length) {
+            _ring[_next] = event;
+            _next = (_next+1)%_ring.length;
+            _count = Math.min(_count+1, _ring.length);
+        }
+        broadcast(event.encoded());
+    }
+
+
+    /**
+     * Send a comment to all subscribers, to stop intermediaries timing out
+     * idle connections.
+     *
+     * <p>Call periodically from a single scheduled task.
+     */
+    public synchronized void heartbeat() {
+        broadcast(ServerSentEvent.HEARTBEAT);
+    }
+
+
+    /**
+     * Add a subscriber.
+     *
+     * @param subscriber  The subscriber.
+     * @param lastEventId The last event the client received, from the
+     *  Last-Event-ID header; null for a new client. If the event is no longer
+     *  held every retained event is replayed.
+     */
+    public synchronized void subscribe(final Subscriber subscriber,
+                                       final String lastEventId) {
+        Objects.requireNonNull(subscriber);
+        if (_closed) {
+            subscriber.close();
+            return;
+        }
+        for (final ServerSentEvent event : since(lastEventId)) {
+            if (!subscriber.send(event.encoded())) {
+                subscriber.close();
+                return;
+            }
+        }
+        _subscribers.add(subscriber);
+    }
+
+
+    /**
+     * Remove a subscriber.
+     *
+     * @param subscriber The subscriber.
+     */
+    public synchronized void unsubscribe(final Subscriber subscriber) {
+        _subscribers.remove(subscriber);
+    }
+
+
+    /**
+     * Close all subscriptions and reject further events.
+     */
+    public synchronized void close() {
+        _closed = true;
+        for (final Subscriber subscriber : _subscribers) {
+            subscriber.close();
+        }
+        _subscribers.clear();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of current subscribers.
+     */
+    public synchronized int getSubscriberCount() {
+        return _subscribers.size();
+    }
+
+
+    /*
+     * The retained events after the one with the given id, oldest first.
+     */
+    private List<ServerSentEvent> since(final String lastEventId) {
+        final List<ServerSentEvent> events = new ArrayList<ServerSentEvent>();
+        if (null==lastEventId) { return events; }
+        final int oldest = (_next-_count+_ring.length)%Math.max(_ring.length, 1);
+        for (int i=0; i<_count; i++) {
+            final ServerSentEvent event = _ring[(oldest+i)%_ring.length];
+            if (lastEventId.equals(event.getId())) {
+                events.clear();
+            } else {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+
+    private void broadcast(final byte[] encoded) {
+        final List<Subscriber> dropped = new ArrayList<Subscriber>(0);
+        for (final Subscriber subscriber : _subscribers) {
+            if (!subscriber.send(encoded)) { dropped.add(subscriber); }
+        }
+        for (final Subscriber subscriber : dropped) {
+            _subscribers.remove(subscriber);
+            subscriber.close();
+        }
+    }
+}
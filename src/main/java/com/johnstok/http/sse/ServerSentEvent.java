@@ -0,0 +1,163 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import com.johnstok.http.Specification;
+
+
+/**
+ * An event in the text/event-stream format.
+ *
+ * <p>The wire form is encoded once, on construction, so a single event can
+ * be written to any number of subscribers and held for replay without
+ * being encoded again.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="html-sse", section="9.2.5")
+public final class ServerSentEvent {
+
+    /** A comment line, sent to keep idle connections open. */
+    static final byte[] HEARTBEAT =
+        ":\n\n".getBytes(StandardCharsets.US_ASCII);                //$NON-NLS-1$
+
+    private final String _id;
+    private final String _type;
+    private final String _data;
+    private final byte[] _encoded;
+
+
+    /**
+     * Constructor.
+     *
+     * @param id    The event's identifier; may be null.
+     * @param type  The event's type; null for the default "message" type.
+     * @param data  The event's data; line breaks are sent as separate data
+     *  lines.
+     * @param retry The reconnection time to advertise, in milliseconds;
+     *  negative to leave unchanged.
+     */
+    public ServerSentEvent(final String id,
+                           final String type,
+                           final String data,
+                           final long retry) {
+        _id = singleLine(id);
+        _type = singleLine(type);
+        _data = (null==data) ? "" : data;                          //$NON-NLS-1$
+
+        final StringBuilder b = new StringBuilder(_data.length()+32);
+        if (null!=_id) { b.append("id: ").append(_id).append('\n'); } //$NON-NLS-1$
+        if (null!=_type) { b.append("event: ").append(_type).append('\n'); } //$NON-NLS-1$
+        if (0<=retry) { b.append("retry: ").append(retry).append('\n'); } //$NON-NLS-1$
+        int start = 0;
+        for (int i=0; i<=_data.length(); i++) {
+            final char c = (i<_data.length()) ? _data.charAt(i) : '\n';
+            if ('\r'==c || '\n'==c) {
+                b.append("data: ").append(_data, start, i).append('\n'); //$NON-NLS-1$
+                if ('\r'==c && i+1<_data.length() && '\n'==_data.charAt(i+1)) { i++; }
+                start = i+1;
+            }
+        }
+        b.append('\n');
+        _encoded = b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param id   The event's identifier; may be null.
+     * @param type The event's type; null for the default "message" type.
+     * @param data The event's data.
+     */
+    public ServerSentEvent(final String id,
+                           final String type,
+                           final String data) {
+        this(id, type, data, -1);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the event's identifier; may be null.
+     */
+    public String getId() {
+        return _id;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the event's type; may be null.
+     */
+    public String getType() {
+        return _type;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the event's data.
+     */
+    public String getData() {
+        return _data;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns a copy of the encoded event.
+     */
+    public byte[] getBytes() {
+        return Arrays.copyOf(_encoded, _encoded.length);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the shared encoded form; callers must not modify it.
+     */
+    byte[] encoded() {
+        return _encoded;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return new String(_encoded, StandardCharsets.UTF_8);
+    }
+
+
+    private static String singleLine(final String value) {
+        if (null!=value && (0<=value.indexOf('\n') || 0<=value.indexOf('\r'))) {
+            throw new IllegalArgumentException(
+                "Line break in event field: "+value);               //$NON-NLS-1$
+        }
+        return value;
+    }
+}
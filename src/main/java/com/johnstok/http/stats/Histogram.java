@@ -0,0 +1,293 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A lock-free histogram of non-negative long values with a high dynamic range.
+ *
+ * <p>Values are counted in log-linear buckets: every power of two is divided
+ * into 64 sub-buckets, so any recorded value is reported to within 1/64 (about
+ * 1.6%) of its true magnitude while the whole range of a long is covered in a
+ * few thousand counters. Values below 128 are counted exactly.
+ *
+ * <p>Recording is wait-free apart from the min / max updates, and never
+ * allocates; snapshots may be taken concurrently with recording.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS  = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private final long            _highestTrackableValue;
+    private final AtomicLongArray _counts;
+    private final AtomicLong      _min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong      _max = new AtomicLong(0);
+    private final AtomicLong      _sum = new AtomicLong(0);
+
+
+    /**
+     * Constructor.
+     *
+     * @param highestTrackableValue The largest value that can be distinguished;
+     *  larger values are recorded as this value.
+     */
+    public Histogram(final long highestTrackableValue) {
+        if (1>highestTrackableValue) {
+            throw new IllegalArgumentException(
+                "Highest trackable value must be positive."); //$NON-NLS-1$
+        }
+        _highestTrackableValue = highestTrackableValue;
+        _counts = new AtomicLongArray(indexOf(highestTrackableValue)+1);
+    }
+
+
+    /**
+     * Record a value.
+     *
+     * @param value The value to record; negative values are recorded as 0.
+     */
+    public void record(final long value) {
+        final long v =
+            (0>value)
+                ? 0
+                : (value>_highestTrackableValue) ? _highestTrackableValue : value;
+        _counts.incrementAndGet(indexOf(v));
+        _sum.addAndGet(v);
+
+        long min = _min.get();
+        while (v<min && !_min.compareAndSet(min, v)) { min = _min.get(); }
+        long max = _max.get();
+        while (v>max && !_max.compareAndSet(max, v)) { max = _max.get(); }
+    }
+
+
+    /**
+     * Take a consistent-enough copy of the recorded values.
+     *
+     * <p>Values recorded while the snapshot is taken may or may not be
+     * included.
+     *
+     * @return A snapshot of this histogram.
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[_counts.length()];
+        long total = 0;
+        for (int i=0; i<counts.length; i++) {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, _min.get(), _max.get(), _sum.get());
+    }
+
+
+    /**
+     * Take a snapshot and reset this histogram.
+     *
+     * <p>Each recorded value appears in exactly one interval snapshot, although
+     * min, max and sum may straddle a concurrent reset.
+     *
+     * @return A snapshot of the values recorded since the last reset.
+     */
+    public Snapshot snapshotAndReset() {
+        final long[] counts = new long[_counts.length()];
+        long total = 0;
+        for (int i=0; i<counts.length; i++) {
+            counts[i] = _counts.getAndSet(i, 0);
+            total += counts[i];
+        }
+        return new Snapshot(
+            counts,
+            total,
+            _min.getAndSet(Long.MAX_VALUE),
+            _max.getAndSet(0),
+            _sum.getAndSet(0));
+    }
+
+
+    /*
+     * Map a value to its bucket index.
+     */
+    static int indexOf(final long value) {
+        final int shift =
+            Math.max(
+                0, (Long.SIZE - Long.numberOfLeadingZeros(value))
+                   - (SUB_BUCKET_BITS+1));
+        return (shift<<SUB_BUCKET_BITS) + (int) (value>>>shift);
+    }
+
+
+    /*
+     * The lowest value counted by the specified bucket.
+     */
+    static long lowestValueAt(final int index) {
+        final int shift = Math.max(0, (index>>SUB_BUCKET_BITS) - 1);
+        return ((long) (index - (shift<<SUB_BUCKET_BITS))) << shift;
+    }
+
+
+    /*
+     * The highest value counted by the specified bucket.
+     */
+    static long highestValueAt(final int index) {
+        final int shift = Math.max(0, (index>>SUB_BUCKET_BITS) - 1);
+        return lowestValueAt(index) + (1L<<shift) - 1;
+    }
+
+
+    /**
+     * An immutable copy of a histogram's values.
+     *
+     * @author Keith Webster Johnston.
+     */
+    public static final class Snapshot {
+
+        private final long[] _counts;
+        private final long   _count;
+        private final long   _min;
+        private final long   _max;
+        private final long   _sum;
+
+
+        Snapshot(final long[] counts,
+                 final long count,
+                 final long min,
+                 final long max,
+                 final long sum) {
+            _counts = counts;
+            _count  = count;
+            _min    = (0==count) ? 0 : min;
+            _max    = max;
+            _sum    = sum;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the number of recorded values.
+         */
+        public long getCount() {
+            return _count;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the smallest recorded value; 0 if none were recorded.
+         */
+        public long getMin() {
+            return _min;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the largest recorded value; 0 if none were recorded.
+         */
+        public long getMax() {
+            return _max;
+        }
+
+
+        /**
+         * Accessor.
+         *
+         * @return Returns the mean of the recorded values; 0 if none were
+         *  recorded.
+         */
+        public double getMean() {
+            return (0==_count) ? 0 : ((double) _sum) / _count;
+        }
+
+
+        /**
+         * Determine the value at a percentile.
+         *
+         * @param percentile The percentile, in the range 0 to 100.
+         *
+         * @return The highest value equivalent to the value at the specified
+         *  percentile, capped by the recorded maximum; 0 if no values were
+         *  recorded.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (0==_count) { return 0; }
+            final double p = Math.min(100, Math.max(0, percentile));
+            final long rank = Math.max(1, (long) Math.ceil((p/100) * _count));
+            long seen = 0;
+            for (int i=0; i<_counts.length; i++) {
+                seen += _counts[i];
+                if (seen>=rank) {
+                    return Math.max(_min, Math.min(_max, highestValueAt(i)));
+                }
+            }
+            return _max;
+        }
+
+
+        /**
+         * Combine this snapshot with another.
+         *
+         * @param other The snapshot to add; must come from a histogram with the
+         *  same highest trackable value.
+         *
+         * @return A new snapshot containing the values from both.
+         */
+        public Snapshot add(final Snapshot other) {
+            final long[] counts = _counts.clone();
+            for (int i=0; i<counts.length && i<other._counts.length; i++) {
+                counts[i] += other._counts[i];
+            }
+            final long min;
+            if (0==_count) {
+                min = other._min;
+            } else if (0==other._count) {
+                min = _min;
+            } else {
+                min = Math.min(_min, other._min);
+            }
+            return new Snapshot(
+                counts,
+                _count+other._count,
+                min,
+                Math.max(_max, other._max),
+                _sum+other._sum);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return "count="+_count                                 //$NON-NLS-1$
+                + " min="+_min                                     //$NON-NLS-1$
+                + " p50="+getValueAtPercentile(50)                 //$NON-NLS-1$
+                + " p99="+getValueAtPercentile(99)                 //$NON-NLS-1$
+                + " p999="+getValueAtPercentile(99.9)              //$NON-NLS-1$
+                + " max="+_max;                                    //$NON-NLS-1$
+        }
+    }
+}
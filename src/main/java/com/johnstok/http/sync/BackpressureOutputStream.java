@@ -0,0 +1,381 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import com.johnstok.http.BufferPool;
+
+
+/**
+ * A response body stream for non-blocking transports that applies
+ * backpressure instead of buffering without limit.
+ *
+ * <p>Bytes written are copied into direct buffers taken from a
+ * {@link BufferPool}. At most a fixed number of buffers may be queued; once
+ * the queue is full a writer waits until the transport has sent some of
+ * them. Waiting uses a {@link ReentrantLock} rather than a monitor, so a
+ * platform thread blocks and a virtual thread parks without pinning its
+ * carrier. A handler that must not wait may instead register a
+ * {@link WriteListener}, check {@link #isReady()} before each write and
+ * resume when the listener is called.
+ *
+ * <p>The transport calls {@link #transferTo(GatheringByteChannel)} whenever
+ * the channel is writable. All queued buffers are sent with a single
+ * gathering write, and each buffer is returned to the pool once sent. The
+ * transport is told that data is waiting through the runnable supplied at
+ * construction, e.g. to register interest in OP_WRITE and wake its
+ * selector.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class BackpressureOutputStream extends OutputStream {
+
+    /**
+     * Receives notice that a stream can accept more data.
+     */
+    public static interface WriteListener {
+
+        /**
+         * Called, on a transport thread, when a stream that was not ready
+         * can accept more data.
+         */
+        void onWritable();
+    }
+
+    private final BufferPool             _pool;
+    private final int                    _maxBuffers;
+    private final int                    _resumeAt;
+    private final Runnable               _pending;
+    private final ArrayDeque<ByteBuffer> _queue;
+    private final ByteBuffer[]           _gather;
+    private final ReentrantLock          _lock     = new ReentrantLock();
+    private final Condition              _writable = _lock.newCondition();
+    private ByteBuffer                   _current;
+    private WriteListener                _listener;
+    private boolean                      _notify;
+    private boolean                      _closed;
+    private IOException                  _failure;
+
+
+    /**
+     * Constructor.
+     *
+     * @param pool       The pool from which to take buffers.
+     * @param maxBuffers The number of buffers that may be queued; writers
+     *  wait beyond this.
+     * @param pending    Called when data is queued for an idle transport.
+     */
+    public BackpressureOutputStream(final BufferPool pool,
+                                    final int maxBuffers,
+                                    final Runnable pending) {
+        if (1>maxBuffers) {
+            throw new IllegalArgumentException(
+                "At least one buffer is required.");                //$NON-NLS-1$
+        }
+        _pool       = pool;
+        _maxBuffers = maxBuffers;
+        _resumeAt   = Math.max(1, maxBuffers/2);
+        _pending    = pending;
+        _queue      = new ArrayDeque<ByteBuffer>(maxBuffers);
+        _gather     = new ByteBuffer[maxBuffers];
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final byte[] b,
+                      final int off,
+                      final int len) throws IOException {
+        if (0>off || 0>len || len>b.length-off) {
+            throw new IndexOutOfBoundsException();
+        }
+        _lock.lock();
+        try {
+            checkOpen();
+            int written = 0;
+            while (written<len) {
+                if (null==_current) {
+                    awaitCapacity();
+                    _current = _pool.direct();
+                }
+                final int n = Math.min(len-written, _current.remaining());
+                _current.put(b, off+written, n);
+                written += n;
+                if (!_current.hasRemaining() && enqueue()) {
+                    // Tell the transport now: this write may go on to wait
+                    // for capacity that only the transport can free.
+                    _lock.unlock();
+                    try {
+                        _pending.run();
+                    } finally {
+                        _lock.lock();
+                    }
+                    checkOpen();
+                }
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    /**
+     * Queue any partially filled buffer for sending.
+     *
+     * <p>This method does not wait for the data to reach the network.
+     */
+    @Override
+    public void flush() throws IOException {
+        boolean wake = false;
+        _lock.lock();
+        try {
+            checkOpen();
+            if (null!=_current && 0<_current.position()) {
+                wake = enqueue();
+            }
+        } finally {
+            _lock.unlock();
+        }
+        if (wake) { _pending.run(); }
+    }
+
+
+    /**
+     * Queue any remaining data and mark the body complete.
+     *
+     * <p>The transport finishes sending queued data; see
+     * {@link #isFinished()}.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean wake = false;
+        _lock.lock();
+        try {
+            if (_closed) { return; }
+            if (null!=_current) {
+                if (0<_current.position() && null==_failure) {
+                    wake = enqueue();
+                } else {
+                    _pool.release(_current);
+                    _current = null;
+                }
+            }
+            _closed = true;
+            wake |= _queue.isEmpty();
+        } finally {
+            _lock.unlock();
+        }
+        if (wake) { _pending.run(); }
+    }
+
+
+    /**
+     * Switch to asynchronous mode.
+     *
+     * <p>Once a listener is set a write never waits: the handler must check
+     * {@link #isReady()} before each write, and writing when not ready fails
+     * with an {@link IllegalStateException}.
+     *
+     * @param listener Called when the stream next becomes ready.
+     */
+    public void setWriteListener(final WriteListener listener) {
+        _lock.lock();
+        try {
+            _listener = listener;
+            _notify = false;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    /**
+     * Check whether a write of up to one buffer would proceed without
+     * waiting.
+     *
+     * <p>If not, the write listener, if any, will be called once the
+     * transport has drained the queue to half its capacity.
+     *
+     * @return True if the stream can accept data now; false otherwise.
+     */
+    public boolean isReady() {
+        _lock.lock();
+        try {
+            if (_queue.size()+((null==_current) ? 0 : 1)<_maxBuffers) {
+                return true;
+            }
+            _notify = true;
+            return false;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    /**
+     * Send queued data to a channel.
+     *
+     * <p>Called by the transport when the channel is writable. Writes all
+     * queued buffers with one gathering write, returns those sent to the
+     * pool and wakes any waiting writer.
+     *
+     * @param channel The non-blocking channel to write to.
+     *
+     * @return The number of bytes written.
+     *
+     * @throws IOException If the write fails; the stream is failed too.
+     */
+    public long transferTo(final GatheringByteChannel channel)
+    throws IOException {
+        WriteListener listener = null;
+        long written;
+        _lock.lock();
+        try {
+            final int count = _queue.size();
+            if (0==count) { return 0; }
+            _queue.toArray(_gather);
+            try {
+                written = channel.write(_gather, 0, count);
+            } catch (final IOException e) {
+                fail(e);
+                throw e;
+            } finally {
+                Arrays.fill(_gather, 0, count, null);
+            }
+            while (!_queue.isEmpty() && !_queue.peekFirst().hasRemaining()) {
+                _pool.release(_queue.pollFirst());
+            }
+            if (_queue.size()<=_resumeAt) {
+                _writable.signalAll();
+                if (_notify && null!=_listener) {
+                    _notify = false;
+                    listener = _listener;
+                }
+            }
+        } finally {
+            _lock.unlock();
+        }
+        if (null!=listener) { listener.onWritable(); }
+        return written;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if data is queued for sending; false otherwise.
+     */
+    public boolean hasPending() {
+        _lock.lock();
+        try {
+            return !_queue.isEmpty();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the stream is closed and all its data has been sent.
+     */
+    public boolean isFinished() {
+        _lock.lock();
+        try {
+            return _closed && _queue.isEmpty();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    /**
+     * Abandon the stream, e.g. because the connection was closed.
+     *
+     * <p>Queued buffers are returned to the pool and current and future
+     * writes fail with the specified exception.
+     *
+     * @param cause The reason for failure.
+     */
+    public void fail(final IOException cause) {
+        _lock.lock();
+        try {
+            if (null==_failure) { _failure = cause; }
+            while (!_queue.isEmpty()) { _pool.release(_queue.pollFirst()); }
+            _writable.signalAll();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    /*
+     * Queue the current buffer. Returns true if the transport had nothing to
+     * send and so must be told.
+     */
+    private boolean enqueue() {
+        _current.flip();
+        final boolean idle = _queue.isEmpty();
+        _queue.addLast(_current);
+        _current = null;
+        return idle;
+    }
+
+
+    private void awaitCapacity() throws IOException {
+        while (_queue.size()>=_maxBuffers) {
+            if (null!=_listener) {
+                throw new IllegalStateException(
+                    "Stream is not ready for writing.");            //$NON-NLS-1$
+            }
+            try {
+                _writable.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            checkOpen();
+        }
+    }
+
+
+    private void checkOpen() throws IOException {
+        if (null!=_failure) { throw new IOException(_failure); }
+        if (_closed) {
+            throw new IOException("Stream closed.");                //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Expectation;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.Version;
+
+
+/**
+ * A request whose client may be waiting for 100 (Continue) before sending
+ * the body.
+ *
+ * <p>The interim response is sent when the handler first asks for the body,
+ * so a request rejected beforehand never has its body transmitted. If
+ * {@link #isBodyWithheld()} is true once the response is complete, the
+ * client may still send the body and the connection should be closed.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-2616", section="8.2.3")
+public class ContinueRequest
+    extends
+        RequestAdapter {
+
+    private static final byte[] CONTINUE =
+        ("HTTP/1.1 "+Status.CONTINUE.getCode()+" "                  //$NON-NLS-1$ //$NON-NLS-2$
+         +Status.CONTINUE.getReasonPhrase()+"\r\n\r\n")             //$NON-NLS-1$
+        .getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream _connection;
+    private final boolean      _expectsContinue;
+    private boolean            _continueSent;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   The request read from the connection.
+     * @param connection The connection's output stream, for the interim
+     *  response.
+     */
+    public ContinueRequest(final Request delegate,
+                           final OutputStream connection) {
+        super(delegate);
+        _connection = Objects.requireNonNull(connection);
+        _expectsContinue = expectsContinue(delegate);
+    }
+
+
+    /**
+     * Test whether a client is waiting for 100 (Continue).
+     *
+     * <p>An HTTP/1.0 client is never sent 100 (Continue).
+     *
+     * @param request The request to test.
+     *
+     * @return True if the request is HTTP/1.1 or later and expects
+     *  100-continue.
+     */
+    public static boolean expectsContinue(final Request request) {
+        final List<String> values = request.getHeaders(Header.EXPECT);
+        if (null==values) { return false; }
+        final Version version = Version.parse(request.getVersion());
+        if (1>version.getMajor()
+            || (1==version.getMajor() && 1>version.getMinor())) {
+            return false;
+        }
+        try {
+            for (final String value : values) {
+                if (Expectation.parseList(value).contains(Expectation.CONTINUE)) {
+                    return true;
+                }
+            }
+        } catch (final ClientHttpException e) {
+            return false;
+        }
+        return false;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream getBody() throws IOException {
+        if (_expectsContinue && !_continueSent) {
+            _continueSent = true;
+            _connection.write(CONTINUE);
+            _connection.flush();
+        }
+        return super.getBody();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the 100 (Continue) response has been sent.
+     */
+    public boolean isContinueSent() {
+        return _continueSent;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the client is still waiting to send the body.
+     */
+    public boolean isBodyWithheld() {
+        return _expectsContinue && !_continueSent;
+    }
+}
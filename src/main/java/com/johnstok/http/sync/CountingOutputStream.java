@@ -0,0 +1,88 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * An output stream that counts the bytes written through it.
+ *
+ * <p>Subclasses may override {@link #counted(long)} to observe each write as
+ * it happens.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    private long _count;
+
+
+    /**
+     * Constructor.
+     *
+     * @param out The stream to write to.
+     */
+    public CountingOutputStream(final OutputStream out) {
+        super(out);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final int b) throws IOException {
+        out.write(b);
+        _count++;
+        counted(1);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final byte[] b,
+                      final int off,
+                      final int len) throws IOException {
+        out.write(b, off, len);
+        _count += len;
+        counted(len);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of bytes written so far.
+     */
+    public long getCount() {
+        return _count;
+    }
+
+
+    /**
+     * Called after bytes have been written to the underlying stream.
+     *
+     * @param count The number of bytes written.
+     */
+    protected void counted(final long count) {
+        // No-op.
+    }
+}
@@ -0,0 +1,100 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * A response that counts the bytes written to its body.
+ *
+ * <p>The count is the total across every stream returned by
+ * {@link #getBody()}. Subclasses may override {@link #counted(long)} to
+ * observe each write, and {@link #closed()} to learn when a body stream is
+ * closed.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class CountingResponse
+    extends
+        ResponseAdapter {
+
+    private long _count;
+
+
+    /**
+     * Constructor.
+     *
+     * @param response The response this adapter will delegate to.
+     */
+    public CountingResponse(final Response response) {
+        super(response);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream getBody() throws IOException {
+        return new CountingOutputStream(super.getBody()) {
+            @Override
+            protected void counted(final long count) {
+                _count += count;
+                CountingResponse.this.counted(count);
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                closed();
+            }
+        };
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of body bytes written so far.
+     */
+    public long getCount() {
+        return _count;
+    }
+
+
+    /**
+     * Called after bytes have been written to the body.
+     *
+     * @param count The number of bytes written.
+     */
+    protected void counted(final long count) {
+        // No-op.
+    }
+
+
+    /**
+     * Called after a body stream has been closed.
+     *
+     * @throws IOException If the subclass fails to handle the close.
+     */
+    protected void closed() throws IOException {
+        // No-op.
+    }
+}
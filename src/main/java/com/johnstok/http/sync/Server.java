@@ -21,6 +21,7 @@ package com.johnstok.http.sync;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -40,9 +41,42 @@ public interface Server {
     void startup(InetSocketAddress address) throws IOException; // TODO: Use a library specific exception.
 
     /**
-     * Stop the server.
+     * Stop the server immediately.
+     *
+     * <p>Open connections are closed without waiting for in-flight requests.
      *
      * @throws IOException If disconnection from the network address fails.
      */
     void shutdown() throws IOException; // TODO: Use a library specific exception.
+
+    /**
+     * Stop the server, draining in-flight requests.
+     *
+     * <p>The server stops accepting connections at once. Requests already
+     * received continue to be handled; responses written from then on carry
+     * {@code Connection: close} so that keep-alive clients move to another
+     * server rather than sending further requests on this one. When the last
+     * in-flight request completes, or the timeout elapses, all remaining
+     * connections are closed. An implementation will typically install a
+     * {@code DrainFilter} in front of its handler and expose it to report
+     * drain progress.
+     *
+     * <p>The default implementation does not drain: it calls
+     * {@link #shutdown()} and returns false. Servers that support draining
+     * should override it, and may implement {@link #shutdown()} as
+     * {@code shutdown(0, unit)}.
+     *
+     * @param timeout The maximum time to wait for in-flight requests.
+     * @param unit    The unit of the timeout.
+     *
+     * @return True if every in-flight request completed before the timeout;
+     *  false if some connections were closed forcibly.
+     *
+     * @throws IOException If disconnection from the network address fails.
+     */
+    default boolean shutdown(final long timeout,
+                             final TimeUnit unit) throws IOException { // TODO: Use a library specific exception.
+        shutdown();
+        return false;
+    }
 }
@@ -0,0 +1,524 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * An asynchronous access log.
+ *
+ * <p>Request threads copy references to the logged values into pre-allocated
+ * slots of a bounded ring buffer; claiming a slot is a single CAS and never
+ * blocks. A background thread formats records in batches and writes them to a
+ * file channel. When the buffer is full records are dropped, and counted,
+ * rather than slowing the request thread.
+ *
+ * <p>If writing fails the background thread stops, later records are counted
+ * as dropped and the failure is reported by {@link #getFailure()} and
+ * rethrown by {@link #close()}.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class AccessLog
+    implements
+        Closeable {
+
+    /**
+     * Supported record layouts.
+     *
+     * @author Keith Webster Johnston.
+     */
+    public static enum Format {
+        /** NCSA Common Log Format. */
+        COMMON,
+        /** NCSA Combined Log Format, adding referer and user agent. */
+        COMBINED,
+        /** One JSON object per line. */
+        JSON
+    }
+
+    private static final int  BATCH_BYTES = 64*1024;
+    private static final long IDLE_NANOS  = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long CLOSED      = 1L<<62; // Set in _head on close.
+    private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+    private static final DateTimeFormatter CLF_DATE =
+        DateTimeFormatter.ofPattern(
+            "dd/MMM/yyyy:HH:mm:ss Z", Locale.US); //$NON-NLS-1$
+
+    private final Format              _format;
+    private final double              _sampleRate;
+    private final WritableByteChannel _channel;
+    private final Record[]            _slots;
+    private final AtomicLongArray     _published;
+    private final int                 _mask;
+    private final AtomicLong          _head     = new AtomicLong();
+    private final AtomicLong          _tail     = new AtomicLong();
+    private final LongAdder           _dropped  = new LongAdder();
+    private final LongAdder           _written  = new LongAdder();
+    private final Thread              _writer;
+    private volatile boolean          _closed;
+    private volatile IOException      _failure;
+
+    // Owned by the writer thread.
+    private final StringBuilder  _line    = new StringBuilder(512);
+    private final ByteBuffer     _buffer  =
+        ByteBuffer.allocateDirect(BATCH_BYTES);
+    private final CharsetEncoder _encoder =
+        StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ZoneId _zone = ZoneId.systemDefault();
+    private long         _cachedSecond = Long.MIN_VALUE;
+    private String       _cachedDate;
+
+
+    /**
+     * Constructor.
+     *
+     * @param file       The file to append to; created if necessary.
+     * @param format     The layout of each record.
+     * @param capacity   The number of records that may be buffered; rounded
+     *  up to a power of two.
+     * @param sampleRate The fraction of requests to log, from 0 to 1.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public AccessLog(final Path file,
+                     final Format format,
+                     final int capacity,
+                     final double sampleRate) throws IOException {
+        this(FileChannel.open(
+                 file,
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE,
+                 StandardOpenOption.APPEND),
+             format,
+             capacity,
+             sampleRate);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param channel    The channel to write to.
+     * @param format     The layout of each record.
+     * @param capacity   The number of records that may be buffered; rounded
+     *  up to a power of two.
+     * @param sampleRate The fraction of requests to log, from 0 to 1.
+     */
+    AccessLog(final WritableByteChannel channel,
+              final Format format,
+              final int capacity,
+              final double sampleRate) {
+        if (1>capacity || 0>sampleRate || 1<sampleRate) {
+            throw new IllegalArgumentException();
+        }
+        final int size = Integer.highestOneBit(Math.max(2, capacity-1)) << 1;
+
+        _format     = format;
+        _sampleRate = sampleRate;
+        _channel    = channel;
+        _slots      = new Record[size];
+        _published  = new AtomicLongArray(size);
+        _mask       = size-1;
+        for (int i=0; i<size; i++) {
+            _slots[i] = new Record();
+            _published.set(i, i-size); // No slot is published initially.
+        }
+
+        _writer = new Thread(new Runnable() {
+            @Override public void run() { drainUntilClosed(); }
+        }, "access-log"); //$NON-NLS-1$
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+
+    /**
+     * Log a request.
+     *
+     * <p>Never blocks: if the buffer is full the record is dropped.
+     *
+     * @param client        The client's address; may be null.
+     * @param method        The request method.
+     * @param uri           The request URI.
+     * @param version       The request's HTTP version.
+     * @param status        The response status code.
+     * @param bytes         The number of response body bytes written.
+     * @param referer       The Referer header; may be null.
+     * @param userAgent     The User-Agent header; may be null.
+     * @param durationNanos The time taken to handle the request.
+     */
+    public void log(final InetSocketAddress client,
+                    final String method,
+                    final String uri,
+                    final String version,
+                    final int status,
+                    final long bytes,
+                    final String referer,
+                    final String userAgent,
+                    final long durationNanos) {
+        if (null!=_failure) {
+            _dropped.increment();
+            return;
+        }
+        if (1>_sampleRate
+            && ThreadLocalRandom.current().nextDouble()>=_sampleRate) {
+            return;
+        }
+
+        long seq;
+        do {
+            seq = _head.get();
+            if (0!=(seq&CLOSED)) { return; }
+            if (seq-_tail.get()>=_slots.length) {
+                _dropped.increment();
+                return;
+            }
+        } while (!_head.compareAndSet(seq, seq+1));
+
+        final Record r = _slots[(int) seq & _mask];
+        r._time          = System.currentTimeMillis();
+        r._client        = client;
+        r._method        = method;
+        r._uri           = uri;
+        r._version       = version;
+        r._status        = status;
+        r._bytes         = bytes;
+        r._referer       = referer;
+        r._userAgent     = userAgent;
+        r._durationNanos = durationNanos;
+        _published.lazySet((int) seq & _mask, seq);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of records dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return _dropped.sum();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of records written to the file.
+     */
+    public long getWritten() {
+        return _written.sum();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The error that stopped records being written; null if none.
+     */
+    public IOException getFailure() {
+        return _failure;
+    }
+
+
+    /**
+     * Stop accepting records, write those already buffered and close the file.
+     *
+     * @throws IOException If the file cannot be closed, or if writing failed
+     *  at any point.
+     */
+    @Override
+    public void close() throws IOException {
+        // Setting the flag in the head fixes the set of claimed slots: no
+        // record can be claimed after this, so none is left unwritten.
+        long head;
+        do {
+            head = _head.get();
+            if (0!=(head&CLOSED)) { return; }
+        } while (!_head.compareAndSet(head, head|CLOSED));
+
+        _closed = true;
+        LockSupport.unpark(_writer);
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                _writer.join();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        try {
+            // Slots claimed before the flag was set may be published after
+            // the writer's last pass; they are written here.
+            while (null==_failure && _tail.get()<head) {
+                if (0==drain()) { Thread.yield(); }
+            }
+        } catch (final IOException e) {
+            _failure = e;
+        } finally {
+            _channel.close();
+            if (interrupted) { Thread.currentThread().interrupt(); }
+        }
+        final IOException failure = _failure;
+        if (null!=failure) {
+            throw new IOException("Access log write failed.", failure); //$NON-NLS-1$
+        }
+    }
+
+
+    private void drainUntilClosed() {
+        try {
+            while (!_closed) {
+                if (0==drain()) { LockSupport.parkNanos(IDLE_NANOS); }
+            }
+        } catch (final IOException e) {
+            _failure = e;
+        }
+    }
+
+
+    /*
+     * Write every published record; returns the number written.
+     */
+    private int drain() throws IOException {
+        long tail = _tail.get();
+        int  count = 0;
+        for (;;) {
+            final int idx = (int) tail & _mask;
+            if (_published.get(idx)!=tail) { break; }
+
+            final Record r = _slots[idx];
+            _line.setLength(0);
+            format(r);
+            _line.append('\n');
+            r.clear();
+            _tail.lazySet(++tail);
+            count++;
+
+            encode();
+        }
+        flush();
+        _written.add(count);
+        return count;
+    }
+
+
+    private void encode() throws IOException {
+        final CharBuffer chars = CharBuffer.wrap(_line);
+        for (;;) {
+            _encoder.encode(chars, _buffer, true);
+            if (!chars.hasRemaining()) { break; }
+            flush();
+        }
+        _encoder.reset();
+    }
+
+
+    private void flush() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) { _channel.write(_buffer); }
+        _buffer.clear();
+    }
+
+
+    private void format(final Record r) {
+        switch (_format) {
+            case JSON:
+                formatJson(r);
+                break;
+            case COMBINED:
+                formatCommon(r);
+                _line.append(' ');
+                quoted(r._referer);
+                _line.append(' ');
+                quoted(r._userAgent);
+                break;
+            default:
+                formatCommon(r);
+        }
+    }
+
+
+    private void formatCommon(final Record r) {
+        _line.append((null==r._client) ? "-" : host(r._client)) //$NON-NLS-1$
+             .append(" - - [")                                  //$NON-NLS-1$
+             .append(clfDate(r._time))
+             .append("] \"");                                   //$NON-NLS-1$
+        escaped(r._method);
+        _line.append(' ');
+        escaped(r._uri);
+        _line.append(' ');
+        escaped(r._version);
+        _line.append("\" ")                                     //$NON-NLS-1$
+             .append(r._status)
+             .append(' ');
+        if (0<r._bytes) { _line.append(r._bytes); } else { _line.append('-'); }
+    }
+
+
+    private void formatJson(final Record r) {
+        _line.append("{\"time\":\"")                            //$NON-NLS-1$
+             .append(Instant.ofEpochMilli(r._time))
+             .append("\",\"remote\":");                         //$NON-NLS-1$
+        json((null==r._client) ? null : host(r._client));
+        _line.append(",\"method\":");                           //$NON-NLS-1$
+        json(r._method);
+        _line.append(",\"uri\":");                              //$NON-NLS-1$
+        json(r._uri);
+        _line.append(",\"protocol\":");                         //$NON-NLS-1$
+        json(r._version);
+        _line.append(",\"status\":").append(r._status)          //$NON-NLS-1$
+             .append(",\"bytes\":").append(r._bytes)            //$NON-NLS-1$
+             .append(",\"duration_us\":")                       //$NON-NLS-1$
+             .append(TimeUnit.NANOSECONDS.toMicros(r._durationNanos))
+             .append(",\"referer\":");                          //$NON-NLS-1$
+        json(r._referer);
+        _line.append(",\"user_agent\":");                       //$NON-NLS-1$
+        json(r._userAgent);
+        _line.append('}');
+    }
+
+
+    private static String host(final InetSocketAddress address) {
+        return
+            (null==address.getAddress())
+                ? address.getHostString()
+                : address.getAddress().getHostAddress();
+    }
+
+
+    private String clfDate(final long time) {
+        final long second = time/1000;
+        if (second!=_cachedSecond) {
+            _cachedDate =
+                CLF_DATE.format(
+                    ZonedDateTime.ofInstant(
+                        Instant.ofEpochSecond(second), _zone));
+            _cachedSecond = second;
+        }
+        return _cachedDate;
+    }
+
+
+    private void quoted(final String value) {
+        if (null==value) { _line.append("\"-\""); return; } //$NON-NLS-1$
+        _line.append('"');
+        escaped(value);
+        _line.append('"');
+    }
+
+
+    /*
+     * Escape quotes, backslashes and control characters, as Apache httpd
+     * does, so that a client can't break the field or forge a line.
+     */
+    private void escaped(final String value) {
+        if (null==value) { _line.append('-'); return; }
+        for (int i=0; i<value.length(); i++) {
+            final char c = value.charAt(i);
+            if ('"'==c || '\\'==c) {
+                _line.append('\\').append(c);
+            } else if (0x20>c || 0x7F==c) {
+                _line.append("\\x")                                //$NON-NLS-1$
+                     .append(HEX[c>>4])
+                     .append(HEX[c&0xF]);
+            } else {
+                _line.append(c);
+            }
+        }
+    }
+
+
+    private void json(final String value) {
+        if (null==value) { _line.append("null"); return; } //$NON-NLS-1$
+        _line.append('"');
+        for (int i=0; i<value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':  _line.append("\\\""); break; //$NON-NLS-1$
+                case '\\': _line.append("\\\\"); break; //$NON-NLS-1$
+                case '\n': _line.append("\\n"); break;  //$NON-NLS-1$
+                case '\r': _line.append("\\r"); break;  //$NON-NLS-1$
+                case '\t': _line.append("\\t"); break;  //$NON-NLS-1$
+                default:
+                    if (0x20>c) {
+                        _line.append(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+                    } else {
+                        _line.append(c);
+                    }
+            }
+        }
+        _line.append('"');
+    }
+
+
+    /*
+     * A pre-allocated slot in the ring buffer.
+     */
+    private static final class Record {
+        long              _time;
+        InetSocketAddress _client;
+        String            _method;
+        String            _uri;
+        String            _version;
+        int               _status;
+        long              _bytes;
+        String            _referer;
+        String            _userAgent;
+        long              _durationNanos;
+
+        void clear() {
+            _client    = null;
+            _method    = null;
+            _uri       = null;
+            _version   = null;
+            _referer   = null;
+            _userAgent = null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.IOException;
+import com.johnstok.http.Header;
+import com.johnstok.http.HttpException;
+import com.johnstok.http.sync.CountingResponse;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * A filter that records each request in an {@link AccessLog}.
+ *
+ * <p>Logging happens after the delegate returns and never blocks the request
+ * thread.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class AccessLogFilter extends Filter {
+
+    private final AccessLog _log;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The handler to call next.
+     * @param log      The log to write to.
+     */
+    public AccessLogFilter(final Handler delegate, final AccessLog log) {
+        super(delegate);
+        _log = log;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final long start = System.nanoTime();
+        final CountingResponse counting = new CountingResponse(response);
+        int status = 500;
+        try {
+            getDelegate().handle(request, counting);
+            status = response.getStatusCode();
+        } catch (final HttpException e) {
+            status = e.getStatus().getCode();
+            throw e;
+        } finally {
+            _log.log(
+                request.getClientAddress(),
+                request.getMethod(),
+                request.getRequestUri(),
+                request.getVersion(),
+                status,
+                counting.getCount(),
+                request.getHeader(Header.REFERER),
+                request.getHeader(Header.USER_AGENT),
+                System.nanoTime()-start);
+        }
+    }
+
+}
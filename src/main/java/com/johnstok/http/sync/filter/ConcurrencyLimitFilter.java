@@ -0,0 +1,147 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.IOException;
+import java.util.function.Function;
+import com.johnstok.http.Header;
+import com.johnstok.http.HttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.limit.ConcurrencyLimiter;
+import com.johnstok.http.limit.ConcurrencyLimiter.Permit;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * A filter that sheds load once too many requests are in flight.
+ *
+ * <p>The limit is set adaptively by a {@link ConcurrencyLimiter}. A request
+ * beyond it is answered immediately with 503 (Service Unavailable) and a
+ * Retry-After header, before the handler does any work, so that queued
+ * requests don't drive up latency for those already admitted. Requests may
+ * be assigned to the limiter's partitions to give some routes priority.
+ *
+ * <p>A request whose handler responds 503 or 504, or throws an exception
+ * with either status, is reported to the limiter as dropped; other failures
+ * are ignored.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ConcurrencyLimitFilter extends Filter {
+
+    private final ConcurrencyLimiter                _limiter;
+    private final Function<? super Request, String> _partitioner;
+    private final String                            _retryAfter;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    The handler to call next.
+     * @param limiter     The limiter that admits requests.
+     * @param partitioner Maps each request to its limiter partition, or null.
+     * @param retryAfter  The delay, in seconds, suggested to rejected clients.
+     */
+    public ConcurrencyLimitFilter(
+                            final Handler delegate,
+                            final ConcurrencyLimiter limiter,
+                            final Function<? super Request, String> partitioner,
+                            final int retryAfter) {
+        super(delegate);
+        if (0>retryAfter) {
+            throw new IllegalArgumentException(
+                "Negative Retry-After: "+retryAfter);               //$NON-NLS-1$
+        }
+        _limiter     = limiter;
+        _partitioner = partitioner;
+        _retryAfter  = String.valueOf(retryAfter);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * <p>All requests share the limit and rejected clients are asked to wait
+     * a second.
+     *
+     * @param delegate The handler to call next.
+     * @param limiter  The limiter that admits requests.
+     */
+    public ConcurrencyLimitFilter(final Handler delegate,
+                                  final ConcurrencyLimiter limiter) {
+        this(delegate, limiter, new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                return null;
+            }
+        }, 1);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final Permit permit = _limiter.acquire(_partitioner.apply(request));
+        if (null==permit) {
+            response.setStatus(
+                Status.SERVICE_UNAVAILABLE.getCode(),
+                Status.SERVICE_UNAVAILABLE.getReasonPhrase());
+            response.setHeader(Header.RETRY_AFTER, _retryAfter);
+            return;
+        }
+
+        boolean released = false;
+        try {
+            getDelegate().handle(request, response);
+            released = true;
+            release(permit, response.getStatusCode());
+        } catch (final HttpException e) {
+            released = true;
+            release(permit, e.getStatus().getCode());
+            throw e;
+        } finally {
+            if (!released) { permit.ignore(); }
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The limiter that admits requests.
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return _limiter;
+    }
+
+
+    private static void release(final Permit permit, final int status) {
+        if (Status.SERVICE_UNAVAILABLE.getCode()==status
+            || Status.GATEWAY_TIMEOUT.getCode()==status) {
+            permit.dropped();
+        } else {
+            permit.success();
+        }
+    }
+}
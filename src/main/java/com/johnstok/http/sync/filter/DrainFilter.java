@@ -0,0 +1,229 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.ResponseAdapter;
+import com.johnstok.http.sync.Server;
+
+
+/**
+ * A filter that tracks in-flight requests so that a server can shut down
+ * without cutting them off.
+ *
+ * <p>Once {@link #drain(long, TimeUnit)} is called every response that has
+ * not yet been committed is sent with {@code Connection: close}, so that
+ * persistent connections are closed after their current request rather than
+ * being reused. The drain then waits for in-flight requests to complete; if
+ * the deadline passes first the remaining handler threads are interrupted
+ * and the server should close their connections.
+ *
+ * <p>Install a single filter in front of the server's handler. Drain
+ * progress may be pulled with the {@link DrainMXBean} accessors or published
+ * over JMX with {@link #register(ObjectName)}.
+ *
+ * @see Server#shutdown(long, TimeUnit)
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-2616", section="8.1.2.1")
+public class DrainFilter
+    extends
+        Filter
+    implements
+        DrainMXBean {
+
+    private final Set<Thread> _handlers  = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> _expired   = ConcurrentHashMap.newKeySet();
+    private final LongAdder   _completed = new LongAdder();
+    private final LongAdder   _abandoned = new LongAdder();
+    private final Object      _lock      = new Object();
+    private volatile boolean  _draining;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The handler to call next.
+     */
+    public DrainFilter(final Handler delegate) {
+        super(delegate);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final Thread handler = Thread.currentThread();
+        _expired.remove(handler); // In case drain() raced our last request.
+        _handlers.add(handler);
+        markIfDraining(response);
+        try {
+            getDelegate().handle(request, new DrainingResponse(response));
+        } finally {
+            // The server commits a response the handler left uncommitted.
+            markIfDraining(response);
+            _handlers.remove(handler);
+            _expired.remove(handler);
+            if (_draining) {
+                _completed.increment();
+                synchronized (_lock) { _lock.notifyAll(); }
+            }
+        }
+    }
+
+
+    /**
+     * Stop reusing connections and wait for in-flight requests to complete.
+     *
+     * <p>Requests still in flight when the timeout elapses have their handler
+     * threads interrupted. Calling this method again waits again, for any
+     * requests that are still being handled; each request is counted as
+     * abandoned only once.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     *
+     * @return True if no requests remain in flight; false otherwise.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while
+     *  waiting.
+     */
+    public boolean drain(final long timeout,
+                         final TimeUnit unit) throws InterruptedException {
+        _draining = true;
+        final long deadline = System.nanoTime()+unit.toNanos(timeout);
+        synchronized (_lock) {
+            for (long remaining = deadline-System.nanoTime();
+                 !_handlers.isEmpty() && 0<remaining;
+                 remaining = deadline-System.nanoTime()) {
+                TimeUnit.NANOSECONDS.timedWait(_lock, remaining);
+            }
+        }
+        if (_handlers.isEmpty()) { return true; }
+        for (final Thread handler : _handlers) {
+            if (_expired.add(handler)) { _abandoned.increment(); }
+            handler.interrupt();
+        }
+        return false;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDraining() {
+        return _draining;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int getInFlight() {
+        return _handlers.size();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCompleted() {
+        return _completed.sum();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public long getAbandoned() {
+        return _abandoned.sum();
+    }
+
+
+    /**
+     * Publish this filter's drain progress via the platform MBean server.
+     *
+     * @param name The name under which to register.
+     *
+     * @throws JMException If registration fails.
+     */
+    public void register(final ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    }
+
+
+    private void markIfDraining(final Response response) {
+        if (_draining && !response.isCommitted()) {
+            response.setHeader(Header.CONNECTION, "close");         //$NON-NLS-1$
+        }
+    }
+
+
+    /*
+     * Marks a response as the last on its connection if draining has begun
+     * by the time the handler touches its status, headers or body.
+     */
+    private final class DrainingResponse extends ResponseAdapter {
+
+        private final Response _response;
+
+
+        DrainingResponse(final Response response) {
+            super(response);
+            _response = response;
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void setStatus(final int code, final String message) {
+            super.setStatus(code, message);
+            markIfDraining(_response);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void setHeader(final String name, final String value) {
+            super.setHeader(name, value);
+            markIfDraining(_response);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public OutputStream getBody() throws IOException {
+            markIfDraining(_response);
+            return super.getBody();
+        }
+    }
+}
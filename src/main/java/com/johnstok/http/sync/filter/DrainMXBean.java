@@ -0,0 +1,61 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+
+/**
+ * Management interface for a {@link DrainFilter}.
+ *
+ * @author Keith Webster Johnston.
+ */
+public interface DrainMXBean {
+
+    /**
+     * Accessor.
+     *
+     * @return True if the filter is draining; false otherwise.
+     */
+    boolean isDraining();
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of requests currently being handled.
+     */
+    int getInFlight();
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of requests that completed after draining began.
+     */
+    long getCompleted();
+
+
+    /**
+     * Accessor.
+     *
+     * @return The number of requests interrupted because the drain deadline
+     *  passed before they completed.
+     */
+    long getAbandoned();
+}
@@ -0,0 +1,154 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.function.Function;
+import com.johnstok.http.HttpException;
+import com.johnstok.http.event.BodyWriteEvent;
+import com.johnstok.http.event.HandlerEvent;
+import com.johnstok.http.sync.CountingResponse;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * A filter that emits flight recorder events for handler execution and body
+ * writing.
+ *
+ * <p>The events are disabled by default; until a recording enables them this
+ * filter delegates directly, without wrapping the response.
+ *
+ * <p>Handler events record a path classified from the request. By default
+ * this is the request URI without its query; supply a classifier that maps
+ * requests to path templates (e.g. "/users/{id}") to group events by route.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class EventFilter extends Filter {
+
+    private final Function<? super Request, String> _classifier;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Events record the request URI, excluding the query, as the path.
+     *
+     * @param delegate The handler to call next.
+     */
+    public EventFilter(final Handler delegate) {
+        this(delegate, new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                final String uri = request.getRequestUri();
+                final int query = uri.indexOf('?');
+                return (0>query) ? uri : uri.substring(0, query);
+            }
+        });
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   The handler to call next.
+     * @param classifier Maps each request to the path, or path template,
+     *  recorded in its events.
+     */
+    public EventFilter(final Handler delegate,
+                       final Function<? super Request, String> classifier) {
+        super(delegate);
+        _classifier = Objects.requireNonNull(classifier);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final HandlerEvent event = new HandlerEvent();
+        if (!event.isEnabled()) {
+            getDelegate().handle(request, response);
+            return;
+        }
+
+        event.begin();
+        final RecordingResponse recording = new RecordingResponse(response);
+        int status = 500;
+        try {
+            getDelegate().handle(request, recording);
+            status = response.getStatusCode();
+        } catch (final HttpException e) {
+            status = e.getStatus().getCode();
+            throw e;
+        } finally {
+            recording.complete();
+            event.commit(
+                request.getMethod(),
+                _classifier.apply(request),
+                status,
+                recording.getCount());
+        }
+    }
+
+
+    /*
+     * A response that records the writing of its body.
+     */
+    private static final class RecordingResponse
+        extends
+            CountingResponse {
+
+        private BodyWriteEvent _event;
+
+
+        RecordingResponse(final Response response) {
+            super(response);
+        }
+
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (null==_event) {
+                _event = new BodyWriteEvent();
+                _event.begin();
+            }
+            return super.getBody();
+        }
+
+
+        @Override
+        protected void closed() {
+            complete();
+        }
+
+
+        void complete() {
+            if (null==_event) { return; }
+            _event.commit(getCount());
+            _event = null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.IOException;
+import java.util.List;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Expectation;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.sync.ContinueRequest;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * A filter that decides whether to accept a request body before the client
+ * sends it.
+ *
+ * <p>A client that sends Expect: 100-continue waits for an interim response
+ * before transmitting the body. This filter rejects such a request from its
+ * headers alone: 413 if the declared Content-Length exceeds the limit, or
+ * any status returned by the route's {@link Check}, such as 401. Requests
+ * it accepts are passed on unchanged; the 100 (Continue) response is sent
+ * by {@link ContinueRequest} once the handler reads the body. Unsupported
+ * expectations are refused with 417.
+ *
+ * <p>Install one filter in front of each route with its own limit and
+ * check.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-2616", section="8.2.3")
+public class ExpectationFilter extends Filter {
+
+    /**
+     * Decides whether a request body is wanted, from the request headers.
+     */
+    public static interface Check {
+
+        /**
+         * Check a request.
+         *
+         * @param request The request; its body must not be read.
+         *
+         * @return The status to reject the request with; null to accept it.
+         */
+        Status check(Request request);
+    }
+
+    private static final Check ACCEPT = new Check() {
+        @Override
+        public Status check(final Request request) {
+            return null;
+        }
+    };
+
+    private final long  _maxBodySize;
+    private final Check _check;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    The handler to call next.
+     * @param maxBodySize The largest body accepted, in bytes.
+     * @param check       The check applied before the body is sent.
+     */
+    public ExpectationFilter(final Handler delegate,
+                             final long maxBodySize,
+                             final Check check) {
+        super(delegate);
+        _maxBodySize = maxBodySize;
+        _check = (null==check) ? ACCEPT : check;
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    The handler to call next.
+     * @param maxBodySize The largest body accepted, in bytes.
+     */
+    public ExpectationFilter(final Handler delegate, final long maxBodySize) {
+        this(delegate, maxBodySize, ACCEPT);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final List<String> values = request.getHeaders(Header.EXPECT);
+        if (null!=values) {
+            boolean expectsContinue = false;
+            try {
+                for (final String value : values) {
+                    for (final Expectation e : Expectation.parseList(value)) {
+                        if (!e.isContinue()) {
+                            reject(response, Status.EXPECTATION_FAILED);
+                            return;
+                        }
+                        expectsContinue = true;
+                    }
+                }
+            } catch (final ClientHttpException e) {
+                reject(response, Status.EXPECTATION_FAILED);
+                return;
+            }
+
+            if (expectsContinue) {
+                if (contentLength(request)>_maxBodySize) {
+                    reject(response, Status.REQUEST_ENTITY_TOO_LARGE);
+                    return;
+                }
+                final Status status = _check.check(request);
+                if (null!=status) {
+                    reject(response, status);
+                    return;
+                }
+            }
+        }
+        getDelegate().handle(request, response);
+    }
+
+
+    /*
+     * The client may send the body regardless, so ask for the connection to
+     * be closed rather than read it.
+     */
+    private static void reject(final Response response, final Status status) {
+        response.setStatus(status.getCode(), status.getReasonPhrase());
+        response.setHeader(Header.CONNECTION, "close");             //$NON-NLS-1$
+    }
+
+
+    private static long contentLength(final Request request) {
+        final String value = request.getHeader(Header.CONTENT_LENGTH);
+        if (null==value) { return -1; }
+        try {
+            final long length = Long.parseLong(value.trim());
+            if (0>length) { throw new ClientHttpException(Status.BAD_REQUEST); }
+            return length;
+        } catch (final NumberFormatException e) {
+            throw new ClientHttpException(Status.BAD_REQUEST, e);
+        }
+    }
+}
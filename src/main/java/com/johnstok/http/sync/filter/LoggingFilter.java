@@ -32,7 +32,11 @@ import com.johnstok.http.sync.Response;
  * A filter that logs a request.
  *
  * @author Keith Webster Johnston.
+ *
+ * @deprecated Writes synchronously to {@link System#out} on the request
+ *  thread; use an {@link AccessLogFilter} instead.
  */
+@Deprecated
 public class LoggingFilter extends Filter {
 
     /**
@@ -0,0 +1,357 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import com.johnstok.http.HttpException;
+import com.johnstok.http.stats.Histogram;
+import com.johnstok.http.sync.CountingResponse;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.RequestAdapter;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * A filter that records request latency, body sizes and concurrency.
+ *
+ * <p>Latency is recorded per route, and per status code within each route, in
+ * lock-free histograms; recording a request never blocks and, once a route
+ * and status have been seen, never allocates beyond the stream wrappers.
+ * Statistics may be pulled with {@link #getRoutes()} or published over JMX
+ * with {@link #register(ObjectName)}.
+ *
+ * <p>Routes should have low cardinality: supply a classifier that maps
+ * requests to route templates (e.g. "GET /users/{id}") rather than raw URIs.
+ * Each route holds several histograms, so the number of routes is capped;
+ * once the cap is reached requests for new routes are recorded under
+ * {@link #OTHER_ROUTE}. This bounds memory even when clients request many
+ * distinct URIs.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class MetricsFilter
+    extends
+        Filter
+    implements
+        MetricsMXBean {
+
+    /** The route under which requests beyond the route limit are recorded. */
+    public static final String OTHER_ROUTE = "other";               //$NON-NLS-1$
+
+    /** The default maximum number of distinct routes. */
+    public static final int DEFAULT_MAX_ROUTES = 256;
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    private static final int  MAX_STATUS      = 599;
+
+    private final Function<? super Request, String> _classifier;
+    private final int                               _maxRoutes;
+    private final ConcurrentMap<String, Route>      _routes =
+        new ConcurrentHashMap<String, Route>();
+    private final AtomicInteger _routeCount = new AtomicInteger();
+    private final Route         _other      = new Route();
+    private volatile boolean    _overflowed;
+    private final LongAdder _inFlight = new LongAdder();
+    private final LongAdder _bytesIn  = new LongAdder();
+    private final LongAdder _bytesOut = new LongAdder();
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Requests are classified by method and path, excluding the query,
+     * up to {@link #DEFAULT_MAX_ROUTES} routes.
+     *
+     * @param delegate The handler to call next.
+     */
+    public MetricsFilter(final Handler delegate) {
+        this(delegate, new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                final String uri = request.getRequestUri();
+                final int query = uri.indexOf('?');
+                return request.getMethod()
+                    + ' '
+                    + ((0>query) ? uri : uri.substring(0, query));
+            }
+        });
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   The handler to call next.
+     * @param classifier Maps each request to the name of its route.
+     */
+    public MetricsFilter(final Handler delegate,
+                         final Function<? super Request, String> classifier) {
+        this(delegate, classifier, DEFAULT_MAX_ROUTES);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   The handler to call next.
+     * @param classifier Maps each request to the name of its route.
+     * @param maxRoutes  The maximum number of distinct routes to record.
+     */
+    public MetricsFilter(final Handler delegate,
+                         final Function<? super Request, String> classifier,
+                         final int maxRoutes) {
+        super(delegate);
+        if (1>maxRoutes) {
+            throw new IllegalArgumentException(
+                "At least one route is required.");                 //$NON-NLS-1$
+        }
+        _classifier = classifier;
+        _maxRoutes  = maxRoutes;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final long  start = System.nanoTime();
+        final Route route = route(_classifier.apply(request));
+        int status = 0;
+
+        _inFlight.increment();
+        try {
+            getDelegate().handle(
+                new MeteredRequest(request, route),
+                new MeteredResponse(response, route));
+            status = response.getStatusCode();
+        } catch (final HttpException e) {
+            status = e.getStatus().getCode();
+            throw e;
+        } catch (final IOException | RuntimeException | Error e) {
+            status = 500;
+            throw e;
+        } finally {
+            _inFlight.decrement();
+            route.record(status, System.nanoTime()-start);
+        }
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public long getInFlight() {
+        return _inFlight.sum();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public long getBytesIn() {
+        return _bytesIn.sum();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public long getBytesOut() {
+        return _bytesOut.sum();
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public List<RouteStatistics> getRoutes() {
+        final List<RouteStatistics> statistics =
+            new ArrayList<RouteStatistics>();
+        for (final Map.Entry<String, Route> e : _routes.entrySet()) {
+            e.getValue().snapshot(e.getKey(), statistics);
+        }
+        if (_overflowed) { _other.snapshot(OTHER_ROUTE, statistics); }
+        return statistics;
+    }
+
+
+    /**
+     * Publish this filter's statistics via the platform MBean server.
+     *
+     * @param name The name under which to register.
+     *
+     * @throws JMException If registration fails.
+     */
+    public void register(final ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    }
+
+
+    private Route route(final String name) {
+        final Route route = _routes.get(name);
+        if (null!=route) { return route; }
+
+        // Reserve a slot before creating the route so that concurrent
+        // requests can't overshoot the limit.
+        if (_routeCount.incrementAndGet()>_maxRoutes) {
+            _routeCount.decrementAndGet();
+            _overflowed = true;
+            return _other;
+        }
+        final Route created = new Route();
+        final Route existing = _routes.putIfAbsent(name, created);
+        if (null==existing) { return created; }
+        _routeCount.decrementAndGet();
+        return existing;
+    }
+
+
+    /*
+     * The statistics for a single route.
+     */
+    private final class Route {
+
+        private final Histogram _latencies = new Histogram(HIGHEST_LATENCY);
+        private final AtomicReferenceArray<Histogram> _byStatus =
+            new AtomicReferenceArray<Histogram>(MAX_STATUS+1);
+        private final LongAdder _bytesIn  = new LongAdder();
+        private final LongAdder _bytesOut = new LongAdder();
+
+
+        void record(final int status, final long latency) {
+            _latencies.record(latency);
+            if (0>status || MAX_STATUS<status) { return; }
+
+            Histogram h = _byStatus.get(status);
+            if (null==h) {
+                _byStatus.compareAndSet(
+                    status, null, new Histogram(HIGHEST_LATENCY));
+                h = _byStatus.get(status);
+            }
+            h.record(latency);
+        }
+
+
+        void read(final long count) {
+            _bytesIn.add(count);
+            MetricsFilter.this._bytesIn.add(count);
+        }
+
+
+        void written(final long count) {
+            _bytesOut.add(count);
+            MetricsFilter.this._bytesOut.add(count);
+        }
+
+
+        void snapshot(final String name,
+                      final List<RouteStatistics> statistics) {
+            statistics.add(
+                new RouteStatistics(
+                    name,
+                    0,
+                    _latencies.snapshot(),
+                    _bytesIn.sum(),
+                    _bytesOut.sum()));
+            for (int status=0; status<=MAX_STATUS; status++) {
+                final Histogram h = _byStatus.get(status);
+                if (null!=h) {
+                    statistics.add(
+                        new RouteStatistics(name, status, h.snapshot(), 0, 0));
+                }
+            }
+        }
+    }
+
+
+    /*
+     * A request that counts the bytes read from its body.
+     */
+    private static final class MeteredRequest
+        extends
+            RequestAdapter {
+
+        private final Route _route;
+
+
+        MeteredRequest(final Request request, final Route route) {
+            super(request);
+            _route = route;
+        }
+
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(super.getBody()) {
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+                    if (0<=b) { _route.read(1); }
+                    return b;
+                }
+
+                @Override
+                public int read(final byte[] b,
+                                final int off,
+                                final int len) throws IOException {
+                    final int read = super.read(b, off, len);
+                    if (0<read) { _route.read(read); }
+                    return read;
+                }
+            };
+        }
+    }
+
+
+    /*
+     * A response that counts the bytes written to its body.
+     */
+    private static final class MeteredResponse
+        extends
+            CountingResponse {
+
+        private final Route _route;
+
+
+        MeteredResponse(final Response response, final Route route) {
+            super(response);
+            _route = route;
+        }
+
+
+        @Override
+        protected void counted(final long count) {
+            _route.written(count);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.util.List;
+
+
+/**
+ * Management interface for a {@link MetricsFilter}.
+ *
+ * @author Keith Webster Johnston.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Accessor.
+     *
+     * @return The number of requests currently being handled.
+     */
+    long getInFlight();
+
+
+    /**
+     * Accessor.
+     *
+     * @return The total number of request body bytes read.
+     */
+    long getBytesIn();
+
+
+    /**
+     * Accessor.
+     *
+     * @return The total number of response body bytes written.
+     */
+    long getBytesOut();
+
+
+    /**
+     * Accessor.
+     *
+     * @return Latency statistics for each route and each route's status codes.
+     */
+    List<RouteStatistics> getRoutes();
+}
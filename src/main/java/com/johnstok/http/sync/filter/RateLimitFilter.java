@@ -0,0 +1,158 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.limit.RateLimiter;
+import com.johnstok.http.sync.Filter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * A filter that throttles each client to a fixed request rate.
+ *
+ * <p>Requests are keyed by client address by default, or by a header such
+ * as an API key or X-Forwarded-For. A request over its key's rate is
+ * answered immediately, before the handler runs, with the configured status
+ * (normally 429) and a Retry-After header giving the whole number of
+ * seconds until the key may try again.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-6585", section="4")
+public class RateLimitFilter extends Filter {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimiter                       _limiter;
+    private final Function<? super Request, String> _key;
+    private final Status                            _status;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The handler to call next.
+     * @param limiter  The limiter holding each key's bucket.
+     * @param key      Maps each request to its rate limiting key.
+     * @param status   The status with which to reject requests, e.g. 429 or
+     *  503.
+     */
+    public RateLimitFilter(final Handler delegate,
+                           final RateLimiter limiter,
+                           final Function<? super Request, String> key,
+                           final Status status) {
+        super(delegate);
+        _limiter = limiter;
+        _key     = key;
+        _status  = status;
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Requests are keyed by client address and rejected with 429.
+     *
+     * @param delegate The handler to call next.
+     * @param limiter  The limiter holding each key's bucket.
+     */
+    public RateLimitFilter(final Handler delegate, final RateLimiter limiter) {
+        this(delegate, limiter, clientAddress(), Status.TOO_MANY_REQUESTS);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void handle(final Request request,
+                       final Response response) throws IOException {
+        final long wait = _limiter.tryAcquire(_key.apply(request));
+        if (0<wait) {
+            response.setStatus(_status.getCode(), _status.getReasonPhrase());
+            response.setHeader(
+                Header.RETRY_AFTER, String.valueOf((wait+SECOND-1)/SECOND));
+            return;
+        }
+        getDelegate().handle(request, response);
+    }
+
+
+    /**
+     * Key requests by the IP address of the connected client.
+     *
+     * @return The corresponding key function.
+     */
+    public static Function<Request, String> clientAddress() {
+        return new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                return address(request);
+            }
+        };
+    }
+
+
+    /**
+     * Key requests by the value of a header, falling back to the client
+     * address when it is absent.
+     *
+     * <p>For a list-valued header such as X-Forwarded-For the last element of
+     * the last header line is used: it was added by the nearest proxy,
+     * whereas earlier elements and lines are supplied by the client and may
+     * be forged.
+     *
+     * @param name The name of the header.
+     *
+     * @return The corresponding key function.
+     */
+    public static Function<Request, String> header(final String name) {
+        return new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                final List<String> values = request.getHeaders(name);
+                if (null==values || values.isEmpty()) {
+                    return address(request);
+                }
+                final String value = values.get(values.size()-1);
+                final String key =
+                    value.substring(value.lastIndexOf(',')+1).trim();
+                return (0==key.length()) ? address(request) : key;
+            }
+        };
+    }
+
+
+    private static String address(final Request request) {
+        final InetSocketAddress client = request.getClientAddress();
+        if (null==client) { return ""; }                            //$NON-NLS-1$
+        final InetAddress address = client.getAddress();
+        return (null==address) ? client.getHostString() : address.getHostAddress();
+    }
+}
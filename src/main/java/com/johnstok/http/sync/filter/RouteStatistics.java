@@ -0,0 +1,167 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import com.johnstok.http.stats.Histogram;
+
+
+/**
+ * An immutable summary of the requests handled for a route.
+ *
+ * <p>Latencies are reported in microseconds.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class RouteStatistics {
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final String _route;
+    private final int    _status;
+    private final long   _count;
+    private final long   _bytesIn;
+    private final long   _bytesOut;
+    private final double _mean;
+    private final long   _p50;
+    private final long   _p99;
+    private final long   _p999;
+    private final long   _max;
+
+
+    /**
+     * Constructor.
+     *
+     * @param route     The route.
+     * @param status    The status code; 0 for all status codes.
+     * @param latencies The latencies recorded, in nanoseconds.
+     * @param bytesIn   The number of request body bytes read.
+     * @param bytesOut  The number of response body bytes written.
+     */
+    RouteStatistics(final String route,
+                    final int status,
+                    final Histogram.Snapshot latencies,
+                    final long bytesIn,
+                    final long bytesOut) {
+        _route    = route;
+        _status   = status;
+        _count    = latencies.getCount();
+        _bytesIn  = bytesIn;
+        _bytesOut = bytesOut;
+        _mean     = latencies.getMean() / NANOS_PER_MICRO;
+        _p50      = latencies.getValueAtPercentile(50) / NANOS_PER_MICRO;
+        _p99      = latencies.getValueAtPercentile(99) / NANOS_PER_MICRO;
+        _p999     = latencies.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+        _max      = latencies.getMax() / NANOS_PER_MICRO;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the route.
+     */
+    public String getRoute() { return _route; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the status code; 0 if these statistics cover all status
+     *  codes.
+     */
+    public int getStatus() { return _status; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of requests.
+     */
+    public long getCount() { return _count; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of request body bytes read.
+     */
+    public long getBytesIn() { return _bytesIn; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of response body bytes written.
+     */
+    public long getBytesOut() { return _bytesOut; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the mean latency.
+     */
+    public double getMean() { return _mean; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the median latency.
+     */
+    public long getP50() { return _p50; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the 99th percentile latency.
+     */
+    public long getP99() { return _p99; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the 99.9th percentile latency.
+     */
+    public long getP999() { return _p999; }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the maximum latency.
+     */
+    public long getMax() { return _max; }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return _route
+            + ((0==_status) ? "" : " "+_status)  //$NON-NLS-1$ //$NON-NLS-2$
+            + ": count="+_count                   //$NON-NLS-1$
+            + " p50="+_p50                        //$NON-NLS-1$
+            + " p99="+_p99                        //$NON-NLS-1$
+            + " p999="+_p999                      //$NON-NLS-1$
+            + " max="+_max;                       //$NON-NLS-1$
+    }
+}
@@ -28,6 +28,9 @@ import java.util.zip.GZIPOutputStream;
 import com.johnstok.http.ClientHttpException;
 import com.johnstok.http.ContentCoding;
 import com.johnstok.http.Status;
+import com.johnstok.http.event.CompressionEvent;
+import com.johnstok.http.negotiation.ContentNegotiator;
+import com.johnstok.http.sync.CountingOutputStream;
 import com.johnstok.http.sync.Handler;
 import com.johnstok.http.sync.Request;
 import com.johnstok.http.sync.Response;
@@ -46,6 +49,7 @@ public class CompressingHandler
     private final Handler _delegate;
     private final Map<String, OutputStreamFactory> _supportedEncodings =
             new HashMap<>();
+    private final ContentNegotiator _negotiator;
 
 
     /**
@@ -59,6 +63,7 @@ public class CompressingHandler
             ContentCoding.GZIP.toString(), new GZIPOutputStreamFactory());
         _supportedEncodings.put(
             ContentCoding.IDENTITY.toString(), new IdentityOutputStreamFactory());
+        _negotiator = new ContentNegotiator(_supportedEncodings.keySet());
     }
 
 
@@ -67,10 +72,11 @@ public class CompressingHandler
     public void handle(final Request request,
                        final Response response) throws IOException {
         final ContentCoding cc =
-            negotiateContent(request, response, _supportedEncodings.keySet());
+            negotiateContent(request, response, _negotiator);
         if (null==cc) { throw new ClientHttpException(Status.NOT_ACCEPTABLE); }
-        OutputStreamFactory bwf = _supportedEncodings.get(cc);
-        _delegate.handle(request, new CompressingResponse(response, bwf));
+        final OutputStreamFactory bwf = _supportedEncodings.get(cc.toString());
+        _delegate.handle(
+            request, new CompressingResponse(response, bwf, cc.toString()));
     }
 
 
@@ -80,6 +86,7 @@ public class CompressingHandler
 
 
         private final OutputStreamFactory _cc;
+        private final String              _coding;
 
 
         /**
@@ -87,18 +94,34 @@ public class CompressingHandler
          *
          * @param response
          * @param cc
+         * @param coding   The name of the content coding applied.
          */
         public CompressingResponse(final Response response,
-                                   final OutputStreamFactory cc) {
+                                   final OutputStreamFactory cc,
+                                   final String coding) {
             super(response);
             _cc = cc;
+            _coding = coding;
         }
 
 
         /** {@inheritDoc} */
         @Override
         public OutputStream getBody() throws IOException {
-            return _cc.create(super.getBody());
+            final CompressionEvent event = new CompressionEvent();
+            if (!event.isEnabled()) { return _cc.create(super.getBody()); }
+
+            // Only count bytes while a recording is running.
+            event.begin();
+            final CountingOutputStream compressed =
+                new CountingOutputStream(super.getBody());
+            return new CountingOutputStream(_cc.create(compressed)) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    event.commit(_coding, getCount(), compressed.getCount());
+                }
+            };
         }
     }
 
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.regex.Pattern;
 import com.johnstok.http.RequestURI;
 import com.johnstok.http.Status;
+import com.johnstok.http.event.RouteEvent;
 import com.johnstok.http.sync.Handler;
 import com.johnstok.http.sync.Request;
 import com.johnstok.http.sync.Response;
@@ -54,12 +55,17 @@ public class DispatchingHandler
         final String path =
             RequestURI.parse(request.getRequestUri()).toUri().getRawPath(); // FIXME: What if the request URI is an authority?!
 
+        final RouteEvent event = new RouteEvent();
+        event.begin();
         for (Pattern p : _handlers.keySet()) {
             if (p.matcher(path).matches()) {
-                _handlers.get(p).handle(request, response);
+                final Handler handler = _handlers.get(p);
+                event.commit(path, p.pattern(), handler);
+                handler.handle(request, response);
                 return;
             }
         }
+        event.commit(path, null, null);
 
         response.setStatus(Status.NOT_FOUND.getCode(), Status.NOT_FOUND.getReasonPhrase());
     }
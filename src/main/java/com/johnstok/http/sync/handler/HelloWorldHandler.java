@@ -25,7 +25,7 @@ import com.johnstok.http.Header;
 import com.johnstok.http.sync.Handler;
 import com.johnstok.http.sync.Request;
 import com.johnstok.http.sync.Response;
-import com.johnstok.http.sync.writer.StringBodyWriter;
+import com.johnstok.http.sync.writer.ByteArrayBodyWriter;
 
 
 /**
@@ -37,13 +37,15 @@ public class HelloWorldHandler
     implements
         Handler {
 
+    private static final ByteArrayBodyWriter BODY =
+        new ByteArrayBodyWriter("Hello World!", StandardCharsets.UTF_8);
+
+
     /** {@inheritDoc} */
     @Override
     public void handle(final Request request,
                        final Response response) throws IOException {
         response.setHeader(Header.CONTENT_TYPE, "text/plain;charset=utf-8");
-        new StringBodyWriter(
-            "Hello World!", StandardCharsets.UTF_8)
-            .write(response.getBody());
+        BODY.write(response.getBody());
     }
 }
@@ -25,8 +25,11 @@ import java.util.SortedSet;
 import com.johnstok.http.ContentCoding;
 import com.johnstok.http.Header;
 import com.johnstok.http.WeightedValue;
+import com.johnstok.http.event.NegotiationEvent;
 import com.johnstok.http.headers.VaryHeader;
 import com.johnstok.http.negotiation.ContentNegotiator;
+import com.johnstok.http.negotiation.Variant;
+import com.johnstok.http.negotiation.VariantNegotiator;
 import com.johnstok.http.sync.Handler;
 import com.johnstok.http.sync.Request;
 import com.johnstok.http.sync.Response;
@@ -50,22 +53,97 @@ public abstract class NegotiatingHandler
      * @param response
      * @param supportedEncodings
      *
-     * @return
+     * @return The selected encoding; null if no encoding is acceptable.
      */
     protected ContentCoding negotiateContent(
                                        final Request request,
                                        final Response response,
                                        final Set<String> supportedEncodings) {
+        return negotiateContent(
+            request, response, new ContentNegotiator(supportedEncodings));
+    }
+
+
+    /**
+     * Negotiate the content encoding.
+     *
+     * @param request
+     * @param response
+     * @param negotiator The negotiator for the supported encodings.
+     *
+     * @return The selected encoding; null if no encoding is acceptable.
+     */
+    protected ContentCoding negotiateContent(
+                                       final Request request,
+                                       final Response response,
+                                       final ContentNegotiator negotiator) {
+        final NegotiationEvent event = new NegotiationEvent();
+        event.begin();
         final List<WeightedValue> clientEncodings =
             Header.parseAcceptEncoding(
                 request.getHeader(Header.ACCEPT_ENCODING));
-        ContentNegotiator cn = new ContentNegotiator(supportedEncodings);
-        final ContentCoding cc = cn.select(clientEncodings);
+        final ContentCoding cc = negotiator.select(clientEncodings);
+        event.commit(Header.ACCEPT_ENCODING, cc);
+        addVary(response, Header.ACCEPT_ENCODING);
+        if (null==cc) { return null; }
         response.setHeader(Header.CONTENT_ENCODING, cc.toString());
-        VaryHeader vh = new VaryHeader();
-        SortedSet<String> variances = vh.parse(response.getHeader(Header.VARY));
-        variances.add(Header.CONTENT_ENCODING);
-        response.setHeader(Header.VARY, vh.write(variances));
         return cc;
     }
+
+
+    /**
+     * Negotiate a variant of the response.
+     *
+     * Sets the Vary header and, for each dimension the selected variant
+     * declares, the corresponding Content-* header.
+     *
+     * @param request    The request.
+     * @param response   The response.
+     * @param negotiator The negotiator for the resource's variants.
+     *
+     * @return The selected variant; null if no variant is acceptable.
+     */
+    protected Variant negotiate(final Request request,
+                                final Response response,
+                                final VariantNegotiator negotiator) {
+        final Variant variant =
+            negotiator.select(
+                request.getHeader(Header.ACCEPT),
+                request.getHeader(Header.ACCEPT_CHARSET),
+                request.getHeader(Header.ACCEPT_LANGUAGE),
+                request.getHeader(Header.ACCEPT_ENCODING));
+        addVary(response, negotiator.getVary());
+        if (null==variant) { return null; }
+
+        if (null!=variant.getContentType()) {
+            response.setHeader(Header.CONTENT_TYPE, variant.getContentType());
+        }
+        if (null!=variant.getLanguage()) {
+            response.setHeader(
+                Header.CONTENT_LANGUAGE, variant.getLanguage().toString());
+        }
+        if (null!=variant.getEncoding()
+            && ContentCoding.IDENTITY!=variant.getEncoding()) {
+            response.setHeader(
+                Header.CONTENT_ENCODING, variant.getEncoding().toString());
+        }
+        return variant;
+    }
+
+
+    /*
+     * Add to the Vary header, only merging when a value is already present.
+     */
+    private static void addVary(final Response response, final String vary) {
+        if (null==vary) { return; }
+        final String existing = response.getHeader(Header.VARY);
+        if (null==existing || existing.isEmpty()) {
+            response.setHeader(Header.VARY, vary);
+        } else if (!existing.equals(vary)) {
+            final VaryHeader vh = new VaryHeader();
+            final SortedSet<String> variances = vh.parse(existing);
+            variances.addAll(vh.parse(vary));
+            response.setHeader(Header.VARY, vh.write(variances));
+        }
+    }
 }
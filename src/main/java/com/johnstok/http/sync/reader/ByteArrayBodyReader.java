@@ -19,30 +19,154 @@
  *---------------------------------------------------------------------------*/
 package com.johnstok.http.sync.reader;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
-import com.johnstok.http.IO;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Header;
+import com.johnstok.http.Status;
 import com.johnstok.http.sync.BodyReader;
+import com.johnstok.http.sync.Request;
 
 
 /**
  * Reads a message body into a byte array.
  *
+ * <p>When the body's length is known the array never grows beyond the exact
+ * size, but it is allocated in steps as bytes arrive so that a large declared
+ * length cannot reserve memory the client never sends. Bodies larger than
+ * the configured maximum are rejected with a 413 status, before any of the
+ * body is read where possible.
+ *
  * @author Keith Webster Johnston.
  */
 public class ByteArrayBodyReader
     implements
         BodyReader<byte[]> {
 
+    /** The largest array the reader will allocate. */
+    static final int MAX_ARRAY = Integer.MAX_VALUE-8;
+
+    private static final int INITIAL_SIZE = 8192;
+
+    /** The most allocated up front for a body of declared length. */
+    static final int MAX_PRESIZE = 64*1024;
+
+    private final long _contentLength;
+    private final long _maxSize;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>Reads a body of unknown length, without limit.
+     */
+    public ByteArrayBodyReader() {
+        this(-1, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum body size, in bytes.
+     */
+    public ByteArrayBodyReader(final long maxSize) {
+        this(-1, maxSize);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param request The request whose Content-Length header gives the body
+     *  length, if present.
+     * @param maxSize The maximum body size, in bytes.
+     */
+    public ByteArrayBodyReader(final Request request, final long maxSize) {
+        this(contentLength(request), maxSize);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param contentLength The length of the body in bytes; -1 if unknown.
+     * @param maxSize       The maximum body size, in bytes.
+     */
+    public ByteArrayBodyReader(final long contentLength, final long maxSize) {
+        if (0>maxSize) { throw new IllegalArgumentException(); }
+        _contentLength = contentLength;
+        _maxSize = maxSize;
+    }
+
+
     /** {@inheritDoc} */
     @Override
-    @SuppressWarnings("resource")
     public byte[] read(final InputStream inputStream) throws IOException {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            IO.copy(inputStream, baos);
-            return baos.toByteArray();
+        if (_contentLength>_maxSize || _contentLength>MAX_ARRAY) {
+            throw tooLarge();
+        }
+
+        if (0<=_contentLength) {
+            final int length = (int) _contentLength;
+            byte[] body = new byte[Math.min(length, MAX_PRESIZE)];
+            int count = 0;
+            while (count<length) {
+                if (count==body.length) {
+                    body =
+                        Arrays.copyOf(
+                            body, (int) Math.min(2L*body.length, length));
+                }
+                final int read =
+                    inputStream.read(body, count, body.length-count);
+                if (0>read) { throw new ClientHttpException(Status.BAD_REQUEST); }
+                count += read;
+            }
+            return body;
+        }
+
+        final int limit = (_maxSize<MAX_ARRAY) ? (int) _maxSize+1 : MAX_ARRAY;
+        byte[] body = new byte[Math.min(INITIAL_SIZE, limit)];
+        int count = 0;
+        for (;;) {
+            if (count==body.length) {
+                if (limit==count) { throw tooLarge(); }
+                body =
+                    Arrays.copyOf(
+                        body, (int) Math.min(2L*body.length, limit));
+            }
+            final int read = inputStream.read(body, count, body.length-count);
+            if (0>read) { break; }
+            count += read;
+            if (count>_maxSize) { throw tooLarge(); }
         }
+        return (count==body.length) ? body : Arrays.copyOf(body, count);
+    }
+
+
+    /**
+     * Determine the length of a request's body.
+     *
+     * @param request The request.
+     *
+     * @return The value of the Content-Length header; -1 if absent.
+     */
+    static long contentLength(final Request request) {
+        final String value = request.getHeader(Header.CONTENT_LENGTH);
+        if (null==value) { return -1; }
+        try {
+            final long length = Long.parseLong(value.trim());
+            if (0>length) { throw new ClientHttpException(Status.BAD_REQUEST); }
+            return length;
+        } catch (final NumberFormatException e) {
+            throw new ClientHttpException(Status.BAD_REQUEST, e);
+        }
+    }
+
+
+    static ClientHttpException tooLarge() {
+        return new ClientHttpException(Status.REQUEST_ENTITY_TOO_LARGE);
     }
 }
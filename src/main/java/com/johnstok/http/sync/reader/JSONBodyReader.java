@@ -0,0 +1,120 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import com.johnstok.http.Specification;
+import com.johnstok.http.json.JSONReader;
+import com.johnstok.http.sync.BodyReader;
+
+
+/**
+ * Reads a JSON message body.
+ *
+ * <p>The body is tokenized directly from the request stream; the supplied
+ * {@link Parser} pulls events from a {@link JSONReader} and builds whatever
+ * result it needs, so large documents can be processed without first
+ * buffering the body.
+ *
+ * @param <T> The type of value read.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class JSONBodyReader<T>
+    implements
+        BodyReader<T> {
+
+    /**
+     * Builds a value from a stream of JSON events.
+     *
+     * @param <T> The type of value built.
+     */
+    public static interface Parser<T> {
+
+        /**
+         * Build a value.
+         *
+         * @param reader The reader supplying events.
+         *
+         * @return The value.
+         *
+         * @throws IOException If reading from the stream fails.
+         */
+        T parse(JSONReader reader) throws IOException;
+    }
+
+    private final Charset   _charset;
+    private final Parser<T> _parser;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>The body is decoded as UTF-8.
+     *
+     * @param parser The parser used to build the value.
+     */
+    @Specification(name="rfc-8259", section="8.1")
+    public JSONBodyReader(final Parser<T> parser) {
+        this(StandardCharsets.UTF_8, parser);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param charset The character set used to decode the body.
+     * @param parser  The parser used to build the value.
+     */
+    public JSONBodyReader(final Charset charset, final Parser<T> parser) {
+        _charset = Objects.requireNonNull(charset);
+        _parser = Objects.requireNonNull(parser);
+    }
+
+
+    /**
+     * Create a reader that reads the whole body into memory.
+     *
+     * @return A reader returning the value from {@link JSONReader#readValue()}.
+     */
+    public static JSONBodyReader<Object> values() {
+        return new JSONBodyReader<Object>(new Parser<Object>() {
+            @Override
+            public Object parse(final JSONReader reader) throws IOException {
+                final Object value = reader.readValue();
+                reader.next(); // Rejects trailing content.
+                return value;
+            }
+        });
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public T read(final InputStream inputStream) throws IOException {
+        try (JSONReader reader = new JSONReader(inputStream, _charset)) {
+            return _parser.parse(reader);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.sync.Request;
+
+
+/**
+ * An input stream that rejects a body larger than a maximum size.
+ *
+ * <p>Wrap a request body with this stream to bound the size accepted by any
+ * {@link com.johnstok.http.sync.BodyReader}. Reading past the limit throws a
+ * {@link ClientHttpException} with a 413 status.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class LimitedInputStream
+    extends
+        FilterInputStream {
+
+    private final long _maxSize;
+    private long       _count;
+
+
+    /**
+     * Constructor.
+     *
+     * @param in      The stream to read from.
+     * @param maxSize The maximum number of bytes that may be read.
+     */
+    public LimitedInputStream(final InputStream in, final long maxSize) {
+        super(in);
+        if (0>maxSize) { throw new IllegalArgumentException(); }
+        _maxSize = maxSize;
+    }
+
+
+    /**
+     * Wrap a request's body.
+     *
+     * <p>Fails immediately if the request's Content-Length exceeds the
+     * maximum.
+     *
+     * @param request The request.
+     * @param maxSize The maximum body size, in bytes.
+     *
+     * @return The limited body stream.
+     *
+     * @throws IOException If the body cannot be obtained.
+     */
+    public static LimitedInputStream body(final Request request,
+                                          final long maxSize)
+    throws IOException {
+        if (ByteArrayBodyReader.contentLength(request)>maxSize) {
+            throw ByteArrayBodyReader.tooLarge();
+        }
+        return new LimitedInputStream(request.getBody(), maxSize);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (0<=b) { count(1); }
+        return b;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int read(final byte[] b,
+                    final int off,
+                    final int len) throws IOException {
+        final int read = super.read(b, off, len);
+        if (0<read) { count(read); }
+        return read;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of bytes read so far.
+     */
+    public long getCount() {
+        return _count;
+    }
+
+
+    private void count(final long n) {
+        _count += n;
+        if (_count>_maxSize) { throw ByteArrayBodyReader.tooLarge(); }
+    }
+}
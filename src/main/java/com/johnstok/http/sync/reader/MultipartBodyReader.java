@@ -0,0 +1,218 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.multipart.MultipartReader;
+import com.johnstok.http.multipart.Part;
+import com.johnstok.http.sync.BodyReader;
+
+
+/**
+ * Reads a multipart/form-data message body into its parts.
+ *
+ * <p>The body is parsed incrementally. Parts up to a threshold are held in
+ * memory, as long as the parts held in memory total no more than a budget;
+ * larger parts, and any part that would exceed the budget, are spilled to
+ * temporary files, which the caller should remove with {@link Part#delete()}
+ * once processed. A body with more than the maximum number of parts is
+ * rejected with 413 (Request Entity Too Large). For full control over each
+ * part's stream use a {@link MultipartReader} directly.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class MultipartBodyReader
+    implements
+        BodyReader<List<Part>> {
+
+    /** The default size, in bytes, above which a part is spilled to disk. */
+    public static final int DEFAULT_THRESHOLD = 64*1024;
+
+    /** The default total size, in bytes, of the parts held in memory. */
+    public static final int DEFAULT_MEMORY_BUDGET = 1024*1024;
+
+    /** The default maximum number of parts. */
+    public static final int DEFAULT_MAX_PARTS = 1000;
+
+    private final String _boundary;
+    private final int    _threshold;
+    private final Path   _directory;
+    private final long   _memoryBudget;
+    private final int    _maxParts;
+
+
+    /**
+     * Constructor.
+     *
+     * @param boundary The boundary parameter of the body's media type.
+     */
+    public MultipartBodyReader(final String boundary) {
+        this(boundary, DEFAULT_THRESHOLD, null);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param boundary  The boundary parameter of the body's media type.
+     * @param threshold The size, in bytes, above which a part is written to a
+     *  temporary file.
+     * @param directory The directory for temporary files; null for the
+     *  system default.
+     */
+    public MultipartBodyReader(final String boundary,
+                               final int threshold,
+                               final Path directory) {
+        this(boundary,
+             threshold,
+             directory,
+             DEFAULT_MEMORY_BUDGET,
+             DEFAULT_MAX_PARTS);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param boundary     The boundary parameter of the body's media type.
+     * @param threshold    The size, in bytes, above which a part is written to
+     *  a temporary file.
+     * @param directory    The directory for temporary files; null for the
+     *  system default.
+     * @param memoryBudget The total size, in bytes, of the parts that may be
+     *  held in memory for a single body.
+     * @param maxParts     The maximum number of parts in a single body.
+     */
+    public MultipartBodyReader(final String boundary,
+                               final int threshold,
+                               final Path directory,
+                               final long memoryBudget,
+                               final int maxParts) {
+        _boundary     = Objects.requireNonNull(boundary);
+        _threshold    = threshold;
+        _directory    = directory;
+        _memoryBudget = memoryBudget;
+        _maxParts     = maxParts;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Part> read(final InputStream inputStream) throws IOException {
+        final MultipartReader reader =
+            new MultipartReader(inputStream, _boundary);
+        final List<Part> parts = new ArrayList<Part>();
+        long budget = _memoryBudget;
+        try {
+            while (reader.next()) {
+                if (parts.size()>=_maxParts) {
+                    throw new ClientHttpException(
+                        Status.REQUEST_ENTITY_TOO_LARGE);
+                }
+                final Part part = new Part();
+                final Map<String, String> headers =
+                    new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                headers.putAll(reader.getHeaders());
+                part.setHeaders(headers);
+                parts.add(part);
+                budget -= readBody(reader.getBody(), part, budget);
+            }
+        } catch (final IOException | RuntimeException e) {
+            delete(parts, e);
+            throw e;
+        }
+        return parts;
+    }
+
+
+    /*
+     * Returns the number of bytes held in memory.
+     */
+    private long readBody(final InputStream body,
+                          final Part part,
+                          final long budget) throws IOException {
+        final long limit = Math.min(_threshold, budget);
+        final byte[] buffer = new byte[8192];
+        final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        int read;
+        while (0<=(read = body.read(buffer))) {
+            if (memory.size()+read>limit) {
+                spill(memory, buffer, read, body, part);
+                return 0;
+            }
+            memory.write(buffer, 0, read);
+        }
+        part.setBody(memory.toByteArray());
+        return memory.size();
+    }
+
+
+    private void spill(final ByteArrayOutputStream memory,
+                       final byte[] buffer,
+                       final int count,
+                       final InputStream body,
+                       final Part part) throws IOException {
+        final Path file =
+            (null==_directory)
+                ? Files.createTempFile("multipart", ".part")    //$NON-NLS-1$ //$NON-NLS-2$
+                : Files.createTempFile(_directory, "multipart", ".part"); //$NON-NLS-1$ //$NON-NLS-2$
+        part.setFile(file);
+        try (OutputStream os = Files.newOutputStream(file)) {
+            memory.writeTo(os);
+            os.write(buffer, 0, count);
+            int read;
+            while (0<=(read = body.read(buffer))) {
+                os.write(buffer, 0, read);
+            }
+        } catch (final IOException | RuntimeException e) {
+            delete(Collections.singletonList(part), e);
+            throw e;
+        }
+    }
+
+
+    /*
+     * Delete the files of parts abandoned because of a failure, recording
+     * any that cannot be deleted against the failure rather than masking it.
+     */
+    private static void delete(final List<Part> parts,
+                               final Exception failure) {
+        for (final Part part : parts) {
+            try {
+                part.delete();
+            } catch (final IOException | RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+}
@@ -21,24 +21,43 @@ package com.johnstok.http.sync.reader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Objects;
 
+import com.johnstok.http.BufferPool;
+import com.johnstok.http.ClientHttpException;
 import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
 import com.johnstok.http.sync.BodyReader;
+import com.johnstok.http.sync.Request;
 
 
 /**
  * Reads a message body into a String.
  *
+ * <p>The body is decoded as it is read, through a pooled byte buffer, into a
+ * char buffer sized from the body's length when known, up to a bounded
+ * initial size. Bodies larger than
+ * the configured maximum are rejected with a 413 status.
+ *
  * @author Keith Webster Johnston.
  */
 public class StringBodyReader
     implements
         BodyReader<String> {
 
+    private static final int INITIAL_SIZE = 1024;
+
     private final Charset _charset;
+    private final long    _contentLength;
+    private final long    _maxSize;
 
 
     /**
@@ -60,17 +79,119 @@ public class StringBodyReader
      * NULL is not allowed.
      */
     public StringBodyReader(final Charset charset) {
+        this(charset, -1, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param request The request whose Content-Length header gives the body
+     *  length, if present.
+     * @param charset The character set used to decode the bytes in the body.
+     * @param maxSize The maximum body size, in bytes.
+     */
+    public StringBodyReader(final Request request,
+                            final Charset charset,
+                            final long maxSize) {
+        this(charset, ByteArrayBodyReader.contentLength(request), maxSize);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param charset       The character set used to decode the bytes in the
+     *  body.
+     * @param contentLength The length of the body in bytes; -1 if unknown.
+     * @param maxSize       The maximum body size, in bytes.
+     */
+    public StringBodyReader(final Charset charset,
+                            final long contentLength,
+                            final long maxSize) {
+        if (0>maxSize) { throw new IllegalArgumentException(); }
         _charset = Objects.requireNonNull(charset);
+        _contentLength = contentLength;
+        _maxSize = maxSize;
     }
 
 
     /** {@inheritDoc} */
     @Override
     public String read(final InputStream inputStream) throws IOException {
-        // TODO: Inefficient - replace w StringReader + StringBuilder.
-        return
-            new String(
-                new ByteArrayBodyReader().read(inputStream),
-                _charset);
+        if (_contentLength>_maxSize) { throw ByteArrayBodyReader.tooLarge(); }
+
+        final CharsetDecoder decoder =
+            _charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final boolean known = 0<=_contentLength;
+        CharBuffer out =
+            CharBuffer.allocate(
+                (known)
+                    ? (int) Math.min(
+                        Math.ceil(_contentLength*decoder.maxCharsPerByte()),
+                        ByteArrayBodyReader.MAX_PRESIZE)
+                    : INITIAL_SIZE);
+
+        final byte[] bytes = BufferPool.DEFAULT.bytes();
+        try {
+            final ByteBuffer in = ByteBuffer.wrap(bytes);
+            in.limit(0);
+            long total = 0;
+            boolean eof = false;
+            for (;;) {
+                final CoderResult result = decoder.decode(in, out, eof);
+                if (result.isOverflow()) { out = grow(out); continue; }
+                if (eof) { break; }
+
+                in.compact();
+                final int length =
+                    (known)
+                        ? (int) Math.min(in.remaining(), _contentLength-total)
+                        : in.remaining();
+                if (0==length && known) {
+                    eof = true;
+                } else {
+                    final int read =
+                        inputStream.read(bytes, in.position(), length);
+                    if (0>read) {
+                        if (known) {
+                            throw new ClientHttpException(Status.BAD_REQUEST);
+                        }
+                        eof = true;
+                    } else {
+                        total += read;
+                        if (total>_maxSize) {
+                            throw ByteArrayBodyReader.tooLarge();
+                        }
+                        in.position(in.position()+read);
+                    }
+                }
+                in.flip();
+            }
+            while (decoder.flush(out).isOverflow()) { out = grow(out); }
+        } finally {
+            BufferPool.DEFAULT.release(bytes);
+        }
+
+        return new String(out.array(), 0, out.position());
+    }
+
+
+    private static CharBuffer grow(final CharBuffer buffer) {
+        if (ByteArrayBodyReader.MAX_ARRAY==buffer.capacity()) {
+            throw ByteArrayBodyReader.tooLarge();
+        }
+        final int position = buffer.position();
+        final CharBuffer grown =
+            CharBuffer.wrap(
+                Arrays.copyOf(
+                    buffer.array(),
+                    (int) Math.min(
+                        Math.max(2L*buffer.capacity(), 16),
+                        ByteArrayBodyReader.MAX_ARRAY)));
+        grown.position(position);
+        return grown;
     }
 }
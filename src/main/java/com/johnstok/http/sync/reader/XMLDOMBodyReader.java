@@ -21,6 +21,7 @@ package com.johnstok.http.sync.reader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -32,23 +33,71 @@ import com.johnstok.http.sync.BodyReader;
 /**
  * Reads a message body into an XML document.
  *
+ * <p>Document builders are created once per thread and reset between uses.
+ * Documents containing a DTD are rejected, so external entities are never
+ * resolved.
+ * For large documents prefer {@link XMLStreamBodyReader}, which does not
+ * build a tree in memory.
+ *
  * @author Keith Webster Johnston.
  */
 public class XMLDOMBodyReader
     implements
         BodyReader<Document> {
 
+    private static final DocumentBuilderFactory FACTORY = factory();
+    private static final ThreadLocal<DocumentBuilder> BUILDERS =
+        new ThreadLocal<DocumentBuilder>();
+
+
     /** {@inheritDoc} */
     @Override
     public Document read(final InputStream inputStream) throws IOException {
         try {
-            final DocumentBuilderFactory dbFactory =
-                DocumentBuilderFactory.newInstance();
-            final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            return dBuilder.parse(inputStream);
+            final DocumentBuilder dBuilder = builder();
+            try {
+                return dBuilder.parse(inputStream);
+            } finally {
+                dBuilder.reset();
+            }
         } catch (ParserConfigurationException | SAXException e) {
             throw new IOException("Error parsing document.", e);
         }
     }
 
+
+    /*
+     * Bodies are untrusted: refuse DTDs outright so that external entities
+     * (XXE) and entity expansion attacks cannot be expressed.
+     */
+    private static DocumentBuilderFactory factory() {
+        final DocumentBuilderFactory factory =
+            DocumentBuilderFactory.newInstance();
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature(XMLSAXBodyReader.DISALLOW_DOCTYPE, true);
+            factory.setFeature(
+                XMLSAXBodyReader.EXTERNAL_GENERAL_ENTITIES, false);
+            factory.setFeature(
+                XMLSAXBodyReader.EXTERNAL_PARAMETER_ENTITIES, false);
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        return factory;
+    }
+
+
+    private static DocumentBuilder builder()
+    throws ParserConfigurationException {
+        DocumentBuilder builder = BUILDERS.get();
+        if (null==builder) {
+            synchronized (FACTORY) { // Factories aren't thread-safe.
+                builder = FACTORY.newDocumentBuilder();
+            }
+            BUILDERS.set(builder);
+        }
+        return builder;
+    }
 }
@@ -0,0 +1,124 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.function.Supplier;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import com.johnstok.http.sync.BodyReader;
+
+
+/**
+ * Reads an XML message body by pushing SAX events to a handler.
+ *
+ * <p>A new handler is obtained for each body and returned once the document
+ * has been parsed; the handler accumulates whatever result it needs. Parsers
+ * are created once per thread and reset between uses. Documents containing
+ * a DTD are rejected, so external entities are never resolved.
+ *
+ * @param <T> The type of handler.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class XMLSAXBodyReader<T extends DefaultHandler>
+    implements
+        BodyReader<T> {
+
+    static final String DISALLOW_DOCTYPE =
+        "http://apache.org/xml/features/disallow-doctype-decl";     //$NON-NLS-1$
+    static final String EXTERNAL_GENERAL_ENTITIES =
+        "http://xml.org/sax/features/external-general-entities";    //$NON-NLS-1$
+    static final String EXTERNAL_PARAMETER_ENTITIES =
+        "http://xml.org/sax/features/external-parameter-entities";  //$NON-NLS-1$
+
+    private static final SAXParserFactory FACTORY = factory();
+    private static final ThreadLocal<SAXParser> PARSERS =
+        new ThreadLocal<SAXParser>();
+
+    private final Supplier<T> _handlers;
+
+
+    /**
+     * Constructor.
+     *
+     * @param handlers Supplies a new handler for each body read.
+     */
+    public XMLSAXBodyReader(final Supplier<T> handlers) {
+        _handlers = Objects.requireNonNull(handlers);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public T read(final InputStream inputStream) throws IOException {
+        final T handler = _handlers.get();
+        try {
+            final SAXParser parser = parser();
+            try {
+                parser.parse(inputStream, handler);
+            } finally {
+                parser.reset();
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Error parsing document.", e);
+        }
+        return handler;
+    }
+
+
+    /*
+     * Bodies are untrusted: refuse DTDs outright so that external entities
+     * (XXE) and entity expansion attacks cannot be expressed.
+     */
+    private static SAXParserFactory factory() {
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setXIncludeAware(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature(DISALLOW_DOCTYPE, true);
+            factory.setFeature(EXTERNAL_GENERAL_ENTITIES, false);
+            factory.setFeature(EXTERNAL_PARAMETER_ENTITIES, false);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException(e);
+        }
+        return factory;
+    }
+
+
+    private static SAXParser parser()
+    throws ParserConfigurationException, SAXException {
+        SAXParser parser = PARSERS.get();
+        if (null==parser) {
+            synchronized (FACTORY) { // Factories aren't thread-safe.
+                parser = FACTORY.newSAXParser();
+            }
+            PARSERS.set(parser);
+        }
+        return parser;
+    }
+}
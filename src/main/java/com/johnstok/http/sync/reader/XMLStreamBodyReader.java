@@ -0,0 +1,103 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import com.johnstok.http.sync.BodyReader;
+
+
+/**
+ * Reads an XML message body as a stream of StAX events.
+ *
+ * <p>The supplied {@link Parser} pulls events from an
+ * {@link XMLStreamReader} and builds whatever result it needs, so large
+ * documents can be processed without building a tree in memory. Readers are
+ * created from a single, shared {@link XMLInputFactory}; DTDs and external
+ * entities are not supported.
+ *
+ * @param <T> The type of value read.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class XMLStreamBodyReader<T>
+    implements
+        BodyReader<T> {
+
+    private static final XMLInputFactory FACTORY;
+    static {
+        FACTORY = XMLInputFactory.newInstance();
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        FACTORY.setProperty(
+            XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * Builds a value from a stream of XML events.
+     *
+     * @param <T> The type of value built.
+     */
+    public static interface Parser<T> {
+
+        /**
+         * Build a value.
+         *
+         * @param reader The reader supplying events.
+         *
+         * @return The value.
+         *
+         * @throws XMLStreamException If the document is malformed.
+         */
+        T parse(XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    private final Parser<T> _parser;
+
+
+    /**
+     * Constructor.
+     *
+     * @param parser The parser used to build the value.
+     */
+    public XMLStreamBodyReader(final Parser<T> parser) {
+        _parser = Objects.requireNonNull(parser);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public T read(final InputStream inputStream) throws IOException {
+        try {
+            final XMLStreamReader reader =
+                FACTORY.createXMLStreamReader(inputStream);
+            try {
+                return _parser.parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException("Error parsing document.", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+import com.johnstok.http.sync.BodyWriter;
+
+
+/**
+ * Writes a message body from a byte array.
+ *
+ * <p>Useful for constant bodies: encode the body once, hold the writer in a
+ * static field and share it between responses.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class ByteArrayBodyWriter
+    implements
+        BodyWriter {
+
+    private final byte[] _bytes;
+
+
+    /**
+     * Constructor.
+     *
+     * @param bytes The bytes to write; the array is not copied and should not
+     *  be modified.
+     */
+    public ByteArrayBodyWriter(final byte[] bytes) {
+        _bytes = Objects.requireNonNull(bytes);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param string  The string to write.
+     * @param charset The character set used to encode the string.
+     */
+    public ByteArrayBodyWriter(final String string, final Charset charset) {
+        this(string.getBytes(charset));
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the length of the body, in bytes.
+     */
+    public int getLength() {
+        return _bytes.length;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final OutputStream outputStream) throws IOException {
+        outputStream.write(_bytes);
+    }
+}
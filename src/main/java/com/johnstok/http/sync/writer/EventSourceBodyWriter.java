@@ -0,0 +1,168 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.writer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import com.johnstok.http.Header;
+import com.johnstok.http.sse.EventSource;
+import com.johnstok.http.sync.BodyWriter;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * Streams server-sent events to a client until the subscription ends.
+ *
+ * <p>Events are queued by the publisher and written by the handler's
+ * thread, so a slow client never delays the publisher; a client that falls
+ * more than the queue's capacity behind is disconnected and may resume
+ * with Last-Event-ID. Each write drains all queued events before flushing.
+ *
+ * <p>This writer holds a thread for the life of the subscription; a
+ * non-blocking transport should implement {@link EventSource.Subscriber}
+ * directly instead.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class EventSourceBodyWriter
+    implements
+        BodyWriter {
+
+    /** The media type of an event stream. */
+    public static final String CONTENT_TYPE = "text/event-stream"; //$NON-NLS-1$
+
+    /** The header a reconnecting client uses to resume. */
+    public static final String LAST_EVENT_ID = "Last-Event-ID";    //$NON-NLS-1$
+
+    /** The default number of events queued per client. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final byte[] END = new byte[0];
+
+    private final EventSource _source;
+    private final String      _lastEventId;
+    private final int         _capacity;
+
+
+    /**
+     * Constructor.
+     *
+     * @param source      The source to subscribe to.
+     * @param lastEventId The last event the client received; may be null.
+     * @param capacity    The number of events queued for the client.
+     */
+    public EventSourceBodyWriter(final EventSource source,
+                                 final String lastEventId,
+                                 final int capacity) {
+        _source = Objects.requireNonNull(source);
+        _lastEventId = lastEventId;
+        _capacity = capacity;
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param source  The source to subscribe to.
+     * @param request The request; its Last-Event-ID header is honoured.
+     */
+    public EventSourceBodyWriter(final EventSource source,
+                                 final Request request) {
+        this(source, request.getHeader(LAST_EVENT_ID), DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * Set the headers for an event stream.
+     *
+     * @param response The response to prepare; must not be committed.
+     */
+    public static void prepare(final Response response) {
+        response.setHeader(Header.CONTENT_TYPE, CONTENT_TYPE);
+        response.setHeader(Header.CACHE_CONTROL, "no-cache");       //$NON-NLS-1$
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final OutputStream outputStream) throws IOException {
+        final Queue queue = new Queue(_capacity);
+        _source.subscribe(queue, _lastEventId);
+        try {
+            outputStream.flush(); // Commit the headers.
+            while (true) {
+                byte[] event = queue.take();
+                do {
+                    if (END==event) { return; }
+                    outputStream.write(event);
+                } while (null!=(event = queue._events.poll()));
+                outputStream.flush();
+            }
+        } finally {
+            _source.unsubscribe(queue);
+        }
+    }
+
+
+    /**
+     * Queues events for a blocking writer.
+     */
+    private static final class Queue
+        implements
+            EventSource.Subscriber {
+
+        final BlockingQueue<byte[]> _events;
+
+
+        Queue(final int capacity) {
+            _events = new ArrayBlockingQueue<byte[]>(capacity+1);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean send(final byte[] event) {
+            return (_events.remainingCapacity()>1) && _events.offer(event);
+        }
+
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            _events.clear(); // The client resumes from its last event.
+            _events.offer(END);
+        }
+
+
+        byte[] take() throws IOException {
+            try {
+                return _events.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import com.johnstok.http.json.JSONWriter;
+import com.johnstok.http.sync.BodyWriter;
+
+
+/**
+ * Writes a JSON message body.
+ *
+ * <p>The supplied {@link Emitter} writes events to a {@link JSONWriter}
+ * which encodes them directly to the response stream.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class JSONBodyWriter
+    implements
+        BodyWriter {
+
+    /**
+     * Emits a JSON document.
+     */
+    public static interface Emitter {
+
+        /**
+         * Emit a document.
+         *
+         * @param writer The writer to emit to.
+         *
+         * @throws IOException If writing to the stream fails.
+         */
+        void emit(JSONWriter writer) throws IOException;
+    }
+
+    private final Charset _charset;
+    private final Emitter _emitter;
+
+
+    /**
+     * Constructor.
+     *
+     * <p>The body is encoded as UTF-8.
+     *
+     * @param emitter The emitter that writes the document.
+     */
+    public JSONBodyWriter(final Emitter emitter) {
+        this(StandardCharsets.UTF_8, emitter);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param charset The character set used to encode the body.
+     * @param emitter The emitter that writes the document.
+     */
+    public JSONBodyWriter(final Charset charset, final Emitter emitter) {
+        _charset = Objects.requireNonNull(charset);
+        _emitter = Objects.requireNonNull(emitter);
+    }
+
+
+    /**
+     * Create a writer for a value held in memory.
+     *
+     * @param value The value to write, as accepted by
+     *  {@link JSONWriter#write(Object)}.
+     *
+     * @return The corresponding body writer.
+     */
+    public static JSONBodyWriter of(final Object value) {
+        return new JSONBodyWriter(new Emitter() {
+            @Override
+            public void emit(final JSONWriter writer) throws IOException {
+                writer.write(value);
+            }
+        });
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final OutputStream outputStream) throws IOException {
+        try (JSONWriter writer = new JSONWriter(outputStream, _charset)) {
+            _emitter.emit(writer);
+        }
+    }
+}
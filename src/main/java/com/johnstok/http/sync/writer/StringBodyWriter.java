@@ -19,28 +19,44 @@
  *---------------------------------------------------------------------------*/
 package com.johnstok.http.sync.writer;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
-import com.johnstok.http.IO;
+import com.johnstok.http.BufferPool;
 import com.johnstok.http.sync.BodyWriter;
 
 
 /**
  * Writes a message body from a string.
  *
+ * <p>Characters are encoded through a pooled buffer straight onto the output
+ * stream or channel. Runs of ASCII (or, for ISO-8859-1, Latin-1) characters
+ * are copied without going through the encoder; only the runs between them
+ * are encoded. For a body that doesn't
+ * change between responses prefer a {@link ByteArrayBodyWriter}, which
+ * encodes once.
+ *
  * @author Keith Webster Johnston.
  */
 public class StringBodyWriter
     implements
         BodyWriter {
 
-    private final String  _string;
-    private final Charset _charset;
+    private static final ThreadLocal<CharsetEncoder> ENCODERS =
+        new ThreadLocal<CharsetEncoder>();
+
+    private final CharSequence _string;
+    private final Charset      _charset;
+    private final int          _direct;
 
 
     /**
@@ -49,17 +65,141 @@ public class StringBodyWriter
      * @param string  The string to write.
      * @param charset The character set used to encode the string.
      */
-    public StringBodyWriter(final String string, final Charset charset) {
+    public StringBodyWriter(final CharSequence string, final Charset charset) {
         _string = Objects.requireNonNull(string);
         _charset = Objects.requireNonNull(charset);
+        _direct = directLimit(charset);
     }
 
 
     /** {@inheritDoc} */
     @Override
     public void write(final OutputStream outputStream) throws IOException {
-        try (InputStream is = new ByteArrayInputStream(_string.getBytes(_charset))) { // FIXME: duplicates string in memory as a byte array.
-            IO.copy(is, outputStream);
+        write(new Sink() {
+            @Override
+            public void write(final ByteBuffer bytes) throws IOException {
+                outputStream.write(
+                    bytes.array(), bytes.arrayOffset(), bytes.position());
+            }
+        });
+    }
+
+
+    /**
+     * Write the body to the supplied channel.
+     *
+     * <p>The supplied channel will not be closed.
+     *
+     * @param channel The channel to write to.
+     *
+     * @throws IOException If writing to the channel fails.
+     */
+    public void write(final WritableByteChannel channel) throws IOException {
+        write(new Sink() {
+            @Override
+            public void write(final ByteBuffer bytes) throws IOException {
+                bytes.flip();
+                while (bytes.hasRemaining()) { channel.write(bytes); }
+            }
+        });
+    }
+
+
+    private void write(final Sink sink) throws IOException {
+        final byte[] array = BufferPool.DEFAULT.bytes();
+        try {
+            final ByteBuffer bytes = ByteBuffer.wrap(array);
+            final int length = _string.length();
+            int i = 0;
+            while (i<length) {
+                // Fast path: one byte per char.
+                int count = bytes.position();
+                final int end = Math.min(length, i+array.length-count);
+                while (i<end) {
+                    final char c = _string.charAt(i);
+                    if (c>_direct) { break; }
+                    array[count++] = (byte) c;
+                    i++;
+                }
+                bytes.position(count);
+                if (!bytes.hasRemaining()) {
+                    sink.write(bytes);
+                    bytes.clear();
+                }
+                if (i<end) { i = encode(i, bytes, sink); }
+            }
+            if (0<bytes.position()) { sink.write(bytes); }
+        } finally {
+            BufferPool.DEFAULT.release(array);
         }
     }
+
+
+    /*
+     * Encode a run of chars the fast path can't handle, starting at 'from',
+     * leaving the encoded bytes in the buffer.
+     */
+    private int encode(final int from,
+                       final ByteBuffer bytes,
+                       final Sink sink) throws IOException {
+        final int length = _string.length();
+        int to = from+1;
+        while (to<length && _string.charAt(to)>_direct) { to++; }
+
+        final CharsetEncoder encoder = encoder(_charset);
+        final CharBuffer chars = CharBuffer.wrap(_string, from, to);
+        try {
+            for (;;) {
+                final CoderResult result = encoder.encode(chars, bytes, true);
+                if (result.isError()) { result.throwException(); }
+                if (result.isUnderflow()) { break; }
+                sink.write(bytes);
+                bytes.clear();
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                sink.write(bytes);
+                bytes.clear();
+            }
+        } finally {
+            encoder.reset();
+        }
+        return to;
+    }
+
+
+    private static CharsetEncoder encoder(final Charset charset) {
+        CharsetEncoder encoder = ENCODERS.get();
+        if (null==encoder || !charset.equals(encoder.charset())) {
+            encoder =
+                charset.newEncoder()
+                       .onMalformedInput(CodingErrorAction.REPLACE)
+                       .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ENCODERS.set(encoder);
+        }
+        return encoder;
+    }
+
+
+    private static int directLimit(final Charset charset) {
+        if (StandardCharsets.ISO_8859_1.equals(charset)) { return 0xff; }
+        if (StandardCharsets.US_ASCII.equals(charset)
+            || StandardCharsets.UTF_8.equals(charset)) {
+            return 0x7f;
+        }
+        return -1; // No fast path.
+    }
+
+
+    /** A destination for encoded bytes. */
+    private static interface Sink {
+
+        /**
+         * Write the bytes between zero and the buffer's position.
+         *
+         * @param bytes The buffer to write from.
+         *
+         * @throws IOException If the write fails.
+         */
+        void write(ByteBuffer bytes) throws IOException;
+    }
 }
@@ -0,0 +1,321 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.timer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+
+
+/**
+ * Tracks the deadline for one connection's current phase.
+ *
+ * <p>The transport reports each phase change; at most one timeout per
+ * connection is pending on the shared {@link TimingWheel}. Body progress
+ * is recorded with a single write and checked only when the timeout fires,
+ * so reads do not reschedule.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class ConnectionTimeouts {
+
+    /**
+     * The phases of a connection that have deadlines.
+     */
+    public static enum Phase {
+        /** Waiting for a request to start. */
+        IDLE,
+        /** Reading the request line and headers. */
+        HEADERS,
+        /** Reading the request body. */
+        BODY
+    }
+
+    /**
+     * Handles an expired deadline.
+     */
+    public static interface Listener {
+
+        /**
+         * Handle an expired deadline.
+         *
+         * <p>Called on the wheel's thread; must not block.
+         *
+         * @param phase The phase that took too long.
+         */
+        void timedOut(Phase phase);
+    }
+
+    @Specification(name="rfc-2616", section="10.4.9")
+    private static final byte[] REQUEST_TIMEOUT =
+        ("HTTP/1.1 "+Status.REQUEST_TIMEOUT.getCode()+" "            //$NON-NLS-1$ //$NON-NLS-2$
+         +Status.REQUEST_TIMEOUT.getReasonPhrase()+"\r\n"            //$NON-NLS-1$
+         +"Connection: close\r\n"                                    //$NON-NLS-1$
+         +"Content-Length: 0\r\n\r\n")                               //$NON-NLS-1$
+        .getBytes(StandardCharsets.US_ASCII);
+
+    private final TimingWheel   _wheel;
+    private final TimeoutLimits _limits;
+    private final Listener      _listener;
+    private final Runnable      _expiry = new Runnable() {
+        @Override
+        public void run() {
+            expired();
+        }
+    };
+
+    private Phase               _phase;     // Guarded by this.
+    private Timeout             _timeout;   // Guarded by this.
+    private boolean             _closed;    // Guarded by this.
+    private volatile long       _lastProgress;
+
+
+    /**
+     * Constructor.
+     *
+     * @param wheel    The wheel that expires deadlines.
+     * @param limits   The limit for each phase.
+     * @param listener The handler for expired deadlines.
+     */
+    public ConnectionTimeouts(final TimingWheel wheel,
+                              final TimeoutLimits limits,
+                              final Listener listener) {
+        _wheel = Objects.requireNonNull(wheel);
+        _limits = Objects.requireNonNull(limits);
+        _listener = Objects.requireNonNull(listener);
+    }
+
+
+    /**
+     * Create a listener that closes the connection without a response.
+     *
+     * @param connection The connection to close.
+     *
+     * @return The listener.
+     */
+    public static Listener closing(final Closeable connection) {
+        return new Listener() {
+            @Override
+            public void timedOut(final Phase phase) {
+                close(connection);
+            }
+        };
+    }
+
+
+    /**
+     * Create a listener that closes the connection, first sending 408
+     * (Request Timeout) if a request had started.
+     *
+     * <p>The response is written by the executor, so a client that has
+     * stopped reading cannot block the wheel's thread. If the write has not
+     * finished within the grace period the connection is closed anyway,
+     * which fails the write.
+     *
+     * @param connection The connection to close.
+     * @param out        The connection's output stream.
+     * @param executor   The executor that writes the response.
+     * @param wheel      The wheel that bounds the write.
+     * @param grace      How long the write may take.
+     * @param unit       The unit of the grace period.
+     *
+     * @return The listener.
+     */
+    public static Listener closing(final Closeable connection,
+                                   final OutputStream out,
+                                   final Executor executor,
+                                   final TimingWheel wheel,
+                                   final long grace,
+                                   final TimeUnit unit) {
+        Objects.requireNonNull(out);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(wheel);
+        final Runnable abort = new Runnable() {
+            @Override
+            public void run() {
+                close(connection);
+            }
+        };
+        return new Listener() {
+            @Override
+            public void timedOut(final Phase phase) {
+                if (Phase.IDLE==phase) {
+                    close(connection);
+                    return;
+                }
+                try {
+                    final Timeout deadline = wheel.schedule(abort, grace, unit);
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                out.write(REQUEST_TIMEOUT);
+                                out.flush();
+                            } catch (final IOException e) {
+                                // Closing anyway.
+                            } finally {
+                                deadline.cancel();
+                                close(connection);
+                            }
+                        }
+                    });
+                } catch (final IllegalStateException
+                             | RejectedExecutionException e) { // Closed.
+                    close(connection);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Start the idle deadline, while waiting for the next request.
+     */
+    public void awaitingRequest() {
+        awaitingRequest(System.nanoTime());
+    }
+
+
+    /**
+     * Start the header deadline, on receiving the first byte of a request.
+     */
+    public void readingHeaders() {
+        readingHeaders(System.nanoTime());
+    }
+
+
+    /**
+     * Start the body deadline, once the headers have been read.
+     */
+    public void readingBody() {
+        readingBody(System.nanoTime());
+    }
+
+
+    /**
+     * Record that body data has been received.
+     */
+    public void progress() {
+        progress(System.nanoTime());
+    }
+
+
+    /**
+     * Clear the deadline, while the request is handled.
+     */
+    public synchronized void handling() {
+        disarm();
+        _phase = null;
+    }
+
+
+    /**
+     * Clear the deadline permanently.
+     */
+    public synchronized void close() {
+        disarm();
+        _phase = null;
+        _closed = true;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the phase with a pending deadline; null if none.
+     */
+    public synchronized Phase getPhase() {
+        return _phase;
+    }
+
+
+    synchronized void awaitingRequest(final long now) {
+        arm(Phase.IDLE, now+_limits.getIdleNanos());
+    }
+
+
+    synchronized void readingHeaders(final long now) {
+        arm(Phase.HEADERS, now+_limits.getHeadersNanos());
+    }
+
+
+    synchronized void readingBody(final long now) {
+        _lastProgress = now;
+        arm(Phase.BODY, now+_limits.getBodyNanos());
+    }
+
+
+    void progress(final long now) {
+        _lastProgress = now;
+    }
+
+
+    private void arm(final Phase phase, final long deadline) {
+        if (_closed) { return; }
+        disarm();
+        _phase = phase;
+        _timeout = _wheel.schedule(_expiry, deadline);
+    }
+
+
+    private void disarm() {
+        if (null!=_timeout) {
+            _timeout.cancel();
+            _timeout = null;
+        }
+    }
+
+
+    private void expired() {
+        final Phase phase;
+        synchronized (this) {
+            if (null==_phase || null==_timeout || !_timeout.isExpired()) {
+                return; // Superseded.
+            }
+            phase = _phase;
+            if (Phase.BODY==phase) {
+                final long deadline = _lastProgress+_limits.getBodyNanos();
+                if (deadline-_timeout.getDeadline()>0) { // Progress since.
+                    _timeout = _wheel.schedule(_expiry, deadline);
+                    return;
+                }
+            }
+            _timeout = null;
+            _phase = null;
+        }
+        _listener.timedOut(phase);
+    }
+
+
+    private static void close(final Closeable connection) {
+        try {
+            connection.close();
+        } catch (final IOException e) {
+            // Already closed.
+        }
+    }
+}
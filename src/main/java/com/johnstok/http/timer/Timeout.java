@@ -0,0 +1,149 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.timer;
+
+
+/**
+ * A task scheduled on a {@link TimingWheel}.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class Timeout {
+
+    private static final int PENDING   = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED   = 2;
+
+    private final TimingWheel _wheel;
+    private final Runnable    _task;
+    private final long        _deadline;
+
+    // Guarded by the wheel's monitor.
+    Timeout                   _prev;
+    Timeout                   _next;
+    long                      _rounds;
+    private int               _state = PENDING;
+
+
+    /**
+     * Constructor.
+     *
+     * @param wheel    The wheel the timeout is scheduled on.
+     * @param task     The task to run on expiry.
+     * @param deadline The time of expiry, as from {@link System#nanoTime()}.
+     */
+    Timeout(final TimingWheel wheel, final Runnable task, final long deadline) {
+        _wheel = wheel;
+        _task = task;
+        _deadline = deadline;
+        _prev = this;   // A lone node is its own list; used for bucket heads.
+        _next = this;
+    }
+
+
+    /**
+     * Cancel the timeout.
+     *
+     * @return True if the timeout was pending; false if it had already
+     *  expired or been cancelled.
+     */
+    public boolean cancel() {
+        synchronized (_wheel) {
+            if (PENDING!=_state) { return false; }
+            _state = CANCELLED;
+            _wheel.remove(this);
+            return true;
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the task has been run.
+     */
+    public boolean isExpired() {
+        synchronized (_wheel) {
+            return EXPIRED==_state;
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the timeout was cancelled.
+     */
+    public boolean isCancelled() {
+        synchronized (_wheel) {
+            return CANCELLED==_state;
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the time of expiry, as from {@link System#nanoTime()}.
+     */
+    public long getDeadline() {
+        return _deadline;
+    }
+
+
+    /*
+     * Run the task unless the timeout was cancelled after being collected.
+     */
+    void run() {
+        synchronized (_wheel) {
+            if (PENDING!=_state) { return; }
+            _state = EXPIRED;
+        }
+        try {
+            _task.run();
+        } catch (final RuntimeException e) {
+            // A failing task must not prevent others expiring.
+        }
+    }
+
+
+    /*
+     * Insert before the specified list head.
+     */
+    void link(final Timeout head) {
+        _next = head;
+        _prev = head._prev;
+        head._prev._next = this;
+        head._prev = this;
+    }
+
+
+    /*
+     * Remove from the containing list; false if not linked.
+     */
+    boolean unlink() {
+        if (null==_prev) { return false; }
+        _prev._next = _next;
+        _next._prev = _prev;
+        _prev = null;
+        _next = null;
+        return true;
+    }
+}
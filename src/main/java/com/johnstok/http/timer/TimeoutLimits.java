@@ -0,0 +1,91 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.timer;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Limits on how long a connection may take in each phase of a request.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class TimeoutLimits {
+
+    /** 60s idle; 20s to send the headers; 30s without body progress. */
+    public static final TimeoutLimits DEFAULT =
+        new TimeoutLimits(60, 20, 30, TimeUnit.SECONDS);
+
+    private final long _idleNanos;
+    private final long _headersNanos;
+    private final long _bodyNanos;
+
+
+    /**
+     * Constructor.
+     *
+     * @param idle    How long a connection may wait for a request to start.
+     * @param headers How long a client may take to send the request headers,
+     *  from their first byte.
+     * @param body    How long a client may go without sending body data.
+     * @param unit    The unit of the limits.
+     */
+    public TimeoutLimits(final long idle,
+                         final long headers,
+                         final long body,
+                         final TimeUnit unit) {
+        if (0>=idle || 0>=headers || 0>=body) {
+            throw new IllegalArgumentException();
+        }
+        _idleNanos = unit.toNanos(idle);
+        _headersNanos = unit.toNanos(headers);
+        _bodyNanos = unit.toNanos(body);
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the idle limit, in nanoseconds.
+     */
+    public long getIdleNanos() {
+        return _idleNanos;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the header-read limit, in nanoseconds.
+     */
+    public long getHeadersNanos() {
+        return _headersNanos;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the body-read limit, in nanoseconds.
+     */
+    public long getBodyNanos() {
+        return _bodyNanos;
+    }
+}
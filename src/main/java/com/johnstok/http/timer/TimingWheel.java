@@ -0,0 +1,246 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.timer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A hashed timing wheel.
+ *
+ * <p>Timeouts are hashed into a ring of buckets by deadline; scheduling and
+ * cancelling are O(1) and a single thread expires them, so very large
+ * numbers of connection deadlines cost one list node each rather than a
+ * scheduled task apiece. Deadlines are rounded up to the tick duration.
+ *
+ * <p>Expiry tasks run on the wheel's thread and must not block.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class TimingWheel
+    implements
+        Closeable {
+
+    private final long      _tickNanos;
+    private final Timeout[] _buckets;   // Sentinel heads of circular lists.
+    private final int       _mask;
+    private final long      _start;
+    private final Thread    _worker;
+    private long            _tick;      // Guarded by this.
+    private int             _size;      // Guarded by this.
+    private volatile boolean _closed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param tick      The tick duration.
+     * @param unit      The unit of the tick duration.
+     * @param wheelSize The number of buckets; rounded up to a power of two.
+     */
+    public TimingWheel(final long tick,
+                       final TimeUnit unit,
+                       final int wheelSize) {
+        this(unit.toNanos(tick), wheelSize, System.nanoTime(), true);
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param tickNanos The tick duration, in nanoseconds.
+     * @param wheelSize The number of buckets; rounded up to a power of two.
+     * @param start     The time of tick zero, as from {@link System#nanoTime()}.
+     * @param thread    True to start a thread that expires timeouts.
+     */
+    TimingWheel(final long tickNanos,
+                final int wheelSize,
+                final long start,
+                final boolean thread) {
+        if (0>=tickNanos || 0>=wheelSize || (1<<30)<wheelSize) {
+            throw new IllegalArgumentException();
+        }
+        final int size = Integer.highestOneBit(wheelSize-1)<<1;
+        _tickNanos = tickNanos;
+        _buckets = new Timeout[Math.max(size, 1)];
+        for (int i=0; i<_buckets.length; i++) {
+            _buckets[i] = new Timeout(this, null, 0);
+        }
+        _mask = _buckets.length-1;
+        _start = start;
+        if (thread) {
+            _worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "timing-wheel");                                    //$NON-NLS-1$
+            _worker.setDaemon(true);
+            _worker.start();
+        } else {
+            _worker = null;
+        }
+    }
+
+
+    /**
+     * Schedule a task.
+     *
+     * @param task  The task to run on expiry.
+     * @param delay The delay before expiry.
+     * @param unit  The unit of the delay.
+     *
+     * @return A handle for cancelling the timeout.
+     */
+    public Timeout schedule(final Runnable task,
+                            final long delay,
+                            final TimeUnit unit) {
+        return schedule(task, System.nanoTime()+unit.toNanos(delay));
+    }
+
+
+    /**
+     * Schedule a task.
+     *
+     * @param task     The task to run on expiry.
+     * @param deadline The time of expiry, as from {@link System#nanoTime()}.
+     *
+     * @return A handle for cancelling the timeout.
+     */
+    Timeout schedule(final Runnable task, final long deadline) {
+        if (_closed) { throw new IllegalStateException("Closed."); } //$NON-NLS-1$
+        final Timeout timeout = new Timeout(this, task, deadline);
+        final long elapsed = Math.max(deadline-_start, 0);
+        final long ticks = (elapsed+_tickNanos-1)/_tickNanos; // Round up.
+        synchronized (this) {
+            final long due = Math.max(ticks, _tick);
+            timeout._rounds = (due-_tick)/_buckets.length;
+            timeout.link(_buckets[(int) (due & _mask)]);
+            _size++;
+        }
+        return timeout;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the number of pending timeouts.
+     */
+    public synchronized int size() {
+        return _size;
+    }
+
+
+    /**
+     * Stop expiring timeouts; pending timeouts are discarded.
+     */
+    @Override
+    public void close() {
+        _closed = true;
+        if (null!=_worker) { _worker.interrupt(); }
+    }
+
+
+    /**
+     * Remove a timeout.
+     *
+     * @param timeout The timeout; must be linked into this wheel.
+     */
+    synchronized void remove(final Timeout timeout) {
+        if (timeout.unlink()) { _size--; }
+    }
+
+
+    /**
+     * Expire every timeout due by the specified time.
+     *
+     * @param now The current time, as from {@link System#nanoTime()}.
+     *
+     * @return The number of tasks run.
+     */
+    int expire(final long now) {
+        final long target = (now-_start)/_tickNanos;
+        int count = 0;
+        while (true) {
+            final List<Timeout> expired;
+            synchronized (this) {
+                if (_tick>target) { break; }
+                expired = collect(_buckets[(int) (_tick & _mask)]);
+                _tick++;
+            }
+            for (final Timeout t : expired) {
+                t.run();
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /*
+     * Unlink the timeouts in a bucket whose last round has come. Callers must
+     * hold this wheel's monitor.
+     */
+    private List<Timeout> collect(final Timeout head) {
+        List<Timeout> expired = Collections.emptyList();
+        Timeout t = head._next;
+        while (head!=t) {
+            final Timeout next = t._next;
+            if (0>=t._rounds) {
+                t.unlink();
+                _size--;
+                if (expired.isEmpty()) { expired = new ArrayList<Timeout>(); }
+                expired.add(t);
+            } else {
+                t._rounds--;
+            }
+            t = next;
+        }
+        return expired;
+    }
+
+
+    private void work() {
+        while (!_closed) {
+            final long next;
+            synchronized (this) {
+                next = _start+(_tick+1)*_tickNanos;
+            }
+            final long sleep = next-System.nanoTime();
+            if (0<sleep) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (final InterruptedException e) {
+                    continue; // Closed.
+                }
+            }
+            try {
+                expire(System.nanoTime());
+            } catch (final RuntimeException e) {
+                // A failing task must not stop the wheel.
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.tls;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.util.Objects;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import com.johnstok.http.BufferPool;
+import com.johnstok.http.Specification;
+
+
+/**
+ * A channel that encrypts and decrypts data with an {@link SSLEngine}.
+ *
+ * <p>The channel works over blocking or non-blocking transports. With a
+ * non-blocking transport {@link #read(ByteBuffer)} and
+ * {@link #write(ByteBuffer)} return 0 when the handshake, or a partial
+ * record, needs more network I/O to progress; the caller should retry once
+ * the underlying channel is ready. The handshake is driven implicitly by
+ * reads and writes; delegated tasks are run on the calling thread.
+ *
+ * <p>Record buffers are taken from a pool of direct buffers and returned as
+ * soon as they are empty, so idle connections hold no buffers.
+ *
+ * <p>Channels are not thread-safe.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-8446")
+public class TLSChannel
+    implements
+        ByteChannel {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final ByteChannel _channel;
+    private final SSLEngine   _engine;
+    private final BufferPool  _buffers;
+    private ByteBuffer        _netIn;  // Write mode.
+    private ByteBuffer        _netOut; // Write mode.
+    private ByteBuffer        _appIn;  // Read mode.
+    private boolean           _started;
+    private boolean           _eof;
+    private boolean           _closed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel carrying the encrypted data.
+     * @param context The TLS configuration for the connection.
+     */
+    public TLSChannel(final ByteChannel channel, final TLSContext context) {
+        this(channel, context.createEngine(), context.getBuffers());
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel carrying the encrypted data.
+     * @param engine  The engine used to encrypt and decrypt data.
+     * @param buffers The pool of direct buffers; buffers must be at least as
+     *  large as the engine's packet and application buffer sizes.
+     */
+    public TLSChannel(final ByteChannel channel,
+                      final SSLEngine engine,
+                      final BufferPool buffers) {
+        _channel = Objects.requireNonNull(channel);
+        _engine = Objects.requireNonNull(engine);
+        _buffers = Objects.requireNonNull(buffers);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        if (_closed) { throw new ClosedChannelException(); }
+        for (;;) {
+            if (null!=_appIn && _appIn.hasRemaining()) {
+                return transfer(dst);
+            }
+            if (_engine.isInboundDone()) { return -1; }
+            if (!handshake()) { return (_eof) ? -1 : 0; }
+
+            final SSLEngineResult result = unwrap();
+            switch (result.getStatus()) {
+                case BUFFER_UNDERFLOW:
+                    if (0>=fill()) {
+                        release();
+                        return (_eof) ? -1 : 0;
+                    }
+                    break;
+
+                case BUFFER_OVERFLOW:
+                    throw new SSLException("Record exceeds buffer size."); //$NON-NLS-1$
+
+                case CLOSED:
+                    // The peer sent close_notify; answer it.
+                    _engine.closeOutbound();
+                    handshake();
+                    return -1;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        if (_closed) { throw new ClosedChannelException(); }
+        if (!handshake() || !flush()) { return 0; }
+        int consumed = 0;
+        while (src.hasRemaining()) {
+            final SSLEngineResult result = wrap(src);
+            consumed += result.bytesConsumed();
+            if (SSLEngineResult.Status.CLOSED==result.getStatus()) {
+                throw new ClosedChannelException();
+            }
+            if (!flush()) { break; }
+            if (0==result.bytesConsumed() && !handshake()) { break; }
+        }
+        release();
+        return consumed;
+    }
+
+
+    /**
+     * Write any encrypted data still buffered by the channel.
+     *
+     * @return True if all buffered data was written; false if the underlying
+     *  channel would block.
+     *
+     * @throws IOException If writing to the underlying channel fails.
+     */
+    public boolean flush() throws IOException {
+        if (null==_netOut || 0==_netOut.position()) { return true; }
+        _netOut.flip();
+        try {
+            _channel.write(_netOut);
+        } finally {
+            _netOut.compact();
+        }
+        return 0==_netOut.position();
+    }
+
+
+    /**
+     * Complete the handshake, if one is in progress.
+     *
+     * @return True if no handshake is in progress; false if the underlying
+     *  channel would block.
+     *
+     * @throws IOException If the handshake fails.
+     */
+    public boolean handshake() throws IOException {
+        if (!_started) {
+            // A new engine reports NOT_HANDSHAKING until the handshake begins.
+            _engine.beginHandshake();
+            _started = true;
+        }
+        for (;;) {
+            if (!flush()) { return false; }
+            final HandshakeStatus status = _engine.getHandshakeStatus();
+            switch (status) {
+                case NOT_HANDSHAKING:
+                case FINISHED:
+                    release();
+                    return true;
+
+                case NEED_TASK:
+                    Runnable task;
+                    while (null!=(task = _engine.getDelegatedTask())) {
+                        task.run();
+                    }
+                    break;
+
+                case NEED_WRAP:
+                    final SSLEngineResult wrapped = wrap(EMPTY);
+                    if (SSLEngineResult.Status.CLOSED==wrapped.getStatus()
+                        && _engine.isOutboundDone()) {
+                        flush();
+                        release();
+                        return true;
+                    }
+                    break;
+
+                default: // NEED_UNWRAP, NEED_UNWRAP_AGAIN.
+                    if (_engine.isInboundDone()) { return true; }
+                    final SSLEngineResult unwrapped = unwrap();
+                    if (SSLEngineResult.Status.BUFFER_UNDERFLOW
+                            ==unwrapped.getStatus()
+                        && 0>=fill()) {
+                        if (_eof) {
+                            throw new EOFException("Connection closed during handshake."); //$NON-NLS-1$
+                        }
+                        return false;
+                    }
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the TLS session; invalid until the handshake completes.
+     */
+    public SSLSession getSession() {
+        return _engine.getSession();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the engine used by this channel.
+     */
+    public SSLEngine getEngine() {
+        return _engine;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isOpen() {
+        return !_closed && _channel.isOpen();
+    }
+
+
+    /**
+     * Close the channel.
+     *
+     * <p>A close_notify alert is sent to the peer if the underlying channel
+     * can accept it without blocking.
+     *
+     * @throws IOException If closing the underlying channel fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (_closed) { return; }
+        try {
+            _engine.closeOutbound();
+            while (!_engine.isOutboundDone() && flush()) {
+                wrap(EMPTY);
+            }
+            flush();
+        } catch (final IOException e) {
+            // Best effort; the connection is being closed anyway.
+        } finally {
+            _closed = true;
+            _channel.close();
+            _buffers.release(_netIn);
+            _buffers.release(_netOut);
+            _buffers.release(_appIn);
+            _netIn = null;
+            _netOut = null;
+            _appIn = null;
+        }
+    }
+
+
+    /*
+     * Callers flush first, so an overflow means the buffer cannot hold a
+     * single record.
+     */
+    private SSLEngineResult wrap(final ByteBuffer src) throws SSLException {
+        final SSLEngineResult result = _engine.wrap(src, netOut());
+        if (SSLEngineResult.Status.BUFFER_OVERFLOW==result.getStatus()) {
+            throw new SSLException("Record exceeds buffer size."); //$NON-NLS-1$
+        }
+        return result;
+    }
+
+
+    private SSLEngineResult unwrap() throws SSLException {
+        final ByteBuffer netIn = netIn();
+        if (null==_appIn) {
+            _appIn = _buffers.direct();
+            _appIn.flip();
+        }
+        netIn.flip();
+        _appIn.compact();
+        try {
+            return _engine.unwrap(netIn, _appIn);
+        } finally {
+            _appIn.flip();
+            netIn.compact();
+        }
+    }
+
+
+    private int fill() throws IOException {
+        final int read = _channel.read(netIn());
+        if (0>read) {
+            _eof = true;
+            try {
+                _engine.closeInbound();
+            } catch (final SSLException e) {
+                // Truncation: the peer closed without close_notify.
+            }
+        }
+        return read;
+    }
+
+
+    private int transfer(final ByteBuffer dst) {
+        final int count = Math.min(dst.remaining(), _appIn.remaining());
+        if (count==_appIn.remaining()) {
+            dst.put(_appIn);
+        } else {
+            final int limit = _appIn.limit();
+            _appIn.limit(_appIn.position()+count);
+            dst.put(_appIn);
+            _appIn.limit(limit);
+        }
+        release();
+        return count;
+    }
+
+
+    private ByteBuffer netIn() {
+        if (null==_netIn) { _netIn = _buffers.direct(); }
+        return _netIn;
+    }
+
+
+    private ByteBuffer netOut() {
+        if (null==_netOut) { _netOut = _buffers.direct(); }
+        return _netOut;
+    }
+
+
+    /*
+     * Return empty buffers to the pool.
+     */
+    private void release() {
+        if (null!=_netIn && 0==_netIn.position()) {
+            _buffers.release(_netIn);
+            _netIn = null;
+        }
+        if (null!=_netOut && 0==_netOut.position()) {
+            _buffers.release(_netOut);
+            _netOut = null;
+        }
+        if (null!=_appIn && !_appIn.hasRemaining()) {
+            _buffers.release(_appIn);
+            _appIn = null;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import com.johnstok.http.BufferPool;
+
+
+/**
+ * Server-side TLS configuration, loaded from a key store.
+ *
+ * <p>Sessions are cached by the underlying {@link SSLContext} so returning
+ * clients can resume without a full handshake; on JDK 13 and later stateless
+ * session tickets are also issued, controlled by the
+ * {@code jdk.tls.server.enableSessionTicketExtension} system property.
+ *
+ * <p>The key store is re-read when its modification time changes, checked
+ * at most once per check interval as engines are created, so certificates
+ * can be replaced without a restart. Connections already established are
+ * unaffected; sessions cached before a reload can't be resumed after it. A
+ * key store that fails to load leaves the current configuration in place.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class TLSContext {
+
+    /** The default number of cached sessions. */
+    public static final int DEFAULT_CACHE_SIZE = 20480;
+
+    /** The default session lifetime, in seconds. */
+    public static final int DEFAULT_SESSION_TIMEOUT = 86400;
+
+    private final Path   _keyStore;
+    private final char[] _password;
+    private final String _type;
+    private final int    _cacheSize;
+    private final int    _sessionTimeout;
+    private final long   _checkInterval;
+    private final BufferPool _buffers;
+
+    private volatile SSLContext _context;
+    private volatile FileTime   _modified;
+    private volatile long       _lastCheck;
+
+
+    /**
+     * Constructor.
+     *
+     * @param keyStore The key store holding the server's key and certificate
+     *  chain.
+     * @param password The password for the key store and key.
+     * @param type     The key store type, e.g. "PKCS12".
+     *
+     * @throws IOException              If the key store can't be read.
+     * @throws GeneralSecurityException If the key store is invalid.
+     */
+    public TLSContext(final Path keyStore,
+                      final char[] password,
+                      final String type)
+    throws IOException, GeneralSecurityException {
+        this(
+            keyStore,
+            password,
+            type,
+            DEFAULT_CACHE_SIZE,
+            DEFAULT_SESSION_TIMEOUT,
+            TimeUnit.SECONDS.toMillis(5));
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param keyStore       The key store holding the server's key and
+     *  certificate chain.
+     * @param password       The password for the key store and key.
+     * @param type           The key store type, e.g. "PKCS12".
+     * @param cacheSize      The maximum number of cached sessions; 0 for no
+     *  limit.
+     * @param sessionTimeout The session lifetime, in seconds.
+     * @param checkInterval  The minimum time between checks for a modified
+     *  key store, in milliseconds.
+     *
+     * @throws IOException              If the key store can't be read.
+     * @throws GeneralSecurityException If the key store is invalid.
+     */
+    public TLSContext(final Path keyStore,
+                      final char[] password,
+                      final String type,
+                      final int cacheSize,
+                      final int sessionTimeout,
+                      final long checkInterval)
+    throws IOException, GeneralSecurityException {
+        _keyStore = Objects.requireNonNull(keyStore);
+        _password = password.clone();
+        _type = Objects.requireNonNull(type);
+        _cacheSize = cacheSize;
+        _sessionTimeout = sessionTimeout;
+        _checkInterval = checkInterval;
+        reload();
+        _buffers = new BufferPool(bufferSize(_context), 256);
+    }
+
+
+    /**
+     * Create an engine for a new server connection.
+     *
+     * @return A server-mode engine.
+     */
+    public SSLEngine createEngine() {
+        final long now = System.currentTimeMillis();
+        if (now-_lastCheck>=_checkInterval) {
+            _lastCheck = now;
+            try {
+                reloadIfModified();
+            } catch (final IOException | GeneralSecurityException e) {
+                // Keep serving with the current key store.
+            }
+        }
+        final SSLEngine engine = _context.createSSLEngine();
+        engine.setUseClientMode(false);
+        return engine;
+    }
+
+
+    /**
+     * Reload the key store if it has changed since it was last loaded.
+     *
+     * @return True if the key store was reloaded; false otherwise.
+     *
+     * @throws IOException              If the key store can't be read.
+     * @throws GeneralSecurityException If the key store is invalid.
+     */
+    public boolean reloadIfModified()
+    throws IOException, GeneralSecurityException {
+        if (Files.getLastModifiedTime(_keyStore).equals(_modified)) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+
+    /**
+     * Reload the key store.
+     *
+     * @throws IOException              If the key store can't be read.
+     * @throws GeneralSecurityException If the key store is invalid.
+     */
+    public synchronized void reload()
+    throws IOException, GeneralSecurityException {
+        final FileTime modified = Files.getLastModifiedTime(_keyStore);
+        final KeyStore ks = KeyStore.getInstance(_type);
+        try (InputStream is = Files.newInputStream(_keyStore)) {
+            ks.load(is, _password);
+        }
+        final KeyManagerFactory kmf =
+            KeyManagerFactory.getInstance(
+                KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, _password);
+
+        final SSLContext context = SSLContext.getInstance("TLS"); //$NON-NLS-1$
+        context.init(kmf.getKeyManagers(), null, null);
+        final SSLSessionContext sessions = context.getServerSessionContext();
+        sessions.setSessionCacheSize(_cacheSize);
+        sessions.setSessionTimeout(_sessionTimeout);
+
+        _context = context;
+        _modified = modified;
+        _lastCheck = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the current SSL context.
+     */
+    public SSLContext getSSLContext() {
+        return _context;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the pool of direct buffers, sized for TLS records,
+     *  shared by this context's channels.
+     */
+    public BufferPool getBuffers() {
+        return _buffers;
+    }
+
+
+    private static int bufferSize(final SSLContext context) {
+        final SSLSession session = context.createSSLEngine().getSession();
+        return
+            Math.max(
+                session.getPacketBufferSize(),
+                session.getApplicationBufferSize());
+    }
+}
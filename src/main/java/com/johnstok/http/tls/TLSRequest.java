@@ -0,0 +1,67 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.tls;
+
+import java.util.Objects;
+import javax.net.ssl.SSLSession;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.RequestAdapter;
+
+
+/**
+ * A request received over a TLS connection.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class TLSRequest
+    extends
+        RequestAdapter {
+
+    private final SSLSession _session;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The request read from the decrypted stream.
+     * @param session  The TLS session the request was received on.
+     */
+    public TLSRequest(final Request delegate, final SSLSession session) {
+        super(delegate);
+        _session = Objects.requireNonNull(session);
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isConfidential() {
+        return true;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the TLS session the request was received on.
+     */
+    public SSLSession getSession() {
+        return _session;
+    }
+}
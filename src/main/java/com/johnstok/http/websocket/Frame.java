@@ -0,0 +1,193 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.nio.ByteBuffer;
+import com.johnstok.http.Specification;
+
+
+/**
+ * A WebSocket frame.
+ *
+ * <pre>
+ *   0                   1                   2                   3
+ *   0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ *  +-+-+-+-+-------+-+-------------+-------------------------------+
+ *  |F|R|R|R| opcode|M| Payload len |    Extended payload length    |
+ *  |I|S|S|S|  (4)  |A|     (7)     |             (16/64)           |
+ *  |N|V|V|V|       |S|             |   (if payload len==126/127)   |
+ *  | |1|2|3|       |K|             |                               |
+ *  +-+-+-+-+-------+-+-------------+ - - - - - - - - - - - - - - - +
+ *  |     Extended payload length continued, if payload len == 127  |
+ *  + - - - - - - - - - - - - - - - +-------------------------------+
+ *  |                               |Masking-key, if MASK set to 1  |
+ *  +-------------------------------+-------------------------------+
+ *  | Masking-key (continued)       |          Payload Data         |
+ *  +-------------------------------- - - - - - - - - - - - - - - - +
+ * </pre>
+ *
+ * <p>A decoded frame's payload is a view of the buffer it was read from and
+ * is only valid until that buffer is next filled.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-6455", section="5.2")
+public final class Frame {
+
+    // Opcodes.
+    public static final int CONTINUATION = 0x0;
+    public static final int TEXT         = 0x1;
+    public static final int BINARY       = 0x2;
+    public static final int CLOSE        = 0x8;
+    public static final int PING         = 0x9;
+    public static final int PONG         = 0xA;
+
+    /** The largest payload permitted in a control frame. */
+    public static final int MAX_CONTROL_PAYLOAD = 125;
+
+    /** The largest frame header a server writes. */
+    static final int MAX_HEADER_LENGTH = 10;
+
+    private final boolean    _fin;
+    private final int        _opcode;
+    private final ByteBuffer _payload;
+
+
+    /**
+     * Constructor.
+     *
+     * @param fin     True if this is the final fragment of a message.
+     * @param opcode  The frame's opcode.
+     * @param payload The unmasked payload.
+     */
+    public Frame(final boolean fin,
+                 final int opcode,
+                 final ByteBuffer payload) {
+        _fin = fin;
+        _opcode = opcode;
+        _payload = payload;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if this is the final fragment of a message.
+     */
+    public boolean isFin() {
+        return _fin;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the frame's opcode.
+     */
+    public int getOpcode() {
+        return _opcode;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the unmasked payload.
+     */
+    public ByteBuffer getPayload() {
+        return _payload;
+    }
+
+
+    /**
+     * Test whether this is a control frame.
+     *
+     * @return True for CLOSE, PING and PONG frames.
+     */
+    public boolean isControl() {
+        return 0!=(_opcode & 0x8);
+    }
+
+
+    /**
+     * Encode an unmasked frame, as sent by a server.
+     *
+     * @param fin     True if this is the final fragment of a message.
+     * @param opcode  The frame's opcode.
+     * @param payload The buffer holding the payload.
+     * @param offset  The offset of the payload in the buffer.
+     * @param length  The length of the payload.
+     *
+     * @return The encoded frame.
+     */
+    public static byte[] encode(final boolean fin,
+                                final int opcode,
+                                final byte[] payload,
+                                final int offset,
+                                final int length) {
+        final byte[] header = new byte[MAX_HEADER_LENGTH];
+        final int headerLength = header(header, fin, opcode, length);
+        final byte[] frame = new byte[headerLength+length];
+        System.arraycopy(header, 0, frame, 0, headerLength);
+        System.arraycopy(payload, offset, frame, headerLength, length);
+        return frame;
+    }
+
+
+    /**
+     * Write an unmasked frame header.
+     *
+     * @param b      The buffer to write to; at least
+     *  {@link #MAX_HEADER_LENGTH} bytes.
+     * @param fin    True if this is the final fragment of a message.
+     * @param opcode The frame's opcode.
+     * @param length The length of the payload.
+     *
+     * @return The number of bytes written.
+     */
+    static int header(final byte[] b,
+                      final boolean fin,
+                      final int opcode,
+                      final long length) {
+        b[0] = (byte) ((fin ? 0x80 : 0) | opcode);
+        if (126>length) {
+            b[1] = (byte) length;
+            return 2;
+        } else if (0xFFFF>=length) {
+            b[1] = 126;
+            b[2] = (byte) (length >>> 8);
+            b[3] = (byte) length;
+            return 4;
+        }
+        b[1] = 127;
+        for (int i=0; i<8; i++) {
+            b[2+i] = (byte) (length >>> (56-8*i));
+        }
+        return 10;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "Frame [opcode="+_opcode+", fin="+_fin                 //$NON-NLS-1$ //$NON-NLS-2$
+            +", length="+_payload.remaining()+"]";                  //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
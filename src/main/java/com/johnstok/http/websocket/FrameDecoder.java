@@ -0,0 +1,186 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.nio.ByteBuffer;
+import com.johnstok.http.Specification;
+
+
+/**
+ * Decodes WebSocket frames from a read buffer.
+ *
+ * <p>Payloads are unmasked in place and returned as slices of the buffer,
+ * so no payload bytes are copied.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-6455", section="5")
+public final class FrameDecoder {
+
+    private final long    _maxPayload;
+    private final boolean _requireMask;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxPayload  The largest frame payload accepted.
+     * @param requireMask True if frames must be masked, as sent by clients.
+     */
+    public FrameDecoder(final long maxPayload, final boolean requireMask) {
+        _maxPayload = maxPayload;
+        _requireMask = requireMask;
+    }
+
+
+    /**
+     * Decode the next frame.
+     *
+     * <p>On success the buffer's position is advanced past the frame; if the
+     * buffer does not hold a complete frame its position is unchanged.
+     *
+     * @param buffer The buffer to read from, in big-endian order.
+     *
+     * @return The frame, or null if more bytes are required.
+     *
+     * @throws WebSocketException If the frame is invalid.
+     */
+    public Frame decode(final ByteBuffer buffer) throws WebSocketException {
+        final int start = buffer.position();
+        final int available = buffer.remaining();
+        if (2>available) { return null; }
+
+        final int b0 = buffer.get(start) & 0xff;
+        final int b1 = buffer.get(start+1) & 0xff;
+        final boolean fin = 0!=(b0 & 0x80);
+        final int opcode = b0 & 0x0f;
+        final boolean masked = 0!=(b1 & 0x80);
+
+        if (0!=(b0 & 0x70)) {
+            throw new WebSocketException(
+                WebSocket.PROTOCOL_ERROR, "Reserved bits set."); //$NON-NLS-1$
+        }
+        if (_requireMask && !masked) {
+            throw new WebSocketException(
+                WebSocket.PROTOCOL_ERROR, "Frame not masked."); //$NON-NLS-1$
+        }
+        final boolean control = 0!=(opcode & 0x8);
+        if (Frame.BINARY<opcode && !control || Frame.PONG<opcode) {
+            throw new WebSocketException(
+                WebSocket.PROTOCOL_ERROR, "Unknown opcode: "+opcode); //$NON-NLS-1$
+        }
+
+        long length = b1 & 0x7f;
+        int headerLength = 2;
+        if (126==length) {
+            if (4>available) { return null; }
+            length = buffer.getShort(start+2) & 0xffff;
+            headerLength = 4;
+        } else if (127==length) {
+            if (10>available) { return null; }
+            length = buffer.getLong(start+2);
+            if (0>length) {
+                throw new WebSocketException(
+                    WebSocket.PROTOCOL_ERROR, "Invalid length."); //$NON-NLS-1$
+            }
+            headerLength = 10;
+        }
+        if (control && (!fin || Frame.MAX_CONTROL_PAYLOAD<length)) {
+            throw new WebSocketException(
+                WebSocket.PROTOCOL_ERROR, "Invalid control frame."); //$NON-NLS-1$
+        }
+        if (length>_maxPayload) {
+            throw new WebSocketException(
+                WebSocket.MESSAGE_TOO_BIG, "Frame too large: "+length); //$NON-NLS-1$
+        }
+
+        int mask = 0;
+        if (masked) {
+            if (headerLength+4>available) { return null; }
+            mask = buffer.getInt(start+headerLength);
+            headerLength += 4;
+        }
+        if (headerLength+length>available) { return null; }
+
+        final int payloadStart = start+headerLength;
+        final int payloadLength = (int) length;
+        if (masked) { unmask(buffer, payloadStart, payloadLength, mask); }
+
+        final ByteBuffer payload = buffer.duplicate();
+        payload.limit(payloadStart+payloadLength).position(payloadStart);
+        buffer.position(payloadStart+payloadLength);
+        return new Frame(fin, opcode, payload.slice());
+    }
+
+
+    /**
+     * Compute the number of bytes needed to decode the frame at the buffer's
+     * position.
+     *
+     * @param buffer The buffer to examine.
+     *
+     * @return The frame's total length, or a lower bound if its header is
+     *  incomplete.
+     */
+    public static long required(final ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int available = buffer.remaining();
+        if (2>available) { return 2; }
+        final int b1 = buffer.get(start+1) & 0xff;
+        final int maskLength = (0!=(b1 & 0x80)) ? 4 : 0;
+        final int length = b1 & 0x7f;
+        if (126==length) {
+            if (4>available) { return 4; }
+            return 4+maskLength+(buffer.getShort(start+2) & 0xffff);
+        } else if (127==length) {
+            if (10>available) { return 10; }
+            return 10+maskLength+buffer.getLong(start+2);
+        }
+        return 2+maskLength+length;
+    }
+
+
+    /**
+     * Apply a masking key in place.
+     *
+     * <p>Works a long at a time; the key is replicated so each eight-byte
+     * word is masked with a single XOR.
+     *
+     * @param buffer The buffer holding the payload.
+     * @param offset The position of the payload in the buffer.
+     * @param length The length of the payload.
+     * @param mask   The masking key.
+     */
+    @Specification(name="rfc-6455", section="5.3")
+    static void unmask(final ByteBuffer buffer,
+                       final int offset,
+                       final int length,
+                       final int mask) {
+        final long wide = ((mask & 0xffffffffL) << 32) | (mask & 0xffffffffL);
+        final int end = offset+length;
+        int i = offset;
+        for (; i+8<=end; i+=8) {
+            buffer.putLong(i, buffer.getLong(i) ^ wide);
+        }
+        for (int j=(i-offset)&3; i<end; i++, j=(j+1)&3) {
+            buffer.put(i, (byte) (buffer.get(i) ^ (mask >>> (24-8*j))));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Header;
+import com.johnstok.http.Specification;
+import com.johnstok.http.Status;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+
+
+/**
+ * The server side of the WebSocket opening handshake.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-6455", section="4.2")
+public final class Handshake {
+
+    /** SEC_WEBSOCKET_KEY : String. */
+    public static final String SEC_WEBSOCKET_KEY =
+        "Sec-WebSocket-Key";                                        //$NON-NLS-1$
+
+    /** SEC_WEBSOCKET_ACCEPT : String. */
+    public static final String SEC_WEBSOCKET_ACCEPT =
+        "Sec-WebSocket-Accept";                                     //$NON-NLS-1$
+
+    /** SEC_WEBSOCKET_VERSION : String. */
+    public static final String SEC_WEBSOCKET_VERSION =
+        "Sec-WebSocket-Version";                                    //$NON-NLS-1$
+
+    /** SEC_WEBSOCKET_PROTOCOL : String. */
+    public static final String SEC_WEBSOCKET_PROTOCOL =
+        "Sec-WebSocket-Protocol";                                   //$NON-NLS-1$
+
+    /** The protocol version supported. */
+    public static final String VERSION = "13";                      //$NON-NLS-1$
+
+    private static final String GUID =
+        "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";                     //$NON-NLS-1$
+
+
+    private Handshake() { super(); }
+
+
+    /**
+     * Test whether a request asks to upgrade to a WebSocket.
+     *
+     * @param request The request to test.
+     *
+     * @return True if the request's Upgrade header names "websocket".
+     */
+    public static boolean isUpgrade(final Request request) {
+        return hasToken(request.getHeaders(Header.UPGRADE), "websocket"); //$NON-NLS-1$
+    }
+
+
+    /**
+     * Accept a WebSocket upgrade request.
+     *
+     * <p>Sets the 101 status and handshake headers on the response; once it
+     * is sent the connection carries WebSocket frames.
+     *
+     * @param request  The upgrade request.
+     * @param response The response to prepare.
+     * @param protocol The sub-protocol selected; null for none.
+     *
+     * @throws ClientHttpException If the request is not a valid handshake.
+     */
+    public static void accept(final Request request,
+                              final Response response,
+                              final String protocol) {
+        if (!"GET".equals(request.getMethod())                     //$NON-NLS-1$
+            || !isUpgrade(request)
+            || !hasToken(request.getHeaders(Header.CONNECTION), "upgrade") //$NON-NLS-1$
+            || !request.hasHeader(Header.HOST)) {
+            throw new ClientHttpException(Status.BAD_REQUEST);
+        }
+        if (!VERSION.equals(request.getHeader(SEC_WEBSOCKET_VERSION))) {
+            response.setHeader(SEC_WEBSOCKET_VERSION, VERSION);
+            throw new ClientHttpException(Status.BAD_REQUEST);
+        }
+        final String key = request.getHeader(SEC_WEBSOCKET_KEY);
+        try {
+            if (null==key || 16!=Base64.getDecoder().decode(key.trim()).length) {
+                throw new ClientHttpException(Status.BAD_REQUEST);
+            }
+        } catch (final IllegalArgumentException e) {
+            throw new ClientHttpException(Status.BAD_REQUEST, e);
+        }
+
+        response.setStatus(
+            Status.SWITCHING_PROTOCOLS.getCode(),
+            Status.SWITCHING_PROTOCOLS.getReasonPhrase());
+        response.setHeader(Header.UPGRADE, "websocket");            //$NON-NLS-1$
+        response.setHeader(Header.CONNECTION, "Upgrade");           //$NON-NLS-1$
+        response.setHeader(SEC_WEBSOCKET_ACCEPT, acceptKey(key.trim()));
+        if (null!=protocol) {
+            response.setHeader(SEC_WEBSOCKET_PROTOCOL, protocol);
+        }
+    }
+
+
+    /**
+     * Accept a WebSocket upgrade request, without a sub-protocol.
+     *
+     * @param request  The upgrade request.
+     * @param response The response to prepare.
+     *
+     * @throws ClientHttpException If the request is not a valid handshake.
+     */
+    public static void accept(final Request request, final Response response) {
+        accept(request, response, null);
+    }
+
+
+    /**
+     * Compute the Sec-WebSocket-Accept value for a key.
+     *
+     * @param key The client's Sec-WebSocket-Key.
+     *
+     * @return The base64 encoded SHA-1 hash of the key and the protocol GUID.
+     */
+    public static String acceptKey(final String key) {
+        try {
+            final MessageDigest sha1 = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            return Base64.getEncoder().encodeToString(
+                sha1.digest((key+GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Required on every JVM.
+        }
+    }
+
+
+    private static boolean hasToken(final List<String> values,
+                                    final String token) {
+        if (null==values) { return false; }
+        for (final String value : values) {
+            for (final String element : value.split(",")) {        //$NON-NLS-1$
+                if (token.equalsIgnoreCase(element.trim())) { return true; }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A message encoded as a single frame, ready to send.
+ *
+ * <p>Encode a message once and pass it to {@link WebSocket#broadcast} to
+ * share the same bytes among every recipient.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class Message {
+
+    private final byte[] _frame;
+
+
+    private Message(final byte[] frame) {
+        _frame = frame;
+    }
+
+
+    /**
+     * Create a text message.
+     *
+     * @param text The message text.
+     *
+     * @return The encoded message.
+     */
+    public static Message text(final String text) {
+        final byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        return new Message(
+            Frame.encode(true, Frame.TEXT, payload, 0, payload.length));
+    }
+
+
+    /**
+     * Create a binary message.
+     *
+     * @param data The message data.
+     *
+     * @return The encoded message.
+     */
+    public static Message binary(final byte[] data) {
+        return new Message(Frame.encode(true, Frame.BINARY, data, 0, data.length));
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the length of the encoded frame, in bytes.
+     */
+    public int getLength() {
+        return _frame.length;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the shared encoded frame; callers must not modify it.
+     */
+    byte[] encoded() {
+        return _frame;
+    }
+}
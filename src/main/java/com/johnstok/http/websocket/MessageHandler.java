@@ -0,0 +1,77 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * API for handling WebSocket messages.
+ *
+ * <p>Callbacks for a connection are made one at a time, on the thread
+ * reading from it. Fragmented messages are delivered once complete.
+ *
+ * @author Keith Webster Johnston.
+ */
+public interface MessageHandler {
+
+    /**
+     * Handle the start of a connection.
+     *
+     * @param socket The connection.
+     *
+     * @throws IOException If sending to the client fails.
+     */
+    void onOpen(WebSocket socket) throws IOException;
+
+
+    /**
+     * Handle a text message.
+     *
+     * @param socket The connection.
+     * @param text   The message.
+     *
+     * @throws IOException If sending to the client fails.
+     */
+    void onText(WebSocket socket, String text) throws IOException;
+
+
+    /**
+     * Handle a binary message.
+     *
+     * @param socket The connection.
+     * @param data   The message; a view of the read buffer that is only valid
+     *  until this method returns.
+     *
+     * @throws IOException If sending to the client fails.
+     */
+    void onBinary(WebSocket socket, ByteBuffer data) throws IOException;
+
+
+    /**
+     * Handle the end of a connection.
+     *
+     * @param socket     The connection.
+     * @param statusCode The close status code.
+     * @param reason     The close reason; may be empty.
+     */
+    void onClose(WebSocket socket, int statusCode, String reason);
+}
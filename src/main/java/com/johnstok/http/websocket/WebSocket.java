@@ -0,0 +1,455 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import com.johnstok.http.Specification;
+
+
+/**
+ * A server-side WebSocket connection.
+ *
+ * <p>The thread calling {@link #run()} reads frames and delivers messages to
+ * a {@link MessageHandler}; any thread may send. Frames are decoded in
+ * place from a single read buffer, so an unfragmented message reaches the
+ * handler without its payload being copied.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-6455")
+public final class WebSocket
+    implements
+        Runnable {
+
+    // Close status codes.
+    public static final int NORMAL_CLOSURE      = 1000;
+    public static final int GOING_AWAY          = 1001;
+    public static final int PROTOCOL_ERROR      = 1002;
+    public static final int UNSUPPORTED_DATA    = 1003;
+    public static final int NO_STATUS_RECEIVED  = 1005;
+    public static final int ABNORMAL_CLOSURE    = 1006;
+    public static final int INVALID_PAYLOAD     = 1007;
+    public static final int POLICY_VIOLATION    = 1008;
+    public static final int MESSAGE_TOO_BIG     = 1009;
+    public static final int INTERNAL_ERROR      = 1011;
+
+    /** The default limit on the size of a message. */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1 << 20;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final InputStream    _in;
+    private final OutputStream   _out;
+    private final MessageHandler _handler;
+    private final int            _maxMessageSize;
+    private final FrameDecoder   _decoder;
+    private final CharsetDecoder _utf8 =
+        StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final byte[]         _header = new byte[Frame.MAX_HEADER_LENGTH];
+
+    // Reader thread state.
+    private ByteBuffer           _buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private byte[]               _message;
+    private int                  _messageLength;
+    private int                  _messageOpcode = -1;
+
+    private volatile boolean     _closeSent;
+
+
+    /**
+     * Constructor.
+     *
+     * @param in             The stream to read frames from.
+     * @param out            The stream to write frames to.
+     * @param handler        The handler for messages.
+     * @param maxMessageSize The largest message accepted, in bytes.
+     */
+    public WebSocket(final InputStream in,
+                     final OutputStream out,
+                     final MessageHandler handler,
+                     final int maxMessageSize) {
+        _in = in;
+        _out = out;
+        _handler = handler;
+        _maxMessageSize = maxMessageSize;
+        _decoder = new FrameDecoder(maxMessageSize, true);
+        _buffer.flip();
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param in      The stream to read frames from.
+     * @param out     The stream to write frames to.
+     * @param handler The handler for messages.
+     */
+    public WebSocket(final InputStream in,
+                     final OutputStream out,
+                     final MessageHandler handler) {
+        this(in, out, handler, DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+
+    /**
+     * Send a message to several connections.
+     *
+     * <p>The message is written to each connection in turn; connections
+     * that fail or are closing are skipped.
+     *
+     * @param message    The encoded message.
+     * @param recipients The connections to send to.
+     *
+     * @return The number of connections the message was written to.
+     */
+    public static int broadcast(final Message message,
+                                final Iterable<WebSocket> recipients) {
+        int sent = 0;
+        for (final WebSocket recipient : recipients) {
+            try {
+                recipient.send(message);
+                sent++;
+            } catch (final IOException e) {
+                // The recipient's reader will observe the failure.
+            }
+        }
+        return sent;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+        int statusCode = ABNORMAL_CLOSURE;
+        String reason = "";                                         //$NON-NLS-1$
+        try {
+            try {
+                _handler.onOpen(this);
+                while (true) {
+                    final Frame frame = _decoder.decode(_buffer);
+                    if (null==frame) {
+                        fill();
+                    } else if (Frame.CLOSE==frame.getOpcode()) {
+                        final ByteBuffer payload = frame.getPayload();
+                        if (2<=payload.remaining()) {
+                            statusCode = payload.getShort(payload.position()) & 0xffff;
+                            final ByteBuffer text = payload.duplicate();
+                            text.position(text.position()+2);
+                            reason = utf8(text);
+                        } else {
+                            statusCode = NO_STATUS_RECEIVED;
+                        }
+                        closed(payload);
+                        break;
+                    } else {
+                        frame(frame);
+                    }
+                }
+            } catch (final WebSocketException e) {
+                statusCode = e.getStatusCode();
+                reason = String.valueOf(e.getMessage());
+                close(statusCode, reason);
+            }
+        } catch (final IOException e) {
+            // Connection lost; report an abnormal closure.
+        } finally {
+            try {
+                _out.close();
+            } catch (final IOException e) {
+                // Already failed.
+            }
+            _handler.onClose(this, statusCode, reason);
+        }
+    }
+
+
+    /**
+     * Send a pre-encoded message.
+     *
+     * @param message The message.
+     *
+     * @throws IOException If the connection is closing or writing fails.
+     */
+    public void send(final Message message) throws IOException {
+        synchronized (_out) {
+            checkOpen();
+            _out.write(message.encoded());
+            _out.flush();
+        }
+    }
+
+
+    /**
+     * Send a text message.
+     *
+     * @param text The message.
+     *
+     * @throws IOException If the connection is closing or writing fails.
+     */
+    public void sendText(final String text) throws IOException {
+        final byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        send(Frame.TEXT, payload, 0, payload.length);
+    }
+
+
+    /**
+     * Send a binary message.
+     *
+     * @param data   The buffer holding the message.
+     * @param offset The offset of the message in the buffer.
+     * @param length The length of the message.
+     *
+     * @throws IOException If the connection is closing or writing fails.
+     */
+    public void sendBinary(final byte[] data,
+                           final int offset,
+                           final int length) throws IOException {
+        send(Frame.BINARY, data, offset, length);
+    }
+
+
+    /**
+     * Send a ping.
+     *
+     * @param data The application data; at most 125 bytes.
+     *
+     * @throws IOException If the connection is closing or writing fails.
+     */
+    public void ping(final byte[] data) throws IOException {
+        if (Frame.MAX_CONTROL_PAYLOAD<data.length) {
+            throw new IllegalArgumentException("Ping data too long."); //$NON-NLS-1$
+        }
+        send(Frame.PING, data, 0, data.length);
+    }
+
+
+    /**
+     * Start the closing handshake.
+     *
+     * <p>The connection closes when the client replies.
+     *
+     * @param statusCode The close status code.
+     * @param reason     The close reason; truncated to fit a control frame.
+     *
+     * @throws IOException If writing fails.
+     */
+    @Specification(name="rfc-6455", section="5.5.1")
+    public void close(final int statusCode, final String reason) throws IOException {
+        final byte[] text = reason.getBytes(StandardCharsets.UTF_8);
+        final int length = Math.min(text.length, Frame.MAX_CONTROL_PAYLOAD-2);
+        final byte[] payload = new byte[2+length];
+        payload[0] = (byte) (statusCode >>> 8);
+        payload[1] = (byte) statusCode;
+        System.arraycopy(text, 0, payload, 2, length);
+        synchronized (_out) {
+            if (_closeSent) { return; }
+            write(Frame.CLOSE, payload, 0, payload.length);
+            _closeSent = true;
+        }
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return True if the closing handshake has started.
+     */
+    public boolean isClosing() {
+        return _closeSent;
+    }
+
+
+    /*
+     * Handle a data or control frame other than CLOSE.
+     */
+    private void frame(final Frame frame) throws IOException {
+        final int opcode = frame.getOpcode();
+        final ByteBuffer payload = frame.getPayload();
+        switch (opcode) {
+            case Frame.PING:
+                synchronized (_out) {
+                    if (!_closeSent) {
+                        write(Frame.PONG,
+                              payload.array(),
+                              payload.arrayOffset()+payload.position(),
+                              payload.remaining());
+                    }
+                }
+                break;
+            case Frame.PONG:
+                break;
+            case Frame.CONTINUATION:
+                if (0>_messageOpcode) {
+                    throw new WebSocketException(
+                        PROTOCOL_ERROR, "Unexpected continuation."); //$NON-NLS-1$
+                }
+                append(payload);
+                if (frame.isFin()) {
+                    final int messageOpcode = _messageOpcode;
+                    _messageOpcode = -1;
+                    deliver(messageOpcode, ByteBuffer.wrap(_message, 0, _messageLength));
+                    _message = null;
+                }
+                break;
+            default:
+                if (0<=_messageOpcode) {
+                    throw new WebSocketException(
+                        PROTOCOL_ERROR, "Expected continuation."); //$NON-NLS-1$
+                }
+                if (frame.isFin()) {
+                    deliver(opcode, payload);   // Unfragmented: no copy.
+                } else {
+                    _messageOpcode = opcode;
+                    _messageLength = 0;
+                    _message = new byte[Math.max(payload.remaining()*2, 256)];
+                    append(payload);
+                }
+                break;
+        }
+    }
+
+
+    /*
+     * The client has sent CLOSE; reply if we have not already.
+     */
+    @Specification(name="rfc-6455", section="7.4.1")
+    private void closed(final ByteBuffer payload) throws IOException {
+        final int length = payload.remaining();
+        if (1==length) {
+            throw new WebSocketException(PROTOCOL_ERROR, "Invalid close."); //$NON-NLS-1$
+        }
+        if (2<=length) {
+            final int code = payload.getShort(payload.position()) & 0xffff;
+            if (!(1000<=code && code<=1003 || 1007<=code && code<=1011
+                  || 3000<=code && code<=4999)) {
+                throw new WebSocketException(
+                    PROTOCOL_ERROR, "Invalid close code: "+code); //$NON-NLS-1$
+            }
+        }
+        synchronized (_out) {
+            if (_closeSent) { return; }
+            write(Frame.CLOSE,
+                  payload.array(),
+                  payload.arrayOffset()+payload.position(),
+                  Math.min(2, length));
+            _closeSent = true;
+        }
+    }
+
+
+    private void deliver(final int opcode,
+                         final ByteBuffer payload) throws IOException {
+        if (Frame.TEXT==opcode) {
+            _handler.onText(this, utf8(payload));
+        } else {
+            _handler.onBinary(this, payload);
+        }
+    }
+
+
+    private void append(final ByteBuffer payload) throws WebSocketException {
+        final int length = payload.remaining();
+        if (_maxMessageSize-_messageLength<length) {
+            throw new WebSocketException(MESSAGE_TOO_BIG, "Message too large."); //$NON-NLS-1$
+        }
+        if (_message.length-_messageLength<length) {
+            _message = Arrays.copyOf(
+                _message,
+                (int) Math.min(_maxMessageSize,
+                               Math.max(2L*_message.length, (long) _messageLength+length)));
+        }
+        payload.get(_message, _messageLength, length);
+        _messageLength += length;
+    }
+
+
+    private String utf8(final ByteBuffer payload) throws WebSocketException {
+        try {
+            return _utf8.decode(payload).toString();
+        } catch (final CharacterCodingException e) {
+            throw new WebSocketException(INVALID_PAYLOAD, "Invalid UTF-8."); //$NON-NLS-1$
+        }
+    }
+
+
+    /*
+     * Read more bytes, growing the buffer if it cannot hold the next frame.
+     */
+    private void fill() throws IOException {
+        final long required = FrameDecoder.required(_buffer);
+        if (required>_buffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocate(
+                (int) Math.min(Math.max(required, 2L*_buffer.capacity()),
+                               (long) _maxMessageSize+14));
+            larger.put(_buffer);
+            _buffer = larger;
+        } else {
+            _buffer.compact();
+        }
+        final int read = _in.read(
+            _buffer.array(), _buffer.position(), _buffer.remaining());
+        if (0>read) { throw new EOFException(); }
+        _buffer.position(_buffer.position()+read);
+        _buffer.flip();
+    }
+
+
+    private void send(final int opcode,
+                      final byte[] payload,
+                      final int offset,
+                      final int length) throws IOException {
+        synchronized (_out) {
+            checkOpen();
+            write(opcode, payload, offset, length);
+        }
+    }
+
+
+    /*
+     * Callers must hold the output monitor.
+     */
+    private void write(final int opcode,
+                       final byte[] payload,
+                       final int offset,
+                       final int length) throws IOException {
+        final int headerLength = Frame.header(_header, true, opcode, length);
+        _out.write(_header, 0, headerLength);
+        _out.write(payload, offset, length);
+        _out.flush();
+    }
+
+
+    private void checkOpen() throws IOException {
+        if (_closeSent) {
+            throw new IOException("WebSocket closing.");            //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import java.io.IOException;
+import com.johnstok.http.Specification;
+
+
+/**
+ * Signals a WebSocket protocol error.
+ *
+ * <p>The connection is closed with the exception's status code.
+ *
+ * @author Keith Webster Johnston.
+ */
+@Specification(name="rfc-6455", section="7.4")
+public class WebSocketException
+    extends
+        IOException {
+
+    private final int _statusCode;
+
+
+    /**
+     * Constructor.
+     *
+     * @param statusCode The close status code to send to the peer.
+     * @param message    A description of the error.
+     */
+    public WebSocketException(final int statusCode,
+                              final String message) {
+        super(message);
+        _statusCode = statusCode;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return Returns the close status code to send to the peer.
+     */
+    public int getStatusCode() {
+        return _statusCode;
+    }
+}
@@ -105,4 +105,17 @@ public class CharacterSetTest {
         }
     }
 
+
+    @Test
+    public void commonNamesAreShared() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertSame(CharacterSet.UTF_8,      CharacterSet.parse("UTF-8"));
+        assertSame(CharacterSet.UTF_8,      CharacterSet.parse("utf8"));
+        assertSame(CharacterSet.ISO_8859_1, CharacterSet.parse("latin1"));
+    }
 }
@@ -86,4 +86,43 @@ public class ContentCodingTest {
             assertEquals(Status.BAD_REQUEST, e.getStatus());
         }
     }
+
+
+    @Test
+    public void knownCodingsAreShared() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertSame(ContentCoding.GZIP,     ContentCoding.parse("GZip"));
+        assertSame(ContentCoding.IDENTITY, ContentCoding.parse("identity"));
+        assertSame(ContentCoding.ANY,      ContentCoding.parse("*"));
+    }
+
+
+    @Test
+    public void legacyCodingsAreEquivalent() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertSame(ContentCoding.GZIP,     ContentCoding.parse("x-gzip"));
+        assertSame(ContentCoding.COMPRESS, ContentCoding.parse("x-compress"));
+    }
+
+
+    @Test
+    public void extensionCodingsAreParsed() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertEquals("br", ContentCoding.parse("br").toString());
+    }
 }
@@ -0,0 +1,92 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http;
+
+import static org.junit.Assert.*;
+import java.util.List;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link Expectation} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ExpectationTest {
+
+    @Test
+    public void parseContinue() {
+
+        // ACT
+        final Expectation e = Expectation.parse("100-Continue");
+
+        // ASSERT
+        assertSame(Expectation.CONTINUE, e);
+        assertTrue(e.isContinue());
+    }
+
+
+    @Test
+    public void parseExtension() {
+
+        // ACT
+        final Expectation e = Expectation.parse("foo=\"a, b\";x=1");
+
+        // ASSERT
+        assertEquals("foo", e.getName());
+        assertEquals("\"a, b\"", e.getValue());
+        assertFalse(e.isContinue());
+    }
+
+
+    @Test
+    public void parseList() {
+
+        // ACT
+        final List<Expectation> list =
+            Expectation.parseList("100-continue, foo=\"a, b\" ,bar");
+
+        // ASSERT
+        assertEquals(3, list.size());
+        assertTrue(list.get(0).isContinue());
+        assertEquals("foo", list.get(1).getName());
+        assertEquals("bar", list.get(2).getName());
+    }
+
+
+    @Test
+    public void quotedValueIsCaseSensitive() {
+        assertEquals(Expectation.parse("a=b"), Expectation.parse("A=B"));
+        assertFalse(
+            Expectation.parse("a=\"b\"").equals(Expectation.parse("a=\"B\"")));
+    }
+
+
+    @Test(expected=ClientHttpException.class)
+    public void emptyListRejected() {
+        Expectation.parseList("");
+    }
+
+
+    @Test(expected=ClientHttpException.class)
+    public void emptyElementRejected() {
+        Expectation.parseList("100-continue,,foo");
+    }
+}
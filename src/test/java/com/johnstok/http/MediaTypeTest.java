@@ -306,4 +306,32 @@ public class MediaTypeTest {
         // ASSERT
         assertFalse(match);
     }
+
+
+    @Test
+    public void commonTypesAreShared() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertSame(MediaType.HTML, MediaType.parse("text/html"));
+        assertSame(MediaType.JSON, MediaType.parse("Application/JSON"));
+        assertSame(MediaType.ANY,  MediaType.parse("*/*"));
+    }
+
+
+    @Test
+    public void typesWithParametersAreNotShared() {
+
+        // ARRANGE
+
+        // ACT
+        final MediaType mt = MediaType.parse("text/html;level=1");
+
+        // ASSERT
+        assertNotSame(MediaType.HTML, mt);
+        assertEquals("1", mt.getParameter("level"));
+    }
 }
@@ -68,4 +68,18 @@ public class MethodTest {
         assertTrue(Method.parse("OPTIONS").isIdempotent());
         assertTrue(Method.parse("TRACE").isIdempotent());
     }
+
+
+    @Test
+    public void recognizedMethodsAreShared() {
+        assertSame(Method.GET, Method.parse("GET"));
+        assertSame(Method.CONNECT, Method.parse("CONNECT"));
+        assertNotSame(Method.GET, Method.parse("get"));
+    }
+
+
+    @Test
+    public void extensionMethodsAreParsed() {
+        assertEquals("PATCH", Method.parse("PATCH").toString());
+    }
 }
@@ -262,4 +262,74 @@ public class QualityValueTest {
             assertEquals(Status.BAD_REQUEST, e.getStatus());
         }
     }
+
+
+    @Test
+    public void parseQualityIsFixedPoint() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertEquals(0,    QualityValue.parseQuality("0", 0, 1));
+        assertEquals(1000, QualityValue.parseQuality("1.000", 0, 5));
+        assertEquals(500,  QualityValue.parseQuality("q=0.5", 2, 5));
+        assertEquals(1,    QualityValue.parseQuality("0.001", 0, 5));
+        assertEquals(-1,   QualityValue.parseQuality("1.001", 0, 5));
+        assertEquals(-1,   QualityValue.parseQuality("0.0000", 0, 6));
+        assertEquals(-1,   QualityValue.parseQuality(".5", 0, 2));
+    }
+
+
+    @Test
+    public void parseWeightIsLenient() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertEquals(500,  QualityValue.parseWeight(".5", 0, 2));
+        assertEquals(1000, QualityValue.parseWeight("3", 0, 1));
+        assertEquals(0,    QualityValue.parseWeight("-1", 0, 2));
+        assertEquals(123,  QualityValue.parseWeight("0.1234", 0, 6));
+    }
+
+
+    @Test(expected=NumberFormatException.class)
+    public void parseWeightRejectsNonNumbers() {
+        QualityValue.parseWeight("bad", 0, 3);
+    }
+
+
+    @Test
+    public void formatIsShortest() {
+
+        // ARRANGE
+
+        // ACT
+
+        // ASSERT
+        assertEquals("0",     QualityValue.format(0));
+        assertEquals("1",     QualityValue.format(1000));
+        assertEquals("0.5",   QualityValue.format(500));
+        assertEquals("0.001", QualityValue.format(1));
+    }
+
+
+    @Test
+    public void equalQualitiesAreEqual() {
+
+        // ARRANGE
+        QualityValue half1 = QualityValue.parse("0.5");
+        QualityValue half2 = QualityValue.parse("0.500");
+
+        // ACT
+
+        // ASSERT
+        assertEquals(half1, half2);
+        assertEquals(500, half2.getQuality());
+        assertEquals("0.500", half2.toString());
+    }
 }
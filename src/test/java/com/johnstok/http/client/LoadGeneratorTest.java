@@ -0,0 +1,135 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.client;
+
+import static org.junit.Assert.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link LoadGenerator} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class LoadGeneratorTest {
+
+    private static final long   STALL = 300;
+    private static final byte[] OK =
+        "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"            //$NON-NLS-1$
+        .getBytes(StandardCharsets.US_ASCII);
+
+    private final AtomicInteger _requests = new AtomicInteger();
+    private ServerSocket        _listener;
+    private Thread              _server;
+
+
+    @Before
+    public void setUp() throws IOException {
+        _listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        _server = new Thread() {
+            @Override
+            public void run() {
+                try (Socket socket = _listener.accept()) {
+                    serve(socket);
+                } catch (final IOException | InterruptedException e) {
+                    // Closed.
+                }
+            }
+        };
+        _server.start();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        _listener.close();
+        _server.join(5000);
+    }
+
+
+    @Test(timeout=10000)
+    public void latencyMeasuredFromIntendedStart() throws Exception {
+
+        // ARRANGE
+        final LoadGenerator generator =
+            new LoadGenerator(
+                (InetSocketAddress) _listener.getLocalSocketAddress(),
+                1,
+                50,
+                new RequestMix("localhost").add(1, "GET", "/"));    //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        // ACT
+        final LoadGenerator.Report report =
+            generator.run(200, TimeUnit.MILLISECONDS);
+
+        // ASSERT
+        assertEquals(10, _requests.get());
+        assertEquals(10, report.getStatusCount(2));
+        assertEquals(0, report.getErrors());
+        assertEquals(10, report.getLatencies().getCount());
+        /*
+         * The first response is stalled; the nine requests scheduled every
+         * 20ms behind it are sent late and charged for the wait, 280ms down
+         * to 120ms. Measured from the time they were sent they would take
+         * almost nothing.
+         */
+        assertTrue(
+            report.toString(),
+            TimeUnit.MILLISECONDS.toNanos(100)
+                <report.getLatencies().getValueAtPercentile(50));
+        assertTrue(
+            TimeUnit.MILLISECONDS.toNanos(STALL)
+                <=report.getLatencies().getMax());
+    }
+
+
+    /*
+     * Answer each request on the connection, stalling the first.
+     */
+    private void serve(final Socket socket)
+    throws IOException, InterruptedException {
+        final BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.US_ASCII));
+        final OutputStream out = socket.getOutputStream();
+        for (String line; null!=(line = in.readLine());) {
+            if (!line.isEmpty()) { continue; }
+            if (1==_requests.incrementAndGet()) {
+                Thread.sleep(STALL);
+            }
+            out.write(OK);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.client;
+
+import static org.junit.Assert.*;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link RequestMix} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class RequestMixTest {
+
+    @Test
+    public void requestsSerialisedOnAdd() {
+
+        // ARRANGE
+        final RequestMix mix =
+            new RequestMix("example.com")                           //$NON-NLS-1$
+                .add(1, "GET", "/a", "Accept: text/html")           //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                .add(1, "POST", "/b", new byte[] {'x', 'y'})        //$NON-NLS-1$ //$NON-NLS-2$
+                .add(1, "HEAD", "/c");                              //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ACT
+        final RequestMix.Entry[] schedule = mix.schedule();
+
+        // ASSERT
+        assertEquals(3, schedule.length);
+        assertEquals(
+            "GET /a HTTP/1.1\r\nHost: example.com\r\n"              //$NON-NLS-1$
+            + "Accept: text/html\r\n\r\n",                          //$NON-NLS-1$
+            string(schedule[0]));
+        assertEquals(
+            "POST /b HTTP/1.1\r\nHost: example.com\r\n"             //$NON-NLS-1$
+            + "Content-Length: 2\r\n\r\nxy",                        //$NON-NLS-1$
+            string(schedule[1]));
+        assertFalse(schedule[0]._head);
+        assertTrue(schedule[2]._head);
+    }
+
+
+    @Test
+    public void scheduleFollowsWeights() {
+
+        // ARRANGE
+        final RequestMix mix =
+            new RequestMix("example.com")                           //$NON-NLS-1$
+                .add(5, "GET", "/a")                                //$NON-NLS-1$ //$NON-NLS-2$
+                .add(2, "GET", "/b")                                //$NON-NLS-1$ //$NON-NLS-2$
+                .add(1, "GET", "/c");                               //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ACT
+        final RequestMix.Entry[] schedule = mix.schedule();
+
+        // ASSERT
+        assertEquals(8, schedule.length);
+        final StringBuilder order = new StringBuilder();
+        for (final RequestMix.Entry entry : schedule) {
+            order.append(string(entry).charAt(5));
+        }
+        assertEquals(5, count(order, 'a'));
+        assertEquals(2, count(order, 'b'));
+        assertEquals(1, count(order, 'c'));
+        assertEquals(
+            "The heaviest request should be spread out.",           //$NON-NLS-1$
+            -1, order.indexOf("aaa"));                              //$NON-NLS-1$
+        assertEquals(-1, order.indexOf("bb"));                      //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void equalWeightsAlternate() {
+
+        // ARRANGE
+        final RequestMix mix =
+            new RequestMix("example.com")                           //$NON-NLS-1$
+                .add(2, "GET", "/a")                                //$NON-NLS-1$ //$NON-NLS-2$
+                .add(2, "GET", "/b");                               //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ACT
+        final RequestMix.Entry[] schedule = mix.schedule();
+
+        // ASSERT
+        final StringBuilder order = new StringBuilder();
+        for (final RequestMix.Entry entry : schedule) {
+            order.append(string(entry).charAt(5));
+        }
+        assertEquals("abab", order.toString());                     //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void scheduleRebuiltAfterAdd() {
+
+        // ARRANGE
+        final RequestMix mix =
+            new RequestMix("example.com").add(1, "GET", "/a");      //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        final RequestMix.Entry[] first = mix.schedule();
+
+        // ACT
+        mix.add(1, "GET", "/b");                                    //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertEquals(1, first.length);
+        final RequestMix.Entry[] second = mix.schedule();
+        assertNotSame(first, second);
+        assertEquals(2, second.length);
+        assertSame(second, mix.schedule());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void zeroWeightRejected() {
+        new RequestMix("example.com").add(0, "GET", "/");           //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+
+    @Test(expected=IllegalStateException.class)
+    public void emptyMixRejected() {
+        new RequestMix("example.com").schedule();                   //$NON-NLS-1$
+    }
+
+
+    private static String string(final RequestMix.Entry entry) {
+        return new String(entry._bytes, StandardCharsets.ISO_8859_1);
+    }
+
+
+    private static int count(final CharSequence s, final char c) {
+        int count = 0;
+        for (int i=0; i<s.length(); i++) {
+            if (c==s.charAt(i)) { count++; }
+        }
+        return count;
+    }
+}
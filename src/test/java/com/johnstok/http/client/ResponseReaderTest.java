@@ -0,0 +1,198 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.client;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link ResponseReader} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ResponseReaderTest {
+
+    private static final String NEXT =
+        "HTTP/1.1 202 Accepted\r\nContent-Length: 0\r\n\r\n";       //$NON-NLS-1$
+
+
+    @Test
+    public void contentLengthBodySkipped() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.1 200 OK\r\n"                            //$NON-NLS-1$
+                   + "content-length:  5 \r\n\r\n"                  //$NON-NLS-1$
+                   + "hello"                                        //$NON-NLS-1$
+                   + NEXT);
+
+        // ACT
+        final int status = reader.read(false);
+
+        // ASSERT
+        assertEquals(200, status);
+        assertFalse(reader.isClose());
+        assertEquals(202, reader.read(false));
+    }
+
+
+    @Test
+    public void chunkedBodyAndTrailersSkipped() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.1 200 OK\r\n"                            //$NON-NLS-1$
+                   + "Transfer-Encoding: gzip, chunked\r\n\r\n"     //$NON-NLS-1$
+                   + "5;ext=1\r\nhello\r\n"                         //$NON-NLS-1$
+                   + "1A\r\nabcdefghijklmnopqrstuvwxyz\r\n"         //$NON-NLS-1$
+                   + "0\r\n"                                        //$NON-NLS-1$
+                   + "X-Checksum: 1\r\n"                            //$NON-NLS-1$
+                   + "X-Signature: 2\r\n\r\n"                       //$NON-NLS-1$
+                   + NEXT);
+
+        // ACT
+        final int status = reader.read(false);
+
+        // ASSERT
+        assertEquals(200, status);
+        assertEquals(202, reader.read(false));
+    }
+
+
+    @Test
+    public void bodyDelimitedByClose() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.1 200 OK\r\n\r\nhello, world");          //$NON-NLS-1$
+
+        // ACT
+        final int status = reader.read(false);
+
+        // ASSERT
+        assertEquals(200, status);
+        assertTrue(reader.isClose());
+        try {
+            reader.read(false);
+            fail();
+        } catch (final EOFException e) {
+            // Expected: the whole stream was the body.
+        }
+    }
+
+
+    @Test
+    public void headResponseHasNoBody() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n" //$NON-NLS-1$
+                   + NEXT);
+
+        // ACT
+        final int status = reader.read(true);
+
+        // ASSERT
+        assertEquals(200, status);
+        assertEquals(202, reader.read(false));
+    }
+
+
+    @Test
+    public void noContentAndNotModifiedHaveNoBody() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.1 204 No Content\r\nContent-Length: 10\r\n\r\n" //$NON-NLS-1$
+                   + "HTTP/1.1 304 Not Modified\r\n"                //$NON-NLS-1$
+                   + "Transfer-Encoding: chunked\r\n\r\n"           //$NON-NLS-1$
+                   + NEXT);
+
+        // ACT
+        final int noContent = reader.read(false);
+        final int notModified = reader.read(false);
+
+        // ASSERT
+        assertEquals(204, noContent);
+        assertEquals(304, notModified);
+        assertEquals(202, reader.read(false));
+    }
+
+
+    @Test
+    public void interimResponsesSkipped() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.1 100 Continue\r\n\r\n"                  //$NON-NLS-1$
+                   + "HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n"); //$NON-NLS-1$
+
+        // ACT
+        final int status = reader.read(false);
+
+        // ASSERT
+        assertEquals(201, status);
+    }
+
+
+    @Test
+    public void connectionHeadersTracked() throws Exception {
+
+        // ARRANGE
+        final ResponseReader reader =
+            reader("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"   //$NON-NLS-1$
+                   + "HTTP/1.0 200 OK\r\nContent-Length: 0\r\n"     //$NON-NLS-1$
+                   + "Connection: Keep-Alive\r\n\r\n"               //$NON-NLS-1$
+                   + "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n"     //$NON-NLS-1$
+                   + "Connection: close\r\n\r\n");                  //$NON-NLS-1$
+
+        // ACT
+        reader.read(false);
+        final boolean http10 = reader.isClose();
+        reader.read(false);
+        final boolean keepAlive = reader.isClose();
+        reader.read(false);
+        final boolean close = reader.isClose();
+
+        // ASSERT
+        assertTrue(http10);
+        assertFalse(keepAlive);
+        assertTrue(close);
+    }
+
+
+    @Test(expected=EOFException.class)
+    public void truncatedBodyRejected() throws Exception {
+        reader("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nhello") //$NON-NLS-1$
+            .read(false);
+    }
+
+
+    private static ResponseReader reader(final String responses) {
+        return
+            new ResponseReader(
+                new ByteArrayInputStream(
+                    responses.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+}
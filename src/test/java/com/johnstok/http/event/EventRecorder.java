@@ -0,0 +1,109 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+
+/**
+ * Records flight recorder events for tests.
+ *
+ * @author Keith Webster Johnston.
+ */
+public final class EventRecorder {
+
+    /**
+     * An action whose events are recorded.
+     */
+    public static interface Action {
+
+        /**
+         * Run the action.
+         *
+         * @throws Exception If the action fails.
+         */
+        void run() throws Exception;
+    }
+
+
+    private EventRecorder() {
+        super();
+    }
+
+
+    /**
+     * Run an action with the named events enabled.
+     *
+     * @param action The action to run.
+     * @param names  The names of the events to enable.
+     *
+     * @return The enabled events recorded while the action ran, in order.
+     *
+     * @throws Exception If the action or the recording fails.
+     */
+    public static List<RecordedEvent> record(final Action action,
+                                             final String... names)
+    throws Exception {
+        final List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        final Path file = Files.createTempFile("events", ".jfr");   //$NON-NLS-1$ //$NON-NLS-2$
+        try (Recording recording = new Recording()) {
+            for (final String name : names) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            for (final RecordedEvent e : RecordingFile.readAllEvents(file)) {
+                if (Arrays.asList(names).contains(e.getEventType().getName())) {
+                    events.add(e);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        return events;
+    }
+
+
+    /**
+     * Select the recorded events of one type.
+     *
+     * @param events The recorded events.
+     * @param name   The name of the event type.
+     *
+     * @return The events of that type, in order.
+     */
+    public static List<RecordedEvent> named(final List<RecordedEvent> events,
+                                            final String name) {
+        final List<RecordedEvent> named = new ArrayList<RecordedEvent>();
+        for (final RecordedEvent e : events) {
+            if (name.equals(e.getEventType().getName())) { named.add(e); }
+        }
+        return named;
+    }
+}
@@ -0,0 +1,205 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.event;
+
+import static com.johnstok.http.event.EventRecorder.*;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import jdk.jfr.consumer.RecordedEvent;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Header;
+import com.johnstok.http.RequestLine;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+import com.johnstok.http.sync.handler.CompressingHandler;
+import com.johnstok.http.sync.handler.DispatchingHandler;
+
+
+/**
+ * Tests for the flight recorder events emitted by parsing and handlers.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class EventsTest {
+
+    private static final String PARSE       = "com.johnstok.http.Parse"; //$NON-NLS-1$
+    private static final String ROUTE       = "com.johnstok.http.Route"; //$NON-NLS-1$
+    private static final String NEGOTIATION = "com.johnstok.http.Negotiation"; //$NON-NLS-1$
+    private static final String COMPRESSION = "com.johnstok.http.Compression"; //$NON-NLS-1$
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void parsingRecorded() throws Exception {
+
+        // ACT
+        final List<RecordedEvent> events = record(new Action() {
+            @Override
+            public void run() {
+                RequestLine.parse("GET / HTTP/1.1");                //$NON-NLS-1$
+                try {
+                    Header.parse("no colon");                       //$NON-NLS-1$
+                    fail();
+                } catch (final ClientHttpException e) {
+                    // Expected.
+                }
+            }
+        }, PARSE);
+
+        // ASSERT
+        assertEquals(2, events.size());
+        assertEquals("request-line", events.get(0).getString("element")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(14, events.get(0).getInt("length"));           //$NON-NLS-1$
+        assertTrue(events.get(0).getBoolean("valid"));              //$NON-NLS-1$
+        assertEquals("header", events.get(1).getString("element")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertFalse(events.get(1).getBoolean("valid"));             //$NON-NLS-1$
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void routingRecorded() throws Exception {
+
+        // ARRANGE
+        final Map<Pattern, Handler> handlers =
+            new LinkedHashMap<Pattern, Handler>();
+        handlers.put(Pattern.compile("/users/\\d+"), new NoOpHandler()); //$NON-NLS-1$
+        final DispatchingHandler dispatcher = new DispatchingHandler(handlers);
+
+        // ACT
+        final List<RecordedEvent> events = record(new Action() {
+            @Override
+            public void run() throws Exception {
+                dispatcher.handle(
+                    new StubRequest("GET", "/users/7"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+                dispatcher.handle(
+                    new StubRequest("GET", "/missing"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }, ROUTE);
+
+        // ASSERT
+        assertEquals(2, events.size());
+        assertEquals("/users/7", events.get(0).getString("path"));  //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals("/users/\\d+", events.get(0).getString("template")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(
+            NoOpHandler.class.getName(),
+            events.get(0).getClass("handler").getName());           //$NON-NLS-1$
+        assertEquals("/missing", events.get(1).getString("path"));  //$NON-NLS-1$ //$NON-NLS-2$
+        assertNull(events.get(1).getString("template"));            //$NON-NLS-1$
+        assertNull(events.get(1).getClass("handler"));              //$NON-NLS-1$
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void negotiationAndCompressionRecorded() throws Exception {
+
+        // ARRANGE
+        final byte[] body = new byte[1000];
+        final CompressingHandler handler =
+            new CompressingHandler(new Handler() {
+                @Override
+                public void handle(final Request request,
+                                   final Response response) throws IOException {
+                    try (OutputStream out = response.getBody()) {
+                        out.write(body);
+                    }
+                }
+            });
+
+        // ACT
+        final List<RecordedEvent> events = record(new Action() {
+            @Override
+            public void run() throws Exception {
+                handler.handle(
+                    new StubRequest("GET", "/")                     //$NON-NLS-1$ //$NON-NLS-2$
+                        .header(Header.ACCEPT_ENCODING, "gzip"),    //$NON-NLS-1$
+                    new StubResponse());
+            }
+        }, NEGOTIATION, COMPRESSION);
+
+        // ASSERT
+        final List<RecordedEvent> negotiation = named(events, NEGOTIATION);
+        assertEquals(1, negotiation.size());
+        assertEquals(
+            Header.ACCEPT_ENCODING,
+            negotiation.get(0).getString("dimensions"));            //$NON-NLS-1$
+        assertEquals("gzip", negotiation.get(0).getString("selected")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        final List<RecordedEvent> compression = named(events, COMPRESSION);
+        assertEquals(1, compression.size());
+        assertEquals("gzip", compression.get(0).getString("coding")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(body.length, compression.get(0).getLong("bytesIn")); //$NON-NLS-1$
+        final long out = compression.get(0).getLong("bytesOut");    //$NON-NLS-1$
+        assertTrue(0<out && out<body.length);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void disabledEventsNotRecorded() throws Exception {
+
+        // ACT
+        final List<RecordedEvent> events = record(new Action() {
+            @Override
+            public void run() {
+                RequestLine.parse("GET / HTTP/1.1");                //$NON-NLS-1$
+            }
+        }, ROUTE);
+
+        // ASSERT
+        assertTrue(events.isEmpty());
+    }
+
+
+    /** A handler that does nothing. */
+    public static final class NoOpHandler implements Handler {
+        /** {@inheritDoc} */
+        @Override
+        public void handle(final Request request, final Response response) {
+            // No-op.
+        }
+    }
+}
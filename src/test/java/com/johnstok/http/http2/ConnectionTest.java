@@ -0,0 +1,857 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import com.johnstok.http.http2.hpack.HPACKDecoder;
+import com.johnstok.http.http2.hpack.HPACKEncoder;
+import com.johnstok.http.http2.hpack.HeaderField;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+
+
+/**
+ * Tests for the {@link Connection} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ConnectionTest {
+
+    private static final InetSocketAddress ADDRESS =
+        new InetSocketAddress("localhost", 80);
+
+    private static final Executor CALLER = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Handler ECHO = new Handler() {
+        @Override
+        public void handle(final Request request,
+                           final Response response) throws IOException {
+            final InputStream in = request.getBody();
+            final OutputStream out = response.getBody();
+            final byte[] buffer = new byte[1024];
+            for (int read; 0<=(read = in.read(buffer));) {
+                out.write(buffer, 0, read);
+            }
+        }
+    };
+
+    private static final Handler HELLO = new Handler() {
+        @Override
+        public void handle(final Request request,
+                           final Response response) throws IOException {
+            response.setHeader("Content-Type", "text/plain");
+            response.setHeader("Connection", "close");
+            final OutputStream body = response.getBody();
+            body.write((request.getMethod()+" "+request.getRequestUri()+" "
+                        +request.getHeader("Host")).getBytes("US-ASCII"));
+        }
+    };
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void requestIsServed() throws Exception {
+
+        // ARRANGE
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        frame(client, Frame.SETTINGS, 0, 0, new byte[0]);
+        frame(client, Frame.HEADERS, Frame.END_HEADERS|Frame.END_STREAM, 1,
+              new HPACKEncoder(4096).encode(Arrays.asList(
+                  new HeaderField(":method", "GET"),
+                  new HeaderField(":scheme", "http"),
+                  new HeaderField(":authority", "example.com"),
+                  new HeaderField(":path", "/index"))));
+
+        // ACT
+        final FrameReader server = serve(client.toByteArray(), HELLO);
+
+        // ASSERT
+        assertEquals(Frame.SETTINGS, server.read(Frame.MAX_MAX_SIZE).getType());
+        assertEquals(
+            Frame.WINDOW_UPDATE, server.read(Frame.MAX_MAX_SIZE).getType());
+        final Frame ack = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.SETTINGS, ack.getType());
+        assertTrue(ack.hasFlag(Frame.ACK));
+
+        final Frame headers = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.HEADERS, headers.getType());
+        assertEquals(1, headers.getStreamId());
+        assertFalse(headers.hasFlag(Frame.END_STREAM));
+        final List<HeaderField> fields =
+            new HPACKDecoder(4096, Integer.MAX_VALUE).decode(
+                headers.getPayload(), 0, headers.getPayload().length);
+        assertEquals(
+            Arrays.asList(
+                new HeaderField(":status", "200"),
+                new HeaderField("content-type", "text/plain")),
+            fields);
+
+        final Frame data = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.DATA, data.getType());
+        assertTrue(data.hasFlag(Frame.END_STREAM));
+        assertEquals(
+            "GET /index example.com",
+            new String(data.getPayload(), "US-ASCII"));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void pingIsAcknowledged() throws Exception {
+
+        // ARRANGE
+        final byte[] opaque = {1, 2, 3, 4, 5, 6, 7, 8};
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        frame(client, Frame.PING, 0, 0, opaque);
+
+        // ACT
+        final FrameReader server = serve(client.toByteArray(), HELLO);
+
+        // ASSERT
+        server.read(Frame.MAX_MAX_SIZE); // SETTINGS
+        server.read(Frame.MAX_MAX_SIZE); // WINDOW_UPDATE
+        final Frame ping = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.PING, ping.getType());
+        assertTrue(ping.hasFlag(Frame.ACK));
+        assertArrayEquals(opaque, ping.getPayload());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void invalidPrefaceIsRejected() throws Exception {
+
+        // ACT
+        final FrameReader server =
+            serve("GET / HTTP/1.1\r\n\r\n\r\n\r\n\r\n".getBytes("US-ASCII"), HELLO);
+
+        // ASSERT
+        final Frame goAway = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.GOAWAY, goAway.getType());
+        assertEquals(
+            ErrorCode.PROTOCOL_ERROR,
+            ErrorCode.forCode(Frame.int32(goAway.getPayload(), 4)));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void uppercaseHeaderResetsStream() throws Exception {
+
+        // ARRANGE
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        frame(client, Frame.HEADERS, Frame.END_HEADERS|Frame.END_STREAM, 1,
+              new HPACKEncoder(4096).encode(Arrays.asList(
+                  new HeaderField(":method", "GET"),
+                  new HeaderField(":scheme", "http"),
+                  new HeaderField(":path", "/"),
+                  new HeaderField("Accept", "*/*"))));
+
+        // ACT
+        final FrameReader server = serve(client.toByteArray(), HELLO);
+
+        // ASSERT
+        server.read(Frame.MAX_MAX_SIZE); // SETTINGS
+        server.read(Frame.MAX_MAX_SIZE); // WINDOW_UPDATE
+        final Frame reset = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.RST_STREAM, reset.getType());
+        assertEquals(1, reset.getStreamId());
+        assertEquals(
+            ErrorCode.PROTOCOL_ERROR,
+            ErrorCode.forCode(Frame.int32(reset.getPayload(), 0)));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void continuationReassembled() throws Exception {
+
+        // ARRANGE
+        final byte[] block =
+            new HPACKEncoder(4096).encode(Arrays.asList(
+                new HeaderField(":method", "GET"),
+                new HeaderField(":scheme", "http"),
+                new HeaderField(":authority", "example.com"),
+                new HeaderField(":path", "/index")));
+        final int third = block.length/3;
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        new FrameWriter(client).write(
+            Frame.HEADERS, Frame.END_STREAM, 1, block, 0, third);
+        new FrameWriter(client).write(
+            Frame.CONTINUATION, 0, 1, block, third, third);
+        new FrameWriter(client).write(
+            Frame.CONTINUATION, Frame.END_HEADERS, 1,
+            block, 2*third, block.length-2*third);
+
+        // ACT
+        final FrameReader server = serve(client.toByteArray(), HELLO);
+
+        // ASSERT
+        server.read(Frame.MAX_MAX_SIZE); // SETTINGS
+        server.read(Frame.MAX_MAX_SIZE); // WINDOW_UPDATE
+        assertEquals(Frame.HEADERS, server.read(Frame.MAX_MAX_SIZE).getType());
+        final Frame data = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(
+            "GET /index example.com",
+            new String(data.getPayload(), "US-ASCII"));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void interruptedHeaderBlockRejected() throws Exception {
+
+        // ARRANGE
+        final byte[] block =
+            new HPACKEncoder(4096).encode(Arrays.asList(
+                new HeaderField(":method", "GET"),
+                new HeaderField(":scheme", "http"),
+                new HeaderField(":path", "/")));
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        new FrameWriter(client).write(Frame.HEADERS, 0, 1, block, 0, 2);
+        frame(client, Frame.PING, 0, 0, new byte[8]);
+
+        // ACT
+        final FrameReader server = serve(client.toByteArray(), HELLO);
+
+        // ASSERT
+        server.read(Frame.MAX_MAX_SIZE); // SETTINGS
+        server.read(Frame.MAX_MAX_SIZE); // WINDOW_UPDATE
+        final Frame goAway = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.GOAWAY, goAway.getType());
+        assertEquals(
+            ErrorCode.PROTOCOL_ERROR,
+            ErrorCode.forCode(Frame.int32(goAway.getPayload(), 4)));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void largeResponseHeadersContinued() throws Exception {
+
+        // ARRANGE
+        final char[] large = new char[2*Frame.DEFAULT_MAX_SIZE];
+        Arrays.fill(large, 'x');
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        frame(client, Frame.HEADERS, Frame.END_HEADERS|Frame.END_STREAM, 1,
+              new HPACKEncoder(4096).encode(Arrays.asList(
+                  new HeaderField(":method", "GET"),
+                  new HeaderField(":scheme", "http"),
+                  new HeaderField(":path", "/"))));
+
+        // ACT
+        final FrameReader server = serve(client.toByteArray(), new Handler() {
+            @Override
+            public void handle(final Request request, final Response response) {
+                response.setHeader("X-Large", new String(large));
+            }
+        });
+
+        // ASSERT
+        server.read(Frame.MAX_MAX_SIZE); // SETTINGS
+        server.read(Frame.MAX_MAX_SIZE); // WINDOW_UPDATE
+        final Frame headers = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.HEADERS, headers.getType());
+        assertTrue(headers.hasFlag(Frame.END_STREAM));
+        assertFalse(headers.hasFlag(Frame.END_HEADERS));
+        final Frame continuation = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.CONTINUATION, continuation.getType());
+        assertTrue(continuation.hasFlag(Frame.END_HEADERS));
+
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        block.write(headers.getPayload());
+        block.write(continuation.getPayload());
+        final List<HeaderField> fields =
+            new HPACKDecoder(4096, Integer.MAX_VALUE).decode(
+                block.toByteArray(), 0, block.size());
+        assertEquals(
+            new HeaderField("x-large", new String(large)), fields.get(1));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void upgradeServesRequestAsStreamOne() throws Exception {
+
+        // ARRANGE
+        final StubRequest request =
+            new StubRequest("GET", "/index")
+                .header("Host", "example.com")
+                .header("Connection", "Upgrade, HTTP2-Settings")
+                .header("Upgrade", "h2c")
+                .header(
+                    Connection.HTTP2_SETTINGS,
+                    Base64.getUrlEncoder().withoutPadding().encodeToString(
+                        new Settings().set(Settings.MAX_FRAME_SIZE, 20000)
+                                      .toPayload()));
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(Connection.PREFACE);
+        frame(client, Frame.SETTINGS, 0, 0, new byte[0]);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final Connection connection =
+            new Connection(
+                new ByteArrayInputStream(client.toByteArray()),
+                output, HELLO, CALLER, ADDRESS, ADDRESS, false);
+
+        // ACT
+        assertTrue(Connection.isUpgrade(request));
+        connection.upgrade(request);
+        connection.run();
+
+        // ASSERT
+        final String switching = "HTTP/1.1 101 Switching Protocols\r\n";
+        final byte[] bytes = output.toByteArray();
+        assertEquals(
+            switching, new String(bytes, 0, switching.length(), "US-ASCII"));
+        final int end = indexOf(bytes, "\r\n\r\n".getBytes("US-ASCII"))+4;
+        final FrameReader server =
+            new FrameReader(
+                new ByteArrayInputStream(bytes, end, bytes.length-end));
+        assertEquals(Frame.SETTINGS, server.read(Frame.MAX_MAX_SIZE).getType());
+        assertEquals(
+            Frame.WINDOW_UPDATE, server.read(Frame.MAX_MAX_SIZE).getType());
+        final Frame headers = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(Frame.HEADERS, headers.getType());
+        assertEquals(1, headers.getStreamId());
+        final Frame data = server.read(Frame.MAX_MAX_SIZE);
+        assertEquals(1, data.getStreamId());
+        assertEquals(
+            "GET /index example.com",
+            new String(data.getPayload(), "US-ASCII"));
+        assertTrue(server.read(Frame.MAX_MAX_SIZE).hasFlag(Frame.ACK));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void upgradeRequiresSettings() throws Exception {
+        assertFalse(
+            Connection.isUpgrade(
+                new StubRequest("GET", "/").header("Upgrade", "h2c")));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void dataWaitsForSendWindow() throws Exception {
+        try (Client client = new Client(body(25), Settings.defaults())) {
+
+            // ARRANGE
+            client.preface(
+                new Settings().set(Settings.INITIAL_WINDOW_SIZE, 10));
+
+            // ACT
+            client.get(1, "/");
+
+            // ASSERT
+            assertEquals(Frame.HEADERS, client.next().getType());
+            assertData(client.next(), 1, 10, false);
+            assertNull("Window exhausted.", client.poll());
+            client.windowUpdate(1, 10);
+            assertData(client.next(), 1, 10, false);
+            client.windowUpdate(1, 100);
+            assertData(client.next(), 1, 5, true);
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void initialWindowChangeAppliedToOpenStreams() throws Exception {
+        try (Client client = new Client(body(25), Settings.defaults())) {
+
+            // ARRANGE
+            client.preface(
+                new Settings().set(Settings.INITIAL_WINDOW_SIZE, 0));
+            client.get(1, "/");
+            assertEquals(Frame.HEADERS, client.next().getType());
+            assertNull("Window exhausted.", client.poll());
+
+            // ACT
+            client.settings(
+                new Settings().set(Settings.INITIAL_WINDOW_SIZE, 20));
+
+            // ASSERT
+            assertData(client.next(), 1, 20, false);
+            assertNull("Window exhausted.", client.poll());
+            client.windowUpdate(1, 5);
+            assertData(client.next(), 1, 5, true);
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void streamsInterleaved() throws Exception {
+        try (Client client = new Client(body(25), Settings.defaults())) {
+
+            // ARRANGE
+            client.preface(
+                new Settings().set(Settings.INITIAL_WINDOW_SIZE, 10));
+            client.get(1, "/");
+            client.get(3, "/");
+            final int[] sent = new int[4];
+            for (int i=0; i<4; i++) {
+                final Frame frame = client.next();
+                if (Frame.DATA==frame.getType()) {
+                    sent[frame.getStreamId()] += frame.getPayload().length;
+                }
+            }
+            assertEquals(10, sent[1]);
+            assertEquals(10, sent[3]);
+
+            // ACT
+            client.windowUpdate(3, 100);
+
+            // ASSERT
+            assertData(client.next(), 3, 15, true);
+            client.windowUpdate(1, 100);
+            assertData(client.next(), 1, 15, true);
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void receiveWindowEnforced() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        try (Client client =
+                new Client(
+                    await(release),
+                    Settings.defaults()
+                            .set(Settings.INITIAL_WINDOW_SIZE, 16))) {
+
+            // ARRANGE
+            client.preface(new Settings());
+            client.post(1, "/");
+            client.data(1, new byte[10], false);
+
+            // ACT
+            client.data(1, new byte[7], false);
+
+            // ASSERT
+            final Frame reset = client.next();
+            assertEquals(Frame.RST_STREAM, reset.getType());
+            assertEquals(1, reset.getStreamId());
+            assertEquals(
+                ErrorCode.FLOW_CONTROL_ERROR,
+                ErrorCode.forCode(Frame.int32(reset.getPayload(), 0)));
+        } finally {
+            release.countDown();
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void streamsBeyondLimitRefused() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        try (Client client =
+                new Client(
+                    await(release),
+                    Settings.defaults()
+                            .set(Settings.MAX_CONCURRENT_STREAMS, 1))) {
+
+            // ARRANGE
+            client.preface(new Settings());
+            client.get(1, "/");
+
+            // ACT
+            client.get(3, "/");
+
+            // ASSERT
+            final Frame reset = client.next();
+            assertEquals(Frame.RST_STREAM, reset.getType());
+            assertEquals(3, reset.getStreamId());
+            assertEquals(
+                ErrorCode.REFUSED_STREAM,
+                ErrorCode.forCode(Frame.int32(reset.getPayload(), 0)));
+            release.countDown();
+            final Frame headers = client.next();
+            assertEquals(Frame.HEADERS, headers.getType());
+            assertEquals(1, headers.getStreamId());
+        } finally {
+            release.countDown();
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void trailersEndRequestBody() throws Exception {
+        try (Client client = new Client(ECHO, Settings.defaults())) {
+
+            // ARRANGE
+            client.preface(new Settings());
+            client.post(1, "/");
+            client.data(1, "abc".getBytes("US-ASCII"), false);
+
+            // ACT
+            client.headers(1, true, new HeaderField("x-checksum", "1"));
+
+            // ASSERT
+            assertEquals(Frame.HEADERS, client.next().getType());
+            final Frame data = client.next();
+            assertTrue(data.hasFlag(Frame.END_STREAM));
+            assertEquals("abc", new String(data.getPayload(), "US-ASCII"));
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void trailersMustEndStream() throws Exception {
+        try (Client client = new Client(ECHO, Settings.defaults())) {
+
+            // ARRANGE
+            client.preface(new Settings());
+            client.post(1, "/");
+
+            // ACT
+            client.headers(1, false, new HeaderField("x-checksum", "1"));
+
+            // ASSERT
+            final Frame reset = client.next();
+            assertEquals(Frame.RST_STREAM, reset.getType());
+            assertEquals(
+                ErrorCode.PROTOCOL_ERROR,
+                ErrorCode.forCode(Frame.int32(reset.getPayload(), 0)));
+        }
+    }
+
+
+    private static FrameReader serve(final byte[] input,
+                                     final Handler handler) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new Connection(
+            new ByteArrayInputStream(input),
+            output,
+            handler,
+            CALLER,
+            ADDRESS,
+            ADDRESS,
+            false).run();
+        return new FrameReader(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+
+    private static void frame(final ByteArrayOutputStream out,
+                              final int type,
+                              final int flags,
+                              final int streamId,
+                              final byte[] payload) throws IOException {
+        new FrameWriter(out).write(type, flags, streamId, payload, 0, payload.length);
+    }
+
+
+    private static Handler body(final int length) {
+        return new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response response) throws IOException {
+                response.getBody().write(new byte[length]);
+            }
+        };
+    }
+
+
+    private static Handler await(final CountDownLatch latch) {
+        return new Handler() {
+            @Override
+            public void handle(final Request request, final Response response)
+            throws IOException {
+                try {
+                    latch.await();
+                } catch (final InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+    }
+
+
+    private static void assertData(final Frame frame,
+                                   final int streamId,
+                                   final int length,
+                                   final boolean endStream) {
+        assertEquals(Frame.DATA, frame.getType());
+        assertEquals(streamId, frame.getStreamId());
+        assertEquals(length, frame.getPayload().length);
+        assertEquals(endStream, frame.hasFlag(Frame.END_STREAM));
+    }
+
+
+    private static int indexOf(final byte[] b, final byte[] target) {
+        for (int i=0; i<=b.length-target.length; i++) {
+            if (Arrays.equals(
+                    target, Arrays.copyOfRange(b, i, i+target.length))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * A client talking to a connection over a loopback socket; the
+     * connection's handlers run on their own threads.
+     */
+    private static final class Client implements AutoCloseable {
+
+        private final ServerSocket    _listener;
+        private final Socket          _socket;
+        private final ExecutorService _executor =
+            Executors.newCachedThreadPool();
+        private final Thread          _thread;
+        private final FrameWriter     _out;
+        private final FrameReader     _in;
+        private final HPACKEncoder    _encoder = new HPACKEncoder(4096);
+
+
+        Client(final Handler handler,
+               final Settings settings) throws IOException {
+            _listener =
+                new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            _socket =
+                new Socket(
+                    InetAddress.getLoopbackAddress(),
+                    _listener.getLocalPort());
+            _socket.setSoTimeout(5000);
+            final Socket accepted = _listener.accept();
+            final Connection connection =
+                new Connection(
+                    accepted.getInputStream(),
+                    accepted.getOutputStream(),
+                    handler,
+                    _executor,
+                    ADDRESS,
+                    ADDRESS,
+                    false,
+                    settings);
+            _thread = new Thread(connection);
+            _thread.start();
+            _out = new FrameWriter(_socket.getOutputStream());
+            _in = new FrameReader(_socket.getInputStream());
+        }
+
+
+        void preface(final Settings settings) throws IOException {
+            _socket.getOutputStream().write(Connection.PREFACE);
+            settings(settings);
+        }
+
+
+        void settings(final Settings settings) throws IOException {
+            final byte[] payload = settings.toPayload();
+            _out.write(Frame.SETTINGS, 0, 0, payload, 0, payload.length);
+        }
+
+
+        void get(final int streamId, final String path) throws IOException {
+            request(streamId, "GET", path, true);
+        }
+
+
+        void post(final int streamId, final String path) throws IOException {
+            request(streamId, "POST", path, false);
+        }
+
+
+        void request(final int streamId,
+                     final String method,
+                     final String path,
+                     final boolean endStream) throws IOException {
+            headers(
+                streamId,
+                endStream,
+                new HeaderField(":method", method),
+                new HeaderField(":scheme", "http"),
+                new HeaderField(":path", path));
+        }
+
+
+        void headers(final int streamId,
+                     final boolean endStream,
+                     final HeaderField... fields) throws IOException {
+            final byte[] block = _encoder.encode(Arrays.asList(fields));
+            _out.write(
+                Frame.HEADERS,
+                Frame.END_HEADERS | (endStream ? Frame.END_STREAM : 0),
+                streamId,
+                block,
+                0,
+                block.length);
+        }
+
+
+        void data(final int streamId,
+                  final byte[] data,
+                  final boolean endStream) throws IOException {
+            _out.write(
+                Frame.DATA,
+                endStream ? Frame.END_STREAM : 0,
+                streamId,
+                data,
+                0,
+                data.length);
+        }
+
+
+        void windowUpdate(final int streamId,
+                          final int increment) throws IOException {
+            _out.writeInt(Frame.WINDOW_UPDATE, streamId, increment);
+        }
+
+
+        /*
+         * The next frame, skipping settings and window updates.
+         */
+        Frame next() throws IOException {
+            for (;;) {
+                final Frame frame = _in.read(Frame.MAX_MAX_SIZE);
+                assertNotNull("Connection closed.", frame);
+                if (Frame.SETTINGS!=frame.getType()
+                    && Frame.WINDOW_UPDATE!=frame.getType()) {
+                    return frame;
+                }
+            }
+        }
+
+
+        /*
+         * The next frame, if one arrives shortly; null otherwise.
+         */
+        Frame poll() throws IOException {
+            _socket.setSoTimeout(200);
+            try {
+                return next();
+            } catch (final SocketTimeoutException e) {
+                return null;
+            } finally {
+                _socket.setSoTimeout(5000);
+            }
+        }
+
+
+        @Override
+        public void close() throws Exception {
+            _socket.close();
+            _thread.join(5000);
+            _listener.close();
+            _executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+
+
+/**
+ * Tests for the {@link HPACKEncoder} and {@link HPACKDecoder} classes.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class HPACKTest {
+
+    private static final List<HeaderField> RESPONSE_1 = fields(
+        ":status", "302",
+        "cache-control", "private",
+        "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+        "location", "https://www.example.com");
+
+    private static final List<HeaderField> RESPONSE_2 = fields(
+        ":status", "307",
+        "cache-control", "private",
+        "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+        "location", "https://www.example.com");
+
+    private static final List<HeaderField> RESPONSE_3 = fields(
+        ":status", "200",
+        "cache-control", "private",
+        "date", "Mon, 21 Oct 2013 20:13:22 GMT",
+        "location", "https://www.example.com",
+        "content-encoding", "gzip",
+        "set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1");
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void decodeRequestsWithHuffman() throws Exception {
+
+        // ARRANGE
+        final HPACKDecoder decoder = new HPACKDecoder(4096, 8192);
+
+        // ACT
+        // ASSERT
+        assertEquals(
+            fields(
+                ":method", "GET",
+                ":scheme", "http",
+                ":path", "/",
+                ":authority", "www.example.com"),
+            decode(decoder, "828684418cf1e3c2e5f23a6ba0ab90f4ff"));
+        assertEquals(
+            fields(
+                ":method", "GET",
+                ":scheme", "http",
+                ":path", "/",
+                ":authority", "www.example.com",
+                "cache-control", "no-cache"),
+            decode(decoder, "828684be5886a8eb10649cbf"));
+        assertEquals(
+            fields(
+                ":method", "GET",
+                ":scheme", "https",
+                ":path", "/index.html",
+                ":authority", "www.example.com",
+                "custom-key", "custom-value"),
+            decode(
+                decoder,
+                "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void decodeResponsesWithEviction() throws Exception {
+
+        // ARRANGE
+        final HPACKDecoder decoder = new HPACKDecoder(256, 8192);
+
+        // ACT
+        // ASSERT
+        assertEquals(
+            RESPONSE_1,
+            decode(
+                decoder,
+                "488264025885aec3771a4b6196d07abe941054d444a8200595040b8166"
+                + "e082a62d1bff6e919d29ad171863c78f0b97c8e9ae82ae43d3"));
+        assertEquals(RESPONSE_2, decode(decoder, "4883640effc1c0bf"));
+        assertEquals(
+            RESPONSE_3,
+            decode(
+                decoder,
+                "88c16196d07abe941054d444a8200595040b8166e084a62d1bffc05a83"
+                + "9bd9ab77ad94e7821dd7f2e6c7b335dfdfcd5b3960d5af27087f3672"
+                + "c1ab270fb5291f9587316065c003ed4ee5b1063d5007"));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void encodeResponses() throws Exception {
+
+        // ARRANGE
+        final HPACKEncoder encoder = new HPACKEncoder(256);
+        encoder.setMaxTableSize(256);
+        final HPACKDecoder decoder = new HPACKDecoder(4096, 8192);
+
+        // ACT
+        final byte[] first = encoder.encode(RESPONSE_1);
+        final byte[] second = encoder.encode(RESPONSE_2);
+        final byte[] third = encoder.encode(RESPONSE_3);
+
+        // ASSERT
+        assertEquals(
+            "3fe101" // Table size update to 256.
+            + "488264025885aec3771a4b6196d07abe941054d444a8200595040b8166"
+            + "e082a62d1bff6e919d29ad171863c78f0b97c8e9ae82ae43d3",
+            hex(first));
+        assertEquals(
+            "88c16196d07abe941054d444a8200595040b8166e084a62d1bffc05a83"
+            + "9bd9ab77ad94e7821dd7f2e6c7b335dfdfcd5b3960d5af27087f3672"
+            + "c1ab270fb5291f9587316065c003ed4ee5b1063d5007",
+            hex(third));
+        assertEquals(RESPONSE_1, decoder.decode(first, 0, first.length));
+        assertEquals(RESPONSE_2, decoder.decode(second, 0, second.length));
+        assertEquals(RESPONSE_3, decoder.decode(third, 0, third.length));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void sensitiveFieldsNeverIndexed() throws Exception {
+
+        // ARRANGE
+        final HPACKEncoder encoder = new HPACKEncoder(4096);
+        final List<HeaderField> fields =
+            fields("authorization", "secret", "cookie", "a=b");
+
+        // ACT
+        final byte[] block = encoder.encode(fields);
+        final byte[] again = encoder.encode(fields);
+
+        // ASSERT
+        assertEquals(0x10, block[0] & 0xf0);
+        assertArrayEquals(block, again);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void headerListSizeEnforced() throws Exception {
+
+        // ARRANGE
+        final HPACKEncoder encoder = new HPACKEncoder(4096);
+        final HPACKDecoder decoder = new HPACKDecoder(4096, 100);
+        final byte[] large =
+            encoder.encode(fields("x-large", new String(new char[100])));
+        final byte[] repeat = encoder.encode(fields("x-large", new String(new char[100])));
+
+        // ACT
+        try {
+            decoder.decode(large, 0, large.length);
+            fail();
+        } catch (final HPACKDecoder.HeaderListSizeException e) {
+            // Expected.
+        }
+
+        // ASSERT
+        assertEquals(1, repeat.length); // Indexed, so the table was updated.
+        final HPACKDecoder roomy = new HPACKDecoder(4096, 1000);
+        roomy.decode(large, 0, large.length);
+        assertEquals(
+            fields("x-large", new String(new char[100])),
+            roomy.decode(repeat, 0, repeat.length));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void invalidBlocksRejected() {
+        for (final String block : new String[] {
+                "80",         // Index 0.
+                "be",         // Index beyond table.
+                "4088",       // Truncated string.
+                "7fffffffff0f", // Integer overflow.
+                "823fe101"})  { // Late table size update.
+            try {
+                final byte[] b = bytes(block);
+                new HPACKDecoder(4096, 8192).decode(b, 0, b.length);
+                fail(block);
+            } catch (final HPACKException e) {
+                // Expected.
+            }
+        }
+    }
+
+
+    private static List<HeaderField> decode(final HPACKDecoder decoder,
+                                            final String hex)
+    throws HPACKException {
+        final byte[] block = bytes(hex);
+        return decoder.decode(block, 0, block.length);
+    }
+
+
+    private static List<HeaderField> fields(final String... pairs) {
+        final HeaderField[] fields = new HeaderField[pairs.length/2];
+        for (int i=0; i<fields.length; i++) {
+            fields[i] = new HeaderField(pairs[2*i], pairs[2*i+1]);
+        }
+        return Arrays.asList(fields);
+    }
+
+
+    private static byte[] bytes(final String hex) {
+        final byte[] b = new byte[hex.length()/2];
+        for (int i=0; i<b.length; i++) {
+            b[i] = (byte) Integer.parseInt(hex.substring(2*i, 2*i+2), 16);
+        }
+        return b;
+    }
+
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : bytes) {
+            hex.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,110 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.http2.hpack;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+
+
+/**
+ * Tests for the {@link Huffman} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class HuffmanTest {
+
+    /**
+     * Test.
+     */
+    @Test
+    public void encodeRfcExamples() {
+        assertEquals("f1e3c2e5f23a6ba0ab90f4ff", encode("www.example.com"));
+        assertEquals("a8eb10649cbf", encode("no-cache"));
+        assertEquals("25a849e95ba97d7f", encode("custom-key"));
+        assertEquals("25a849e95bb8e8b4bf", encode("custom-value"));
+        assertEquals("6402", encode("302"));
+        assertEquals("aec3771a4b", encode("private"));
+        assertEquals(
+            "d07abe941054d444a8200595040b8166e082a62d1bff",
+            encode("Mon, 21 Oct 2013 20:13:21 GMT"));
+        assertEquals(
+            "9d29ad171863c78f0b97c8e9ae82ae43d3",
+            encode("https://www.example.com"));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void roundTripAllOctets() throws Exception {
+
+        // ARRANGE
+        final byte[] octets = new byte[256];
+        for (int i=0; i<octets.length; i++) { octets[i] = (byte) i; }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // ACT
+        Huffman.encode(octets, out);
+        final byte[] encoded = out.toByteArray();
+
+        // ASSERT
+        assertEquals(Huffman.encodedLength(octets), encoded.length);
+        assertArrayEquals(
+            octets, Huffman.decode(encoded, 0, encoded.length));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void invalidPaddingRejected() {
+        assertRejected(new byte[] {(byte) 0xf1, (byte) 0xe3, (byte) 0xc2, 0x00});  // Zero padding.
+        assertRejected(new byte[] {0x1f, (byte) 0xff});                             // Over 7 bits.
+        assertRejected(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff}); // EOS.
+    }
+
+
+    private static void assertRejected(final byte[] encoded) {
+        try {
+            Huffman.decode(encoded, 0, encoded.length);
+            fail();
+        } catch (final HPACKException e) {
+            // Expected.
+        }
+    }
+
+
+    private static String encode(final String s) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(s.getBytes(StandardCharsets.ISO_8859_1), out);
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : out.toByteArray()) {
+            hex.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+        }
+        return hex.toString();
+    }
+}
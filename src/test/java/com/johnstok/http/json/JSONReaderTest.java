@@ -0,0 +1,323 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.json;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import com.johnstok.http.BufferPool;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.json.JSONReader.Event;
+
+
+
+/**
+ * Tests for the {@link JSONReader} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class JSONReaderTest {
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void eventsForDocument() throws Exception {
+
+        // ARRANGE
+        final JSONReader reader =
+            reader("{\"a\": [1, -2.5e3, \"x\"], \"b\": {}, \"c\": [true, false, null]}");
+
+        // ACT
+        // ASSERT
+        assertEquals(Event.START_OBJECT, reader.next());
+        assertEquals(Event.NAME, reader.next());
+        assertEquals("a", reader.getString());
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(2, reader.getDepth());
+        assertEquals(Event.NUMBER, reader.next());
+        assertEquals(1, reader.getLong());
+        assertEquals(Event.NUMBER, reader.next());
+        assertEquals(-2500d, reader.getDouble(), 0);
+        assertEquals(Event.STRING, reader.next());
+        assertEquals("x", reader.getString());
+        assertEquals(Event.END_ARRAY, reader.next());
+        assertEquals(Event.NAME, reader.next());
+        assertEquals(Event.START_OBJECT, reader.next());
+        assertEquals(Event.END_OBJECT, reader.next());
+        assertEquals(Event.NAME, reader.next());
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(Event.TRUE, reader.next());
+        assertEquals(Event.FALSE, reader.next());
+        assertEquals(Event.NULL, reader.next());
+        assertEquals(Event.END_ARRAY, reader.next());
+        assertEquals(Event.END_OBJECT, reader.next());
+        assertEquals(0, reader.getDepth());
+        assertEquals(Event.END, reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void escapesDecoded() throws Exception {
+
+        // ARRANGE
+        final JSONReader reader =
+            reader("\"q\\\" b\\\\ s\\/ \\b\\f\\n\\r\\t \\u00e9\\uD83D\\uDE00 \u00fc\"");
+
+        // ACT
+        reader.next();
+
+        // ASSERT
+        assertEquals(
+            "q\" b\\ s/ \b\f\n\r\t \u00e9\uD83D\uDE00 \u00fc",
+            reader.getString());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void readValue() throws Exception {
+
+        // ACT
+        final Object value =
+            reader("[{\"k\": 1.50, \"l\": [\"v\"]}, null]").readValue();
+
+        // ASSERT
+        final List<?> array = (List<?>) value;
+        assertEquals(2, array.size());
+        final Map<?, ?> object = (Map<?, ?>) array.get(0);
+        assertEquals(new BigDecimal("1.50"), object.get("k"));
+        assertEquals(Arrays.asList("v"), object.get("l"));
+        assertNull(array.get(1));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void skipValue() throws Exception {
+
+        // ARRANGE
+        final JSONReader reader =
+            reader("{\"skip\": {\"a\": [1, {\"b\": 2}]}, \"keep\": 3}");
+        reader.next();
+        reader.next();
+
+        // ACT
+        reader.skipValue();
+
+        // ASSERT
+        assertEquals(Event.NAME, reader.next());
+        assertEquals("keep", reader.getString());
+        assertEquals(Event.NUMBER, reader.next());
+        assertEquals(3, reader.getLong());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void tokensStraddleBuffers() throws Exception {
+
+        // ARRANGE
+        final StringBuilder json = new StringBuilder("[");
+        for (int i=0; i<1000; i++) {
+            json.append((0==i) ? "" : ",").append("\"\u00e9l\u00e9ment-").append(i).append("\"");
+        }
+        json.append("]");
+        final JSONReader reader =
+            new JSONReader(
+                new TrickleInputStream(json.toString().getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8,
+                new BufferPool(16, 1));
+
+        // ACT
+        final List<?> value = (List<?>) reader.readValue();
+
+        // ASSERT
+        assertEquals(1000, value.size());
+        assertEquals("\u00e9l\u00e9ment-999", value.get(999));
+        assertEquals(Event.END, reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void malformedRejected() throws Exception {
+        for (final String json : new String[] {
+                "", "{", "[1,]", "[1 2]", "{\"a\" 1}", "{\"a\":1,}", "{1:2}",
+                "01", "1.", "-", "1e", "tru", "nul", "\"unterminated",
+                "\"\\x\"", "\"\\u12g4\"", "\"tab\there\"", "[1]]", "1 2",
+                "[]x"}) {
+            final JSONReader reader = reader(json);
+            try {
+                for (Event e=reader.next(); Event.END!=e; e=reader.next()) {
+                    // Consume.
+                }
+                fail(json);
+            } catch (final ClientHttpException e) {
+                // Expected.
+            }
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(expected=ClientHttpException.class)
+    public void malformedEncodingRejected() throws Exception {
+        new JSONReader(
+            new ByteArrayInputStream(new byte[] {'"', (byte) 0xc3, '"'}),
+            StandardCharsets.UTF_8)
+        .next();
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(expected=ClientHttpException.class)
+    public void depthLimited() throws Exception {
+        final StringBuilder json = new StringBuilder();
+        for (int i=0; i<=JSONReader.MAX_DEPTH; i++) { json.append('['); }
+        reader(json.toString()).readValue();
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void stringLengthLimited() throws Exception {
+
+        // ARRANGE
+        final JSONReader reader =
+            new JSONReader(
+                new ByteArrayInputStream("[\"abcd\", \"abcdef\"]".getBytes()),
+                StandardCharsets.UTF_8,
+                new BufferPool(16, 1),
+                4);
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(Event.STRING, reader.next());
+
+        // ACT
+        try {
+            reader.next();
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.BAD_REQUEST, e.getStatus());
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void numberLengthLimited() throws Exception {
+
+        // ARRANGE
+        final JSONReader reader =
+            new JSONReader(
+                new ByteArrayInputStream("[1234, 123456]".getBytes()),
+                StandardCharsets.UTF_8,
+                new BufferPool(16, 1),
+                4);
+        assertEquals(Event.START_ARRAY, reader.next());
+        assertEquals(Event.NUMBER, reader.next());
+
+        // ACT
+        try {
+            reader.next();
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.BAD_REQUEST, e.getStatus());
+        }
+    }
+
+
+    private static JSONReader reader(final String json) {
+        return reader(json, StandardCharsets.UTF_8);
+    }
+
+
+    private static JSONReader reader(final String json, final Charset cs) {
+        return new JSONReader(new ByteArrayInputStream(json.getBytes(cs)), cs);
+    }
+
+
+    /** Returns at most 3 bytes per read. */
+    private static final class TrickleInputStream extends FilterInputStream {
+
+        TrickleInputStream(final byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        throws IOException {
+            return super.read(b, off, Math.min(3, len));
+        }
+    }
+}
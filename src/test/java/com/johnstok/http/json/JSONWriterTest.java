@@ -0,0 +1,153 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.json;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+import com.johnstok.http.BufferPool;
+
+
+
+/**
+ * Tests for the {@link JSONWriter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class JSONWriterTest {
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void writesDocument() throws Exception {
+
+        // ARRANGE
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // ACT
+        try (JSONWriter w = new JSONWriter(out, StandardCharsets.UTF_8)) {
+            w.beginObject()
+                .name("a").beginArray()
+                    .value(1).value(2.5).value(new BigDecimal("1E+3"))
+                .endArray()
+                .name("b").beginObject().endObject()
+                .name("c").value(true)
+                .name("d").nullValue()
+                .name("e").value("x\"\\\n\u0001\u00e9")
+             .endObject();
+        }
+
+        // ASSERT
+        assertEquals(
+            "{\"a\":[1,2.5,1E+3],\"b\":{},\"c\":true,\"d\":null,"
+                + "\"e\":\"x\\\"\\\\\\n\\u0001\u00e9\"}",
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void nonUnicodeCharsetEscapes() throws Exception {
+
+        // ARRANGE
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // ACT
+        try (JSONWriter w = new JSONWriter(out, StandardCharsets.US_ASCII)) {
+            w.value("\u00e9\u4e2d");
+        }
+
+        // ASSERT
+        assertEquals(
+            "\"\\u00e9\\u4e2d\"",
+            new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void roundTripThroughSmallBuffers() throws Exception {
+
+        // ARRANGE
+        final Map<String, Object> value = new LinkedHashMap<String, Object>();
+        final StringBuilder text = new StringBuilder();
+        for (int i=0; i<500; i++) { text.append("\uD83D\uDE00\u00e9a"); }
+        value.put("text", text.toString());
+        value.put("list", Arrays.asList(new BigDecimal("1"), Boolean.FALSE, null));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BufferPool pool = new BufferPool(7, 1);
+
+        // ACT
+        try (JSONWriter w = new JSONWriter(out, StandardCharsets.UTF_8, pool)) {
+            w.write(value);
+        }
+        final Object read =
+            new JSONReader(
+                new ByteArrayInputStream(out.toByteArray()),
+                StandardCharsets.UTF_8,
+                pool)
+            .readValue();
+
+        // ASSERT
+        assertEquals(value, read);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void grammarEnforced() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JSONWriter w = new JSONWriter(out, StandardCharsets.UTF_8);
+
+        try { w.name("a"); fail(); } catch (final IllegalStateException e) { /* Expected. */ }
+        w.beginObject();
+        try { w.value(1); fail(); } catch (final IllegalStateException e) { /* Expected. */ }
+        try { w.endArray(); fail(); } catch (final IllegalStateException e) { /* Expected. */ }
+        w.name("a");
+        try { w.endObject(); fail(); } catch (final IllegalStateException e) { /* Expected. */ }
+        w.value(1).endObject();
+        try { w.value(2); fail(); } catch (final IllegalStateException e) { /* Expected. */ }
+        try { w.value(Double.NaN); fail(); } catch (final IllegalArgumentException e) { /* Expected. */ }
+        w.close();
+
+        assertEquals("{\"a\":1}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,206 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+import static org.junit.Assert.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.johnstok.http.limit.ConcurrencyLimiter.Permit;
+
+
+/**
+ * Tests for the {@link ConcurrencyLimiter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final LimitAlgorithm FIXED_10 = new LimitAlgorithm() {
+        @Override
+        public int getLimit() { return 10; }
+
+        @Override
+        public void onSample(final long rtt,
+                             final int inFlight,
+                             final boolean dropped) { /* No-op. */ }
+    };
+
+
+    @Test
+    public void rejectsBeyondLimit() {
+
+        // ARRANGE
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(FIXED_10);
+        for (int i=0; i<10; i++) { assertNotNull(limiter.acquire(null)); }
+
+        // ACT
+        final Permit rejected = limiter.acquire(null);
+
+        // ASSERT
+        assertNull(rejected);
+        assertEquals(10, limiter.getInFlight());
+        assertEquals(1, limiter.getRejected());
+    }
+
+
+    @Test
+    public void releaseFreesCapacity() {
+
+        // ARRANGE
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(FIXED_10);
+        Permit last = null;
+        for (int i=0; i<10; i++) { last = limiter.acquire(null); }
+
+        // ACT
+        last.success();
+
+        // ASSERT
+        assertEquals(9, limiter.getInFlight());
+        assertNotNull(limiter.acquire(null));
+    }
+
+
+    @Test(expected=IllegalStateException.class)
+    public void permitReleasedOnce() {
+
+        // ARRANGE
+        final Permit permit =
+            new ConcurrencyLimiter(FIXED_10).acquire(null);
+        permit.ignore();
+
+        // ACT
+        permit.success();
+    }
+
+
+    @Test
+    public void reservationSurvivesBorrowing() {
+
+        // ARRANGE
+        final Map<String, Double> shares = new HashMap<String, Double>();
+        shares.put("interactive", Double.valueOf(0.7));
+        shares.put("batch", Double.valueOf(0.1));
+        final ConcurrencyLimiter limiter =
+            new ConcurrencyLimiter(FIXED_10, shares);
+
+        // ACT
+        int batch = 0;
+        while (null!=limiter.acquire("batch")) { batch++; }
+        int interactive = 0;
+        while (null!=limiter.acquire("interactive")) { interactive++; }
+
+        // ASSERT
+        assertEquals(3, batch);       // Own 1 + unreserved 2.
+        assertEquals(7, interactive); // Reservation untouched by batch.
+        assertNull(limiter.acquire(null));
+        assertEquals(10, limiter.getInFlight());
+    }
+
+
+    @Test
+    public void unpartitionedOnlyBorrows() {
+
+        // ARRANGE
+        final Map<String, Double> shares = new HashMap<String, Double>();
+        shares.put("interactive", Double.valueOf(0.8));
+        final ConcurrencyLimiter limiter =
+            new ConcurrencyLimiter(FIXED_10, shares);
+
+        // ACT
+        int other = 0;
+        while (null!=limiter.acquire("unknown")) { other++; }
+
+        // ASSERT
+        assertEquals(2, other);
+        assertEquals(2, limiter.getInFlight(null));
+        assertNotNull(limiter.acquire("interactive"));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void sharesMayNotExceedOne() {
+
+        // ARRANGE
+        final Map<String, Double> shares = new HashMap<String, Double>();
+        shares.put("a", Double.valueOf(0.6));
+        shares.put("b", Double.valueOf(0.6));
+
+        // ACT
+        new ConcurrencyLimiter(FIXED_10, shares);
+    }
+
+
+    @Test
+    public void aimdGrowsWhenFastAndBacksOffWhenSlow() {
+
+        // ARRANGE
+        final AimdLimit limit =
+            new AimdLimit(10, 1, 100, 0.5, 100, TimeUnit.MILLISECONDS);
+
+        // ACT
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 10, false);
+        final int grown = limit.getLimit();
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+        final int idle = limit.getLimit();
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(200), 10, false);
+        final int slow = limit.getLimit();
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 10, true);
+        final int dropped = limit.getLimit();
+
+        // ASSERT
+        assertEquals(11, grown);
+        assertEquals(11, idle);
+        assertEquals(5, slow);
+        assertEquals(2, dropped);
+    }
+
+
+    @Test
+    public void gradientShrinksAsLatencyRises() {
+
+        // ARRANGE
+        final GradientLimit limit = new GradientLimit(50, 1, 1000, 0.5, 100);
+        for (int i=0; i<100; i++) { limit.onSample(1000, 50, false); }
+        final int steady = limit.getLimit();
+
+        // ACT
+        for (int i=0; i<20; i++) { limit.onSample(4000, steady, false); }
+
+        // ASSERT
+        assertTrue(steady>50);
+        assertTrue(limit.getLimit()<steady/2);
+    }
+
+
+    @Test
+    public void gradientIgnoresUnderusedLimit() {
+
+        // ARRANGE
+        final GradientLimit limit = new GradientLimit(50, 1, 1000, 0.5, 100);
+
+        // ACT
+        for (int i=0; i<100; i++) { limit.onSample(1000, 1, false); }
+
+        // ASSERT
+        assertEquals(50, limit.getLimit());
+    }
+}
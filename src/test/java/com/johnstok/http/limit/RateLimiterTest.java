@@ -0,0 +1,124 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.limit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link RateLimiter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = 1000000000L;
+
+
+    @Test
+    public void burstThenSustainedRate() {
+
+        // ARRANGE
+        final RateLimiter limiter = new RateLimiter(10, 3, 100, SECOND, 1, 0);
+        for (int i=0; i<3; i++) { assertEquals(0, limiter.tryAcquire("a", 0)); }
+
+        // ACT
+        final long wait = limiter.tryAcquire("a", 0);
+        final long early = limiter.tryAcquire("a", SECOND/10-1);
+        final long due = limiter.tryAcquire("a", SECOND/10);
+
+        // ASSERT
+        assertEquals(SECOND/10, wait);
+        assertEquals(1, early);
+        assertEquals(0, due);
+    }
+
+
+    @Test
+    public void keysAreIndependent() {
+
+        // ARRANGE
+        final RateLimiter limiter = new RateLimiter(1, 1, 100, SECOND, 4, 0);
+        limiter.tryAcquire("a", 0);
+
+        // ACT
+        final long a = limiter.tryAcquire("a", 0);
+        final long b = limiter.tryAcquire("b", 0);
+
+        // ASSERT
+        assertTrue(0<a);
+        assertEquals(0, b);
+        assertEquals(2, limiter.size());
+    }
+
+
+    @Test
+    public void fullStripeEvictsIdleKeys() {
+
+        // ARRANGE
+        final RateLimiter limiter = new RateLimiter(1, 1, 2, SECOND, 1, 0);
+        limiter.tryAcquire("a", 0);
+        limiter.tryAcquire("b", 0);
+
+        // ACT
+        final long c = limiter.tryAcquire("c", 3*SECOND);
+
+        // ASSERT
+        assertEquals(0, c);
+        assertEquals(1, limiter.size());
+    }
+
+
+    @Test
+    public void untrackedKeysShareOverflowBucket() {
+
+        // ARRANGE
+        final RateLimiter limiter = new RateLimiter(1, 1, 1, SECOND, 1, 0);
+        limiter.tryAcquire("a", 0);
+
+        // ACT
+        final long b = limiter.tryAcquire("b", 0);
+        final long c = limiter.tryAcquire("c", 0);
+
+        // ASSERT
+        assertEquals(0, b);
+        assertTrue(0<c);
+        assertEquals(1, limiter.size());
+    }
+
+
+    @Test
+    public void bucketIdleOnceRefilled() {
+
+        // ARRANGE
+        final TokenBucket bucket = new TokenBucket(SECOND, 2, 0);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        // ACT
+        final boolean busy = bucket.isIdle(2*SECOND-1, 0);
+        final boolean idle = bucket.isIdle(2*SECOND, 0);
+
+        // ASSERT
+        assertFalse(busy);
+        assertTrue(idle);
+    }
+}
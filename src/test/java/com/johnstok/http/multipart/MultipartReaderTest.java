@@ -0,0 +1,366 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.multipart;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.sync.reader.MultipartBodyReader;
+
+
+
+/**
+ * Tests for the {@link MultipartReader} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class MultipartReaderTest {
+
+    private static final String BOUNDARY = "AaB03x";
+
+    private static final String FORM =
+        "preamble\r\n"
+        + "--AaB03x\r\n"
+        + "Content-Disposition: form-data; name=\"field1\"\r\n"
+        + "\r\n"
+        + "Joe Blow\r\n"
+        + "--AaB03x  \r\n"
+        + "content-disposition: form-data; name=\"pics\"; filename=\"file1.txt\"\r\n"
+        + "Content-Type: text/plain\r\n"
+        + "\r\n"
+        + "... contents of file1.txt ...\r\n"
+        + "--AaB03x--\r\n"
+        + "epilogue";
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void readsParts() throws Exception {
+
+        // ARRANGE
+        final MultipartReader reader = new MultipartReader(in(FORM), BOUNDARY);
+
+        // ACT
+        assertTrue(reader.next());
+        final String first = read(reader.getBody());
+        final String name = reader.getHeader("content-disposition");
+        assertTrue(reader.next());
+        final String type = reader.getHeader("Content-Type");
+        final String second = read(reader.getBody());
+
+        // ASSERT
+        assertEquals("Joe Blow", first);
+        assertEquals("form-data; name=\"field1\"", name);
+        assertEquals("text/plain", type);
+        assertEquals("... contents of file1.txt ...", second);
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void unreadBodyIsSkipped() throws Exception {
+
+        // ARRANGE
+        final MultipartReader reader = new MultipartReader(in(FORM), BOUNDARY);
+
+        // ACT
+        assertTrue(reader.next());
+        final InputStream stale = reader.getBody();
+        assertTrue(reader.next());
+
+        // ASSERT
+        assertEquals(-1, stale.read());
+        assertEquals("... contents of file1.txt ...", read(reader.getBody()));
+        assertFalse(reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void noPreamble() throws Exception {
+
+        // ARRANGE
+        final MultipartReader reader =
+            new MultipartReader(
+                in("--b\r\n\r\nx\r\n--b--"), "b");
+
+        // ACT
+        assertTrue(reader.next());
+
+        // ASSERT
+        assertTrue(reader.getHeaders().isEmpty());
+        assertEquals("x", read(reader.getBody()));
+        assertFalse(reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void delimiterStraddlesReads() throws Exception {
+
+        // ARRANGE
+        final byte[] body = new byte[100000];
+        for (int i=0; i<body.length; i++) { body[i] = (byte) (i%251); }
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        message.write("--AaB03x\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        message.write(body);
+        message.write(
+            "\r\n--AaB03x\r\n\r\n\r\n--AaB03x--".getBytes(StandardCharsets.US_ASCII));
+        final MultipartReader reader =
+            new MultipartReader(
+                new TrickleInputStream(message.toByteArray()), BOUNDARY);
+
+        // ACT
+        assertTrue(reader.next());
+        final byte[] first = bytes(reader.getBody());
+        assertTrue(reader.next());
+        final byte[] second = bytes(reader.getBody());
+
+        // ASSERT
+        assertArrayEquals(body, first);
+        assertEquals(0, second.length);
+        assertFalse(reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void partialDelimiterIsContent() throws Exception {
+
+        // ARRANGE
+        final String content = "a\r\n--AaB03 \r\n--AaB03y";
+        final MultipartReader reader =
+            new MultipartReader(
+                in("--AaB03x\r\n\r\n"+content+"\r\n--AaB03x--"), BOUNDARY);
+
+        // ACT
+        assertTrue(reader.next());
+
+        // ASSERT
+        assertEquals(content, read(reader.getBody()));
+        assertFalse(reader.next());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(expected=ClientHttpException.class)
+    public void truncatedBodyRejected() throws Exception {
+
+        // ARRANGE
+        final MultipartReader reader =
+            new MultipartReader(in("--b\r\n\r\nunterminated"), "b");
+
+        // ACT
+        reader.next();
+        read(reader.getBody());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(expected=ClientHttpException.class)
+    public void malformedHeaderRejected() throws Exception {
+
+        // ARRANGE
+        final MultipartReader reader =
+            new MultipartReader(in("--b\r\nno-colon\r\n\r\nx\r\n--b--"), "b");
+
+        // ACT
+        reader.next();
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void boundaryParsed() {
+        assertEquals(
+            "AaB03x",
+            MultipartReader.boundary("multipart/form-data; boundary=AaB03x"));
+        assertEquals(
+            "a b;c",
+            MultipartReader.boundary(
+                "multipart/form-data; charset=UTF-8; Boundary=\"a b;c\""));
+        assertNull(MultipartReader.boundary("multipart/form-data"));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void largePartsSpillToFile() throws Exception {
+
+        // ARRANGE
+        final MultipartBodyReader bodyReader =
+            new MultipartBodyReader(BOUNDARY, 16, null);
+
+        // ACT
+        final List<Part> parts = bodyReader.read(in(FORM));
+
+        // ASSERT
+        try {
+            assertEquals(2, parts.size());
+            assertNull(parts.get(0).getFile());
+            assertEquals("field1", parts.get(0).getName());
+            assertEquals("Joe Blow", text(parts.get(0).getBody()));
+            assertNotNull(parts.get(1).getFile());
+            assertEquals("pics", parts.get(1).getName());
+            assertEquals("file1.txt", parts.get(1).getFilename());
+            assertEquals(
+                "... contents of file1.txt ...",
+                read(parts.get(1).openBody()));
+        } finally {
+            for (final Part part : parts) { part.delete(); }
+        }
+        assertFalse(Files.exists(parts.get(1).getFile()));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void partsBeyondMemoryBudgetSpillToFile() throws Exception {
+
+        // ARRANGE
+        final MultipartBodyReader bodyReader =
+            new MultipartBodyReader(BOUNDARY, 1000, null, 10, 10);
+
+        // ACT
+        final List<Part> parts = bodyReader.read(in(FORM));
+
+        // ASSERT
+        try {
+            assertNull(parts.get(0).getFile());
+            assertNotNull(parts.get(1).getFile());
+            assertEquals(
+                "... contents of file1.txt ...",
+                read(parts.get(1).openBody()));
+        } finally {
+            for (final Part part : parts) { part.delete(); }
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void tooManyPartsRejected() throws Exception {
+
+        // ARRANGE
+        final MultipartBodyReader bodyReader =
+            new MultipartBodyReader(BOUNDARY, 1000, null, 1000, 1);
+
+        // ACT
+        try {
+            bodyReader.read(in(FORM));
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(413, e.getStatus().getCode());
+        }
+    }
+
+
+    private static InputStream in(final String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static String text(final byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+
+    private static String read(final InputStream in) throws IOException {
+        return text(bytes(in));
+    }
+
+
+    private static byte[] bytes(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+        while (0<=(read = in.read(buffer))) { out.write(buffer, 0, read); }
+        return out.toByteArray();
+    }
+
+
+    /** Returns at most 7 bytes per read. */
+    private static final class TrickleInputStream extends FilterInputStream {
+
+        TrickleInputStream(final byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        throws IOException {
+            return super.read(b, off, Math.min(7, len));
+        }
+    }
+}
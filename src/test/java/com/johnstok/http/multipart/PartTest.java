@@ -0,0 +1,98 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.multipart;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link Part} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class PartTest {
+
+    @Test
+    public void quotedFilenameMayContainSemicolon() {
+
+        // ARRANGE
+        final Part part =
+            part("form-data; name=\"f\"; filename=\"a;b.txt\"");
+
+        // ACT
+        final String filename = part.getFilename();
+
+        // ASSERT
+        assertEquals("a;b.txt", filename);
+        assertEquals("f", part.getName());
+    }
+
+
+    @Test
+    public void quotedPairsUnescaped() {
+
+        // ARRANGE
+        final Part part =
+            part("form-data; name=\"f\"; filename=\"say \\\"hi\\\".txt\"");
+
+        // ACT
+        final String filename = part.getFilename();
+
+        // ASSERT
+        assertEquals("say \"hi\".txt", filename);
+    }
+
+
+    @Test
+    public void tokenValueAndUtf8Filename() {
+
+        // ARRANGE
+        final Part part = part("form-data; NAME=field; filename=\"文件.txt\"");
+
+        // ACT
+        final String name = part.getName();
+
+        // ASSERT
+        assertEquals("field", name);
+        assertEquals("文件.txt", part.getFilename());
+    }
+
+
+    @Test
+    public void missingParameterIsNull() {
+
+        // ARRANGE
+        final Part part = part("form-data; name=\"f\"");
+
+        // ACT
+        final String filename = part.getFilename();
+
+        // ASSERT
+        assertNull(filename);
+    }
+
+
+    private static Part part(final String disposition) {
+        final Part part = new Part();
+        part.addHeader("Content-Disposition", disposition);
+        return part;
+    }
+}
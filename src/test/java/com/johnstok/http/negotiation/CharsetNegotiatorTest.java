@@ -228,4 +228,73 @@ public class CharsetNegotiatorTest {
         // ASSERT
         Assert.assertEquals(UTF_16BE, selected);
     }
+
+
+    @Test
+    public void lookupIsCaseInsensitiveAndHonoursAliases() {
+
+        // ACT
+        final Charset selected  =
+            _negotiator.select(
+                new ArrayList<WeightedValue>() {{
+                    add(new WeightedValue("UTF8",    0.5f));
+                    add(new WeightedValue("Latin1",  0.4f));
+                }}
+            );
+
+        // ASSERT
+        Assert.assertEquals(UTF_8, selected);
+    }
+
+
+    @Test
+    public void wildcardDoesNotMatchMentionedCharsets() {
+
+        // ACT
+        final Charset selected  =
+            _negotiator.select(
+                new ArrayList<WeightedValue>() {{
+                    add(new WeightedValue("utf-8",    0.1f));
+                    add(new WeightedValue("utf-16be", 0.2f));
+                    add(new WeightedValue("*",        1f));
+                }}
+            );
+
+        // ASSERT
+        Assert.assertEquals(ISO_8859_1, selected);
+    }
+
+
+    @Test
+    public void defaultCharsetsPreferUtf8ForWildcard() {
+
+        // ARRANGE
+        final CharsetNegotiator negotiator = new CharsetNegotiator();
+
+        // ACT
+        final Charset selected  =
+            negotiator.select(
+                Collections.singletonList(
+                    new WeightedValue("*", 1f)));
+
+        // ASSERT
+        Assert.assertEquals(UTF_8, selected);
+    }
+
+
+    @Test
+    public void defaultCharsetsResolveAliases() {
+
+        // ARRANGE
+        final CharsetNegotiator negotiator = new CharsetNegotiator();
+
+        // ACT
+        final Charset selected  =
+            negotiator.select(
+                Collections.singletonList(
+                    new WeightedValue("UnicodeBigUnmarked", 1f)));
+
+        // ASSERT
+        Assert.assertEquals(UTF_16BE, selected);
+    }
 }
@@ -237,11 +237,88 @@ public class MediaTypeNegotiatorTest {
     }
 
     @Test
-    public void acceptExtensionsPreserved() {
-        // FIXME: Unclear what this test is trying to assert.
+    public void acceptExtensionsDropped() {
+        // Parameters before q belong to the range; those after are extensions.
         final List<WeightedValue> ranges = MediaTypeNegotiator.parse("application/xml ; foo=bar;q=.3;b=other");
         assertEquals(1, ranges.size());
-        assertEquals("application/xml;b=other", ranges.get(0).getValue());
+        assertEquals("application/xml;foo=bar", ranges.get(0).getValue());
         assertEquals(.3f, ranges.get(0).getWeight(), 0f);
     }
+
+
+    @Test
+    public void parsePreservesMediaRangeParameters() {
+        final List<WeightedValue> ranges = MediaTypeNegotiator.parse("text/html;level=2;q=0.4");
+        assertEquals(1, ranges.size());
+        assertEquals("text/html;level=2", ranges.get(0).getValue());
+        assertEquals(.4f, ranges.get(0).getWeight(), 0f);
+    }
+
+    @Test
+    public void selectionRespectsParameters() {
+
+        // ARRANGE
+        final List<WeightedValue> accept =
+            MediaTypeNegotiator.parse(
+                "text/*;q=0.3, text/html;q=0.7, text/html;level=1, "
+                + "text/html;level=2;q=0.4, */*;q=0.5");
+
+        // ACT
+        final MediaType level1 =
+            new MediaTypeNegotiator(
+                MediaType.parse("text/html;level=2"),
+                MediaType.parse("text/html;level=1"))
+            .select(accept);
+        final MediaType level3 =
+            new MediaTypeNegotiator(
+                MediaType.JPEG,
+                MediaType.parse("text/html;level=3"))
+            .select(accept);
+        final MediaType jpeg =
+            new MediaTypeNegotiator(
+                MediaType.parse("text/html;level=2"),
+                MediaType.JPEG)
+            .select(accept);
+
+        // ASSERT
+        assertEquals("1", level1.getParameter("level"));
+        assertEquals("3", level3.getParameter("level"));
+        assertEquals(MediaType.JPEG, jpeg);
+    }
+
+    @Test
+    public void noAvailableTypesSelectsNothing() {
+
+        // ARRANGE
+        final MediaTypeNegotiator n = new MediaTypeNegotiator();
+
+        // ACT
+        final MediaType mt = n.select();
+
+        // ASSERT
+        assertNull(mt);
+    }
+
+    @Test
+    public void rangesMatchOnlyTheirTypeAndSubtype() {
+
+        // ARRANGE
+        final MediaTypeNegotiator n =
+            new MediaTypeNegotiator(
+                MediaType.parse("text/html;level=1"),
+                MediaType.parse("text/html;level=2"),
+                MediaType.parse("TEXT/plain"),
+                MediaType.parse("application/json"),
+                MediaType.JPEG);
+
+        // ACT
+        final int[] qualities =
+            n.weigh(
+                MediaTypeNegotiator.parse(
+                    "Text/HTML;level=2, text/*;q=0.5, "
+                    + "application/JSON;q=0.1, image/*;q=0, audio/*"));
+
+        // ASSERT
+        assertArrayEquals(new int[] {500, 1000, 500, 100, 0}, qualities);
+    }
 }
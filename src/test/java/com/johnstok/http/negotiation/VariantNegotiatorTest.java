@@ -0,0 +1,153 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2012 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * http is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.negotiation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import com.johnstok.http.CharacterSet;
+import com.johnstok.http.ContentCoding;
+import com.johnstok.http.LanguageTag;
+import com.johnstok.http.MediaType;
+
+
+/**
+ * Tests for the {@link VariantNegotiator} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class VariantNegotiatorTest {
+
+    private static final LanguageTag EN = new LanguageTag("en");
+    private static final LanguageTag FR = new LanguageTag("fr");
+
+    private static final Variant HTML_EN_GZIP =
+        new Variant(
+            MediaType.HTML, CharacterSet.UTF_8, EN, ContentCoding.GZIP);
+    private static final Variant HTML_EN =
+        new Variant(
+            MediaType.HTML, CharacterSet.UTF_8, EN, ContentCoding.IDENTITY);
+    private static final Variant JSON_FR =
+        new Variant(MediaType.JSON, CharacterSet.UTF_8, FR, null);
+
+
+    @Test
+    public void varyIsPrecomputed() {
+
+        // ARRANGE
+        final VariantNegotiator negotiator =
+            new VariantNegotiator(HTML_EN_GZIP, HTML_EN, JSON_FR);
+
+        // ASSERT
+        Assert.assertEquals(
+            "Accept,Accept-Charset,Accept-Encoding,Accept-Language",
+            negotiator.getVary());
+    }
+
+
+    @Test
+    public void varyOmitsUndeclaredDimensions() {
+
+        // ARRANGE
+        final VariantNegotiator negotiator =
+            new VariantNegotiator(new Variant(MediaType.HTML, null, null, null));
+
+        // ASSERT
+        Assert.assertEquals("Accept", negotiator.getVary());
+    }
+
+
+    @Test
+    public void keyAndContentTypeArePrecomputed() {
+
+        // ASSERT
+        Assert.assertEquals("text/html|UTF-8|en|gzip", HTML_EN_GZIP.getKey());
+        Assert.assertEquals(
+            "text/html;charset=UTF-8", HTML_EN_GZIP.getContentType());
+        Assert.assertEquals("application/json|UTF-8|fr|", JSON_FR.getKey());
+    }
+
+
+    @Test
+    public void noHeadersSelectsFirstAcceptableVariant() {
+
+        // ARRANGE
+        final VariantNegotiator negotiator =
+            new VariantNegotiator(HTML_EN_GZIP, HTML_EN, JSON_FR);
+
+        // ACT
+        final Variant selected = negotiator.select((String) null, null, null, null);
+
+        // ASSERT - gzip isn't acceptable without an Accept-Encoding header.
+        Assert.assertSame(HTML_EN, selected);
+    }
+
+
+    @Test
+    public void allDimensionsSelectedInOnePass() {
+
+        // ARRANGE
+        final VariantNegotiator negotiator =
+            new VariantNegotiator(HTML_EN, HTML_EN_GZIP, JSON_FR);
+
+        // ACT
+        final Variant selected =
+            negotiator.select(
+                "text/html, application/json;q=0.9",
+                "utf-8",
+                "en, fr;q=0.5",
+                "gzip, identity;q=0.5");
+
+        // ASSERT
+        Assert.assertSame(HTML_EN_GZIP, selected);
+    }
+
+
+    @Test
+    public void languagePreferenceOutweighsMediaType() {
+
+        // ARRANGE
+        final VariantNegotiator negotiator =
+            new VariantNegotiator(HTML_EN, JSON_FR);
+
+        // ACT
+        final Variant selected =
+            negotiator.select(
+                "text/html, application/json;q=0.9", null, "en;q=0.5, fr", null);
+
+        // ASSERT
+        Assert.assertSame(JSON_FR, selected);
+    }
+
+
+    @Test
+    public void unacceptableGivesNull() {
+
+        // ARRANGE
+        final VariantNegotiator negotiator =
+            new VariantNegotiator(HTML_EN, JSON_FR);
+
+        // ACT
+        final Variant selected =
+            negotiator.select("image/png", null, null, null);
+
+        // ASSERT
+        Assert.assertNull(selected);
+    }
+}
@@ -0,0 +1,189 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sse;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link EventSource} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class EventSourceTest {
+
+    /**
+     * Test.
+     */
+    @Test
+    public void eventSharedBetweenSubscribers() {
+
+        // ARRANGE
+        final EventSource source = new EventSource(0);
+        final Recorder a = new Recorder(10);
+        final Recorder b = new Recorder(10);
+        source.subscribe(a, null);
+        source.subscribe(b, null);
+
+        // ACT
+        source.publish(new ServerSentEvent("1", null, "x"));
+
+        // ASSERT
+        assertEquals(1, a._events.size());
+        assertSame(a._events.get(0), b._events.get(0));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void resumeReplaysLaterEvents() {
+
+        // ARRANGE
+        final EventSource source = new EventSource(3);
+        for (int i=1; i<=5; i++) {
+            source.publish(new ServerSentEvent(String.valueOf(i), null, "x"));
+        }
+        final Recorder recorder = new Recorder(10);
+
+        // ACT
+        source.subscribe(recorder, "3");
+
+        // ASSERT
+        assertEquals(2, recorder._events.size());
+        assertTrue(new String(recorder._events.get(0)).startsWith("id: 4\n"));
+        assertTrue(new String(recorder._events.get(1)).startsWith("id: 5\n"));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void unknownIdReplaysAllRetained() {
+
+        // ARRANGE
+        final EventSource source = new EventSource(3);
+        for (int i=1; i<=5; i++) {
+            source.publish(new ServerSentEvent(String.valueOf(i), null, "x"));
+        }
+        final Recorder recorder = new Recorder(10);
+
+        // ACT
+        source.subscribe(recorder, "1");
+
+        // ASSERT
+        assertEquals(3, recorder._events.size());
+        assertTrue(new String(recorder._events.get(0)).startsWith("id: 3\n"));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void newSubscriberGetsNoReplay() {
+
+        // ARRANGE
+        final EventSource source = new EventSource(3);
+        source.publish(new ServerSentEvent("1", null, "x"));
+        final Recorder recorder = new Recorder(10);
+
+        // ACT
+        source.subscribe(recorder, null);
+
+        // ASSERT
+        assertTrue(recorder._events.isEmpty());
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void slowSubscriberDropped() {
+
+        // ARRANGE
+        final EventSource source = new EventSource(0);
+        final Recorder recorder = new Recorder(1);
+        source.subscribe(recorder, null);
+
+        // ACT
+        source.publish(new ServerSentEvent("1", null, "x"));
+        source.publish(new ServerSentEvent("2", null, "x"));
+
+        // ASSERT
+        assertTrue(recorder._closed);
+        assertEquals(0, source.getSubscriberCount());
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void closeEndsSubscriptions() {
+
+        // ARRANGE
+        final EventSource source = new EventSource(0);
+        final Recorder recorder = new Recorder(1);
+        source.subscribe(recorder, null);
+
+        // ACT
+        source.close();
+
+        // ASSERT
+        assertTrue(recorder._closed);
+        assertEquals(0, source.getSubscriberCount());
+    }
+
+
+    private static final class Recorder
+        implements
+            EventSource.Subscriber {
+
+        final List<byte[]> _events = new ArrayList<byte[]>();
+        final int          _capacity;
+        boolean            _closed;
+
+
+        Recorder(final int capacity) {
+            _capacity = capacity;
+        }
+
+
+        @Override
+        public boolean send(final byte[] event) {
+            if (_events.size()==_capacity) { return false; }
+            _events.add(event);
+            return true;
+        }
+
+
+        @Override
+        public void close() {
+            _closed = true;
+        }
+    }
+}
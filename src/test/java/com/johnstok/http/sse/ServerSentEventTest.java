@@ -0,0 +1,102 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sse;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link ServerSentEvent} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ServerSentEventTest {
+
+    /**
+     * Test.
+     */
+    @Test
+    public void allFieldsEncoded() {
+
+        // ACT
+        final ServerSentEvent event =
+            new ServerSentEvent("42", "update", "hello", 5000);
+
+        // ASSERT
+        assertEquals(
+            "id: 42\nevent: update\nretry: 5000\ndata: hello\n\n",
+            event.toString());
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void multiLineDataSplit() {
+
+        // ACT
+        final ServerSentEvent event =
+            new ServerSentEvent(null, null, "a\nb\r\nc\rd");
+
+        // ASSERT
+        assertEquals(
+            "data: a\ndata: b\ndata: c\ndata: d\n\n",
+            event.toString());
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void emptyDataSent() {
+
+        // ACT
+        final ServerSentEvent event = new ServerSentEvent(null, null, null);
+
+        // ASSERT
+        assertEquals("data: \n\n", event.toString());
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void dataEncodedAsUtf8() throws Exception {
+
+        // ACT
+        final ServerSentEvent event = new ServerSentEvent(null, null, "é");
+
+        // ASSERT
+        assertArrayEquals("data: é\n\n".getBytes("UTF-8"), event.getBytes());
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void lineBreakInIdRejected() {
+        new ServerSentEvent("1\n2", null, "x");
+    }
+}
@@ -0,0 +1,130 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2012 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * http is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.stats;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link Histogram} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class HistogramTest {
+
+    @Test
+    public void emptySnapshot() {
+
+        // ACT
+        final Histogram.Snapshot s = new Histogram(1000).snapshot();
+
+        // ASSERT
+        assertEquals(0, s.getCount());
+        assertEquals(0, s.getMin());
+        assertEquals(0, s.getMax());
+        assertEquals(0, s.getValueAtPercentile(99));
+    }
+
+
+    @Test
+    public void smallValuesAreExact() {
+
+        // ARRANGE
+        final Histogram h = new Histogram(1000);
+
+        // ACT
+        for (int i=1; i<=100; i++) { h.record(i); }
+        final Histogram.Snapshot s = h.snapshot();
+
+        // ASSERT
+        assertEquals(100, s.getCount());
+        assertEquals(1, s.getMin());
+        assertEquals(100, s.getMax());
+        assertEquals(50, s.getValueAtPercentile(50));
+        assertEquals(99, s.getValueAtPercentile(99));
+        assertEquals(100, s.getValueAtPercentile(100));
+        assertEquals(50.5, s.getMean(), 0.0001);
+    }
+
+
+    @Test
+    public void largeValuesWithinRelativeError() {
+
+        // ARRANGE
+        final Histogram h = new Histogram(Long.MAX_VALUE);
+
+        // ACT
+        for (long v=1; v<Long.MAX_VALUE/3; v*=3) {
+            h.record(v);
+            final long reported = h.snapshotAndReset().getValueAtPercentile(50);
+
+            // ASSERT
+            assertTrue(reported>=v);
+            assertTrue(reported-v<=v/64);
+        }
+    }
+
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i=1; i<Histogram.indexOf(Long.MAX_VALUE); i++) {
+            assertEquals(
+                Histogram.highestValueAt(i-1)+1, Histogram.lowestValueAt(i));
+            assertEquals(i, Histogram.indexOf(Histogram.lowestValueAt(i)));
+        }
+    }
+
+
+    @Test
+    public void valuesAboveHighestAreClamped() {
+
+        // ARRANGE
+        final Histogram h = new Histogram(1000);
+
+        // ACT
+        h.record(5000);
+        h.record(-1);
+        final Histogram.Snapshot s = h.snapshot();
+
+        // ASSERT
+        assertEquals(0, s.getMin());
+        assertEquals(1000, s.getMax());
+    }
+
+
+    @Test
+    public void snapshotsCanBeCombined() {
+
+        // ARRANGE
+        final Histogram a = new Histogram(1000);
+        final Histogram b = new Histogram(1000);
+        a.record(10);
+        b.record(20);
+
+        // ACT
+        final Histogram.Snapshot s = a.snapshot().add(b.snapshot());
+
+        // ASSERT
+        assertEquals(2, s.getCount());
+        assertEquals(10, s.getMin());
+        assertEquals(20, s.getMax());
+    }
+}
@@ -0,0 +1,221 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.johnstok.http.BufferPool;
+
+
+/**
+ * Tests for the {@link BackpressureOutputStream} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class BackpressureOutputStreamTest {
+
+    private static final int SIZE = 1024;
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() { /* No-op. */ }
+    };
+
+    private final BufferPool _pool = new BufferPool(SIZE, 16);
+    private Pipe _pipe;
+
+
+    @Before
+    public void setUp() throws IOException {
+        _pipe = Pipe.open();
+        _pipe.sink().configureBlocking(false);
+        _pipe.source().configureBlocking(false);
+    }
+
+
+    @After
+    public void tearDown() throws IOException {
+        _pipe.sink().close();
+        _pipe.source().close();
+    }
+
+
+    @Test(timeout=5000)
+    public void writeSpanningMoreThanQueueWakesTransport() throws Exception {
+
+        // ARRANGE
+        final Semaphore signalled = new Semaphore(0);
+        final BackpressureOutputStream out =
+            new BackpressureOutputStream(_pool, 4, new Runnable() {
+                @Override
+                public void run() { signalled.release(); }
+            });
+        final AtomicReference<Exception> failure =
+            new AtomicReference<Exception>();
+        final Thread transport = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!out.isFinished()) {
+                        signalled.acquire();
+                        while (out.hasPending()) {
+                            out.transferTo(_pipe.sink());
+                        }
+                    }
+                } catch (final Exception e) {
+                    failure.set(e);
+                }
+            }
+        };
+        transport.setDaemon(true);
+        transport.start();
+        final byte[] body = new byte[5*SIZE+17];
+        for (int i=0; i<body.length; i++) { body[i] = (byte) i; }
+
+        // ACT
+        out.write(body);
+        out.close();
+        transport.join(5000);
+
+        // ASSERT
+        assertFalse(transport.isAlive());
+        assertNull(failure.get());
+        assertArrayEquals(body, read(body.length));
+    }
+
+
+    @Test
+    public void listenerCalledWhenQueueDrains() throws Exception {
+
+        // ARRANGE
+        final AtomicInteger called = new AtomicInteger();
+        final BackpressureOutputStream out =
+            new BackpressureOutputStream(_pool, 2, NOTHING);
+        out.setWriteListener(new BackpressureOutputStream.WriteListener() {
+            @Override
+            public void onWritable() { called.incrementAndGet(); }
+        });
+        int writes = 0;
+        while (out.isReady()) { out.write(new byte[SIZE]); writes++; }
+
+        // ACT
+        final long sent = out.transferTo(_pipe.sink());
+
+        // ASSERT
+        assertEquals(2, writes);
+        assertEquals(2*SIZE, sent);
+        assertEquals(1, called.get());
+        assertTrue(out.isReady());
+        assertFalse(out.hasPending());
+    }
+
+
+    @Test(expected=IllegalStateException.class)
+    public void asyncWriteWhenNotReadyFails() throws Exception {
+
+        // ARRANGE
+        final BackpressureOutputStream out =
+            new BackpressureOutputStream(_pool, 1, NOTHING);
+        out.setWriteListener(new BackpressureOutputStream.WriteListener() {
+            @Override
+            public void onWritable() { /* No-op. */ }
+        });
+        out.write(new byte[SIZE]);
+
+        // ACT
+        out.write(new byte[SIZE]);
+    }
+
+
+    @Test(timeout=5000)
+    public void failWakesWaitingWriter() throws Exception {
+
+        // ARRANGE
+        final BackpressureOutputStream out =
+            new BackpressureOutputStream(_pool, 1, NOTHING);
+        final AtomicReference<Exception> failure =
+            new AtomicReference<Exception>();
+        final Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    out.write(new byte[3*SIZE]);
+                } catch (final Exception e) {
+                    failure.set(e);
+                }
+            }
+        };
+        writer.start();
+        while (Thread.State.WAITING!=writer.getState()) { Thread.sleep(1); }
+
+        // ACT
+        out.fail(new IOException("Connection reset.")); //$NON-NLS-1$
+        writer.join(5000);
+
+        // ASSERT
+        assertFalse(writer.isAlive());
+        assertTrue(failure.get() instanceof IOException);
+        assertFalse(out.hasPending());
+        try {
+            out.write(1);
+            fail();
+        } catch (final IOException e) {
+            // Expected.
+        }
+    }
+
+
+    @Test
+    public void flushQueuesPartialBuffer() throws Exception {
+
+        // ARRANGE
+        final AtomicInteger signalled = new AtomicInteger();
+        final BackpressureOutputStream out =
+            new BackpressureOutputStream(_pool, 2, new Runnable() {
+                @Override
+                public void run() { signalled.incrementAndGet(); }
+            });
+        out.write(new byte[] {1, 2, 3});
+
+        // ACT
+        out.flush();
+        out.transferTo(_pipe.sink());
+
+        // ASSERT
+        assertEquals(1, signalled.get());
+        assertArrayEquals(new byte[] {1, 2, 3}, read(3));
+    }
+
+
+    private byte[] read(final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (0>_pipe.source().read(buffer)) { break; }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,117 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+import com.johnstok.http.Header;
+
+
+/**
+ * Tests for the {@link ContinueRequest} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ContinueRequestTest {
+
+    private final ByteArrayOutputStream _connection =
+        new ByteArrayOutputStream();
+
+
+    @Test
+    public void continueSentOnceOnFirstRead() throws Exception {
+
+        // ARRANGE
+        final ContinueRequest request =
+            new ContinueRequest(expecting("HTTP/1.1"), _connection); //$NON-NLS-1$
+        assertTrue(request.isBodyWithheld());
+        assertEquals(0, _connection.size());
+
+        // ACT
+        request.getBody();
+        request.getBody();
+
+        // ASSERT
+        assertEquals(
+            "HTTP/1.1 100 Continue\r\n\r\n",                        //$NON-NLS-1$
+            _connection.toString("US-ASCII"));                      //$NON-NLS-1$
+        assertTrue(request.isContinueSent());
+        assertFalse(request.isBodyWithheld());
+    }
+
+
+    @Test
+    public void http10NeverSentContinue() throws Exception {
+
+        // ARRANGE
+        final ContinueRequest request =
+            new ContinueRequest(expecting("HTTP/1.0"), _connection); //$NON-NLS-1$
+        assertFalse(request.isBodyWithheld());
+
+        // ACT
+        request.getBody();
+
+        // ASSERT
+        assertEquals(0, _connection.size());
+        assertFalse(request.isContinueSent());
+    }
+
+
+    @Test
+    public void requestWithoutExpectationNotSentContinue() throws Exception {
+
+        // ARRANGE
+        final ContinueRequest request =
+            new ContinueRequest(
+                new StubRequest("PUT", "/"), _connection);          //$NON-NLS-1$ //$NON-NLS-2$
+        assertFalse(request.isBodyWithheld());
+
+        // ACT
+        request.getBody();
+
+        // ASSERT
+        assertEquals(0, _connection.size());
+        assertFalse(request.isContinueSent());
+    }
+
+
+    @Test
+    public void unreadBodyWithheld() throws Exception {
+
+        // ACT
+        final ContinueRequest request =
+            new ContinueRequest(expecting("HTTP/1.1"), _connection); //$NON-NLS-1$
+
+        // ASSERT
+        assertTrue(ContinueRequest.expectsContinue(request));
+        assertTrue(request.isBodyWithheld());
+        assertFalse(request.isContinueSent());
+        assertEquals(0, _connection.size());
+    }
+
+
+    private static Request expecting(final String version) {
+        return new StubRequest("PUT", "/") {                        //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            public String getVersion() { return version; }
+        }.header(Header.EXPECT, "100-continue");                    //$NON-NLS-1$
+    }
+}
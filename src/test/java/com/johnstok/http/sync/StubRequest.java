@@ -0,0 +1,134 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * An in-memory request for tests.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class StubRequest extends AbstractRequest {
+
+    private final Map<String, List<String>> _headers =
+        new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private final String            _method;
+    private final String            _uri;
+    private InetSocketAddress       _client =
+        new InetSocketAddress("127.0.0.1", 50000);                  //$NON-NLS-1$
+    private InputStream             _body = new ByteArrayInputStream(new byte[0]);
+
+
+    /**
+     * Constructor.
+     *
+     * @param method The request method.
+     * @param uri    The request URI.
+     */
+    public StubRequest(final String method, final String uri) {
+        super(new InetSocketAddress("127.0.0.1", 80),               //$NON-NLS-1$
+              StandardCharsets.UTF_8);
+        _method = method;
+        _uri = uri;
+    }
+
+
+    /**
+     * Add a header line.
+     *
+     * @param name  The header name.
+     * @param value The header value.
+     *
+     * @return This request.
+     */
+    public StubRequest header(final String name, final String value) {
+        List<String> values = _headers.get(name);
+        if (null==values) {
+            values = new ArrayList<String>();
+            _headers.put(name, values);
+        }
+        values.add(value);
+        return this;
+    }
+
+
+    /**
+     * Mutator.
+     *
+     * @param client The client address.
+     *
+     * @return This request.
+     */
+    public StubRequest client(final InetSocketAddress client) {
+        _client = client;
+        return this;
+    }
+
+
+    /**
+     * Mutator.
+     *
+     * @param body The request body.
+     *
+     * @return This request.
+     */
+    public StubRequest body(final byte[] body) {
+        _body = new ByteArrayInputStream(body);
+        return this;
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public String getRequestUri() { return _uri; }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isConfidential() { return false; }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMethod() { return _method; }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getVersion() { return "HTTP/1.1"; }               //$NON-NLS-1$
+
+    /** {@inheritDoc} */
+    @Override
+    public InetSocketAddress getClientAddress() { return _client; }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, List<String>> getHeaders() { return _headers; }
+
+    /** {@inheritDoc} */
+    @Override
+    public InputStream getBody() { return _body; }
+}
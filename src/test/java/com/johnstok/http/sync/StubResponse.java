@@ -0,0 +1,86 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * An in-memory response for tests.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class StubResponse extends AbstractResponse {
+
+    private final Map<String, String>   _headers =
+        new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private final ByteArrayOutputStream _body = new ByteArrayOutputStream();
+    private int                         _status = 200;
+    private String                      _reason = "OK";             //$NON-NLS-1$
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStatus(final int statusCode, final String reasonPhrase) {
+        if (isCommitted()) { throw new IllegalStateException(); }
+        _status = statusCode;
+        _reason = reasonPhrase;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getStatusCode() { return _status; }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getReasonPhrase() { return _reason; }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setHeader(final String name, final String value) {
+        if (isCommitted()) { throw new IllegalStateException(); }
+        _headers.put(name, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getHeader(final String name) { return _headers.get(name); }
+
+    /** {@inheritDoc} */
+    @Override
+    public OutputStream getBody() throws IOException {
+        if (!isCommitted()) { commit(); }
+        return _body;
+    }
+
+
+    /**
+     * Accessor.
+     *
+     * @return The bytes written to the body.
+     */
+    public byte[] getBytes() {
+        return _body.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+import com.johnstok.http.sync.filter.AccessLog.Format;
+
+
+/**
+ * Tests for the {@link AccessLogFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class AccessLogFilterTest {
+
+    private final ByteArrayOutputStream _file = new ByteArrayOutputStream();
+    private final AccessLog _log =
+        new AccessLog(Channels.newChannel(_file), Format.COMMON, 16, 1);
+
+
+    @Test
+    public void recordsStatusAndBodySize() throws Exception {
+
+        // ARRANGE
+        final AccessLogFilter filter = new AccessLogFilter(new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response response) throws IOException {
+                response.setStatus(201, "Created");                 //$NON-NLS-1$
+                response.getBody().write(new byte[] {1, 2, 3, 4, 5});
+            }
+        }, _log);
+
+        // ACT
+        filter.handle(new StubRequest("POST", "/items"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+        _log.close();
+
+        // ASSERT
+        assertTrue(text().endsWith("\"POST /items HTTP/1.1\" 201 5\n")); //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void recordsHttpExceptionStatus() throws Exception {
+
+        // ARRANGE
+        final AccessLogFilter filter = new AccessLogFilter(new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response response) {
+                throw new ClientHttpException(Status.NOT_FOUND);
+            }
+        }, _log);
+
+        // ACT
+        try {
+            filter.handle(new StubRequest("GET", "/x"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+            fail();
+        } catch (final ClientHttpException e) {
+            // Expected.
+        }
+        _log.close();
+
+        // ASSERT
+        assertTrue(text().endsWith("\"GET /x HTTP/1.1\" 404 -\n")); //$NON-NLS-1$
+    }
+
+
+    private String text() {
+        return new String(_file.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,202 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import com.johnstok.http.sync.filter.AccessLog.Format;
+
+
+/**
+ * Tests for the {@link AccessLog} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class AccessLogTest {
+
+    private static final InetSocketAddress CLIENT =
+        new InetSocketAddress("10.0.0.1", 4000);                    //$NON-NLS-1$
+
+    private final ByteArrayOutputStream _file = new ByteArrayOutputStream();
+
+
+    @Test
+    public void commonFormatEscapesRequestLine() throws Exception {
+
+        // ARRANGE
+        final AccessLog log =
+            new AccessLog(Channels.newChannel(_file), Format.COMMON, 16, 1);
+
+        // ACT
+        log.log(CLIENT, "GET", "/a\"b\n1.1.1.1 - - [forged]", "HTTP/1.1", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                200, 5, null, null, 0);
+        log.close();
+
+        // ASSERT
+        final String[] lines = lines();
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].startsWith("10.0.0.1 - - ["));          //$NON-NLS-1$
+        assertTrue(
+            lines[0].endsWith(
+                "] \"GET /a\\\"b\\x0a1.1.1.1 - - [forged] HTTP/1.1\" 200 5")); //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void combinedFormatQuotesHeaders() throws Exception {
+
+        // ARRANGE
+        final AccessLog log =
+            new AccessLog(Channels.newChannel(_file), Format.COMBINED, 16, 1);
+
+        // ACT
+        log.log(null, "GET", "/", "HTTP/1.1", 404, 0, null, "x\"y", 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        log.close();
+
+        // ASSERT
+        assertTrue(lines()[0].endsWith(" 404 - \"-\" \"x\\\"y\"")); //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void closeWritesEveryRecordFromConcurrentThreads() throws Exception {
+
+        // ARRANGE
+        final AccessLog log =
+            new AccessLog(Channels.newChannel(_file), Format.JSON, 1<<16, 1);
+        final Thread[] threads = new Thread[4];
+        for (int t=0; t<threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i=0; i<5000; i++) {
+                        log.log(CLIENT, "GET", "/", "HTTP/1.1", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                                200, i, null, null, 0);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread t : threads) { t.join(); }
+
+        // ACT
+        log.close();
+
+        // ASSERT
+        assertEquals(0, log.getDropped());
+        assertEquals(20000, log.getWritten());
+        assertEquals(20000, lines().length);
+    }
+
+
+    @Test
+    public void fullBufferDropsRecords() throws Exception {
+
+        // ARRANGE
+        final AccessLog log =
+            new AccessLog(Channels.newChannel(_file), Format.COMMON, 2, 1);
+
+        // ACT
+        for (int i=0; i<10000; i++) {
+            log.log(CLIENT, "GET", "/", "HTTP/1.1", 200, 1, null, null, 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        log.close();
+
+        // ASSERT
+        assertEquals(10000, log.getWritten()+log.getDropped());
+        assertEquals(log.getWritten(), lines().length);
+    }
+
+
+    @Test
+    public void writeFailureReportedAndChannelClosed() throws Exception {
+
+        // ARRANGE
+        final FailingChannel channel = new FailingChannel();
+        final AccessLog log = new AccessLog(channel, Format.COMMON, 16, 1);
+        log.log(CLIENT, "GET", "/", "HTTP/1.1", 200, 1, null, null, 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        while (null==log.getFailure()) { Thread.sleep(1); }
+
+        // ACT
+        log.log(CLIENT, "GET", "/", "HTTP/1.1", 200, 1, null, null, 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        try {
+            log.close();
+            fail();
+
+        // ASSERT
+        } catch (final IOException e) {
+            assertSame(log.getFailure(), e.getCause());
+        }
+        assertFalse(channel.isOpen());
+        assertEquals(1, log.getDropped());
+    }
+
+
+    @Test
+    public void logAfterCloseIgnored() throws Exception {
+
+        // ARRANGE
+        final AccessLog log =
+            new AccessLog(Channels.newChannel(_file), Format.COMMON, 16, 1);
+        log.close();
+
+        // ACT
+        log.log(CLIENT, "GET", "/", "HTTP/1.1", 200, 1, null, null, 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        log.close();
+
+        // ASSERT
+        assertEquals(0, log.getWritten());
+        assertEquals(0, _file.size());
+    }
+
+
+    private String[] lines() {
+        final String text = new String(_file.toByteArray(), StandardCharsets.UTF_8);
+        return text.isEmpty() ? new String[0] : text.split("\n");   //$NON-NLS-1$
+    }
+
+
+    private static final class FailingChannel implements WritableByteChannel {
+
+        private volatile boolean _open = true;
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            throw new IOException("Disk full.");                    //$NON-NLS-1$
+        }
+
+        @Override
+        public boolean isOpen() {
+            return _open;
+        }
+
+        @Override
+        public void close() {
+            _open = false;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Header;
+import com.johnstok.http.ServerHttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.limit.ConcurrencyLimiter;
+import com.johnstok.http.limit.LimitAlgorithm;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link ConcurrencyLimitFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ConcurrencyLimitFilterTest {
+
+    private final List<Boolean>  _samples = new ArrayList<Boolean>();
+    private int                  _limit = 10;
+    private final LimitAlgorithm _algorithm = new LimitAlgorithm() {
+        @Override
+        public int getLimit() { return _limit; }
+
+        @Override
+        public void onSample(final long rtt,
+                             final int inFlight,
+                             final boolean dropped) {
+            _samples.add(Boolean.valueOf(dropped));
+        }
+    };
+    private final ConcurrencyLimiter _limiter =
+        new ConcurrencyLimiter(_algorithm);
+    private int _handled;
+
+
+    @Test
+    public void refusedRequestAnsweredImmediately() throws Exception {
+
+        // ARRANGE
+        _limit = 0;
+        final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(
+                status(200), _limiter, partition(), 7);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/"), response);       //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertEquals(503, response.getStatusCode());
+        assertEquals("7", response.getHeader(Header.RETRY_AFTER));  //$NON-NLS-1$
+        assertEquals(0, _handled);
+        assertEquals(1, _limiter.getRejected());
+        assertTrue(_samples.isEmpty());
+    }
+
+
+    @Test
+    public void successReported() throws Exception {
+
+        // ARRANGE
+        final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(status(200), _limiter);
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertEquals(1, _handled);
+        assertEquals(Collections.singletonList(Boolean.FALSE), _samples);
+        assertEquals(0, _limiter.getInFlight());
+    }
+
+
+    @Test
+    public void overloadStatusReportedAsDropped() throws Exception {
+        for (final int status : new int[] {503, 504}) {
+
+            // ARRANGE
+            _samples.clear();
+            final ConcurrencyLimitFilter filter =
+                new ConcurrencyLimitFilter(status(status), _limiter);
+
+            // ACT
+            filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // ASSERT
+            assertEquals(Collections.singletonList(Boolean.TRUE), _samples);
+            assertEquals(0, _limiter.getInFlight());
+        }
+    }
+
+
+    @Test
+    public void overloadExceptionReportedAsDropped() throws Exception {
+        for (final Status status : new Status[] {Status.SERVICE_UNAVAILABLE,
+                                                 Status.GATEWAY_TIMEOUT}) {
+
+            // ARRANGE
+            _samples.clear();
+            final ServerHttpException thrown = new ServerHttpException(status);
+            final ConcurrencyLimitFilter filter =
+                new ConcurrencyLimitFilter(throwing(thrown), _limiter);
+
+            // ACT
+            try {
+                filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+                fail();
+
+            // ASSERT
+            } catch (final ServerHttpException e) {
+                assertSame(thrown, e);
+            }
+            assertEquals(Collections.singletonList(Boolean.TRUE), _samples);
+            assertEquals(0, _limiter.getInFlight());
+        }
+    }
+
+
+    @Test
+    public void otherHttpExceptionReportedAsSuccess() throws Exception {
+
+        // ARRANGE
+        final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(
+                throwing(new ClientHttpException(Status.NOT_FOUND)), _limiter);
+
+        // ACT
+        try {
+            filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.NOT_FOUND, e.getStatus());
+        }
+        assertEquals(Collections.singletonList(Boolean.FALSE), _samples);
+        assertEquals(0, _limiter.getInFlight());
+    }
+
+
+    @Test
+    public void runtimeExceptionReleasesPermitUnsampled() throws Exception {
+
+        // ARRANGE
+        _limit = 1;
+        final IllegalStateException thrown = new IllegalStateException();
+        final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(throwing(thrown), _limiter);
+
+        // ACT
+        try {
+            filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+            fail();
+
+        // ASSERT
+        } catch (final IllegalStateException e) {
+            assertSame(thrown, e);
+        }
+        assertTrue(_samples.isEmpty());
+        assertEquals(0, _limiter.getInFlight());
+        assertNotNull(_limiter.acquire(null));
+    }
+
+
+    @Test
+    public void ioExceptionReleasesPermitUnsampled() throws Exception {
+
+        // ARRANGE
+        _limit = 1;
+        final IOException thrown = new IOException();
+        final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(throwing(thrown), _limiter);
+
+        // ACT
+        try {
+            filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+            fail();
+
+        // ASSERT
+        } catch (final IOException e) {
+            assertSame(thrown, e);
+        }
+        assertTrue(_samples.isEmpty());
+        assertEquals(0, _limiter.getInFlight());
+        assertNotNull(_limiter.acquire(null));
+    }
+
+
+    @Test
+    public void requestsRoutedToPartitions() throws Exception {
+
+        // ARRANGE
+        final ConcurrencyLimiter limiter =
+            new ConcurrencyLimiter(
+                _algorithm, Collections.singletonMap("api", Double.valueOf(0.5))); //$NON-NLS-1$
+        final int[] inFlight = new int[2];
+        final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(
+                new Handler() {
+                    @Override
+                    public void handle(final Request request,
+                                       final Response response) {
+                        inFlight[0] = limiter.getInFlight("api");   //$NON-NLS-1$
+                        inFlight[1] = limiter.getInFlight(null);
+                    }
+                },
+                limiter,
+                partition(),
+                1);
+
+        // ACT
+        filter.handle(
+            new StubRequest("GET", "/").header("X-Partition", "api"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            new StubResponse());
+
+        // ASSERT
+        assertArrayEquals(new int[] {1, 0}, inFlight);
+        assertEquals(0, limiter.getInFlight("api"));                //$NON-NLS-1$
+    }
+
+
+    private static Function<Request, String> partition() {
+        return new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                return request.getHeader("X-Partition");            //$NON-NLS-1$
+            }
+        };
+    }
+
+
+    private Handler status(final int status) {
+        return new Handler() {
+            @Override
+            public void handle(final Request request, final Response response) {
+                _handled++;
+                response.setStatus(status, "Status");               //$NON-NLS-1$
+            }
+        };
+    }
+
+
+    private static Handler throwing(final Exception e) {
+        return new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response response) throws IOException {
+                if (e instanceof IOException) { throw (IOException) e; }
+                throw (RuntimeException) e;
+            }
+        };
+    }
+}
@@ -0,0 +1,181 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.johnstok.http.Header;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link DrainFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class DrainFilterTest {
+
+    private static final Handler STATUS_ONLY = new Handler() {
+        @Override
+        public void handle(final Request request, final Response response) {
+            response.setStatus(204, "No Content");                  //$NON-NLS-1$
+        }
+    };
+
+
+    @Test
+    public void responsesKeptAliveUntilDraining() throws Exception {
+
+        // ARRANGE
+        final DrainFilter filter = new DrainFilter(STATUS_ONLY);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/"), response);       //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertNull(response.getHeader(Header.CONNECTION));
+        assertFalse(filter.isDraining());
+    }
+
+
+    @Test
+    public void statusOnlyResponseClosedWhileDraining() throws Exception {
+
+        // ARRANGE
+        final DrainFilter filter = new DrainFilter(STATUS_ONLY);
+        assertTrue(filter.drain(0, TimeUnit.SECONDS));
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/"), response);       //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertEquals("close", response.getHeader(Header.CONNECTION)); //$NON-NLS-1$
+        assertEquals(1, filter.getCompleted());
+    }
+
+
+    @Test(timeout=5000)
+    public void inFlightRequestMarkedAndAwaited() throws Exception {
+
+        // ARRANGE
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StubResponse response = new StubResponse();
+        final DrainFilter filter = new DrainFilter(new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response r) {
+                started.countDown();
+                await(release);
+                r.setHeader(Header.CONNECTION, "keep-alive");       //$NON-NLS-1$
+            }
+        });
+        final Thread t = handleAsync(filter, response);
+        started.await();
+        assertEquals(1, filter.getInFlight());
+
+        // ACT
+        final boolean[] drained = new boolean[1];
+        final Thread drainer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    drained[0] = filter.drain(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        drainer.start();
+        while (!filter.isDraining()) { Thread.yield(); }
+        release.countDown();
+        drainer.join();
+        t.join();
+
+        // ASSERT
+        assertTrue(drained[0]);
+        assertEquals("close", response.getHeader(Header.CONNECTION)); //$NON-NLS-1$
+        assertEquals(0, filter.getInFlight());
+    }
+
+
+    @Test(timeout=5000)
+    public void abandonedRequestCountedOnce() throws Exception {
+
+        // ARRANGE
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DrainFilter filter = new DrainFilter(new Handler() {
+            @Override
+            public void handle(final Request request, final Response r) {
+                started.countDown();
+                while (0<release.getCount()) { await(release); }
+            }
+        });
+        final Thread t = handleAsync(filter, new StubResponse());
+        started.await();
+
+        // ACT
+        final boolean first = filter.drain(10, TimeUnit.MILLISECONDS);
+        final boolean second = filter.drain(10, TimeUnit.MILLISECONDS);
+        release.countDown();
+        t.join();
+
+        // ASSERT
+        assertFalse(first);
+        assertFalse(second);
+        assertEquals(1, filter.getAbandoned());
+        assertTrue(filter.drain(0, TimeUnit.SECONDS));
+    }
+
+
+    private static Thread handleAsync(final DrainFilter filter,
+                                      final Response response) {
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    filter.handle(new StubRequest("GET", "/"), response); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        t.start();
+        return t;
+    }
+
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            // Ignore: the handler under test outlives an interrupt.
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static com.johnstok.http.event.EventRecorder.*;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import jdk.jfr.consumer.RecordedEvent;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link EventFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class EventFilterTest {
+
+    private static final String HANDLER    = "com.johnstok.http.Handler"; //$NON-NLS-1$
+    private static final String BODY_WRITE = "com.johnstok.http.BodyWrite"; //$NON-NLS-1$
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void handlerAndBodyRecorded() throws Exception {
+
+        // ARRANGE
+        final EventFilter filter =
+            new EventFilter(
+                new Handler() {
+                    @Override
+                    public void handle(final Request request,
+                                       final Response response)
+                    throws IOException {
+                        response.setStatus(201, "Created");         //$NON-NLS-1$
+                        final OutputStream first = response.getBody();
+                        first.write(new byte[3]);
+                        sleep(50);
+                        try (OutputStream second = response.getBody()) {
+                            second.write(new byte[2]);
+                        }
+                    }
+                },
+                new Function<Request, String>() {
+                    @Override
+                    public String apply(final Request request) {
+                        return "/users/{id}";                       //$NON-NLS-1$
+                    }
+                });
+
+        // ACT
+        final List<RecordedEvent> events = record(new Action() {
+            @Override
+            public void run() throws Exception {
+                filter.handle(
+                    new StubRequest("POST", "/users/7?x=y"),        //$NON-NLS-1$ //$NON-NLS-2$
+                    new StubResponse());
+            }
+        }, HANDLER, BODY_WRITE);
+
+        // ASSERT
+        final List<RecordedEvent> handler = named(events, HANDLER);
+        assertEquals(1, handler.size());
+        assertEquals("POST", handler.get(0).getString("method"));   //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals("/users/{id}", handler.get(0).getString("path")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(201, handler.get(0).getInt("status"));         //$NON-NLS-1$
+        assertEquals(5, handler.get(0).getLong("bytesOut"));        //$NON-NLS-1$
+
+        final List<RecordedEvent> body = named(events, BODY_WRITE);
+        assertEquals(
+            "One event should span every call to getBody().",       //$NON-NLS-1$
+            1,
+            body.size());
+        assertEquals(5, body.get(0).getLong("bytes"));              //$NON-NLS-1$
+        assertTrue(50<=body.get(0).getDuration().toMillis());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void failureRecordedWithDefaultPath() throws Exception {
+
+        // ARRANGE
+        final EventFilter filter = new EventFilter(new Handler() {
+            @Override
+            public void handle(final Request request,
+                               final Response response) {
+                throw new ClientHttpException(Status.NOT_FOUND);
+            }
+        });
+
+        // ACT
+        final List<RecordedEvent> events = record(new Action() {
+            @Override
+            public void run() throws Exception {
+                try {
+                    filter.handle(
+                        new StubRequest("GET", "/a/b?c=d"),         //$NON-NLS-1$ //$NON-NLS-2$
+                        new StubResponse());
+                    fail();
+                } catch (final ClientHttpException e) {
+                    // Expected.
+                }
+            }
+        }, HANDLER, BODY_WRITE);
+
+        // ASSERT
+        assertEquals(1, events.size());
+        assertEquals("/a/b", events.get(0).getString("path"));      //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(404, events.get(0).getInt("status"));          //$NON-NLS-1$
+        assertEquals(0, events.get(0).getLong("bytesOut"));         //$NON-NLS-1$
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void responseNotWrappedWhenDisabled() throws Exception {
+
+        // ARRANGE
+        final AtomicReference<Response> seen = new AtomicReference<Response>();
+        final StubResponse response = new StubResponse();
+        final EventFilter filter = new EventFilter(new Handler() {
+            @Override
+            public void handle(final Request request, final Response r) {
+                seen.set(r);
+            }
+        });
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/"), response);       //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertSame(response, seen.get());
+    }
+
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Header;
+import com.johnstok.http.Status;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link ExpectationFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ExpectationFilterTest {
+
+    private static final ExpectationFilter.Check UNAUTHORIZED =
+        new ExpectationFilter.Check() {
+            @Override
+            public Status check(final Request request) {
+                return
+                    (null==request.getHeader(Header.AUTHORIZATION))
+                        ? Status.UNAUTHORIZED
+                        : null;
+            }
+        };
+
+    private int _handled;
+    private final Handler _handler = new Handler() {
+        @Override
+        public void handle(final Request request, final Response response) {
+            _handled++;
+            response.setStatus(204, "No Content");                  //$NON-NLS-1$
+        }
+    };
+
+
+    @Test
+    public void declaredBodyOverLimitRejected() throws Exception {
+
+        // ARRANGE
+        final ExpectationFilter filter = new ExpectationFilter(_handler, 10);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(put("11"), response);                         //$NON-NLS-1$
+
+        // ASSERT
+        assertEquals(413, response.getStatusCode());
+        assertEquals("close", response.getHeader(Header.CONNECTION)); //$NON-NLS-1$
+        assertEquals(0, _handled);
+    }
+
+
+    @Test
+    public void checkStatusReturned() throws Exception {
+
+        // ARRANGE
+        final ExpectationFilter filter =
+            new ExpectationFilter(_handler, 10, UNAUTHORIZED);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(put("5"), response);                          //$NON-NLS-1$
+
+        // ASSERT
+        assertEquals(401, response.getStatusCode());
+        assertEquals("close", response.getHeader(Header.CONNECTION)); //$NON-NLS-1$
+        assertEquals(0, _handled);
+    }
+
+
+    @Test
+    public void unknownExpectationFails() throws Exception {
+
+        // ARRANGE
+        final ExpectationFilter filter = new ExpectationFilter(_handler, 10);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(
+            new StubRequest("PUT", "/")                             //$NON-NLS-1$ //$NON-NLS-2$
+                .header(Header.EXPECT, "100-continue, x-fast=yes"), //$NON-NLS-1$
+            response);
+
+        // ASSERT
+        assertEquals(417, response.getStatusCode());
+        assertEquals("close", response.getHeader(Header.CONNECTION)); //$NON-NLS-1$
+        assertEquals(0, _handled);
+    }
+
+
+    @Test
+    public void acceptedRequestPassedOn() throws Exception {
+
+        // ARRANGE
+        final ExpectationFilter filter =
+            new ExpectationFilter(_handler, 10, UNAUTHORIZED);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(
+            put("10").header(Header.AUTHORIZATION, "Basic Zm9vOmJhcg=="), //$NON-NLS-1$ //$NON-NLS-2$
+            response);
+
+        // ASSERT
+        assertEquals(204, response.getStatusCode());
+        assertNull(response.getHeader(Header.CONNECTION));
+        assertEquals(1, _handled);
+    }
+
+
+    @Test
+    public void requestWithoutExpectationPassedOn() throws Exception {
+
+        // ARRANGE
+        final ExpectationFilter filter =
+            new ExpectationFilter(_handler, 10, UNAUTHORIZED);
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(
+            new StubRequest("PUT", "/")                             //$NON-NLS-1$ //$NON-NLS-2$
+                .header(Header.CONTENT_LENGTH, "100"),              //$NON-NLS-1$
+            response);
+
+        // ASSERT
+        assertEquals(204, response.getStatusCode());
+        assertEquals(1, _handled);
+    }
+
+
+    @Test
+    public void negativeContentLengthRejected() throws Exception {
+
+        // ARRANGE
+        final ExpectationFilter filter = new ExpectationFilter(_handler, 10);
+
+        // ACT
+        try {
+            filter.handle(put("-1"), new StubResponse());           //$NON-NLS-1$
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.BAD_REQUEST, e.getStatus());
+        }
+        assertEquals(0, _handled);
+    }
+
+
+    private static StubRequest put(final String contentLength) {
+        return
+            new StubRequest("PUT", "/")                             //$NON-NLS-1$ //$NON-NLS-2$
+                .header(Header.EXPECT, "100-continue")              //$NON-NLS-1$
+                .header(Header.CONTENT_LENGTH, contentLength);
+    }
+}
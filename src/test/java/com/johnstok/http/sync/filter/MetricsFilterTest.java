@@ -0,0 +1,104 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+import org.junit.Test;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link MetricsFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class MetricsFilterTest {
+
+    private static final Handler OK = new Handler() {
+        @Override
+        public void handle(final Request request, final Response response) {
+            response.setStatus(200, "OK");                          //$NON-NLS-1$
+        }
+    };
+
+    private static final Function<Request, String> BY_URI =
+        new Function<Request, String>() {
+            @Override
+            public String apply(final Request request) {
+                return request.getRequestUri();
+            }
+        };
+
+
+    @Test
+    public void routesBeyondLimitFoldedIntoOther() throws Exception {
+
+        // ARRANGE
+        final MetricsFilter filter = new MetricsFilter(OK, BY_URI, 2);
+
+        // ACT
+        for (int i=0; i<100; i++) {
+            filter.handle(
+                new StubRequest("GET", "/users/"+i), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        // ASSERT
+        final Set<String> routes = new HashSet<String>();
+        long others = 0;
+        for (final RouteStatistics r : filter.getRoutes()) {
+            if (0!=r.getStatus()) { continue; }
+            routes.add(r.getRoute());
+            if (MetricsFilter.OTHER_ROUTE.equals(r.getRoute())) {
+                others = r.getCount();
+            }
+        }
+        assertEquals(3, routes.size());
+        assertEquals(98, others);
+    }
+
+
+    @Test
+    public void knownRouteRecordedAfterLimit() throws Exception {
+
+        // ARRANGE
+        final MetricsFilter filter = new MetricsFilter(OK, BY_URI, 1);
+        filter.handle(new StubRequest("GET", "/a"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+        filter.handle(new StubRequest("GET", "/b"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/a"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        for (final RouteStatistics r : filter.getRoutes()) {
+            if (0==r.getStatus() && "/a".equals(r.getRoute())) {    //$NON-NLS-1$
+                assertEquals(2, r.getCount());
+                return;
+            }
+        }
+        fail();
+    }
+}
@@ -0,0 +1,104 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.filter;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.Test;
+import com.johnstok.http.Header;
+import com.johnstok.http.limit.RateLimiter;
+import com.johnstok.http.sync.Handler;
+import com.johnstok.http.sync.Request;
+import com.johnstok.http.sync.Response;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link RateLimitFilter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class RateLimitFilterTest {
+
+    private static final String XFF = "X-Forwarded-For";            //$NON-NLS-1$
+
+    private int _handled;
+    private final Handler _handler = new Handler() {
+        @Override
+        public void handle(final Request request, final Response response) {
+            _handled++;
+        }
+    };
+
+
+    @Test
+    public void forwardedForUsesLastLine() {
+
+        // ARRANGE
+        final Function<Request, String> key = RateLimitFilter.header(XFF);
+        final StubRequest request =
+            new StubRequest("GET", "/")                             //$NON-NLS-1$ //$NON-NLS-2$
+                .header(XFF, "6.6.6.6")                             //$NON-NLS-1$
+                .header(XFF, "1.1.1.1, 10.0.0.7");                  //$NON-NLS-1$
+
+        // ACT
+        final String actual = key.apply(request);
+
+        // ASSERT
+        assertEquals("10.0.0.7", actual);                           //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void missingHeaderFallsBackToClientAddress() {
+
+        // ARRANGE
+        final Function<Request, String> key = RateLimitFilter.header(XFF);
+
+        // ACT
+        final String actual = key.apply(new StubRequest("GET", "/")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertEquals("127.0.0.1", actual);                          //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void excessRequestRejectedWithRetryAfter() throws Exception {
+
+        // ARRANGE
+        final RateLimitFilter filter =
+            new RateLimitFilter(
+                _handler,
+                new RateLimiter(1, 1, 100, 1, TimeUnit.MINUTES));
+        filter.handle(new StubRequest("GET", "/"), new StubResponse()); //$NON-NLS-1$ //$NON-NLS-2$
+        final StubResponse response = new StubResponse();
+
+        // ACT
+        filter.handle(new StubRequest("GET", "/"), response);       //$NON-NLS-1$ //$NON-NLS-2$
+
+        // ASSERT
+        assertEquals(1, _handled);
+        assertEquals(429, response.getStatusCode());
+        assertEquals("1", response.getHeader(Header.RETRY_AFTER));  //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,61 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.handler;
+
+import static org.junit.Assert.*;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import com.johnstok.http.sync.StubRequest;
+import com.johnstok.http.sync.StubResponse;
+
+
+/**
+ * Tests for the {@link HelloWorldHandler} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class HelloWorldHandlerTest {
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void bodyWrittenOnEveryRequest() throws Exception {
+        for (int i=0; i<2; i++) {
+
+            // ARRANGE
+            final StubResponse response = new StubResponse();
+
+            // ACT
+            new HelloWorldHandler().handle(
+                new StubRequest("GET", "/"), response);             //$NON-NLS-1$ //$NON-NLS-2$
+
+            // ASSERT
+            assertEquals(
+                "text/plain;charset=utf-8",                         //$NON-NLS-1$
+                response.getHeader("Content-Type"));                //$NON-NLS-1$
+            assertEquals(
+                "Hello World!",                                     //$NON-NLS-1$
+                new String(response.getBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Status;
+import com.johnstok.http.sync.StubRequest;
+
+
+/**
+ * Tests for the {@link LimitedInputStream} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class LimitedInputStreamTest {
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void bodyWithinLimitRead() throws Exception {
+
+        // ARRANGE
+        final LimitedInputStream in =
+            new LimitedInputStream(new ByteArrayInputStream(new byte[10]), 10);
+
+        // ACT
+        final int first = in.read();
+        final int rest  = in.read(new byte[20], 0, 20);
+
+        // ASSERT
+        assertEquals(0, first);
+        assertEquals(9, rest);
+        assertEquals(-1, in.read());
+        assertEquals(10, in.getCount());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void declaredLengthTooLarge() throws Exception {
+
+        // ARRANGE
+        final StubRequest request =
+            new StubRequest("POST", "/")                            //$NON-NLS-1$ //$NON-NLS-2$
+                .header("Content-Length", "11")                     //$NON-NLS-1$ //$NON-NLS-2$
+                .body(new byte[11]);
+
+        // ACT
+        try {
+            LimitedInputStream.body(request, 10);
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.REQUEST_ENTITY_TOO_LARGE, e.getStatus());
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void streamedBodyTooLarge() throws Exception {
+
+        // ARRANGE
+        final InputStream in =
+            LimitedInputStream.body(
+                new StubRequest("POST", "/")                        //$NON-NLS-1$ //$NON-NLS-2$
+                    .body(new byte[11]),
+                10);
+
+        // ACT
+        try {
+            while (0<=in.read(new byte[4])) { /* Consume. */ }
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.REQUEST_ENTITY_TOO_LARGE, e.getStatus());
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void skipCounted() throws Exception {
+
+        // ARRANGE
+        final LimitedInputStream in =
+            new LimitedInputStream(new ByteArrayInputStream(new byte[11]), 10);
+
+        // ACT
+        try {
+            in.skip(11);
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.REQUEST_ENTITY_TOO_LARGE, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import com.johnstok.http.ClientHttpException;
+import com.johnstok.http.Status;
+
+
+/**
+ * Tests for the {@link StringBodyReader} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class StringBodyReaderTest {
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void declaredBodyRead() throws Exception {
+
+        // ARRANGE
+        final StringBuilder text = new StringBuilder();
+        while (text.length()<100000) { text.append("h\u00e9llo "); } //$NON-NLS-1$
+        final byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        // ACT
+        final String read =
+            new StringBodyReader(
+                StandardCharsets.UTF_8, body.length, Long.MAX_VALUE)
+                .read(new ByteArrayInputStream(body));
+
+        // ASSERT
+        assertEquals(text.toString(), read);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void declaredLengthTooLarge() throws Exception {
+
+        // ARRANGE
+        final StringBodyReader reader =
+            new StringBodyReader(StandardCharsets.UTF_8, 11, 10);
+
+        // ACT
+        try {
+            reader.read(new ByteArrayInputStream(new byte[0]));
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.REQUEST_ENTITY_TOO_LARGE, e.getStatus());
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void streamedBodyTooLarge() throws Exception {
+
+        // ARRANGE
+        final StringBodyReader reader =
+            new StringBodyReader(StandardCharsets.UTF_8, -1, 10);
+
+        // ACT
+        try {
+            reader.read(new ByteArrayInputStream(new byte[11]));
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.REQUEST_ENTITY_TOO_LARGE, e.getStatus());
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void truncatedBodyRejected() throws Exception {
+
+        // ARRANGE
+        final StringBodyReader reader =
+            new StringBodyReader(
+                StandardCharsets.UTF_8,
+                ByteArrayBodyReader.MAX_ARRAY,
+                Long.MAX_VALUE);
+
+        // ACT
+        try {
+            reader.read(new ByteArrayInputStream(new byte[10]));
+            fail();
+
+        // ASSERT
+        } catch (final ClientHttpException e) {
+            assertEquals(Status.BAD_REQUEST, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.reader;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Supplier;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.helpers.DefaultHandler;
+
+
+/**
+ * Tests for the XML body readers.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class XMLBodyReaderTest {
+
+    private static final String SECRET = "top-secret";              //$NON-NLS-1$
+
+    private static File   _secret;
+    private static String _xxe;
+
+
+    @BeforeClass
+    public static void createSecret() throws IOException {
+        _secret = File.createTempFile("xxe", ".txt");               //$NON-NLS-1$ //$NON-NLS-2$
+        Files.write(_secret.toPath(), SECRET.getBytes(StandardCharsets.UTF_8));
+        _xxe =
+            "<?xml version=\"1.0\"?>"                               //$NON-NLS-1$
+            + "<!DOCTYPE r [<!ENTITY x SYSTEM \""                   //$NON-NLS-1$
+            + _secret.toURI()
+            + "\">]><r>&x;</r>";                                    //$NON-NLS-1$
+    }
+
+
+    @AfterClass
+    public static void deleteSecret() {
+        _secret.delete();
+    }
+
+
+    @Test
+    public void domReadsDocument() throws Exception {
+
+        // ACT
+        final Document d = new XMLDOMBodyReader().read(body("<r>a</r>"));
+
+        // ASSERT
+        assertEquals("a", d.getDocumentElement().getTextContent());
+    }
+
+
+    @Test
+    public void domRejectsExternalEntity() throws Exception {
+
+        // ARRANGE
+        final XMLDOMBodyReader reader = new XMLDOMBodyReader();
+
+        // ACT
+        try {
+            final Document d = reader.read(body(_xxe));
+            assertFalse(d.getDocumentElement().getTextContent().contains(SECRET));
+        } catch (final IOException e) {
+            // Expected.
+        }
+
+        // ASSERT
+        assertEquals("b", reader.read(body("<r>b</r>")) //$NON-NLS-1$
+                                .getDocumentElement().getTextContent());
+    }
+
+
+    @Test
+    public void saxReadsDocument() throws Exception {
+
+        // ACT
+        final Text text = new XMLSAXBodyReader<Text>(TEXT).read(body("<r>a</r>"));
+
+        // ASSERT
+        assertEquals("a", text.toString());
+    }
+
+
+    @Test
+    public void saxRejectsExternalEntity() throws Exception {
+
+        // ARRANGE
+        final XMLSAXBodyReader<Text> reader = new XMLSAXBodyReader<Text>(TEXT);
+
+        // ACT
+        try {
+            assertFalse(reader.read(body(_xxe)).toString().contains(SECRET));
+        } catch (final IOException e) {
+            // Expected.
+        }
+
+        // ASSERT
+        assertEquals("b", reader.read(body("<r>b</r>")).toString()); //$NON-NLS-1$
+    }
+
+
+    @Test
+    public void streamReadsDocument() throws Exception {
+
+        // ACT
+        final String text =
+            new XMLStreamBodyReader<String>(ELEMENT_TEXT).read(body("<r>a</r>"));
+
+        // ASSERT
+        assertEquals("a", text);
+    }
+
+
+    @Test
+    public void streamRejectsExternalEntity() throws Exception {
+
+        // ARRANGE
+        final XMLStreamBodyReader<String> reader =
+            new XMLStreamBodyReader<String>(ELEMENT_TEXT);
+
+        // ACT
+        try {
+            assertFalse(reader.read(body(_xxe)).contains(SECRET));
+        } catch (final IOException e) {
+            // Expected.
+        }
+
+        // ASSERT
+        assertEquals("b", reader.read(body("<r>b</r>")));            //$NON-NLS-1$
+    }
+
+
+    @Test(expected=IOException.class)
+    public void malformedDocumentRejected() throws Exception {
+
+        // ACT
+        new XMLDOMBodyReader().read(body("<r>"));                   //$NON-NLS-1$
+    }
+
+
+    private static InputStream body(final String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static final class Text extends DefaultHandler {
+
+        private final StringBuilder _text = new StringBuilder();
+
+        @Override
+        public void characters(final char[] ch,
+                               final int start,
+                               final int length) {
+            _text.append(ch, start, length);
+        }
+
+        @Override
+        public String toString() {
+            return _text.toString();
+        }
+    }
+
+    private static final Supplier<Text> TEXT = new Supplier<Text>() {
+        @Override
+        public Text get() {
+            return new Text();
+        }
+    };
+
+    private static final XMLStreamBodyReader.Parser<String> ELEMENT_TEXT =
+        new XMLStreamBodyReader.Parser<String>() {
+            @Override
+            public String parse(final XMLStreamReader reader)
+            throws XMLStreamException {
+                reader.nextTag();
+                return reader.getElementText();
+            }
+        };
+}
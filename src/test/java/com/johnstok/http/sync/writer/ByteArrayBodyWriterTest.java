@@ -0,0 +1,58 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.writer;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link ByteArrayBodyWriter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ByteArrayBodyWriterTest {
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void stringEncodedOnceAndWrittenRepeatedly() throws Exception {
+
+        // ARRANGE
+        final ByteArrayBodyWriter writer =
+            new ByteArrayBodyWriter("café", StandardCharsets.UTF_8); //$NON-NLS-1$
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // ACT
+        writer.write(out);
+        writer.write(out);
+
+        // ASSERT
+        assertEquals(5, writer.getLength());
+        assertEquals(
+            "cafécafé",                                             //$NON-NLS-1$
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,176 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.sync.writer;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import com.johnstok.http.BufferPool;
+
+
+/**
+ * Tests for the {@link StringBodyWriter} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class StringBodyWriterTest {
+
+    private static final int POOLED = BufferPool.DEFAULT.getSize();
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void asciiLongerThanBufferWritten() throws Exception {
+        assertWritten(repeat("abc", 3*POOLED+1), StandardCharsets.UTF_8);
+        assertWritten(repeat("abc", 3*POOLED+1), StandardCharsets.US_ASCII);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void latin1LongerThanBufferWritten() throws Exception {
+        assertWritten(
+            repeat("café ", 3*POOLED+1), StandardCharsets.ISO_8859_1);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void nonAsciiRunsEncoded() throws Exception {
+        assertWritten("é"+repeat("a", 2*POOLED), StandardCharsets.UTF_8);
+        assertWritten(
+            repeat("aé中😀b", 2*POOLED),
+            StandardCharsets.UTF_8);
+        assertWritten(repeat("中", 2*POOLED), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void nonAsciiAtBufferBoundaryEncoded() throws Exception {
+        for (int offset=-2; offset<=2; offset++) {
+            assertWritten(
+                repeat("a", POOLED+offset)+"😀"+repeat("b", POOLED),
+                StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void channelWritten() throws Exception {
+
+        // ARRANGE
+        final String body = repeat("xéy", POOLED);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final WritableByteChannel channel = new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer src) {
+                // Accept at most 7 bytes per call.
+                final int count = Math.min(7, src.remaining());
+                for (int i=0; i<count; i++) { out.write(src.get()); }
+                return count;
+            }
+            @Override public boolean isOpen() { return true; }
+            @Override public void close() { /* No-op. */ }
+        };
+
+        // ACT
+        new StringBodyWriter(body, StandardCharsets.UTF_8).write(channel);
+
+        // ASSERT
+        assertArrayEquals(
+            body.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void encoderReusedAcrossCharsets() throws Exception {
+        final String body = "été €";                                //$NON-NLS-1$
+        assertWritten(body, StandardCharsets.UTF_8);
+        assertWritten(body, StandardCharsets.UTF_16BE);
+        assertWritten(body, Charset.forName("windows-1252"));       //$NON-NLS-1$
+        assertWritten(body, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void unmappableCharsReplaced() throws Exception {
+
+        // ARRANGE
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // ACT
+        new StringBodyWriter("a中bé", StandardCharsets.US_ASCII)
+            .write(out);
+
+        // ASSERT
+        assertEquals("a?b?", out.toString("US-ASCII"));             //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+
+    private static void assertWritten(final String body,
+                                      final Charset charset) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StringBodyWriter(body, charset).write(out);
+        assertArrayEquals(body.getBytes(charset), out.toByteArray());
+    }
+
+
+    private static String repeat(final String s, final int length) {
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length()<length) { sb.append(s); }
+        return sb.toString();
+    }
+}
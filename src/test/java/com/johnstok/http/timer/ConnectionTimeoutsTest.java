@@ -0,0 +1,322 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.timer;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.johnstok.http.timer.ConnectionTimeouts.Phase;
+
+
+/**
+ * Tests for the {@link ConnectionTimeouts} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class ConnectionTimeoutsTest {
+
+    private static final long TICK = 10;
+
+    private final TimingWheel        _wheel =
+        new TimingWheel(TICK, 8, 0, false);
+    private final List<Phase>        _expired = new ArrayList<Phase>();
+    private final ConnectionTimeouts _timeouts =
+        new ConnectionTimeouts(
+            _wheel,
+            new TimeoutLimits(100, 200, 300, TimeUnit.NANOSECONDS),
+            new ConnectionTimeouts.Listener() {
+                @Override
+                public void timedOut(final Phase phase) {
+                    _expired.add(phase);
+                }
+            });
+
+    private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+    private final List<Runnable>        _tasks = new ArrayList<Runnable>();
+    private final Executor              _executor = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            _tasks.add(command);
+        }
+    };
+    private int _closed;
+    private final Closeable _connection = new Closeable() {
+        @Override
+        public void close() {
+            _closed++;
+        }
+    };
+
+
+    @Test
+    public void phaseExpires() {
+
+        // ARRANGE
+        _timeouts.awaitingRequest(0);
+
+        // ACT
+        _wheel.expire(90);
+        final List<Phase> early = new ArrayList<Phase>(_expired);
+        _wheel.expire(100);
+
+        // ASSERT
+        assertTrue(early.isEmpty());
+        assertEquals("[IDLE]", _expired.toString());
+        assertNull(_timeouts.getPhase());
+        assertEquals(0, _wheel.size());
+    }
+
+
+    @Test
+    public void phaseSwitchCancelsPreviousDeadline() {
+
+        // ARRANGE
+        _timeouts.awaitingRequest(0);
+
+        // ACT
+        _timeouts.readingHeaders(50);
+
+        // ASSERT
+        assertEquals(Phase.HEADERS, _timeouts.getPhase());
+        assertEquals(1, _wheel.size());
+        _wheel.expire(240);
+        assertTrue(_expired.isEmpty());
+        _wheel.expire(250);
+        assertEquals("[HEADERS]", _expired.toString());
+    }
+
+
+    @Test
+    public void handlingClearsDeadline() {
+
+        // ARRANGE
+        _timeouts.readingHeaders(0);
+
+        // ACT
+        _timeouts.handling();
+
+        // ASSERT
+        assertNull(_timeouts.getPhase());
+        assertEquals(0, _wheel.size());
+        _wheel.expire(1000);
+        assertTrue(_expired.isEmpty());
+    }
+
+
+    @Test
+    public void bodyRearmedAfterProgress() {
+
+        // ARRANGE
+        _timeouts.readingBody(0);
+        _timeouts.progress(200);
+
+        // ACT
+        _wheel.expire(300);
+
+        // ASSERT
+        assertTrue(_expired.isEmpty());
+        assertEquals(Phase.BODY, _timeouts.getPhase());
+        assertEquals(1, _wheel.size());
+        _wheel.expire(490);
+        assertTrue(_expired.isEmpty());
+        _wheel.expire(500);
+        assertEquals("[BODY]", _expired.toString());
+    }
+
+
+    @Test
+    public void bodyWithoutProgressExpires() {
+
+        // ARRANGE
+        _timeouts.readingBody(0);
+
+        // ACT
+        _wheel.expire(300);
+
+        // ASSERT
+        assertEquals("[BODY]", _expired.toString());
+    }
+
+
+    @Test(timeout=5000)
+    public void supersededExpiryIgnored() throws Exception {
+
+        // ARRANGE
+        _timeouts.awaitingRequest(0);
+        final Thread wheel = new Thread() {
+            @Override
+            public void run() {
+                _wheel.expire(100);
+            }
+        };
+
+        // ACT
+        synchronized (_timeouts) {
+            wheel.start();
+            while (Thread.State.BLOCKED!=wheel.getState()) {
+                Thread.yield();
+            }
+            _timeouts.readingHeaders(100); // Before the expiry takes the lock.
+        }
+        wheel.join();
+
+        // ASSERT
+        assertTrue(_expired.isEmpty());
+        assertEquals(Phase.HEADERS, _timeouts.getPhase());
+        _wheel.expire(300);
+        assertEquals("[HEADERS]", _expired.toString());
+    }
+
+
+    @Test
+    public void closeClearsDeadlinePermanently() {
+
+        // ARRANGE
+        _timeouts.readingHeaders(0);
+
+        // ACT
+        _timeouts.close();
+        _timeouts.readingBody(10);
+
+        // ASSERT
+        assertNull(_timeouts.getPhase());
+        assertEquals(0, _wheel.size());
+        _wheel.expire(1000);
+        assertTrue(_expired.isEmpty());
+    }
+
+
+    @Test
+    public void closingWithoutResponse() {
+
+        // ARRANGE
+        final ConnectionTimeouts.Listener listener =
+            ConnectionTimeouts.closing(_connection);
+
+        // ACT
+        listener.timedOut(Phase.HEADERS);
+
+        // ASSERT
+        assertEquals(1, _closed);
+    }
+
+
+    @Test
+    public void requestTimeoutWrittenByExecutor() throws Exception {
+
+        // ARRANGE
+        final TimingWheel wheel = realTimeWheel();
+        final ConnectionTimeouts.Listener listener =
+            ConnectionTimeouts.closing(
+                _connection, _out, _executor, wheel, 1, TimeUnit.SECONDS);
+
+        // ACT
+        listener.timedOut(Phase.BODY);
+
+        // ASSERT
+        assertEquals(0, _out.size());
+        assertEquals(0, _closed);
+        assertEquals(1, _tasks.size());
+        _tasks.get(0).run();
+        assertTrue(
+            _out.toString("US-ASCII").startsWith(                   //$NON-NLS-1$
+                "HTTP/1.1 408 Request Timeout\r\n"));               //$NON-NLS-1$
+        assertEquals(1, _closed);
+        assertEquals(0, wheel.size());
+    }
+
+
+    @Test
+    public void stalledWriteBoundedByGracePeriod() throws Exception {
+
+        // ARRANGE
+        final TimingWheel wheel = realTimeWheel();
+        final ConnectionTimeouts.Listener listener =
+            ConnectionTimeouts.closing(
+                _connection, _out, _executor, wheel, 5, TimeUnit.MILLISECONDS);
+
+        // ACT
+        listener.timedOut(Phase.HEADERS);
+        wheel.expire(System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(10));
+
+        // ASSERT
+        assertEquals(1, _closed);
+        assertEquals(1, _tasks.size());
+    }
+
+
+    @Test
+    public void idleConnectionClosedWithoutResponse() {
+
+        // ARRANGE
+        final ConnectionTimeouts.Listener listener =
+            ConnectionTimeouts.closing(
+                _connection, _out, _executor, realTimeWheel(),
+                1, TimeUnit.SECONDS);
+
+        // ACT
+        listener.timedOut(Phase.IDLE);
+
+        // ASSERT
+        assertEquals(1, _closed);
+        assertTrue(_tasks.isEmpty());
+        assertEquals(0, _out.size());
+    }
+
+
+    @Test
+    public void rejectedWriteClosesConnection() {
+
+        // ARRANGE
+        final ConnectionTimeouts.Listener listener =
+            ConnectionTimeouts.closing(
+                _connection,
+                _out,
+                new Executor() {
+                    @Override
+                    public void execute(final Runnable command) {
+                        throw new RejectedExecutionException();
+                    }
+                },
+                realTimeWheel(),
+                1,
+                TimeUnit.SECONDS);
+
+        // ACT
+        listener.timedOut(Phase.BODY);
+
+        // ASSERT
+        assertEquals(1, _closed);
+        assertEquals(0, _out.size());
+    }
+
+
+    private static TimingWheel realTimeWheel() {
+        return
+            new TimingWheel(
+                TimeUnit.MILLISECONDS.toNanos(1), 64, System.nanoTime(), false);
+    }
+}
@@ -0,0 +1,156 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.timer;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link TimingWheel} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 100;
+
+    private final TimingWheel  _wheel = new TimingWheel(TICK, 8, 0, false);
+    private final List<String> _fired = new ArrayList<String>();
+
+
+    @Test
+    public void timeoutExpiresAtDeadline() {
+
+        // ARRANGE
+        final Timeout t = _wheel.schedule(task("a"), 250);
+
+        // ACT
+        final int early = _wheel.expire(299);
+        final int due = _wheel.expire(300);
+
+        // ASSERT
+        assertEquals(0, early);
+        assertEquals(1, due);
+        assertTrue(t.isExpired());
+        assertEquals(0, _wheel.size());
+    }
+
+
+    @Test
+    public void timeoutsBeyondOneRotationWaitForTheirRound() {
+
+        // ARRANGE
+        _wheel.schedule(task("near"), 200);
+        _wheel.schedule(task("far"), 200+8*TICK);
+
+        // ACT
+        _wheel.expire(300);
+
+        // ASSERT
+        assertEquals(1, _wheel.size());
+        _wheel.expire(999);
+        assertEquals(1, _wheel.size());
+        _wheel.expire(1000);
+        assertEquals(0, _wheel.size());
+        assertEquals("[near, far]", _fired.toString());
+    }
+
+
+    @Test
+    public void cancelledTimeoutDoesNotRun() {
+
+        // ARRANGE
+        final Timeout t = _wheel.schedule(task("a"), 100);
+
+        // ACT
+        final boolean cancelled = t.cancel();
+        _wheel.expire(1000);
+
+        // ASSERT
+        assertTrue(cancelled);
+        assertTrue(t.isCancelled());
+        assertFalse(t.cancel());
+        assertTrue(_fired.isEmpty());
+        assertEquals(0, _wheel.size());
+    }
+
+
+    @Test
+    public void pastDeadlineRunsOnNextTick() {
+
+        // ARRANGE
+        _wheel.expire(500);
+
+        // ACT
+        _wheel.schedule(task("late"), 100);
+        _wheel.expire(600);
+
+        // ASSERT
+        assertEquals("[late]", _fired.toString());
+    }
+
+
+    @Test
+    public void failingTaskDoesNotStopOthers() {
+
+        // ARRANGE
+        _wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        }, 100);
+        _wheel.schedule(task("b"), 100);
+
+        // ACT
+        _wheel.expire(100);
+
+        // ASSERT
+        assertEquals("[b]", _fired.toString());
+    }
+
+
+    @Test
+    public void wheelSizeRoundedToPowerOfTwo() {
+
+        // ARRANGE
+        final TimingWheel wheel = new TimingWheel(TICK, 5, 0, false);
+        wheel.schedule(task("a"), 7*TICK);
+
+        // ACT
+        wheel.expire(7*TICK);
+
+        // ASSERT
+        assertEquals("[a]", _fired.toString());
+    }
+
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                _fired.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,400 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.tls;
+
+import static org.junit.Assert.*;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.johnstok.http.BufferPool;
+
+
+/**
+ * Tests for the {@link TLSChannel} class.
+ *
+ * <p>Each test connects a client and a server channel over loopback, using a
+ * self-signed certificate for "localhost".
+ *
+ * @author Keith Webster Johnston.
+ */
+public class TLSChannelTest {
+
+    private static final char[] PASSWORD =
+        "changeit".toCharArray();                                   //$NON-NLS-1$
+    private static final byte[] PING =
+        "ping".getBytes(StandardCharsets.US_ASCII);                 //$NON-NLS-1$
+    private static final int    SMALL = 4096;   // Below the packet size.
+
+    private TLSContext          _context;
+    private SSLContext          _clientContext;
+    private ServerSocketChannel _listener;
+    private ExecutorService     _executor;
+
+
+    @Before
+    public void setUp() throws Exception {
+        final Path keyStore =
+            Paths.get(
+                getClass().getResource("localhost.p12").toURI());   //$NON-NLS-1$
+        _context = new TLSContext(keyStore, PASSWORD, "PKCS12");    //$NON-NLS-1$
+
+        final KeyStore trusted = KeyStore.getInstance("PKCS12");    //$NON-NLS-1$
+        try (InputStream is =
+                getClass().getResourceAsStream("localhost.p12")) {  //$NON-NLS-1$
+            trusted.load(is, PASSWORD);
+        }
+        final TrustManagerFactory tmf =
+            TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trusted);
+        _clientContext = SSLContext.getInstance("TLS");             //$NON-NLS-1$
+        _clientContext.init(null, tmf.getTrustManagers(), null);
+
+        _listener = ServerSocketChannel.open();
+        _listener.bind(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        _executor = Executors.newSingleThreadExecutor();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        _executor.shutdownNow();
+        _listener.close();
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void blockingEcho() throws Exception {
+
+        // ARRANGE
+        final Future<Integer> server =
+            _executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    try (TLSChannel channel =
+                            new TLSChannel(_listener.accept(), _context)) {
+                        final ByteBuffer request =
+                            ByteBuffer.allocate(PING.length);
+                        while (request.hasRemaining()) {
+                            assertTrue(0<=channel.read(request));
+                        }
+                        request.flip();
+                        channel.write(request);
+                        return channel.read(ByteBuffer.allocate(1));
+                    }
+                }
+            });
+        final TLSChannel client =
+            new TLSChannel(
+                connect(true), clientEngine(), _context.getBuffers());
+
+        // ACT
+        assertEquals(PING.length, client.write(ByteBuffer.wrap(PING)));
+        final ByteBuffer echo = ByteBuffer.allocate(PING.length);
+        while (echo.hasRemaining()) {
+            assertTrue(0<=client.read(echo));
+        }
+        client.close();
+
+        // ASSERT
+        assertArrayEquals(PING, echo.array());
+        assertEquals(
+            "Server should read the close_notify as end of stream.", //$NON-NLS-1$
+            Integer.valueOf(-1),
+            server.get(5, TimeUnit.SECONDS));
+        assertFalse(client.isOpen());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void nonBlockingEcho() throws Exception {
+
+        // ARRANGE
+        final BufferPool pool = _context.getBuffers();
+        final TLSChannel client =
+            new TLSChannel(connect(false), clientEngine(), pool);
+        final SocketChannel accepted = _listener.accept();
+        accepted.configureBlocking(false);
+        final TLSChannel server = new TLSChannel(accepted, _context);
+
+        // ACT
+        handshake(client, server);
+        echo(client, server);
+        final int idle = pool.getIdleDirect();
+        echo(client, server);
+
+        // ASSERT
+        assertTrue(
+            "Buffers should be pooled between requests.",           //$NON-NLS-1$
+            0<idle);
+        assertEquals(
+            "Idle channels should hold no buffers.",                //$NON-NLS-1$
+            idle,
+            pool.getIdleDirect());
+        client.close();
+        assertEquals(-1, readFully(server, ByteBuffer.allocate(1)));
+        assertTrue(server.getEngine().isInboundDone());
+        server.close();
+        assertTrue(idle<=pool.getIdleDirect());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void nonBlockingReadReturnsZeroWhenNoData() throws Exception {
+
+        // ARRANGE
+        final TLSChannel client =
+            new TLSChannel(
+                connect(false), clientEngine(), _context.getBuffers());
+        final SocketChannel accepted = _listener.accept();
+        accepted.configureBlocking(false);
+        final TLSChannel server = new TLSChannel(accepted, _context);
+
+        // ACT
+        final boolean handshaken = client.handshake();
+        final int read = server.read(ByteBuffer.allocate(1));
+
+        // ASSERT
+        assertFalse(handshaken);
+        assertEquals(0, read);
+        client.close();
+        server.close();
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void truncatedConnectionReadsEndOfStream() throws Exception {
+
+        // ARRANGE
+        final TLSChannel client =
+            new TLSChannel(
+                connect(false), clientEngine(), _context.getBuffers());
+        final SocketChannel accepted = _listener.accept();
+        accepted.configureBlocking(false);
+        final TLSChannel server = new TLSChannel(accepted, _context);
+        handshake(client, server);
+        echo(client, server);
+
+        // ACT
+        accepted.close(); // No close_notify.
+
+        // ASSERT
+        assertEquals(-1, readFully(client, ByteBuffer.allocate(1)));
+        client.close();
+        server.close();
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000, expected=EOFException.class)
+    public void endOfStreamDuringHandshakeRejected() throws Exception {
+
+        // ARRANGE
+        final SocketChannel accepted = connectAndAccept();
+        final TLSChannel server = new TLSChannel(accepted, _context);
+
+        // ACT
+        try {
+            server.handshake();
+        } finally {
+            server.close();
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void closedChannelRejectsIo() throws Exception {
+
+        // ARRANGE
+        final TLSChannel server = new TLSChannel(connectAndAccept(), _context);
+        server.close();
+        server.close(); // Idempotent.
+
+        // ACT
+        try {
+            server.read(ByteBuffer.allocate(1));
+            fail();
+
+        // ASSERT
+        } catch (final ClosedChannelException e) {
+            // Expected.
+        }
+        try {
+            server.write(ByteBuffer.wrap(PING));
+            fail();
+        } catch (final ClosedChannelException e) {
+            // Expected.
+        }
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test(timeout=10000)
+    public void recordLargerThanPoolRejected() throws Exception {
+
+        // ARRANGE
+        final TLSChannel client =
+            new TLSChannel(
+                connect(true), clientEngine(), new BufferPool(SMALL, 4));
+
+        // ACT
+        try {
+            client.write(ByteBuffer.allocate(SMALL));
+            fail();
+
+        // ASSERT
+        } catch (final SSLException e) {
+            assertEquals("Record exceeds buffer size.", e.getMessage()); //$NON-NLS-1$
+        } finally {
+            client.close();
+        }
+    }
+
+
+    private SocketChannel connect(final boolean blocking) throws IOException {
+        final SocketChannel channel =
+            SocketChannel.open(_listener.getLocalAddress());
+        channel.configureBlocking(blocking);
+        return channel;
+    }
+
+
+    /*
+     * Connect a client that closes without sending anything.
+     */
+    private SocketChannel connectAndAccept() throws IOException {
+        connect(true).close();
+        return _listener.accept();
+    }
+
+
+    private SSLEngine clientEngine() throws IOException {
+        final SSLEngine engine =
+            _clientContext.createSSLEngine(
+                "localhost",                                        //$NON-NLS-1$
+                ((InetSocketAddress) _listener.getLocalAddress()).getPort());
+        engine.setUseClientMode(true);
+        return engine;
+    }
+
+
+    private static void handshake(final TLSChannel client,
+                                  final TLSChannel server) throws Exception {
+        boolean clientDone = false;
+        boolean serverDone = false;
+        while (!clientDone || !serverDone) {
+            clientDone = client.handshake();
+            serverDone = server.handshake();
+            Thread.sleep(1);
+        }
+    }
+
+
+    private static void echo(final TLSChannel client,
+                             final TLSChannel server) throws Exception {
+        writeFully(client, ByteBuffer.wrap(PING));
+        final ByteBuffer request = ByteBuffer.allocate(PING.length);
+        assertEquals(PING.length, readFully(server, request));
+        request.flip();
+        writeFully(server, request);
+        final ByteBuffer response = ByteBuffer.allocate(PING.length);
+        assertEquals(PING.length, readFully(client, response));
+        assertArrayEquals(PING, response.array());
+    }
+
+
+    private static void writeFully(final TLSChannel channel,
+                                   final ByteBuffer src) throws Exception {
+        while (src.hasRemaining() || !channel.flush()) {
+            channel.write(src);
+            Thread.sleep(1);
+        }
+    }
+
+
+    /*
+     * Read until the buffer is full or the stream ends.
+     */
+    private static int readFully(final TLSChannel channel,
+                                 final ByteBuffer dst) throws Exception {
+        while (dst.hasRemaining()) {
+            final int read = channel.read(dst);
+            if (0>read) { return (0==dst.position()) ? -1 : dst.position(); }
+            if (0==read) { Thread.sleep(1); }
+        }
+        return dst.position();
+    }
+}
@@ -0,0 +1,217 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link FrameDecoder} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class FrameDecoderTest {
+
+    private final FrameDecoder _server = new FrameDecoder(1 << 20, true);
+    private final FrameDecoder _client = new FrameDecoder(1 << 20, false);
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void maskedTextDecoded() throws Exception {
+
+        // ARRANGE
+        final ByteBuffer buffer = buffer(
+            0x81, 0x85, 0x37, 0xfa, 0x21, 0x3d, 0x7f, 0x9f, 0x4d, 0x51, 0x58);
+
+        // ACT
+        final Frame frame = _server.decode(buffer);
+
+        // ASSERT
+        assertTrue(frame.isFin());
+        assertEquals(Frame.TEXT, frame.getOpcode());
+        assertEquals("Hello", string(frame.getPayload()));
+        assertFalse(buffer.hasRemaining());
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void fragmentsDecoded() throws Exception {
+
+        // ARRANGE
+        final ByteBuffer buffer = buffer(
+            0x01, 0x03, 0x48, 0x65, 0x6c, 0x80, 0x02, 0x6c, 0x6f);
+
+        // ACT
+        final Frame first = _client.decode(buffer);
+        final Frame second = _client.decode(buffer);
+
+        // ASSERT
+        assertFalse(first.isFin());
+        assertEquals(Frame.TEXT, first.getOpcode());
+        assertEquals("Hel", string(first.getPayload()));
+        assertTrue(second.isFin());
+        assertEquals(Frame.CONTINUATION, second.getOpcode());
+        assertEquals("lo", string(second.getPayload()));
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void extendedLengthDecoded() throws Exception {
+
+        // ARRANGE
+        final byte[] data = new byte[300];
+        for (int i=0; i<data.length; i++) { data[i] = (byte) i; }
+        final ByteBuffer buffer =
+            ByteBuffer.wrap(mask(Frame.BINARY, data, 0x12345678));
+
+        // ACT
+        final Frame frame = _server.decode(buffer);
+
+        // ASSERT
+        final byte[] payload = new byte[frame.getPayload().remaining()];
+        frame.getPayload().get(payload);
+        assertArrayEquals(data, payload);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void incompleteFrameNotConsumed() throws Exception {
+
+        // ARRANGE
+        final ByteBuffer buffer = buffer(0x81, 0x85, 0x37, 0xfa, 0x21, 0x3d, 0x7f);
+
+        // ACT
+        final Frame frame = _server.decode(buffer);
+
+        // ASSERT
+        assertNull(frame);
+        assertEquals(0, buffer.position());
+        assertEquals(11, FrameDecoder.required(buffer));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void unmaskedClientFrameRejected() {
+        assertError(WebSocket.PROTOCOL_ERROR, buffer(0x81, 0x00));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void fragmentedControlFrameRejected() {
+        assertError(WebSocket.PROTOCOL_ERROR, buffer(0x09, 0x80, 0, 0, 0, 0));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void reservedBitsRejected() {
+        assertError(WebSocket.PROTOCOL_ERROR, buffer(0xc1, 0x80, 0, 0, 0, 0));
+    }
+
+
+    /**
+     * Test.
+     */
+    @Test
+    public void oversizedFrameRejected() {
+        assertError(
+            WebSocket.MESSAGE_TOO_BIG,
+            buffer(0x82, 0xff, 0, 0, 0, 0, 0, 0x20, 0, 0));
+    }
+
+
+    /**
+     * Create a masked frame, as sent by a client.
+     *
+     * @param opcode The frame's opcode.
+     * @param data   The payload.
+     * @param mask   The masking key.
+     *
+     * @return The encoded frame.
+     */
+    static byte[] mask(final int opcode, final byte[] data, final int mask) {
+        final byte[] unmasked = Frame.encode(true, opcode, data, 0, data.length);
+        final int headerLength = unmasked.length-data.length;
+        final byte[] frame = new byte[unmasked.length+4];
+        System.arraycopy(unmasked, 0, frame, 0, headerLength);
+        frame[1] |= 0x80;
+        for (int i=0; i<4; i++) {
+            frame[headerLength+i] = (byte) (mask >>> (24-8*i));
+        }
+        for (int i=0; i<data.length; i++) {
+            frame[headerLength+4+i] =
+                (byte) (data[i] ^ frame[headerLength+(i&3)]);
+        }
+        return frame;
+    }
+
+
+    private void assertError(final int statusCode, final ByteBuffer buffer) {
+        try {
+            _server.decode(buffer);
+            fail();
+        } catch (final WebSocketException e) {
+            assertEquals(statusCode, e.getStatusCode());
+        }
+    }
+
+
+    private static ByteBuffer buffer(final int... bytes) {
+        final byte[] b = new byte[bytes.length];
+        for (int i=0; i<bytes.length; i++) { b[i] = (byte) bytes[i]; }
+        return ByteBuffer.wrap(b);
+    }
+
+
+    private static String string(final ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
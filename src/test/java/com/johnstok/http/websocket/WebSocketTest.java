@@ -0,0 +1,172 @@
+/*-----------------------------------------------------------------------------
+ * Copyright © 2014 Keith Webster Johnston.
+ * All rights reserved.
+ *
+ * This file is part of http.
+ *
+ * http is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * http is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with http. If not, see <http://www.gnu.org/licenses/>.
+ *---------------------------------------------------------------------------*/
+package com.johnstok.http.websocket;
+
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+
+/**
+ * Tests for the {@link WebSocket} class.
+ *
+ * @author Keith Webster Johnston.
+ */
+public class WebSocketTest {
+
+    private static final int MASK = 0x37fa213d;
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void fragmentedMessageEchoed() throws Exception {
+
+        // ARRANGE
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        client.write(fragment(Frame.TEXT, false, "Hel"));
+        client.write(FrameDecoderTest.mask(Frame.PING, bytes("p"), MASK));
+        client.write(fragment(Frame.CONTINUATION, true, "lo"));
+        client.write(FrameDecoderTest.mask(Frame.CLOSE, new byte[] {0x03, (byte) 0xe8}, MASK));
+        final Echo echo = new Echo();
+
+        // ACT
+        final ByteBuffer output = run(client.toByteArray(), echo);
+
+        // ASSERT
+        final FrameDecoder decoder = new FrameDecoder(1024, false);
+        final Frame pong = decoder.decode(output);
+        assertEquals(Frame.PONG, pong.getOpcode());
+        assertEquals("p", StandardCharsets.UTF_8.decode(pong.getPayload()).toString());
+        final Frame text = decoder.decode(output);
+        assertEquals(Frame.TEXT, text.getOpcode());
+        assertEquals("Hello", StandardCharsets.UTF_8.decode(text.getPayload()).toString());
+        final Frame close = decoder.decode(output);
+        assertEquals(Frame.CLOSE, close.getOpcode());
+        assertEquals(WebSocket.NORMAL_CLOSURE, close.getPayload().getShort());
+        assertEquals(WebSocket.NORMAL_CLOSURE, echo._statusCode);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void invalidUtf8Rejected() throws Exception {
+
+        // ARRANGE
+        final byte[] frame =
+            FrameDecoderTest.mask(Frame.TEXT, new byte[] {(byte) 0xc3}, MASK);
+        final Echo echo = new Echo();
+
+        // ACT
+        final ByteBuffer output = run(frame, echo);
+
+        // ASSERT
+        final Frame close = new FrameDecoder(1024, false).decode(output);
+        assertEquals(Frame.CLOSE, close.getOpcode());
+        assertEquals(WebSocket.INVALID_PAYLOAD, close.getPayload().getShort());
+        assertEquals(WebSocket.INVALID_PAYLOAD, echo._statusCode);
+    }
+
+
+    /**
+     * Test.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void lostConnectionIsAbnormal() throws Exception {
+
+        // ARRANGE
+        final Echo echo = new Echo();
+
+        // ACT
+        run(new byte[0], echo);
+
+        // ASSERT
+        assertEquals(WebSocket.ABNORMAL_CLOSURE, echo._statusCode);
+    }
+
+
+    private static ByteBuffer run(final byte[] input, final MessageHandler handler) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new WebSocket(new ByteArrayInputStream(input), output, handler).run();
+        return ByteBuffer.wrap(output.toByteArray());
+    }
+
+
+    private static byte[] fragment(final int opcode,
+                                   final boolean fin,
+                                   final String text) {
+        final byte[] frame = FrameDecoderTest.mask(opcode, bytes(text), MASK);
+        if (!fin) { frame[0] &= 0x7f; }
+        return frame;
+    }
+
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static final class Echo
+        implements
+            MessageHandler {
+
+        int _statusCode;
+
+
+        @Override
+        public void onOpen(final WebSocket socket) {
+            // No action.
+        }
+
+
+        @Override
+        public void onText(final WebSocket socket,
+                           final String text) throws IOException {
+            socket.sendText(text);
+        }
+
+
+        @Override
+        public void onBinary(final WebSocket socket, final ByteBuffer data) {
+            // No action.
+        }
+
+
+        @Override
+        public void onClose(final WebSocket socket,
+                            final int statusCode,
+                            final String reason) {
+            _statusCode = statusCode;
+        }
+    }
+}